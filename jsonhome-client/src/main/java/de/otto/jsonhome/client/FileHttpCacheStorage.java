@@ -0,0 +1,383 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.client;
+
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.HttpCacheUpdateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A HttpCacheStorage keeping cached responses in a directory, so they survive restarts of the application.
+ * <p/>
+ * Entries are kept in an in-memory storage (by default a {@link SizeLimitedHttpCacheStorage}) and written through
+ * to one gzip-compressed file per entry. Entries missing in memory are read from disk, so after a restart the
+ * client revalidates the cached documents using their validators (ETag, Last-Modified) instead of downloading
+ * them again. If the upstream server is unreachable, the CachingHttpClient is able to serve stale entries from
+ * the disk cache, unless they must be revalidated.
+ * <p/>
+ * Files are written to a temporary file first and then renamed, so a crash never leaves a partially written
+ * entry behind. Unreadable files and files containing classes that are not part of a HttpCacheEntry are deleted.
+ * <p/>
+ * Disk I/O is guarded by one of a fixed number of lock stripes, selected by the file of the entry, so reading or
+ * writing one entry never blocks access to entries in other stripes. The size of the files is tracked in memory
+ * (the directory is only listed on construction); if the files are exceeding the configured maximum size, the
+ * least recently written files are deleted.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class FileHttpCacheStorage implements HttpCacheStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileHttpCacheStorage.class);
+
+    public static final long DEFAULT_MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    private static final String SUFFIX = ".entry";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Classes outside of org.apache.http that are part of the serialized form of a HttpCacheEntry.
+     */
+    private static final Set<String> SERIALIZABLE_CLASSES = new HashSet<String>(Arrays.asList(
+            "java.lang.String",
+            "java.util.ArrayList",
+            "java.util.Date",
+            "java.util.HashMap",
+            "java.util.LinkedHashMap",
+            SizeLimitedHttpCacheStorage.CompressedResource.class.getName()
+    ));
+
+    private final File directory;
+    private final HttpCacheStorage memory;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    /** Sizes of the files, in the order they were written. Guarded by itself. */
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>();
+    private long diskBytes = 0L;
+    private volatile long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+
+    public FileHttpCacheStorage(final File directory) {
+        this(directory, new SizeLimitedHttpCacheStorage());
+    }
+
+    /**
+     * Creates a storage.
+     *
+     * @param directory the directory used to store the cache entries. The directory is created, if necessary.
+     * @param memory the in-memory storage used in front of the files.
+     */
+    public FileHttpCacheStorage(final File directory, final HttpCacheStorage memory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.memory = memory;
+        for (int i = 0; i < locks.length; ++i) {
+            locks[i] = new Object();
+        }
+        loadFiles();
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the files of the cache. Defaults to 64 MB.
+     *
+     * @param maxDiskBytes maximum size of all files.
+     */
+    public void setMaxDiskBytes(final long maxDiskBytes) {
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of bytes used by the files of the cache.
+     *
+     * @return size of all files.
+     */
+    public long getDiskBytes() {
+        synchronized (files) {
+            return diskBytes;
+        }
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        final File file = fileOf(key);
+        synchronized (lockOf(file)) {
+            memory.putEntry(key, entry);
+            write(key, entry, file);
+        }
+        evictIfNecessary(file);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        final HttpCacheEntry cached = memory.getEntry(key);
+        if (cached != null) {
+            return cached;
+        }
+        final File file = fileOf(key);
+        synchronized (lockOf(file)) {
+            HttpCacheEntry entry = memory.getEntry(key);
+            if (entry == null) {
+                entry = read(key, file);
+                if (entry != null) {
+                    LOG.debug("Loaded cached response for {} from disk", key);
+                    memory.putEntry(key, entry);
+                }
+            }
+            return entry;
+        }
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        final File file = fileOf(key);
+        synchronized (lockOf(file)) {
+            memory.removeEntry(key);
+            delete(file);
+        }
+    }
+
+    @Override
+    public void updateEntry(final String key, final HttpCacheUpdateCallback callback)
+            throws IOException, HttpCacheUpdateException {
+        synchronized (lockOf(fileOf(key))) {
+            final HttpCacheEntry updated = callback.update(getEntry(key));
+            if (updated != null) {
+                putEntry(key, updated);
+            } else {
+                removeEntry(key);
+            }
+        }
+    }
+
+    private Object lockOf(final File file) {
+        return locks[(file.getName().hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private void loadFiles() {
+        final File[] existing = directory.listFiles();
+        if (existing == null) {
+            return;
+        }
+        Arrays.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(final File first, final File second) {
+                final long a = first.lastModified();
+                final long b = second.lastModified();
+                return a < b ? -1 : (a == b ? 0 : 1);
+            }
+        });
+        synchronized (files) {
+            for (final File file : existing) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    final long length = file.length();
+                    files.put(file.getName(), length);
+                    diskBytes += length;
+                } else if (file.getName().endsWith(TMP_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void write(final String key, final HttpCacheEntry entry, final File file) {
+        final File tmp = new File(directory, file.getName() + TMP_SUFFIX);
+        try {
+            final ObjectOutputStream out = new ObjectOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))));
+            try {
+                out.writeUTF(key);
+                out.writeObject(entry);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                // Windows does not replace existing files on rename.
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tmp + " to " + file);
+                }
+            }
+            written(file);
+        } catch (final IOException e) {
+            LOG.warn("Unable to write cache file for {}: {}", key, e.getMessage());
+            tmp.delete();
+            delete(file);
+        }
+    }
+
+    private HttpCacheEntry read(final String key, final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final ObjectInputStream in = new CacheEntryInputStream(
+                    new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+            try {
+                if (!key.equals(in.readUTF())) {
+                    return null;
+                }
+                return (HttpCacheEntry) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (final Exception e) {
+            LOG.warn("Deleting unreadable cache file {}: {}", file, e.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    private void delete(final File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Unable to delete cache file {}", file);
+        }
+        deleted(file);
+    }
+
+    private void written(final File file) {
+        final long length = file.length();
+        synchronized (files) {
+            final Long previous = files.remove(file.getName());
+            if (previous != null) {
+                diskBytes -= previous;
+            }
+            files.put(file.getName(), length);
+            diskBytes += length;
+        }
+    }
+
+    private void deleted(final File file) {
+        synchronized (files) {
+            final Long previous = files.remove(file.getName());
+            if (previous != null) {
+                diskBytes -= previous;
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently written files until the size of the cache is below the maximum.
+     * <p/>
+     * The files are selected while holding the monitor of the in-memory index only; they are deleted afterwards,
+     * each one guarded by its lock stripe. A file written again in the meantime is kept.
+     *
+     * @param written the file just written, which is never evicted.
+     */
+    private void evictIfNecessary(final File written) {
+        final List<String> evicted = new ArrayList<String>();
+        synchronized (files) {
+            final Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                final Map.Entry<String, Long> file = eldest.next();
+                if (!file.getKey().equals(written.getName())) {
+                    eldest.remove();
+                    diskBytes -= file.getValue();
+                    evicted.add(file.getKey());
+                }
+            }
+        }
+        for (final String name : evicted) {
+            final File file = new File(directory, name);
+            synchronized (lockOf(file)) {
+                final boolean rewritten;
+                synchronized (files) {
+                    rewritten = files.containsKey(name);
+                }
+                if (!rewritten && !file.delete()) {
+                    LOG.warn("Unable to delete cache file {}", file);
+                }
+            }
+        }
+    }
+
+    private File fileOf(final String key) {
+        return new File(directory, sha1Of(key) + SUFFIX);
+    }
+
+    private static String sha1Of(final String key) {
+        try {
+            return JsonHomeHistory.sha1Of(key.getBytes("UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * An ObjectInputStream only resolving the classes a serialized HttpCacheEntry is made of, so a manipulated
+     * cache file is not able to instantiate arbitrary serializable classes.
+     */
+    static final class CacheEntryInputStream extends ObjectInputStream {
+
+        CacheEntryInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isSerializable(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Not part of a cached HttpCacheEntry");
+            }
+            return super.resolveClass(desc);
+        }
+
+        private static boolean isSerializable(final String className) {
+            String name = className;
+            while (name.startsWith("[")) {
+                name = name.substring(1);
+            }
+            if (name.startsWith("L") && name.endsWith(";")) {
+                name = name.substring(1, name.length() - 1);
+            } else if (name.length() == 1) {
+                // array of primitives
+                return true;
+            }
+            return name.startsWith("org.apache.http.") || SERIALIZABLE_CLASSES.contains(name);
+        }
+    }
+}
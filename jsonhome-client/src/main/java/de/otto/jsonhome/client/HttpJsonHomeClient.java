@@ -16,11 +16,17 @@
 
 package de.otto.jsonhome.client;
 
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.metrics.Metrics;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.parser.JacksonJsonHomeParser;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.cache.CacheResponseStatus;
 import org.apache.http.client.cache.HttpCacheStorage;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
@@ -31,14 +37,39 @@ import org.apache.http.protocol.BasicHttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.mediaTypeOfContentType;
+import static de.otto.jsonhome.delta.JsonHomeDelta.INSTANCE_MANIPULATION;
+import static de.otto.jsonhome.delta.JsonHomeHistory.versionOfEntityTag;
+import static de.otto.jsonhome.metrics.NoOpMetrics.noOpMetrics;
+import static org.apache.http.impl.client.cache.CachingHttpClient.CACHE_RESPONSE_STATUS;
 
 /**
  * A JsonHomeClient used to get json-home documents from an URI via HTTP.
  * <p/>
  * This implementation is relying on Apache's CachingHttpClient.
+ * <p/>
+ * The compact binary application/json-home+smile representation is preferred, if supported by the server;
+ * otherwise, the application/json representation is used. The response is decoded depending on its Content-Type.
+ * <p/>
+ * The latest version of every json-home document is kept, so subsequent requests only need to transfer the
+ * delta to the current version of the document (RFC 3229 delta encoding).
+ * <p/>
+ * Fetch latency, cache hits, misses and stale responses, as well as errors are recorded per URI, if
+ * {@link #setMetrics(de.otto.jsonhome.metrics.Metrics) Metrics} are provided. If the cache is a
+ * {@link SizeLimitedHttpCacheStorage}, its resident size is recorded as well.
+ * <p/>
+ * The remaining freshness lifetime of every document, as specified by the Cache-Control max-age of the
+ * server, is available using {@link #getMaxAgeSeconds(java.net.URI)}.
+ * <p/>
+ * Instead of waiting for cached documents to expire, clients may {@link #watch(java.net.URI, java.net.URI) watch}
+ * a document, so it is updated as soon as the server announces a new version.
  *
  * @author Guido Steinacker
  * @since 26.10.12
@@ -47,18 +78,36 @@ public class HttpJsonHomeClient implements JsonHomeClient {
 
     private static Logger LOG = LoggerFactory.getLogger(HttpJsonHomeClient.class);
 
+    private static final String ACCEPT = "application/json-home+smile, application/json;q=0.9";
+    private static final int SC_NOT_MODIFIED = 304;
+    private static final int SC_IM_USED = 226;
+
+    public static final String FETCH_TIME = "jsonhome.client.fetch";
+    public static final String CACHE_HIT = "jsonhome.client.cache.hit";
+    public static final String CACHE_MISS = "jsonhome.client.cache.miss";
+    public static final String CACHE_STALE = "jsonhome.client.cache.stale";
+    public static final String FETCH_ERROR = "jsonhome.client.error";
+    public static final String CACHE_SIZE = "jsonhome.client.cache.size";
+
+    /** Responses up to this size are cached by the default client. */
+    public static final int DEFAULT_MAX_OBJECT_SIZE = 4 * 1024 * 1024;
+
     private final HttpClient httpClient;
     private final HttpCacheStorage cacheStorage;
+    private final ConcurrentMap<URI, VersionedJsonHome> knownVersions = new ConcurrentHashMap<URI, VersionedJsonHome>();
+    private final ConcurrentMap<URI, Long> maxAges = new ConcurrentHashMap<URI, Long>();
+    private volatile Metrics metrics = noOpMetrics();
 
     /**
      * Constructs a default HttpJsonHomeClient build on top of a CachingHttpClient with in-memory storage.
+     * <p/>
+     * The cache is limited by the total size of the cached documents (16 MB), not by the number of documents, so
+     * large aggregated json-home documents (up to {@link #DEFAULT_MAX_OBJECT_SIZE}) are cached as well.
+     *
+     * @see SizeLimitedHttpCacheStorage
      */
     public HttpJsonHomeClient() {
-        final CacheConfig cacheConfig = new CacheConfig();
-        cacheConfig.setMaxCacheEntries(100);
-        cacheConfig.setMaxObjectSize(50000);
-        this.cacheStorage = new BasicHttpCacheStorage(cacheConfig);
-        this.httpClient = new CachingHttpClient(new DefaultHttpClient(), cacheStorage, cacheConfig);
+        this(new DefaultHttpClient(), new SizeLimitedHttpCacheStorage(), defaultCacheConfig());
     }
 
     /**
@@ -88,13 +137,76 @@ public class HttpJsonHomeClient implements JsonHomeClient {
         this.httpClient = new CachingHttpClient(httpClient, cacheStorage, cacheConfig);
     }
 
+    /**
+     * Constructs a HttpJsonHomeClient like {@link #HttpJsonHomeClient()}, additionally keeping the cached
+     * documents in a directory, so they survive restarts.
+     *
+     * @param cacheDirectory the directory used to store the cached documents.
+     * @see FileHttpCacheStorage
+     */
+    public HttpJsonHomeClient(final File cacheDirectory) {
+        this(new DefaultHttpClient(), new FileHttpCacheStorage(cacheDirectory), defaultCacheConfig());
+    }
+
+    private static CacheConfig defaultCacheConfig() {
+        final CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setMaxObjectSize(DEFAULT_MAX_OBJECT_SIZE);
+        return cacheConfig;
+    }
+
+    /**
+     * Injects the metrics used to record fetch latency, cache statistics and errors.
+     *
+     * @param metrics Metrics implementation
+     */
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the remaining freshness lifetime of the last response for the json-home document: the max-age of
+     * the Cache-Control header, minus the Age of the response, if it was returned from a cache.
+     *
+     * @param uri the URI of the json-home document.
+     * @return max-age in seconds, or -1 if the document was not yet received or has no max-age.
+     */
+    public long getMaxAgeSeconds(final URI uri) {
+        final Long maxAge = maxAges.get(uri);
+        return maxAge != null ? maxAge : -1L;
+    }
+
+    /**
+     * Watches the json-home document for changes, using a watch resource returning server-sent events, like
+     * the watch resource of the json-home registry. Whenever the server announces a version that differs from
+     * the known version of the document, the document is updated, so subsequent calls of {@link #get(URI)} are
+     * returning the new version.
+     *
+     * @param uri the URI of the json-home document.
+     * @param watchUri the URI of the watch resource.
+     * @return JsonHomeWatch, used to stop watching the document.
+     */
+    public JsonHomeWatch watch(final URI uri, final URI watchUri) {
+        return JsonHomeWatch.startWatch(this, uri, watchUri, new DefaultHttpClient());
+    }
+
+    /**
+     * Returns the version of the json-home document that was received last.
+     *
+     * @param uri the URI of the json-home document.
+     * @return version, or null if unknown.
+     */
+    String getKnownVersion(final URI uri) {
+        final VersionedJsonHome knownVersion = knownVersions.get(uri);
+        return knownVersion != null ? knownVersion.version : null;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public JsonHome updateAndGet(final URI uri) {
         try {
-            LOG.info("Expiring cached json-home document {}", uri);
+            LOG.debug("Expiring cached json-home document {}", uri);
             cacheStorage.removeEntry(uri.toString());
         } catch (IOException e) {
             throw new JsonHomeClientException("IOException caught while removing cache-entry: " + e.getMessage(), e);
@@ -104,17 +216,50 @@ public class HttpJsonHomeClient implements JsonHomeClient {
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * If a version of the document was already received, only the delta to the current version is requested.
+     * The delta is applied to the known document; if the server does not know the version anymore, the
+     * full document is returned by the server.
      */
     @Override
     public JsonHome get(final URI uri) {
+        final long start = System.nanoTime();
+        try {
+            final JsonHome jsonHome = get(uri, knownVersions.get(uri));
+            return jsonHome != null ? jsonHome : get(uri, null);
+        } catch (final JsonHomeClientException e) {
+            metrics.increment(FETCH_ERROR, uri.toString());
+            throw e;
+        } finally {
+            metrics.recordTime(FETCH_TIME, uri.toString(), System.nanoTime() - start);
+            if (cacheStorage instanceof SizeLimitedHttpCacheStorage) {
+                metrics.recordValue(CACHE_SIZE, "residentBytes", ((SizeLimitedHttpCacheStorage) cacheStorage).getResidentBytes());
+            }
+        }
+    }
+
+    /**
+     * Gets the json-home document, or the delta since the known version of the document.
+     *
+     * @param uri the URI of the json-home document
+     * @param knownVersion the version of the document already known by the client, or null.
+     * @return JsonHome, or null if the known version did not match the delta returned by the server.
+     */
+    private JsonHome get(final URI uri, final VersionedJsonHome knownVersion) {
         final HttpGet httpget = new HttpGet(uri);
-        httpget.setHeader("Accept", "application/json");
+        httpget.setHeader("Accept", ACCEPT);
+        if (knownVersion != null) {
+            httpget.setHeader("If-None-Match", knownVersion.entityTag);
+            httpget.setHeader("A-IM", INSTANCE_MANIPULATION);
+        }
         final BasicHttpContext context = new BasicHttpContext();
         final HttpResponse response;
+        final int statusCode;
         try {
-            LOG.info("Getting json-home document {}", uri);
+            LOG.debug("Getting json-home document {}", uri);
             response = httpClient.execute(httpget, context);
-            final int statusCode = response.getStatusLine().getStatusCode();
+            statusCode = response.getStatusLine().getStatusCode();
+            recordCacheStatus(uri, context, response);
             if (statusCode == 404) {
                 LOG.warn("Json-home document {} not found. HTTP status is 404", uri);
                 throw new NotFoundException("Resource " + uri + " not found");
@@ -125,6 +270,7 @@ public class HttpJsonHomeClient implements JsonHomeClient {
                         "Failed to load json-home from " + uri +
                                 ": Received HTTP status code " + status);
             }
+            rememberMaxAge(uri, response);
         } catch (final IOException e) {
             LOG.warn("Error getting json-home document {}: {}", uri, e.getMessage());
             // in case of an IOException, the connection will be released automatically.
@@ -132,12 +278,31 @@ public class HttpJsonHomeClient implements JsonHomeClient {
         } finally {
             httpget.reset();
         }
+        if (statusCode == SC_NOT_MODIFIED && knownVersion != null) {
+            return knownVersion.jsonHome;
+        }
         final HttpEntity entity = response.getEntity();
         if (entity != null) {
             InputStream stream = null;
             try {
                 stream = entity.getContent();
-                return new JacksonJsonHomeParser().parse(stream);
+                final Header contentType = entity.getContentType();
+                final JsonHomeMediaType mediaType = mediaTypeOfContentType(contentType != null ? contentType.getValue() : null);
+                final JacksonJsonHomeParser parser = new JacksonJsonHomeParser(mediaType, metrics);
+                final JsonHome jsonHome;
+                if (statusCode == SC_IM_USED && knownVersion != null) {
+                    final JsonHomeDelta delta = parser.parseDelta(stream);
+                    if (!delta.getFromVersion().equals(knownVersion.version)) {
+                        LOG.warn("Unable to apply delta of json-home document {}: version {} does not match {}",
+                                new Object[] {uri, delta.getFromVersion(), knownVersion.version});
+                        return null;
+                    }
+                    jsonHome = delta.applyTo(knownVersion.jsonHome);
+                } else {
+                    jsonHome = parser.parse(stream);
+                }
+                rememberVersion(uri, response, jsonHome);
+                return jsonHome;
             } catch (final IOException e) {
                 // in case of an IOException, the connection will be released automatically.
                 throw new JsonHomeClientException("Exception caught while getting json-home from " + uri, e);
@@ -151,9 +316,75 @@ public class HttpJsonHomeClient implements JsonHomeClient {
         throw new JsonHomeClientException("No content returned when getting json-home resource from " + uri);
     }
 
+    private void recordCacheStatus(final URI uri, final BasicHttpContext context, final HttpResponse response) {
+        final Object cacheStatus = context.getAttribute(CACHE_RESPONSE_STATUS);
+        if (cacheStatus == CacheResponseStatus.CACHE_HIT || cacheStatus == CacheResponseStatus.VALIDATED) {
+            metrics.increment(CACHE_HIT, uri.toString());
+        } else if (cacheStatus == CacheResponseStatus.CACHE_MISS) {
+            metrics.increment(CACHE_MISS, uri.toString());
+        }
+        for (final Header warning : response.getHeaders("Warning")) {
+            // 110 Response is stale, 111 Revalidation failed
+            if (warning.getValue().startsWith("110") || warning.getValue().startsWith("111")) {
+                metrics.increment(CACHE_STALE, uri.toString());
+                break;
+            }
+        }
+    }
+
+    private void rememberMaxAge(final URI uri, final HttpResponse response) {
+        long maxAge = -1L;
+        for (final Header cacheControl : response.getHeaders("Cache-Control")) {
+            for (final HeaderElement element : cacheControl.getElements()) {
+                if ("max-age".equalsIgnoreCase(element.getName())) {
+                    maxAge = parseSeconds(element.getValue());
+                }
+            }
+        }
+        if (maxAge < 0) {
+            maxAges.remove(uri);
+        } else {
+            final Header age = response.getFirstHeader("Age");
+            maxAges.put(uri, Math.max(0L, maxAge - (age != null ? Math.max(0L, parseSeconds(age.getValue())) : 0L)));
+        }
+    }
+
+    private static long parseSeconds(final String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : -1L;
+        } catch (final NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private void rememberVersion(final URI uri, final HttpResponse response, final JsonHome jsonHome) {
+        final Header etag = response.getFirstHeader("ETag");
+        final String version = versionOfEntityTag(etag != null ? etag.getValue() : null);
+        if (version == null) {
+            knownVersions.remove(uri);
+        } else {
+            knownVersions.put(uri, new VersionedJsonHome(version, etag.getValue(), jsonHome));
+        }
+    }
+
     @Override
     public void shutdown() {
         httpClient.getConnectionManager().shutdown();
     }
 
+    /**
+     * A json-home document together with its version and the entity tag of the received representation.
+     */
+    private static final class VersionedJsonHome {
+        private final String version;
+        private final String entityTag;
+        private final JsonHome jsonHome;
+
+        private VersionedJsonHome(final String version, final String entityTag, final JsonHome jsonHome) {
+            this.version = version;
+            this.entityTag = entityTag;
+            this.jsonHome = jsonHome;
+        }
+    }
+
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+
+/**
+ * Watches a json-home document for changes and updates the document known by a {@link HttpJsonHomeClient}.
+ * <p/>
+ * The watch resource is expected to return server-sent events (text/event-stream), using the version of the
+ * json-home document as event id. The watch reconnects after every response, sending the known version in the
+ * Last-Event-ID header, and waits for the retry interval announced by the server before reconnecting.
+ * <p/>
+ * The watch is running in a separate daemon thread, using its own HttpClient, until it is {@link #stop() stopped}.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeWatch {
+
+    private static Logger LOG = LoggerFactory.getLogger(JsonHomeWatch.class);
+
+    private final HttpJsonHomeClient client;
+    private final URI uri;
+    private final URI watchUri;
+    private final HttpClient httpClient;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile HttpGet request;
+    private volatile long retryMillis = 1000L;
+    private volatile int updates = 0;
+
+    private JsonHomeWatch(final HttpJsonHomeClient client,
+                          final URI uri,
+                          final URI watchUri,
+                          final HttpClient httpClient) {
+        this.client = client;
+        this.uri = uri;
+        this.watchUri = watchUri;
+        this.httpClient = httpClient;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "jsonhome-watch " + watchUri);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching a json-home document.
+     *
+     * @param client the client whose known version of the document is updated.
+     * @param uri the URI of the json-home document.
+     * @param watchUri the URI of the watch resource.
+     * @param httpClient the HttpClient used to connect to the watch resource.
+     * @return the running JsonHomeWatch
+     */
+    public static JsonHomeWatch startWatch(final HttpJsonHomeClient client,
+                                           final URI uri,
+                                           final URI watchUri,
+                                           final HttpClient httpClient) {
+        final JsonHomeWatch watch = new JsonHomeWatch(client, uri, watchUri, httpClient);
+        watch.thread.start();
+        return watch;
+    }
+
+    /**
+     * @return the number of updates of the json-home document caused by change events.
+     */
+    public int getUpdates() {
+        return updates;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops watching the document and shuts down the HttpClient of the watch.
+     */
+    public void stop() {
+        running = false;
+        final HttpGet current = request;
+        if (current != null) {
+            current.abort();
+        }
+        thread.interrupt();
+        httpClient.getConnectionManager().shutdown();
+    }
+
+    private void watch() {
+        while (running) {
+            try {
+                if (client.getKnownVersion(uri) == null) {
+                    client.get(uri);
+                }
+                receiveEvents();
+            } catch (final IOException e) {
+                if (running) {
+                    LOG.debug("Error watching json-home document {}: {}", uri, e.getMessage());
+                }
+            } catch (final JsonHomeClientException e) {
+                LOG.warn("Unable to update watched json-home document {}: {}", uri, e.getMessage());
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receiveEvents() throws IOException {
+        final HttpGet get = new HttpGet(watchUri);
+        get.setHeader("Accept", "text/event-stream");
+        get.setHeader("Cache-Control", "no-cache");
+        final String knownVersion = client.getKnownVersion(uri);
+        if (knownVersion != null) {
+            get.setHeader("Last-Event-ID", knownVersion);
+        }
+        request = get;
+        try {
+            final HttpResponse response = httpClient.execute(get);
+            final HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() != 200 || entity == null) {
+                LOG.warn("Unable to watch json-home document {}: {}", uri, response.getStatusLine());
+                EntityUtils.consume(entity);
+                return;
+            }
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent(), "UTF-8"));
+            try {
+                String eventId = null;
+                String line;
+                while (running && (line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        if (eventId != null) {
+                            onEvent(eventId);
+                        }
+                        eventId = null;
+                    } else if (line.startsWith("id:")) {
+                        eventId = valueOf(line);
+                    } else if (line.startsWith("retry:")) {
+                        try {
+                            retryMillis = Long.parseLong(valueOf(line));
+                        } catch (final NumberFormatException e) {
+                            // ignore invalid retry fields, as required by the event-stream format
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            request = null;
+            get.reset();
+        }
+    }
+
+    private void onEvent(final String version) {
+        if (!version.equals(client.getKnownVersion(uri))) {
+            LOG.info("Json-home document {} changed to version {}", uri, version);
+            client.updateAndGet(uri);
+            ++updates;
+        }
+    }
+
+    private static String valueOf(final String line) {
+        final String value = line.substring(line.indexOf(':') + 1);
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+}
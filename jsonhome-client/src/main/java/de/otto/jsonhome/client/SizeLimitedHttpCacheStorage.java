@@ -0,0 +1,276 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.client;
+
+import org.apache.http.Header;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.HttpCacheUpdateException;
+import org.apache.http.client.cache.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-memory HttpCacheStorage that is bounded by the total number of bytes of the cached entries, instead of
+ * the number of entries.
+ * <p/>
+ * Entries are evicted in least-recently-used order until the resident size of all entries fits into the limit,
+ * so a single large document may evict several small ones. Bodies larger than the compression threshold are
+ * kept gzip-compressed and decompressed when they are read; json-home documents typically compress to 10-20%
+ * of their size.
+ * <p/>
+ * Hits, misses, evictions and the resident size are counted and may be used to tune the limit.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class SizeLimitedHttpCacheStorage implements HttpCacheStorage {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 8 * 1024;
+
+    /** Rough estimate of the memory used by an entry, in addition to its body and headers. */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private final int compressionThreshold;
+    private final LinkedHashMap<String, StoredEntry> entries = new LinkedHashMap<String, StoredEntry>(16, 0.75f, true);
+    private long residentBytes = 0L;
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    public SizeLimitedHttpCacheStorage() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Creates a storage.
+     *
+     * @param maxBytes the maximum resident size of all entries.
+     * @param compressionThreshold bodies of at least this number of bytes are stored compressed.
+     */
+    public SizeLimitedHttpCacheStorage(final long maxBytes, final int compressionThreshold) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Entries that are larger than the maximum size of the storage are not cached.
+     */
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        final HttpCacheEntry compacted = compacted(entry);
+        synchronized (this) {
+            store(key, compacted);
+        }
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getEntry(final String key) {
+        final StoredEntry stored = entries.get(key);
+        if (stored != null) {
+            ++hits;
+            return stored.entry;
+        } else {
+            ++misses;
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void removeEntry(final String key) {
+        final StoredEntry removed = entries.remove(key);
+        if (removed != null) {
+            residentBytes -= removed.weight;
+        }
+    }
+
+    @Override
+    public void updateEntry(final String key, final HttpCacheUpdateCallback callback)
+            throws IOException, HttpCacheUpdateException {
+        synchronized (this) {
+            final StoredEntry existing = entries.get(key);
+            final HttpCacheEntry updated = callback.update(existing != null ? existing.entry : null);
+            store(key, compacted(updated));
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the estimated number of bytes used by all entries.
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return the ratio of lookups that found an entry, or 0.0 if there was no lookup yet.
+     */
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return lookups > 0 ? (double) hits / lookups : 0.0;
+    }
+
+    private void store(final String key, final HttpCacheEntry entry) {
+        final StoredEntry previous = entries.remove(key);
+        if (previous != null) {
+            residentBytes -= previous.weight;
+        }
+        if (entry == null) {
+            return;
+        }
+        final long weight = weightOf(entry);
+        if (weight > maxBytes) {
+            return;
+        }
+        entries.put(key, new StoredEntry(entry, weight));
+        residentBytes += weight;
+        final Iterator<StoredEntry> eldest = entries.values().iterator();
+        while (residentBytes > maxBytes && eldest.hasNext()) {
+            final StoredEntry evicted = eldest.next();
+            eldest.remove();
+            residentBytes -= evicted.weight;
+            ++evictions;
+        }
+    }
+
+    /**
+     * Returns an entry with a compressed copy of the body, if the body is large enough and compressible.
+     */
+    private HttpCacheEntry compacted(final HttpCacheEntry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        final Resource resource = entry.getResource();
+        if (resource == null || resource instanceof CompressedResource || resource.length() < compressionThreshold) {
+            return entry;
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) (resource.length() / 4));
+        final GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        final InputStream in = resource.getInputStream();
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                gzip.write(buffer, 0, read);
+            }
+            gzip.close();
+        } finally {
+            in.close();
+        }
+        if (compressed.size() >= resource.length()) {
+            return entry;
+        }
+        return new HttpCacheEntry(
+                entry.getRequestDate(),
+                entry.getResponseDate(),
+                entry.getStatusLine(),
+                entry.getAllHeaders(),
+                new CompressedResource(compressed.toByteArray(), resource.length()),
+                entry.getVariantMap());
+    }
+
+    private static long weightOf(final HttpCacheEntry entry) {
+        long weight = ENTRY_OVERHEAD;
+        for (final Header header : entry.getAllHeaders()) {
+            weight += 2 * (header.getName().length() + header.getValue().length());
+        }
+        for (final Map.Entry<String, String> variant : entry.getVariantMap().entrySet()) {
+            weight += 2 * (variant.getKey().length() + variant.getValue().length());
+        }
+        final Resource resource = entry.getResource();
+        if (resource instanceof CompressedResource) {
+            weight += ((CompressedResource) resource).compressed.length;
+        } else if (resource != null) {
+            weight += resource.length();
+        }
+        return weight;
+    }
+
+    private static final class StoredEntry {
+        private final HttpCacheEntry entry;
+        private final long weight;
+
+        private StoredEntry(final HttpCacheEntry entry, final long weight) {
+            this.entry = entry;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A gzip-compressed response body, decompressed on read.
+     */
+    static final class CompressedResource implements Resource {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] compressed;
+        private final long length;
+
+        CompressedResource(final byte[] compressed, final long length) {
+            this.compressed = compressed;
+            this.length = length;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new GZIPInputStream(new ByteArrayInputStream(compressed));
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.client;
+
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import de.otto.jsonhome.model.JsonHome;
+import org.apache.http.*;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeDeltaTo;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeTo;
+import static de.otto.jsonhome.delta.JsonHomeHistory.*;
+
+/**
+ * A HttpClient faking a server that returns a json-home document, supporting deltas
+ * since previous versions of the document. Requests to URIs ending with /watch are answered with a
+ * server-sent event announcing the current version, if the version differs from the Last-Event-ID.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class FakeJsonHomeServer implements HttpClient {
+
+    private final JsonHomeHistory history = jsonHomeHistory();
+    private JsonHome jsonHome;
+    private int requests = 0;
+    private int deltaResponses = 0;
+    private int maxAgeSeconds = 0;
+
+    public void serve(final JsonHome jsonHome) {
+        this.jsonHome = jsonHome;
+        this.history.update(jsonHome);
+    }
+
+    public void setMaxAgeSeconds(final int maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getDeltaResponses() {
+        return deltaResponses;
+    }
+
+    @Override
+    public HttpResponse execute(final HttpHost target, final HttpRequest request, final HttpContext context) throws IOException {
+        final String version = history.getCurrentVersion();
+        if (request.getRequestLine().getUri().endsWith("/watch")) {
+            return watchResponse(version, headerOf(request, "Last-Event-ID"));
+        }
+        ++requests;
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final HttpResponse response;
+        final List<String> knownVersions = versionsOf(headerOf(request, "If-None-Match"), APPLICATION_JSON);
+        final JsonHomeDelta delta = knownVersions.isEmpty() ? null : history.deltaSince(knownVersions.get(0));
+        if (knownVersions.contains(version)) {
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified");
+        } else if (delta != null && headerOf(request, "A-IM") != null) {
+            ++deltaResponses;
+            writeDeltaTo(delta, APPLICATION_JSON, stream);
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 226, "IM Used");
+            response.setHeader("IM", JsonHomeDelta.INSTANCE_MANIPULATION);
+            response.setEntity(jsonEntity(stream));
+        } else {
+            writeTo(jsonHome, APPLICATION_JSON, stream);
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(jsonEntity(stream));
+        }
+        response.setHeader("ETag", entityTagOf(version, APPLICATION_JSON));
+        response.setHeader("Cache-Control", "max-age=" + maxAgeSeconds);
+        return response;
+    }
+
+    private static HttpResponse watchResponse(final String version, final String lastEventId) {
+        final String events = version.equals(lastEventId)
+                ? "retry: 10\n: no changes\n\n"
+                : "retry: 10\nid: " + version + "\nevent: version\ndata: " + version + "\n\n";
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final ByteArrayEntity entity = new ByteArrayEntity(events.getBytes());
+        entity.setContentType("text/event-stream");
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static String headerOf(final HttpRequest request, final String name) {
+        final Header header = request.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static HttpEntity jsonEntity(final ByteArrayOutputStream stream) {
+        final ByteArrayEntity entity = new ByteArrayEntity(stream.toByteArray());
+        entity.setContentType("application/json");
+        return entity;
+    }
+
+    @Override
+    public HttpResponse execute(final HttpUriRequest request) throws IOException {
+        return execute(request, (HttpContext) null);
+    }
+
+    @Override
+    public HttpResponse execute(final HttpUriRequest request, final HttpContext context) throws IOException {
+        final java.net.URI uri = request.getURI();
+        return execute(new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme()), request, context);
+    }
+
+    @Override
+    public HttpResponse execute(final HttpHost target, final HttpRequest request) throws IOException {
+        return execute(target, request, (HttpContext) null);
+    }
+
+    @Override
+    public <T> T execute(final HttpUriRequest request, final ResponseHandler<? extends T> responseHandler) throws IOException {
+        return responseHandler.handleResponse(execute(request));
+    }
+
+    @Override
+    public <T> T execute(final HttpUriRequest request, final ResponseHandler<? extends T> responseHandler, final HttpContext context) throws IOException {
+        return responseHandler.handleResponse(execute(request, context));
+    }
+
+    @Override
+    public <T> T execute(final HttpHost target, final HttpRequest request, final ResponseHandler<? extends T> responseHandler) throws IOException {
+        return responseHandler.handleResponse(execute(target, request));
+    }
+
+    @Override
+    public <T> T execute(final HttpHost target, final HttpRequest request, final ResponseHandler<? extends T> responseHandler, final HttpContext context) throws IOException {
+        return responseHandler.handleResponse(execute(target, request, context));
+    }
+
+    @Override
+    public HttpParams getParams() {
+        return new BasicHttpParams();
+    }
+
+    @Override
+    public ClientConnectionManager getConnectionManager() {
+        return new BasicClientConnectionManager();
+    }
+}
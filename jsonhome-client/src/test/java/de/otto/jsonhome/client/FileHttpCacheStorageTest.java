@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class FileHttpCacheStorageTest {
+
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("jsonhome-cache", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void shouldReadEntriesAfterRestart() throws IOException {
+        // given
+        new FileHttpCacheStorage(directory).putEntry("http://example.org/json-home", entryWith("{}", "\"42\""));
+        // when
+        final HttpCacheEntry entry = new FileHttpCacheStorage(directory).getEntry("http://example.org/json-home");
+        // then
+        assertNotNull(entry);
+        assertEquals(entry.getFirstHeader("ETag").getValue(), "\"42\"");
+        assertEquals(bodyOf(entry), "{}");
+    }
+
+    @Test
+    public void shouldRemoveEntriesFromDisk() throws IOException {
+        // given
+        final FileHttpCacheStorage storage = new FileHttpCacheStorage(directory);
+        storage.putEntry("foo", entryWith("{}", "\"1\""));
+        // when
+        storage.removeEntry("foo");
+        // then
+        assertNull(new FileHttpCacheStorage(directory).getEntry("foo"));
+        assertEquals(directory.listFiles().length, 0);
+    }
+
+    @Test
+    public void shouldIgnoreAndDeleteCorruptedFiles() throws IOException {
+        // given
+        new FileHttpCacheStorage(directory).putEntry("foo", entryWith("{}", "\"1\""));
+        final File file = directory.listFiles()[0];
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write("corrupted".getBytes());
+        out.close();
+        // when
+        final HttpCacheEntry entry = new FileHttpCacheStorage(directory).getEntry("foo");
+        // then
+        assertNull(entry);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void shouldDeleteOldestFilesIfMaxDiskSizeIsExceeded() throws IOException {
+        // given
+        final FileHttpCacheStorage storage = new FileHttpCacheStorage(directory);
+        storage.putEntry("foo", entryWith("{}", "\"1\""));
+        final long fileSize = directory.listFiles()[0].length();
+        directory.listFiles()[0].setLastModified(System.currentTimeMillis() - 60000);
+        storage.setMaxDiskBytes(fileSize + fileSize / 2);
+        // when
+        storage.putEntry("bar", entryWith("{}", "\"2\""));
+        // then
+        assertEquals(directory.listFiles().length, 1);
+        assertNull(new FileHttpCacheStorage(directory).getEntry("foo"));
+        assertNotNull(new FileHttpCacheStorage(directory).getEntry("bar"));
+    }
+
+    @Test
+    public void shouldTrackSizeOfFilesInMemory() throws IOException {
+        // given
+        final FileHttpCacheStorage storage = new FileHttpCacheStorage(directory);
+        storage.putEntry("foo", entryWith("{}", "\"1\""));
+        storage.putEntry("bar", entryWith("{\"bar\":42}", "\"2\""));
+        // when
+        storage.removeEntry("foo");
+        // then
+        assertEquals(storage.getDiskBytes(), directory.listFiles()[0].length());
+        assertEquals(new FileHttpCacheStorage(directory).getDiskBytes(), storage.getDiskBytes());
+    }
+
+    @Test
+    public void shouldRejectFilesContainingOtherClasses() throws IOException {
+        // given
+        new FileHttpCacheStorage(directory).putEntry("foo", entryWith("{}", "\"1\""));
+        final File file = directory.listFiles()[0];
+        final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+        out.writeUTF("foo");
+        out.writeObject(new File("/etc/passwd"));
+        out.close();
+        // when
+        final HttpCacheEntry entry = new FileHttpCacheStorage(directory).getEntry("foo");
+        // then
+        assertNull(entry);
+        assertFalse(file.exists());
+    }
+
+    @Test(timeOut = 5000)
+    public void shouldNotBlockReadsWhileWritingOtherEntries() throws Exception {
+        // given
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final FileHttpCacheStorage storage = new FileHttpCacheStorage(directory, new SizeLimitedHttpCacheStorage() {
+            @Override
+            public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+                super.putEntry(key, entry);
+                if (key.equals("slow")) {
+                    writing.countDown();
+                    try {
+                        proceed.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        storage.putEntry("foo", entryWith("{}", "\"1\""));
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    storage.putEntry("slow", entryWith("{}", "\"2\""));
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        writer.start();
+        writing.await();
+        // when
+        final HttpCacheEntry entry = storage.getEntry("foo");
+        // then
+        assertNotNull(entry);
+        proceed.countDown();
+        writer.join();
+    }
+
+    private static HttpCacheEntry entryWith(final String body, final String eTag) {
+        return new HttpCacheEntry(
+                new Date(), new Date(),
+                new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"),
+                new Header[] {new BasicHeader("ETag", eTag)},
+                new HeapResource(body.getBytes()));
+    }
+
+    private static String bodyOf(final HttpCacheEntry entry) throws IOException {
+        final InputStream in = entry.getResource().getInputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        in.close();
+        return out.toString();
+    }
+}
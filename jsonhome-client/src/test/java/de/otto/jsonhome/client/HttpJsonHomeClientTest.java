@@ -16,11 +16,16 @@
 
 package de.otto.jsonhome.client;
 
+import de.otto.jsonhome.model.DirectLink;
 import de.otto.jsonhome.model.JsonHome;
+import org.apache.http.impl.client.cache.CacheConfig;
 import org.testng.annotations.Test;
 
 import java.net.URI;
 
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
 import static java.net.URI.create;
 import static org.testng.Assert.*;
 
@@ -33,6 +38,13 @@ public class HttpJsonHomeClientTest {
     public static final URI RELATION_TYPE_URI = create("http://localhost:8080/jsonhome-example/rel/products");
     public static final URI JSONHOME_URI = create("http://localhost:8080/jsonhome-example/json-home");
 
+    private static final DirectLink FOO_LINK = directLink(
+            create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints());
+    private static final DirectLink BAR_LINK = directLink(
+            create("http://example.org/rel/bar"), create("http://example.org/bar"), emptyHints());
+    private static final DirectLink FOOBAR_LINK = directLink(
+            create("http://example.org/rel/foobar"), create("http://example.org/foobar"), emptyHints());
+
     // TODO: implement and use harness server
     @Test(enabled = false)
     public void shouldFindRegisteredResource() {
@@ -71,6 +83,70 @@ public class HttpJsonHomeClientTest {
         assertNull(jsonHome);
     }
 
+    @Test
+    public void shouldApplyDeltaToKnownDocument() {
+        // given
+        final FakeJsonHomeServer server = new FakeJsonHomeServer();
+        final JsonHomeClient client = new HttpJsonHomeClient(server, new CacheConfig());
+        server.serve(jsonHome(FOO_LINK, BAR_LINK));
+        client.get(JSONHOME_URI);
+        server.serve(jsonHome(FOO_LINK, FOOBAR_LINK));
+        // when
+        final JsonHome jsonHome = client.get(JSONHOME_URI);
+        // then
+        assertEquals(jsonHome, jsonHome(FOO_LINK, FOOBAR_LINK));
+        assertEquals(server.getDeltaResponses(), 1);
+    }
+
+    @Test
+    public void shouldReturnKnownDocumentIfNotModified() {
+        // given
+        final FakeJsonHomeServer server = new FakeJsonHomeServer();
+        final JsonHomeClient client = new HttpJsonHomeClient(server, new CacheConfig());
+        server.serve(jsonHome(FOO_LINK, BAR_LINK));
+        client.get(JSONHOME_URI);
+        // when
+        final JsonHome jsonHome = client.get(JSONHOME_URI);
+        // then
+        assertEquals(jsonHome, jsonHome(FOO_LINK, BAR_LINK));
+        assertEquals(server.getDeltaResponses(), 0);
+    }
+
+    @Test
+    public void shouldRememberMaxAgeOfDocument() {
+        // given
+        final FakeJsonHomeServer server = new FakeJsonHomeServer();
+        server.setMaxAgeSeconds(3600);
+        final HttpJsonHomeClient client = new HttpJsonHomeClient(server, new CacheConfig());
+        server.serve(jsonHome(FOO_LINK));
+        // when
+        client.get(JSONHOME_URI);
+        // then
+        final long maxAge = client.getMaxAgeSeconds(JSONHOME_URI);
+        assertTrue(maxAge > 3590 && maxAge <= 3600, "unexpected max-age " + maxAge);
+        assertEquals(client.getMaxAgeSeconds(create("http://example.org/unknown")), -1L);
+    }
+
+    @Test
+    public void shouldUpdateWatchedDocument() throws InterruptedException {
+        // given
+        final FakeJsonHomeServer server = new FakeJsonHomeServer();
+        server.setMaxAgeSeconds(3600);
+        final HttpJsonHomeClient client = new HttpJsonHomeClient(server, new CacheConfig());
+        server.serve(jsonHome(FOO_LINK, BAR_LINK));
+        client.get(JSONHOME_URI);
+        server.serve(jsonHome(FOO_LINK, FOOBAR_LINK));
+        // when
+        final JsonHomeWatch watch = JsonHomeWatch.startWatch(client, JSONHOME_URI, create("http://localhost:8080/jsonhome-example/watch"), server);
+        for (int i = 0; i < 500 && watch.getUpdates() == 0; ++i) {
+            Thread.sleep(10);
+        }
+        watch.stop();
+        // then
+        assertEquals(watch.getUpdates(), 1);
+        assertEquals(client.get(JSONHOME_URI), jsonHome(FOO_LINK, FOOBAR_LINK));
+    }
+
     @Test(enabled = false)
     public void shouldGetApplicationJsonFormatIncludingDescription() {
         fail();
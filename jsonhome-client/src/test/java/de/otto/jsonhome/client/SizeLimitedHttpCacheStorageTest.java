@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicStatusLine;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class SizeLimitedHttpCacheStorageTest {
+
+    @Test
+    public void shouldCacheEntriesLargerThanFiftyKilobytes() throws IOException {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage();
+        final byte[] body = jsonBody(500 * 1024);
+        // when
+        storage.putEntry("http://example.org/json-home", entryWith(body));
+        // then
+        final HttpCacheEntry entry = storage.getEntry("http://example.org/json-home");
+        assertNotNull(entry);
+        assertEquals(entry.getResource().length(), body.length);
+        assertTrue(Arrays.equals(bytesOf(entry), body));
+    }
+
+    @Test
+    public void shouldStoreLargeBodiesCompressed() throws IOException {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage(1024 * 1024, 1024);
+        final byte[] body = jsonBody(200 * 1024);
+        // when
+        storage.putEntry("foo", entryWith(body));
+        // then
+        assertTrue(storage.getResidentBytes() < body.length / 2);
+        assertTrue(Arrays.equals(bytesOf(storage.getEntry("foo")), body));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesByTotalSize() throws IOException {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage(10000, Integer.MAX_VALUE);
+        storage.putEntry("foo", entryWith(new byte[4000]));
+        storage.putEntry("bar", entryWith(new byte[4000]));
+        storage.getEntry("foo");
+        // when
+        storage.putEntry("foobar", entryWith(new byte[4000]));
+        // then
+        assertNotNull(storage.getEntry("foo"));
+        assertNull(storage.getEntry("bar"));
+        assertNotNull(storage.getEntry("foobar"));
+        assertEquals(storage.getEvictionCount(), 1);
+        assertTrue(storage.getResidentBytes() <= 10000);
+    }
+
+    @Test
+    public void shouldNotCacheEntriesLargerThanLimit() throws IOException {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage(1000, Integer.MAX_VALUE);
+        storage.putEntry("foo", entryWith(new byte[100]));
+        // when
+        storage.putEntry("bar", entryWith(new byte[2000]));
+        // then
+        assertNull(storage.getEntry("bar"));
+        assertNotNull(storage.getEntry("foo"));
+    }
+
+    @Test
+    public void shouldUpdateEntriesAndResidentSize() throws Exception {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage(100000, Integer.MAX_VALUE);
+        storage.putEntry("foo", entryWith(new byte[1000]));
+        final long residentBytes = storage.getResidentBytes();
+        // when
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                return entryWith(new byte[3000]);
+            }
+        });
+        storage.removeEntry("bar");
+        // then
+        assertEquals(storage.getResidentBytes(), residentBytes + 2000);
+        assertEquals(storage.getEntryCount(), 1);
+        storage.removeEntry("foo");
+        assertEquals(storage.getResidentBytes(), 0);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() throws IOException {
+        // given
+        final SizeLimitedHttpCacheStorage storage = new SizeLimitedHttpCacheStorage();
+        storage.putEntry("foo", entryWith(new byte[10]));
+        // when
+        storage.getEntry("foo");
+        storage.getEntry("foo");
+        storage.getEntry("foo");
+        storage.getEntry("bar");
+        // then
+        assertEquals(storage.getHitCount(), 3);
+        assertEquals(storage.getMissCount(), 1);
+        assertEquals(storage.getHitRate(), 0.75, 0.001);
+    }
+
+    private static HttpCacheEntry entryWith(final byte[] body) {
+        return new HttpCacheEntry(
+                new Date(), new Date(),
+                new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"),
+                new Header[0],
+                new HeapResource(body));
+    }
+
+    private static byte[] jsonBody(final int size) {
+        final StringBuilder sb = new StringBuilder(size);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("{\"href\":\"http://example.org/resource/").append(i++).append("\"},");
+        }
+        return sb.substring(0, size).getBytes();
+    }
+
+    private static byte[] bytesOf(final HttpCacheEntry entry) throws IOException {
+        final InputStream in = entry.getResource().getInputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.cache;
+
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.model.JsonHome;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static de.otto.jsonhome.converter.JsonHomeWriter.toByteArray;
+
+/**
+ * An immutable json-home document, together with its pre-serialized representations.
+ * <p/>
+ * The representations of all {@link JsonHomeMediaType media types} are serialized when the snapshot is
+ * created, so a snapshot can be swapped in atomically and served without serializing the document per request.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeSnapshot {
+
+    private final JsonHome jsonHome;
+    private final Map<JsonHomeMediaType, byte[]> representations;
+
+    private JsonHomeSnapshot(final JsonHome jsonHome) {
+        this.jsonHome = jsonHome;
+        this.representations = new EnumMap<JsonHomeMediaType, byte[]>(JsonHomeMediaType.class);
+        for (final JsonHomeMediaType mediaType : JsonHomeMediaType.values()) {
+            representations.put(mediaType, toByteArray(jsonHome, mediaType));
+        }
+    }
+
+    public static JsonHomeSnapshot jsonHomeSnapshot(final JsonHome jsonHome) {
+        return new JsonHomeSnapshot(jsonHome);
+    }
+
+    public JsonHome getJsonHome() {
+        return jsonHome;
+    }
+
+    /**
+     * Returns the serialized representation of the document. The returned array must not be modified.
+     *
+     * @param mediaType the media type of the representation.
+     * @return bytes of the representation
+     */
+    public byte[] getRepresentation(final JsonHomeMediaType mediaType) {
+        return representations.get(mediaType);
+    }
+
+}
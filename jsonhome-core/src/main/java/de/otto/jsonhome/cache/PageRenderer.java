@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders a page, for example the HTML representation of a json-home document.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public interface PageRenderer {
+
+    /**
+     * Renders the page into the stream.
+     *
+     * @param stream the stream used to write the page.
+     * @throws IOException if rendering the page fails.
+     */
+    public void render(final OutputStream stream) throws IOException;
+
+}
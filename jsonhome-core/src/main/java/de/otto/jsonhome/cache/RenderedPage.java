@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.cache;
+
+import static de.otto.jsonhome.delta.JsonHomeHistory.sha1Of;
+import static de.otto.jsonhome.delta.JsonHomeHistory.versionsOf;
+
+/**
+ * A pre-rendered page, together with the entity tag of its content.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class RenderedPage {
+
+    private final byte[] content;
+    private final String entityTag;
+
+    private RenderedPage(final byte[] content) {
+        this.content = content;
+        this.entityTag = "\"" + sha1Of(content) + "\"";
+    }
+
+    public static RenderedPage renderedPage(final byte[] content) {
+        return new RenderedPage(content.clone());
+    }
+
+    /**
+     * Returns the content of the page. The returned array must not be modified.
+     *
+     * @return bytes of the page
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return the quoted entity tag used in ETag headers.
+     */
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * Returns true, if the If-None-Match header of a request matches this page, so the page is
+     * not modified from the perspective of the client.
+     *
+     * @param ifNoneMatch value of the If-None-Match header, or null.
+     * @return boolean
+     */
+    public boolean isNotModified(final String ifNoneMatch) {
+        return versionsOf(ifNoneMatch).contains(entityTag.substring(1, entityTag.length() - 1));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.cache;
+
+import de.otto.jsonhome.model.JsonHome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static de.otto.jsonhome.cache.RenderedPage.renderedPage;
+
+/**
+ * A cache for pages rendered from a json-home document, like the HTML representation of the document
+ * or the pages describing link-relation types.
+ * <p/>
+ * Pages are rendered once per document and key; the key must identify everything the page depends on,
+ * besides the document (for example the view and the context path). The cache is invalidated as soon as
+ * a different document is used to get pages.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class RenderedPageCache {
+
+    private volatile Pages pages = new Pages(null);
+
+    private RenderedPageCache() {
+    }
+
+    public static RenderedPageCache renderedPageCache() {
+        return new RenderedPageCache();
+    }
+
+    /**
+     * Returns the page rendered from the json-home document. If the page is not cached, it is rendered
+     * using the PageRenderer.
+     *
+     * @param jsonHome the json-home document the page is rendered from.
+     * @param key the key of the page.
+     * @param renderer the renderer used to render the page, if it is not yet cached.
+     * @return rendered page
+     * @throws IOException if rendering the page fails.
+     */
+    public RenderedPage get(final JsonHome jsonHome, final String key, final PageRenderer renderer) throws IOException {
+        final Pages current = pagesOf(jsonHome);
+        RenderedPage page = current.renderedPages.get(key);
+        if (page == null) {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream(8192);
+            renderer.render(stream);
+            page = renderedPage(stream.toByteArray());
+            final RenderedPage previous = current.renderedPages.putIfAbsent(key, page);
+            if (previous != null) {
+                page = previous;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns the page rendered from the json-home document, if it is already cached.
+     *
+     * @param jsonHome the json-home document the page is rendered from.
+     * @param key the key of the page.
+     * @return rendered page, or null if the page is not cached.
+     */
+    public RenderedPage getIfPresent(final JsonHome jsonHome, final String key) {
+        return pagesOf(jsonHome).renderedPages.get(key);
+    }
+
+    /**
+     * Returns the number of cached pages.
+     * @return size
+     */
+    public int size() {
+        return pages.renderedPages.size();
+    }
+
+    private Pages pagesOf(final JsonHome jsonHome) {
+        final Pages current = pages;
+        if (current.jsonHome == jsonHome || (current.jsonHome != null && current.jsonHome.equals(jsonHome))) {
+            return current;
+        }
+        final Pages newPages = new Pages(jsonHome);
+        pages = newPages;
+        return newPages;
+    }
+
+    /**
+     * The pages rendered from a single json-home document.
+     */
+    private static final class Pages {
+        private final JsonHome jsonHome;
+        private final ConcurrentMap<String, RenderedPage> renderedPages = new ConcurrentHashMap<String, RenderedPage>();
+
+        private Pages(final JsonHome jsonHome) {
+            this.jsonHome = jsonHome;
+        }
+    }
+}
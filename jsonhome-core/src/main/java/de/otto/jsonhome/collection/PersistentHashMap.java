@@ -0,0 +1,500 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable, persistent hash map, implemented as a hash array mapped trie (HAMT).
+ * <p/>
+ * {@link #with(Object, Object)} and {@link #without(Object)} return a new map in O(log32 n), sharing all
+ * unmodified nodes with this map. Lookups are O(log32 n), which is effectively constant for all practical sizes.
+ * Iteration order is unspecified, but stable for a given map.
+ * <p/>
+ * Null keys and values are not supported.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<Object, Object>(null, 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentHashMap(final BitmapNode root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> emptyMap() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> persistentHashMap(final Map<? extends K, ? extends V> map) {
+        PersistentHashMap<K, V> result = emptyMap();
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(final Object key) {
+        final Leaf<K, V> leaf = find(key);
+        return leaf != null ? leaf.value : null;
+    }
+
+    public boolean containsKey(final Object key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Returns a map containing all entries of this map, plus the specified entry.
+     *
+     * @param key the key.
+     * @param value the value associated with the key.
+     * @return new map, or this map if it already contains the same value for the key.
+     */
+    public PersistentHashMap<K, V> with(final K key, final V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Key and value must not be null");
+        }
+        final Leaf<K, V> leaf = new Leaf<K, V>(hash(key), key, value);
+        if (root == null) {
+            return new PersistentHashMap<K, V>(new BitmapNode(bit(leaf.hash, 0), new Object[] {leaf}), 1);
+        }
+        final boolean[] added = new boolean[1];
+        final BitmapNode newRoot = root.with(0, leaf, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map containing all entries of this map, except the entry with the specified key.
+     *
+     * @param key the key of the removed entry.
+     * @return new map, or this map if it does not contain the key.
+     */
+    public PersistentHashMap<K, V> without(final Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        final int hash = hash(key);
+        final Object newRoot = root.without(0, hash, key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return emptyMap();
+        }
+        if (newRoot instanceof BitmapNode) {
+            return new PersistentHashMap<K, V>((BitmapNode) newRoot, size - 1);
+        }
+        return new PersistentHashMap<K, V>(new BitmapNode(bit(hashOf(newRoot), 0), new Object[] {newRoot}), size - 1);
+    }
+
+    /**
+     * Returns an unmodifiable {@link Map} view of this map.
+     *
+     * @return Map
+     */
+    public Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return new AbstractSet<Entry<K, V>>() {
+                    @Override
+                    public Iterator<Entry<K, V>> iterator() {
+                        return PersistentHashMap.this.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public V get(final Object key) {
+                return key != null ? PersistentHashMap.this.get(key) : null;
+            }
+
+            @Override
+            public boolean containsKey(final Object key) {
+                return key != null && PersistentHashMap.this.containsKey(key);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            private final Deque<Object[]> arrays = new ArrayDeque<Object[]>();
+            private final Deque<Integer> positions = new ArrayDeque<Integer>();
+            private Leaf<K, V> next;
+            {
+                if (root != null) {
+                    arrays.push(root.slots);
+                    positions.push(0);
+                }
+                advance();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Leaf<K, V> result = next;
+                advance();
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("PersistentHashMap is immutable");
+            }
+
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                next = null;
+                while (next == null && !arrays.isEmpty()) {
+                    final Object[] slots = arrays.peek();
+                    final int position = positions.pop();
+                    if (position >= slots.length) {
+                        arrays.pop();
+                        continue;
+                    }
+                    positions.push(position + 1);
+                    final Object slot = slots[position];
+                    if (slot instanceof Leaf) {
+                        next = (Leaf<K, V>) slot;
+                    } else {
+                        arrays.push(slot instanceof BitmapNode ? ((BitmapNode) slot).slots : ((CollisionNode) slot).leaves);
+                        positions.push(0);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return asMap().equals(((PersistentHashMap<?, ?>) o).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<K, V> find(final Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        final int hash = hash(key);
+        Object node = root;
+        int shift = 0;
+        while (true) {
+            if (node instanceof BitmapNode) {
+                final BitmapNode bitmapNode = (BitmapNode) node;
+                final int bit = bit(hash, shift);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.slots[bitmapNode.index(bit)];
+                shift += BITS;
+            } else if (node instanceof Leaf) {
+                final Leaf<K, V> leaf = (Leaf<K, V>) node;
+                return leaf.matches(hash, key) ? leaf : null;
+            } else {
+                return (Leaf<K, V>) ((CollisionNode) node).find(hash, key);
+            }
+        }
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int hashOf(final Object node) {
+        return node instanceof Leaf ? ((Leaf) node).hash : ((CollisionNode) node).hash;
+    }
+
+    /**
+     * Creates the node containing two leaves or collision nodes, whose hashes are sharing the bits up to shift.
+     */
+    private static Object merge(final Object a, final Object b, final int shift) {
+        final int hashA = hashOf(a);
+        final int hashB = hashOf(b);
+        if (hashA == hashB) {
+            return new CollisionNode(hashA, new Object[] {a, b});
+        }
+        final int bitA = bit(hashA, shift);
+        final int bitB = bit(hashB, shift);
+        if (bitA == bitB) {
+            return new BitmapNode(bitA, new Object[] {merge(a, b, shift + BITS)});
+        }
+        return new BitmapNode(bitA | bitB, Integer.numberOfTrailingZeros(bitA) < Integer.numberOfTrailingZeros(bitB)
+                ? new Object[] {a, b}
+                : new Object[] {b, a});
+    }
+
+    private static final class Leaf<K, V> implements Map.Entry<K, V> {
+        private final int hash;
+        private final K key;
+        private final V value;
+
+        private Leaf(final int hash, final K key, final V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        private boolean matches(final int hash, final Object key) {
+            return this.hash == hash && this.key.equals(key);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(final V value) {
+            throw new UnsupportedOperationException("PersistentHashMap is immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Map.Entry)) return false;
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final class BitmapNode {
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(final int bitmap, final Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode with(final int shift, final Leaf<?, ?> leaf, final boolean[] added) {
+            final int bit = bit(leaf.hash, shift);
+            final int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = leaf;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+            final Object slot = slots[index];
+            final Object newSlot;
+            if (slot instanceof Leaf) {
+                final Leaf<?, ?> existing = (Leaf<?, ?>) slot;
+                if (existing.matches(leaf.hash, leaf.key)) {
+                    if (existing.value.equals(leaf.value)) {
+                        return this;
+                    }
+                    newSlot = leaf;
+                } else {
+                    added[0] = true;
+                    newSlot = merge(existing, leaf, shift + BITS);
+                }
+            } else if (slot instanceof BitmapNode) {
+                newSlot = ((BitmapNode) slot).with(shift + BITS, leaf, added);
+            } else {
+                newSlot = ((CollisionNode) slot).with(shift + BITS, leaf, added);
+            }
+            if (newSlot == slot) {
+                return this;
+            }
+            return new BitmapNode(bitmap, replaced(slots, index, newSlot));
+        }
+
+        /**
+         * Returns this node if the key was not found, null if the node became empty, a single remaining leaf or
+         * collision node that can be inlined into the parent node, or the new node.
+         */
+        private Object without(final int shift, final int hash, final Object key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = index(bit);
+            final Object slot = slots[index];
+            final Object newSlot;
+            if (slot instanceof Leaf) {
+                newSlot = ((Leaf) slot).matches(hash, key) ? null : slot;
+            } else if (slot instanceof BitmapNode) {
+                newSlot = ((BitmapNode) slot).without(shift + BITS, hash, key);
+            } else {
+                newSlot = ((CollisionNode) slot).without(hash, key);
+            }
+            if (newSlot == slot) {
+                return this;
+            }
+            if (newSlot != null) {
+                if (slots.length == 1 && !(newSlot instanceof BitmapNode)) {
+                    return newSlot;
+                }
+                return new BitmapNode(bitmap, replaced(slots, index, newSlot));
+            }
+            if (slots.length == 1) {
+                return null;
+            }
+            final Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            if (newSlots.length == 1 && !(newSlots[0] instanceof BitmapNode)) {
+                return newSlots[0];
+            }
+            return new BitmapNode(bitmap ^ bit, newSlots);
+        }
+    }
+
+    private static final class CollisionNode {
+        private final int hash;
+        private final Object[] leaves;
+
+        private CollisionNode(final int hash, final Object[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private Leaf<?, ?> find(final int hash, final Object key) {
+            for (final Object leaf : leaves) {
+                if (((Leaf) leaf).matches(hash, key)) {
+                    return (Leaf<?, ?>) leaf;
+                }
+            }
+            return null;
+        }
+
+        private Object with(final int shift, final Leaf<?, ?> leaf, final boolean[] added) {
+            if (leaf.hash != hash) {
+                added[0] = true;
+                return merge(this, leaf, shift);
+            }
+            for (int i = 0; i < leaves.length; ++i) {
+                final Leaf<?, ?> existing = (Leaf<?, ?>) leaves[i];
+                if (existing.matches(leaf.hash, leaf.key)) {
+                    if (existing.value.equals(leaf.value)) {
+                        return this;
+                    }
+                    return new CollisionNode(hash, replaced(leaves, i, leaf));
+                }
+            }
+            final Object[] newLeaves = new Object[leaves.length + 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+            newLeaves[leaves.length] = leaf;
+            added[0] = true;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        private Object without(final int hash, final Object key) {
+            for (int i = 0; i < leaves.length; ++i) {
+                if (((Leaf) leaves[i]).matches(hash, key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    final Object[] newLeaves = new Object[leaves.length - 1];
+                    System.arraycopy(leaves, 0, newLeaves, 0, i);
+                    System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, newLeaves);
+                }
+            }
+            return this;
+        }
+    }
+
+    private static Object[] replaced(final Object[] array, final int index, final Object value) {
+        final Object[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+}
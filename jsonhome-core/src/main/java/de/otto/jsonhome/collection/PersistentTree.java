@@ -0,0 +1,271 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.collection;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+
+/**
+ * An immutable, persistent AVL tree.
+ * <p/>
+ * Modifications return a new tree sharing all unmodified nodes with the original tree, so put and remove
+ * are O(log n) in time and space. Iteration returns the entries in the natural ordering of the keys;
+ * {@link #iterator(Comparable, Comparable)} iterates over a range of keys in O(log n + k).
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class PersistentTree<K extends Comparable<? super K>, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final PersistentTree<?, ?> EMPTY = new PersistentTree<String, Object>(null);
+
+    private final Node<K, V> root;
+
+    private PersistentTree(final Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTree<K, V> emptyTree() {
+        return (PersistentTree<K, V>) EMPTY;
+    }
+
+    /**
+     * Creates a balanced tree from the entries of a sorted map in O(n).
+     *
+     * @param map the entries of the tree, sorted by the natural ordering of the keys.
+     * @return PersistentTree
+     */
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTree<K, V> persistentTree(final SortedMap<K, ? extends V> map) {
+        if (map.comparator() != null) {
+            throw new IllegalArgumentException("The keys of the map must be sorted by their natural ordering.");
+        }
+        if (map.isEmpty()) {
+            return emptyTree();
+        }
+        final Map.Entry<K, V>[] entries = (Map.Entry<K, V>[]) map.entrySet().toArray(new Map.Entry<?, ?>[map.size()]);
+        return new PersistentTree<K, V>(balancedTreeOf(entries, 0, entries.length));
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(final K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            final int cmp = key.compareTo(node.key);
+            if (cmp == 0) {
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public PersistentTree<K, V> put(final K key, final V value) {
+        return new PersistentTree<K, V>(put(root, key, value));
+    }
+
+    public PersistentTree<K, V> remove(final K key) {
+        if (get(key) == null) {
+            return this;
+        }
+        return new PersistentTree<K, V>(remove(root, key));
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(null, null);
+    }
+
+    /**
+     * Returns an iterator over the entries having a key in the specified range, ordered by key.
+     *
+     * @param fromKey the lowest key (inclusive), or null to start with the first entry.
+     * @param toKey the highest key (exclusive), or null to end with the last entry.
+     * @return Iterator
+     */
+    public Iterator<Map.Entry<K, V>> iterator(final K fromKey, final K toKey) {
+        return new Iterator<Map.Entry<K, V>>() {
+            private final Deque<Node<K, V>> stack = new ArrayDeque<Node<K, V>>();
+            {
+                Node<K, V> node = root;
+                while (node != null) {
+                    if (fromKey == null || fromKey.compareTo(node.key) <= 0) {
+                        stack.push(node);
+                        node = node.left;
+                    } else {
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty() && (toKey == null || toKey.compareTo(stack.peek().key) > 0);
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Node<K, V> node = stack.pop();
+                pushLeft(node.right);
+                return node;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("PersistentTree is immutable");
+            }
+
+            private void pushLeft(Node<K, V> node) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+        };
+    }
+
+    private static <K, V> Node<K, V> balancedTreeOf(final Map.Entry<K, V>[] entries, final int from, final int to) {
+        if (from == to) {
+            return null;
+        }
+        final int mid = (from + to) >>> 1;
+        final Map.Entry<K, V> entry = entries[mid];
+        return new Node<K, V>(entry.getKey(), entry.getValue(),
+                balancedTreeOf(entries, from, mid), balancedTreeOf(entries, mid + 1, to));
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> put(final Node<K, V> node, final K key, final V value) {
+        if (node == null) {
+            return new Node<K, V>(key, value, null, null);
+        }
+        final int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balanced(node.key, node.value, put(node.left, key, value), node.right);
+        } else if (cmp > 0) {
+            return balanced(node.key, node.value, node.left, put(node.right, key, value));
+        } else {
+            return new Node<K, V>(key, value, node.left, node.right);
+        }
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> remove(final Node<K, V> node, final K key) {
+        final int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balanced(node.key, node.value, remove(node.left, key), node.right);
+        } else if (cmp > 0) {
+            return balanced(node.key, node.value, node.left, remove(node.right, key));
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else {
+            Node<K, V> min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            return balanced(min.key, min.value, node.left, removeMin(node.right));
+        }
+    }
+
+    private static <K, V> Node<K, V> removeMin(final Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balanced(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> balanced(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+        final int leftHeight = height(left);
+        final int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<K, V>(left.key, left.value, left.left, new Node<K, V>(key, value, left.right, right));
+            } else {
+                final Node<K, V> pivot = left.right;
+                return new Node<K, V>(pivot.key, pivot.value,
+                        new Node<K, V>(left.key, left.value, left.left, pivot.left),
+                        new Node<K, V>(key, value, pivot.right, right));
+            }
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<K, V>(right.key, right.value, new Node<K, V>(key, value, left, right.left), right.right);
+            } else {
+                final Node<K, V> pivot = right.left;
+                return new Node<K, V>(pivot.key, pivot.value,
+                        new Node<K, V>(key, value, left, pivot.left),
+                        new Node<K, V>(right.key, right.value, pivot.right, right.right));
+            }
+        } else {
+            return new Node<K, V>(key, value, left, right);
+        }
+    }
+
+    private static int height(final Node<?, ?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static int size(final Node<?, ?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size;
+
+        private Node(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(final V value) {
+            throw new UnsupportedOperationException("PersistentTree is immutable");
+        }
+    }
+}
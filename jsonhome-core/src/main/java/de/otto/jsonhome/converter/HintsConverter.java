@@ -91,7 +91,7 @@ public final class HintsConverter {
         if (!hints.getAuthReq().isEmpty()) {
             final List<Map<String,?>> authReq = new ArrayList<Map<String, ?>>();
             for (final Authentication authentication : hints.getAuthReq()) {
-                final Map<String, Object> authMap = new HashMap<String, Object>();
+                final Map<String, Object> authMap = new LinkedHashMap<String, Object>();
                 authMap.put("scheme", authentication.getScheme());
                 if (!authentication.getRealms().isEmpty()) {
                     final List<String> realms = new ArrayList<String>();
@@ -110,7 +110,7 @@ public final class HintsConverter {
         if (hints.getDocs().hasLink()) {
             jsonHints.put("docs", hints.getDocs().getLink().toString());
         }
-        if (mediaType.equals(JsonHomeMediaType.APPLICATION_JSON)) {
+        if (mediaType.includesDescription()) {
             if (hints.getDocs().hasDescription()) {
                 jsonHints.put("description", hints.getDocs().getDescription());
             }
@@ -19,7 +19,7 @@ package de.otto.jsonhome.converter;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.model.ResourceLink;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
@@ -29,7 +29,8 @@ import static java.util.Collections.singletonMap;
 /**
  * Converter used to convert JsonHome instances into a map containing the information of a representation.
  * <p/>
- * The result may easily be converted into a format like JSON.
+ * The result may easily be converted into a format like JSON. The resources are ordered by link-relation type,
+ * so the serialized representation of a JsonHome is deterministic.
  *
  * @author Guido Steinacker
  * @since 14.10.12
@@ -56,7 +57,7 @@ public final class JsonHomeConverter {
      */
     public static Map<String, Map<String,Object>> toRepresentation(final JsonHome jsonHome,
                                                                    final JsonHomeMediaType mediaType) {
-        final Map<String, Object> jsonResources = new HashMap<String, Object>();
+        final Map<String, Object> jsonResources = new LinkedHashMap<String, Object>();
         for (final ResourceLink resource : jsonHome.getResources().values()) {
             jsonResources.putAll(ResourceLinkConverter.toRepresentation(resource, mediaType));
         }
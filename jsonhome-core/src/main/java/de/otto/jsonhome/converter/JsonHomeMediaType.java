@@ -25,7 +25,12 @@ import java.util.EnumSet;
 public enum JsonHomeMediaType {
 
     APPLICATION_JSON("application/json"),
-    APPLICATION_JSONHOME("application/json-home");
+    APPLICATION_JSONHOME("application/json-home"),
+    /**
+     * Binary Smile encoding of the complete application/json representation, used for machine-to-machine
+     * communication like the exchange of home documents between registry and clients.
+     */
+    APPLICATION_JSONHOME_SMILE("application/json-home+smile");
 
     public static JsonHomeMediaType mediaTypeFrom(final String value) {
         for (final JsonHomeMediaType mediaType : EnumSet.allOf(JsonHomeMediaType.class)) {
@@ -36,6 +41,25 @@ public enum JsonHomeMediaType {
         throw new IllegalArgumentException("Unknown media type '" + value + "'.");
     }
 
+    /**
+     * Returns the media type of a Content-Type header value, ignoring parameters like charset.
+     *
+     * @param contentType value of a Content-Type header, or null.
+     * @return media type, or APPLICATION_JSON if the content type is missing or unknown.
+     */
+    public static JsonHomeMediaType mediaTypeOfContentType(final String contentType) {
+        if (contentType != null) {
+            final int pos = contentType.indexOf(';');
+            final String value = (pos >= 0 ? contentType.substring(0, pos) : contentType).trim().toLowerCase();
+            for (final JsonHomeMediaType mediaType : EnumSet.allOf(JsonHomeMediaType.class)) {
+                if (mediaType.toString().equals(value)) {
+                    return mediaType;
+                }
+            }
+        }
+        return APPLICATION_JSON;
+    }
+
     private final String value;
 
     private JsonHomeMediaType(final String value) {
@@ -43,11 +67,28 @@ public enum JsonHomeMediaType {
     }
 
     /**
-     * Returns the value of the media type: application/json, application/json-home.
+     * Returns the value of the media type: application/json, application/json-home, application/json-home+smile.
      * @return value
      */
     @Override
     public String toString() {
         return value;
     }
+
+    /**
+     * Returns true, if the representation is a binary (Smile) encoding.
+     * @return boolean
+     */
+    public boolean isBinary() {
+        return this == APPLICATION_JSONHOME_SMILE;
+    }
+
+    /**
+     * Returns true, if the representation contains the human-readable documentation of the resources
+     * (description and detailedDescription), in addition to the json-home hints.
+     * @return boolean
+     */
+    public boolean includesDescription() {
+        return this != APPLICATION_JSONHOME;
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.converter;
+
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.model.*;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.smile.SmileFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Writer used to stream JsonHome instances directly to a Jackson JsonGenerator or an OutputStream.
+ * <p/>
+ * In contrast to the {@link JsonHomeConverter}, no intermediate maps and lists are created. The written
+ * document is identical to the JSON serialization of {@link JsonHomeConverter#toRepresentation(JsonHome, JsonHomeMediaType)}.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final JsonFactory SMILE_FACTORY = new SmileFactory();
+
+    private JsonHomeWriter() {}
+
+    /**
+     * Writes the JsonHome into the stream, either as UTF-8 encoded JSON or, for binary media types, as Smile.
+     * The stream is not closed.
+     *
+     * @param jsonHome the JsonHome
+     * @param mediaType the media type of the representation.
+     * @param stream the stream used to write the document.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void writeTo(final JsonHome jsonHome,
+                               final JsonHomeMediaType mediaType,
+                               final OutputStream stream) throws IOException {
+        final JsonFactory factory = mediaType.isBinary() ? SMILE_FACTORY : JSON_FACTORY;
+        final JsonGenerator generator = factory.createJsonGenerator(stream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        writeTo(jsonHome, mediaType, generator);
+        generator.close();
+    }
+
+    /**
+     * Returns the JsonHome as UTF-8 encoded JSON or, for binary media types, as Smile.
+     *
+     * @param jsonHome the JsonHome
+     * @param mediaType the media type of the representation.
+     * @return bytes of the document.
+     */
+    public static byte[] toByteArray(final JsonHome jsonHome, final JsonHomeMediaType mediaType) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(1024);
+        try {
+            writeTo(jsonHome, mediaType, stream);
+        } catch (final IOException e) {
+            // not expected when writing to a ByteArrayOutputStream
+            throw new IllegalStateException("Unable to write json-home document: " + e.getMessage(), e);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Writes the JsonHome using a JsonGenerator. The generator is flushed, but not closed.
+     *
+     * @param jsonHome the JsonHome
+     * @param mediaType the media type of the representation.
+     * @param generator the JsonGenerator used to write the document.
+     * @throws IOException if writing fails.
+     */
+    public static void writeTo(final JsonHome jsonHome,
+                               final JsonHomeMediaType mediaType,
+                               final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("resources");
+        for (final ResourceLink resourceLink : jsonHome.getResources().values()) {
+            writeResourceLink(resourceLink, mediaType, generator);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Writes the delta between two versions of a json-home document into the stream. The stream is not closed.
+     * <p/>
+     * The delta document contains the versions, the added and changed resources in the same format as
+     * in a json-home document, and the link-relation types of removed resources:
+     * <pre>
+     * {
+     *     "from" : "...", "to" : "...",
+     *     "added" : { ... }, "changed" : { ... }, "removed" : [ ... ]
+     * }
+     * </pre>
+     *
+     * @param delta the delta
+     * @param mediaType the media type of the representation.
+     * @param stream the stream used to write the document.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void writeDeltaTo(final JsonHomeDelta delta,
+                                    final JsonHomeMediaType mediaType,
+                                    final OutputStream stream) throws IOException {
+        final JsonFactory factory = mediaType.isBinary() ? SMILE_FACTORY : JSON_FACTORY;
+        final JsonGenerator generator = factory.createJsonGenerator(stream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("from", delta.getFromVersion());
+        generator.writeStringField("to", delta.getToVersion());
+        generator.writeObjectFieldStart("added");
+        for (final ResourceLink resourceLink : delta.getAdded()) {
+            writeResourceLink(resourceLink, mediaType, generator);
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("changed");
+        for (final ResourceLink resourceLink : delta.getChanged()) {
+            writeResourceLink(resourceLink, mediaType, generator);
+        }
+        generator.writeEndObject();
+        generator.writeArrayFieldStart("removed");
+        for (final URI relationType : delta.getRemoved()) {
+            generator.writeString(relationType.toString());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    /**
+     * Writes a single resource link as a field of the enclosing "resources" object.
+     *
+     * @param resourceLink the resource link.
+     * @param mediaType the media type of the representation.
+     * @param generator the JsonGenerator used to write the resource.
+     * @throws IOException if writing fails.
+     */
+    public static void writeResourceLink(final ResourceLink resourceLink,
+                                         final JsonHomeMediaType mediaType,
+                                         final JsonGenerator generator) throws IOException {
+        generator.writeObjectFieldStart(resourceLink.getLinkRelationType().toString());
+        if (resourceLink.isDirectLink()) {
+            generator.writeStringField("href", resourceLink.asDirectLink().getHref().toString());
+        } else {
+            final TemplatedLink templatedLink = resourceLink.asTemplatedLink();
+            generator.writeStringField("href-template", templatedLink.getHrefTemplate());
+            generator.writeObjectFieldStart("href-vars");
+            for (final HrefVar hrefVar : templatedLink.getHrefVars()) {
+                generator.writeStringField(hrefVar.getVar(), hrefVar.getVarType().toString());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeFieldName("hints");
+        writeHints(resourceLink.getHints(), mediaType, generator);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the hints of a resource link as an object.
+     *
+     * @param hints the hints.
+     * @param mediaType the media type of the representation.
+     * @param generator the JsonGenerator used to write the hints.
+     * @throws IOException if writing fails.
+     */
+    public static void writeHints(final Hints hints,
+                                  final JsonHomeMediaType mediaType,
+                                  final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("allow");
+        for (final Allow allow : hints.getAllows()) {
+            generator.writeString(allow.name());
+        }
+        generator.writeEndArray();
+        writeStrings("representations", hints.getRepresentations(), generator);
+        writeNonEmptyStrings("accept-put", hints.getAcceptPut(), generator);
+        writeNonEmptyStrings("accept-post", hints.getAcceptPost(), generator);
+        writeNonEmptyStrings("accept-patch", hints.getAcceptPatch(), generator);
+        writeNonEmptyStrings("accept-ranges", hints.getAcceptRanges(), generator);
+        writeNonEmptyStrings("prefer", hints.getPreferences(), generator);
+        if (!hints.getPreconditionReq().isEmpty()) {
+            generator.writeArrayFieldStart("precondition-req");
+            for (final Precondition precondition : hints.getPreconditionReq()) {
+                generator.writeString(precondition.toString());
+            }
+            generator.writeEndArray();
+        }
+        if (!hints.getAuthReq().isEmpty()) {
+            generator.writeArrayFieldStart("auth-req");
+            for (final Authentication authentication : hints.getAuthReq()) {
+                generator.writeStartObject();
+                generator.writeStringField("scheme", authentication.getScheme());
+                writeNonEmptyStrings("realms", authentication.getRealms(), generator);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (!hints.getStatus().equals(Status.OK)) {
+            generator.writeStringField("status", hints.getStatus().name().toLowerCase());
+        }
+        final Documentation docs = hints.getDocs();
+        if (docs.hasLink()) {
+            generator.writeStringField("docs", docs.getLink().toString());
+        }
+        if (mediaType.includesDescription()) {
+            if (docs.hasDescription()) {
+                writeStrings("description", docs.getDescription(), generator);
+            }
+            if (docs.hasDetailedDescription()) {
+                generator.writeStringField("detailedDescription", docs.getDetailedDescription());
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeNonEmptyStrings(final String fieldName,
+                                             final List<String> values,
+                                             final JsonGenerator generator) throws IOException {
+        if (!values.isEmpty()) {
+            writeStrings(fieldName, values, generator);
+        }
+    }
+
+    private static void writeStrings(final String fieldName,
+                                     final List<String> values,
+                                     final JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart(fieldName);
+        for (final String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.converter;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of the serialized representations of ResourceLinks.
+ * <p/>
+ * Every resource link is serialized once per {@link JsonHomeMediaType}; json-home documents are written by
+ * concatenating the cached fragments of their resource links. Because ResourceLinks are immutable, fragments
+ * never need to be invalidated. The fragments are looked up by the identity of their resource links, so
+ * looking up a fragment neither locks nor calculates the hash code of a resource link. Aggregated json-home
+ * documents are sharing the instances of unchanged resource links, so they are sharing the fragments as well.
+ * The resource links are weakly referenced; fragments of collected resource links are removed when the next
+ * fragment is added.
+ * <p/>
+ * Smile fragments are written without shared-name back references, so they can be concatenated. The
+ * written documents are therefore not byte-identical to the ones written by the {@link JsonHomeWriter}, but
+ * they are parsed to equal JsonHome instances.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class ResourceLinkFragments {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+    static {
+        SMILE_FACTORY.configure(SmileGenerator.Feature.CHECK_SHARED_NAMES, false);
+    }
+    private static final byte[] JSON_SEPARATOR = {','};
+    private static final byte[] NO_SEPARATOR = {};
+
+    private final Map<JsonHomeMediaType, ConcurrentMap<IdentityKey, byte[]>> fragments =
+            new EnumMap<JsonHomeMediaType, ConcurrentMap<IdentityKey, byte[]>>(JsonHomeMediaType.class);
+    private final ReferenceQueue<ResourceLink> collected = new ReferenceQueue<ResourceLink>();
+    private final Map<JsonHomeMediaType, byte[][]> envelopes =
+            new EnumMap<JsonHomeMediaType, byte[][]>(JsonHomeMediaType.class);
+
+    private ResourceLinkFragments() {
+        for (final JsonHomeMediaType mediaType : JsonHomeMediaType.values()) {
+            fragments.put(mediaType, new ConcurrentHashMap<IdentityKey, byte[]>());
+            envelopes.put(mediaType, envelopeOf(mediaType));
+        }
+    }
+
+    public static ResourceLinkFragments resourceLinkFragments() {
+        return new ResourceLinkFragments();
+    }
+
+    /**
+     * Returns the serialized resource link: the field name (the link-relation type) and the value of the
+     * resource link inside of the "resources" object of a json-home document.
+     *
+     * @param resourceLink the resource link.
+     * @param mediaType the media type of the representation.
+     * @return fragment, which must not be modified.
+     */
+    public byte[] fragmentOf(final ResourceLink resourceLink, final JsonHomeMediaType mediaType) {
+        final ConcurrentMap<IdentityKey, byte[]> cache = fragments.get(mediaType);
+        byte[] fragment = cache.get(new IdentityKey(resourceLink, null));
+        if (fragment == null) {
+            expungeCollected();
+            fragment = serialize(resourceLink, mediaType);
+            cache.put(new IdentityKey(resourceLink, collected), fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Writes the JsonHome into the stream by concatenating the fragments of its resource links.
+     * The stream is not closed.
+     *
+     * @param jsonHome the JsonHome
+     * @param mediaType the media type of the representation.
+     * @param stream the stream used to write the document.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void writeTo(final JsonHome jsonHome,
+                        final JsonHomeMediaType mediaType,
+                        final OutputStream stream) throws IOException {
+        final byte[][] envelope = envelopes.get(mediaType);
+        final byte[] separator = mediaType.isBinary() ? NO_SEPARATOR : JSON_SEPARATOR;
+        stream.write(envelope[0]);
+        boolean first = true;
+        for (final ResourceLink resourceLink : jsonHome.getResources().values()) {
+            if (!first) {
+                stream.write(separator);
+            }
+            stream.write(fragmentOf(resourceLink, mediaType));
+            first = false;
+        }
+        stream.write(envelope[1]);
+    }
+
+    /**
+     * Returns the JsonHome as a concatenation of the fragments of its resource links.
+     *
+     * @param jsonHome the JsonHome
+     * @param mediaType the media type of the representation.
+     * @return bytes of the document.
+     */
+    public byte[] toByteArray(final JsonHome jsonHome, final JsonHomeMediaType mediaType) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(1024);
+        try {
+            writeTo(jsonHome, mediaType, stream);
+        } catch (final IOException e) {
+            // not expected when writing to a ByteArrayOutputStream
+            throw new IllegalStateException("Unable to write json-home document: " + e.getMessage(), e);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * @param mediaType the media type of the representation.
+     * @return the number of cached fragments.
+     */
+    public int size(final JsonHomeMediaType mediaType) {
+        expungeCollected();
+        return fragments.get(mediaType).size();
+    }
+
+    /**
+     * Removes the fragments of resource links that have been garbage collected.
+     */
+    private void expungeCollected() {
+        Reference<? extends ResourceLink> reference;
+        while ((reference = collected.poll()) != null) {
+            for (final ConcurrentMap<IdentityKey, byte[]> cache : fragments.values()) {
+                cache.remove(reference);
+            }
+        }
+    }
+
+    private static byte[] serialize(final ResourceLink resourceLink, final JsonHomeMediaType mediaType) {
+        try {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream(256);
+            final JsonGenerator generator = generatorFor(mediaType, stream);
+            generator.writeStartObject();
+            generator.flush();
+            final int start = stream.size();
+            JsonHomeWriter.writeResourceLink(resourceLink, mediaType, generator);
+            generator.flush();
+            final int end = stream.size();
+            generator.writeEndObject();
+            generator.close();
+            final byte[] fragment = new byte[end - start];
+            System.arraycopy(stream.toByteArray(), start, fragment, 0, fragment.length);
+            return fragment;
+        } catch (final IOException e) {
+            // not expected when writing to a ByteArrayOutputStream
+            throw new IllegalStateException("Unable to write resource link: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the bytes written before and after the resource links of a json-home document.
+     */
+    private static byte[][] envelopeOf(final JsonHomeMediaType mediaType) {
+        try {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            final JsonGenerator generator = generatorFor(mediaType, stream);
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("resources");
+            generator.flush();
+            final byte[] prefix = stream.toByteArray();
+            stream.reset();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.close();
+            return new byte[][] {prefix, stream.toByteArray()};
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to write json-home document: " + e.getMessage(), e);
+        }
+    }
+
+    private static JsonGenerator generatorFor(final JsonHomeMediaType mediaType,
+                                              final OutputStream stream) throws IOException {
+        final JsonFactory factory = mediaType.isBinary() ? SMILE_FACTORY : JSON_FACTORY;
+        return factory.createJsonGenerator(stream, JsonEncoding.UTF8);
+    }
+
+    /**
+     * A weak reference to a resource link that is equal to other keys referring to the same instance.
+     */
+    private static final class IdentityKey extends WeakReference<ResourceLink> {
+        private final int hashCode;
+
+        private IdentityKey(final ResourceLink resourceLink, final ReferenceQueue<ResourceLink> queue) {
+            super(resourceLink, queue);
+            this.hashCode = System.identityHashCode(resourceLink);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IdentityKey)) return false;
+            final ResourceLink resourceLink = get();
+            return resourceLink != null && resourceLink == ((IdentityKey) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
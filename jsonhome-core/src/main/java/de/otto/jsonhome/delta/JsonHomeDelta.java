@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.delta;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+
+import java.net.URI;
+import java.util.*;
+
+import static de.otto.jsonhome.model.JsonHomeBuilder.copyFrom;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * The difference between two versions of a json-home document.
+ * <p/>
+ * A delta contains the resources that were added, changed or removed in the newer version. Applying
+ * the delta to the older version of the document results in the newer version.
+ * <p/>
+ * Deltas are transferred using HTTP delta encoding (RFC 3229): a client sends the version it already has in
+ * the If-None-Match header, together with an A-IM header containing {@link #INSTANCE_MANIPULATION}. If the
+ * version is still known to the server, the delta is returned with status 226 (IM Used).
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeDelta {
+
+    /**
+     * Name of the instance-manipulation used in A-IM and IM headers.
+     */
+    public static final String INSTANCE_MANIPULATION = "json-home-delta";
+
+    private final String fromVersion;
+    private final String toVersion;
+    private final List<ResourceLink> added;
+    private final List<ResourceLink> changed;
+    private final List<URI> removed;
+
+    private JsonHomeDelta(final String fromVersion,
+                          final String toVersion,
+                          final Collection<ResourceLink> added,
+                          final Collection<ResourceLink> changed,
+                          final Collection<URI> removed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.added = unmodifiableList(new ArrayList<ResourceLink>(added));
+        this.changed = unmodifiableList(new ArrayList<ResourceLink>(changed));
+        this.removed = unmodifiableList(new ArrayList<URI>(removed));
+    }
+
+    /**
+     * Creates a delta from its parts, for example when parsing a delta document.
+     */
+    public static JsonHomeDelta jsonHomeDelta(final String fromVersion,
+                                              final String toVersion,
+                                              final Collection<ResourceLink> added,
+                                              final Collection<ResourceLink> changed,
+                                              final Collection<URI> removed) {
+        return new JsonHomeDelta(fromVersion, toVersion, added, changed, removed);
+    }
+
+    /**
+     * Calculates the delta between two versions of a json-home document.
+     *
+     * @param fromVersion the version of the older document.
+     * @param from the older document.
+     * @param toVersion the version of the newer document.
+     * @param to the newer document.
+     * @return delta
+     */
+    public static JsonHomeDelta jsonHomeDelta(final String fromVersion, final JsonHome from,
+                                              final String toVersion, final JsonHome to) {
+        final Map<URI, ResourceLink> oldResources = from.getResources();
+        final Map<URI, ResourceLink> newResources = to.getResources();
+        final List<ResourceLink> added = new ArrayList<ResourceLink>();
+        final List<ResourceLink> changed = new ArrayList<ResourceLink>();
+        final List<URI> removed = new ArrayList<URI>();
+        for (final ResourceLink resourceLink : newResources.values()) {
+            final ResourceLink oldResourceLink = oldResources.get(resourceLink.getLinkRelationType());
+            if (oldResourceLink == null) {
+                added.add(resourceLink);
+            } else if (!oldResourceLink.equals(resourceLink)) {
+                changed.add(resourceLink);
+            }
+        }
+        for (final URI relationType : oldResources.keySet()) {
+            if (!newResources.containsKey(relationType)) {
+                removed.add(relationType);
+            }
+        }
+        return new JsonHomeDelta(fromVersion, toVersion, added, changed, removed);
+    }
+
+    public String getFromVersion() {
+        return fromVersion;
+    }
+
+    public String getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * @return resources that are contained in the newer version, but not in the older one.
+     */
+    public List<ResourceLink> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return resources of the newer version that are different from the resources in the older version.
+     */
+    public List<ResourceLink> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return link-relation types of the resources that are missing in the newer version.
+     */
+    public List<URI> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Applies the delta to the older version of the json-home document.
+     *
+     * @param jsonHome the json-home document in version {@link #getFromVersion()}
+     * @return the json-home document in version {@link #getToVersion()}.
+     */
+    public JsonHome applyTo(final JsonHome jsonHome) {
+        return copyFrom(jsonHome)
+                .removeResources(removed)
+                .addResources(added)
+                .addResources(changed)
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        JsonHomeDelta that = (JsonHomeDelta) o;
+
+        if (added != null ? !added.equals(that.added) : that.added != null) return false;
+        if (changed != null ? !changed.equals(that.changed) : that.changed != null) return false;
+        if (fromVersion != null ? !fromVersion.equals(that.fromVersion) : that.fromVersion != null) return false;
+        if (removed != null ? !removed.equals(that.removed) : that.removed != null) return false;
+        if (toVersion != null ? !toVersion.equals(that.toVersion) : that.toVersion != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = fromVersion != null ? fromVersion.hashCode() : 0;
+        result = 31 * result + (toVersion != null ? toVersion.hashCode() : 0);
+        result = 31 * result + (added != null ? added.hashCode() : 0);
+        result = 31 * result + (changed != null ? changed.hashCode() : 0);
+        result = 31 * result + (removed != null ? removed.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "JsonHomeDelta{" +
+                "fromVersion='" + fromVersion + '\'' +
+                ", toVersion='" + toVersion + '\'' +
+                ", added=" + added +
+                ", changed=" + changed +
+                ", removed=" + removed +
+                '}';
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.delta;
+
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.model.JsonHome;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeWriter.toByteArray;
+import static de.otto.jsonhome.delta.JsonHomeDelta.jsonHomeDelta;
+
+/**
+ * A bounded history of the versions of a json-home document.
+ * <p/>
+ * The version of a document is derived from its content, so different servers serving the same document
+ * will use the same version. Only the latest versions are kept; deltas can be calculated from every version
+ * in the history to the current version of the document.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeHistory {
+
+    public static final int DEFAULT_MAX_VERSIONS = 10;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int maxVersions;
+    private final LinkedHashMap<String, JsonHome> versions = new LinkedHashMap<String, JsonHome>();
+    private final Map<String, JsonHomeDelta> deltas = new HashMap<String, JsonHomeDelta>();
+    private String currentVersion;
+    private JsonHome current;
+
+    private JsonHomeHistory(final int maxVersions) {
+        if (maxVersions < 1) {
+            throw new IllegalArgumentException("History must contain at least one version.");
+        }
+        this.maxVersions = maxVersions;
+    }
+
+    public static JsonHomeHistory jsonHomeHistory() {
+        return new JsonHomeHistory(DEFAULT_MAX_VERSIONS);
+    }
+
+    public static JsonHomeHistory jsonHomeHistory(final int maxVersions) {
+        return new JsonHomeHistory(maxVersions);
+    }
+
+    /**
+     * Records the current json-home document and returns its version.
+     * <p/>
+     * If the document is equal to the current document, the history is not changed.
+     *
+     * @param jsonHome the current json-home document.
+     * @return version of the document.
+     */
+    public synchronized String update(final JsonHome jsonHome) {
+        if (current != null && (current == jsonHome || current.equals(jsonHome))) {
+            return currentVersion;
+        }
+        final String version = versionOf(jsonHome);
+        versions.remove(version);
+        versions.put(version, jsonHome);
+        final Iterator<String> eldest = versions.keySet().iterator();
+        while (versions.size() > maxVersions) {
+            eldest.next();
+            eldest.remove();
+        }
+        deltas.clear();
+        currentVersion = version;
+        current = jsonHome;
+        return version;
+    }
+
+    /**
+     * @return the version of the current document, or null if no document was recorded yet.
+     */
+    public synchronized String getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public synchronized boolean contains(final String version) {
+        return versions.containsKey(version);
+    }
+
+    /**
+     * Returns the delta between a previous version and the current version of the document.
+     *
+     * @param version the previous version.
+     * @return delta, or null if the version is unknown or too old.
+     */
+    public synchronized JsonHomeDelta deltaSince(final String version) {
+        final JsonHome previous = versions.get(version);
+        if (previous == null) {
+            return null;
+        }
+        JsonHomeDelta delta = deltas.get(version);
+        if (delta == null) {
+            delta = jsonHomeDelta(version, previous, currentVersion, current);
+            deltas.put(version, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Calculates the version of a json-home document from the SHA-1 digest of its application/json representation.
+     *
+     * @param jsonHome the json-home document
+     * @return version
+     */
+    public static String versionOf(final JsonHome jsonHome) {
+        return sha1Of(toByteArray(jsonHome, APPLICATION_JSON));
+    }
+
+    /**
+     * Calculates the SHA-1 digest of the bytes, as 40 lower-case hex digits including leading zeros.
+     *
+     * @param bytes the digested bytes.
+     * @return hex-encoded digest
+     */
+    public static String sha1Of(final byte[] bytes) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            final char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; ++i) {
+                chars[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0f];
+                chars[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0f];
+            }
+            return new String(chars);
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the weak entity tag of a version, without distinguishing the representations of the document.
+     *
+     * @param version the version of a document.
+     * @return entity tag
+     */
+    public static String entityTagOf(final String version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Returns the weak entity tag used in ETag headers for a representation of a version.
+     * <p/>
+     * The representations of a document are different byte sequences, so every media type has its own tag:
+     * caches are sending the tags of all stored representations in If-None-Match, and a representation must
+     * never be validated by the tag of another one. Weak tags are used, because the representations written by
+     * different writers are equivalent, but not necessarily byte-identical.
+     *
+     * @param version the version of a document.
+     * @param mediaType the media type of the representation.
+     * @return entity tag
+     */
+    public static String entityTagOf(final String version, final JsonHomeMediaType mediaType) {
+        return entityTagOf(version + "-" + representationOf(mediaType));
+    }
+
+    /**
+     * Returns the version contained in the value of an ETag header, no matter which representation the tag
+     * belongs to.
+     *
+     * @param headerValue the value of the header, or null.
+     * @return version, or null if the header does not contain an entity tag.
+     */
+    public static String versionOfEntityTag(final String headerValue) {
+        final List<String> entityTags = versionsOf(headerValue);
+        if (entityTags.isEmpty()) {
+            return null;
+        }
+        final String entityTag = entityTags.get(0);
+        for (final JsonHomeMediaType mediaType : JsonHomeMediaType.values()) {
+            final String suffix = "-" + representationOf(mediaType);
+            if (entityTag.endsWith(suffix)) {
+                return entityTag.substring(0, entityTag.length() - suffix.length());
+            }
+        }
+        return entityTag;
+    }
+
+    /**
+     * Returns the versions contained in the value of an ETag or If-None-Match header.
+     *
+     * @param headerValue the value of the header, or null.
+     * @return list of versions, possibly empty.
+     */
+    public static List<String> versionsOf(final String headerValue) {
+        if (headerValue == null) {
+            return Collections.emptyList();
+        }
+        final List<String> result = new ArrayList<String>();
+        for (String entityTag : headerValue.split(",")) {
+            entityTag = entityTag.trim();
+            if (entityTag.startsWith("W/")) {
+                entityTag = entityTag.substring(2);
+            }
+            if (entityTag.length() > 1 && entityTag.startsWith("\"") && entityTag.endsWith("\"")) {
+                entityTag = entityTag.substring(1, entityTag.length() - 1);
+            }
+            if (!entityTag.isEmpty()) {
+                result.add(entityTag);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the versions of a representation contained in the value of an If-None-Match header. Entity tags of
+     * other representations are ignored.
+     *
+     * @param headerValue the value of the header, or null.
+     * @param mediaType the media type of the representation.
+     * @return list of versions, possibly empty.
+     */
+    public static List<String> versionsOf(final String headerValue, final JsonHomeMediaType mediaType) {
+        final String suffix = "-" + representationOf(mediaType);
+        final List<String> result = new ArrayList<String>();
+        for (final String entityTag : versionsOf(headerValue)) {
+            if (entityTag.endsWith(suffix)) {
+                result.add(entityTag.substring(0, entityTag.length() - suffix.length()));
+            }
+        }
+        return result;
+    }
+
+    private static String representationOf(final JsonHomeMediaType mediaType) {
+        switch (mediaType) {
+            case APPLICATION_JSONHOME:
+                return "json-home";
+            case APPLICATION_JSONHOME_SMILE:
+                return "smile";
+            default:
+                return "json";
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.matcher;
+
+import de.otto.jsonhome.model.ResourceLink;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * The result of matching a concrete URI against the resource links of a json-home document.
+ * <p/>
+ * This implementation is immutable.
+ *
+ * @author agent
+ * @since 18.10.26
+ * @see ResourceLinkMatcher
+ */
+public final class ResourceLinkMatch {
+
+    private final ResourceLink resourceLink;
+    private final Map<URI, String> hrefVarValues;
+
+    ResourceLinkMatch(final ResourceLink resourceLink, final Map<URI, String> hrefVarValues) {
+        this.resourceLink = resourceLink;
+        this.hrefVarValues = unmodifiableMap(new LinkedHashMap<URI, String>(hrefVarValues));
+    }
+
+    /**
+     * The resource link matching the URI.
+     *
+     * @return ResourceLink
+     */
+    public ResourceLink getResourceLink() {
+        return resourceLink;
+    }
+
+    /**
+     * The link-relation type of the matching resource link.
+     *
+     * @return URI of the link-relation type.
+     */
+    public URI getLinkRelationType() {
+        return resourceLink.getLinkRelationType();
+    }
+
+    /**
+     * Returns the values of the href-vars extracted from the URI, identified by their var-type URIs.
+     * <p/>
+     * Only variables contained in the matched URI are returned. Direct links have no href-vars.
+     *
+     * @return unmodifiable map of var-type URIs to (decoded) values.
+     */
+    public Map<URI, String> getHrefVarValues() {
+        return hrefVarValues;
+    }
+
+    /**
+     * Returns the value of a single href-var, or null if the var was not contained in the matched URI.
+     *
+     * @param varType the var-type URI of the href-var.
+     * @return value or null
+     */
+    public String getHrefVarValue(final URI varType) {
+        return hrefVarValues.get(varType);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ResourceLinkMatch that = (ResourceLinkMatch) o;
+
+        if (hrefVarValues != null ? !hrefVarValues.equals(that.hrefVarValues) : that.hrefVarValues != null) return false;
+        if (resourceLink != null ? !resourceLink.equals(that.resourceLink) : that.resourceLink != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = resourceLink != null ? resourceLink.hashCode() : 0;
+        result = 31 * result + (hrefVarValues != null ? hrefVarValues.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceLinkMatch{" +
+                "relationType=" + getLinkRelationType() +
+                ", hrefVarValues=" + hrefVarValues +
+                '}';
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.matcher;
+
+import de.otto.jsonhome.model.HrefVar;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.*;
+
+/**
+ * A compiled matcher used to find the {@link ResourceLink} of a json-home document that is describing
+ * a concrete URI, like a request URI.
+ * <p/>
+ * The hrefs of direct links and the href-templates of templated links are compiled into a tree of path segments,
+ * having literal segments and variable slots as edges. Resolving an URI is done by walking down the tree, so the
+ * time needed to match an URI is proportional to the length of the path and independent of the number of
+ * resource links. Literal segments are preferred over variable slots.
+ * <p/>
+ * Absolute hrefs only match URIs having the same scheme and authority, relative hrefs match URIs of any authority.
+ * The following href-template expressions are supported: simple <code>{var}</code> and reserved
+ * <code>{+var}</code> expressions inside of a single path segment, optionally surrounded by literals like in
+ * <code>/products/{id}.json</code>, path expressions <code>{/var}</code>, label expressions <code>{.var}</code>
+ * and query expressions <code>{?var,other}</code> or <code>{&var}</code>. Resource links using other
+ * expressions are ignored by the matcher.
+ * <p/>
+ * This implementation is immutable and thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class ResourceLinkMatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceLinkMatcher.class);
+
+    private final Node relativeRoot = new Node();
+    private final Map<String, Node> absoluteRoots = new HashMap<String, Node>();
+
+    private ResourceLinkMatcher(final JsonHome jsonHome) {
+        for (final ResourceLink resourceLink : jsonHome.getResources().values()) {
+            add(resourceLink);
+        }
+    }
+
+    /**
+     * Creates a ResourceLinkMatcher for all resource links of a json-home document.
+     *
+     * @param jsonHome the json-home document.
+     * @return ResourceLinkMatcher
+     */
+    public static ResourceLinkMatcher resourceLinkMatcher(final JsonHome jsonHome) {
+        return new ResourceLinkMatcher(jsonHome);
+    }
+
+    /**
+     * Returns the match of the resource link describing the URI, including the values of the href-vars
+     * contained in the URI.
+     *
+     * @param uri a relative or absolute URI, like the URI of a HTTP request.
+     * @return ResourceLinkMatch or null, if no resource link is matching the URI.
+     */
+    public ResourceLinkMatch match(final URI uri) {
+        final String[] segments = segmentsOf(uri.getRawPath() != null ? uri.getRawPath() : "");
+        final List<String> pathVars = new ArrayList<String>();
+        Target target = null;
+        if (uri.isAbsolute()) {
+            final Node absoluteRoot = absoluteRoots.get(authorityOf(uri));
+            if (absoluteRoot != null) {
+                target = match(absoluteRoot, segments, 0, pathVars);
+            }
+        }
+        if (target == null) {
+            target = match(relativeRoot, segments, 0, pathVars);
+        }
+        return target != null
+                ? target.toMatch(pathVars, uri.getRawQuery())
+                : null;
+    }
+
+    /**
+     * Returns the link-relation type of the resource link describing the URI.
+     *
+     * @param uri a relative or absolute URI, like the URI of a HTTP request.
+     * @return URI of the link-relation type, or null if no resource link is matching the URI.
+     */
+    public URI relationTypeOf(final URI uri) {
+        final ResourceLinkMatch match = match(uri);
+        return match != null ? match.getLinkRelationType() : null;
+    }
+
+    private void add(final ResourceLink resourceLink) {
+        final String href = resourceLink.isDirectLink()
+                ? resourceLink.asDirectLink().getHref().toString()
+                : resourceLink.asTemplatedLink().getHrefTemplate();
+        final int queryStart = queryStartOf(href);
+        final String hrefWithoutQuery = href.substring(0, queryStart);
+        final int pathStart = pathStartOf(hrefWithoutQuery);
+        final Node root;
+        if (pathStart > 0) {
+            final String authority = hrefWithoutQuery.substring(0, pathStart).toLowerCase();
+            if (authority.indexOf('{') != -1) {
+                LOG.debug("Ignoring {}: variables in the authority are not supported.", resourceLink.getLinkRelationType());
+                return;
+            }
+            if (!absoluteRoots.containsKey(authority)) {
+                absoluteRoots.put(authority, new Node());
+            }
+            root = absoluteRoots.get(authority);
+        } else {
+            root = relativeRoot;
+        }
+        final List<SegmentPattern> patterns = new ArrayList<SegmentPattern>();
+        for (final String segment : segmentsOf(hrefWithoutQuery.substring(pathStart).replace("{/", "/{"))) {
+            final SegmentPattern pattern = SegmentPattern.parse(segment);
+            if (pattern == null) {
+                LOG.debug("Ignoring {}: unsupported href-template {}", resourceLink.getLinkRelationType(), href);
+                return;
+            }
+            patterns.add(pattern);
+        }
+        Node node = root;
+        for (final SegmentPattern pattern : patterns) {
+            node = node.childFor(pattern);
+        }
+        if (node.target == null) {
+            node.target = new Target(resourceLink, queryVarsOf(href.substring(queryStart)));
+        } else {
+            LOG.debug("Ignoring {}: href {} is already matched by {}",
+                    new Object[] {resourceLink.getLinkRelationType(), href, node.target.resourceLink.getLinkRelationType()});
+        }
+    }
+
+    private static Target match(final Node node, final String[] segments, final int index, final List<String> pathVars) {
+        if (index == segments.length) {
+            return node.target;
+        }
+        final String segment = segments[index];
+        final Node literalChild = node.literals.get(segment);
+        if (literalChild != null) {
+            final Target target = match(literalChild, segments, index + 1, pathVars);
+            if (target != null) {
+                return target;
+            }
+        }
+        for (final Map.Entry<SegmentPattern, Node> variable : node.variables.entrySet()) {
+            final String value = variable.getKey().valueOf(segment);
+            if (value != null) {
+                pathVars.add(variable.getKey().varName);
+                pathVars.add(value);
+                final Target target = match(variable.getValue(), segments, index + 1, pathVars);
+                if (target != null) {
+                    return target;
+                }
+                pathVars.remove(pathVars.size() - 1);
+                pathVars.remove(pathVars.size() - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the query or fragment part of the href, or the length of the href if there is no such part.
+     */
+    private static int queryStartOf(final String href) {
+        boolean inExpression = false;
+        for (int i = 0; i < href.length(); ++i) {
+            final char c = href.charAt(i);
+            if (c == '{') {
+                if (i + 1 < href.length() && "?&#".indexOf(href.charAt(i + 1)) != -1) {
+                    return i;
+                }
+                inExpression = true;
+            } else if (c == '}') {
+                inExpression = false;
+            } else if (!inExpression && (c == '?' || c == '#')) {
+                return i;
+            }
+        }
+        return href.length();
+    }
+
+    /**
+     * Returns the index of the path of an absolute href, or 0 if the href is relative.
+     */
+    private static int pathStartOf(final String href) {
+        final int schemeEnd = href.indexOf("://");
+        if (schemeEnd == -1 || href.substring(0, schemeEnd).indexOf('{') != -1) {
+            return 0;
+        }
+        final int pathStart = href.indexOf('/', schemeEnd + 3);
+        return pathStart != -1 ? pathStart : href.length();
+    }
+
+    /**
+     * Returns a mapping of query-parameter names to href-var names.
+     */
+    private static Map<String, String> queryVarsOf(final String query) {
+        final Map<String, String> queryVars = new LinkedHashMap<String, String>();
+        int pos = 0;
+        while (pos < query.length()) {
+            final int start = query.indexOf('{', pos);
+            if (start == -1) {
+                break;
+            }
+            final int end = query.indexOf('}', start);
+            if (end == -1) {
+                break;
+            }
+            final String expression = query.substring(start + 1, end);
+            if (expression.startsWith("?") || expression.startsWith("&")) {
+                for (final String var : expression.substring(1).split(",")) {
+                    final String varName = varNameOf(var);
+                    queryVars.put(varName, varName);
+                }
+            } else if (start > 0 && query.charAt(start - 1) == '=') {
+                // literal query parameter like ?name={var}
+                final int nameStart = Math.max(query.lastIndexOf('?', start), query.lastIndexOf('&', start)) + 1;
+                queryVars.put(query.substring(nameStart, start - 1), varNameOf(expression));
+            }
+            pos = end + 1;
+        }
+        return queryVars;
+    }
+
+    private static String varNameOf(final String varSpec) {
+        String varName = varSpec.trim();
+        if (varName.endsWith("*")) {
+            varName = varName.substring(0, varName.length() - 1);
+        }
+        final int colonIdx = varName.indexOf(':');
+        return colonIdx != -1 ? varName.substring(0, colonIdx) : varName;
+    }
+
+    private static String[] segmentsOf(final String path) {
+        final List<String> segments = new ArrayList<String>();
+        for (final String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    private static String authorityOf(final URI uri) {
+        return (uri.getScheme() + "://" + uri.getRawAuthority()).toLowerCase();
+    }
+
+    private static String decoded(final String value, final boolean plusIsSpace) {
+        try {
+            return URLDecoder.decode(plusIsSpace ? value : value.replace("+", "%2B"), "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (final IllegalArgumentException e) {
+            // malformed escape sequence: use the raw value
+            return value;
+        }
+    }
+
+    /**
+     * A node in the tree of path segments.
+     */
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final Map<SegmentPattern, Node> variables = new LinkedHashMap<SegmentPattern, Node>();
+        private Target target;
+
+        private Node childFor(final SegmentPattern pattern) {
+            final Map<?, Node> children = pattern.isLiteral() ? literals : variables;
+            Node child = children.get(pattern.isLiteral() ? pattern.prefix : pattern);
+            if (child == null) {
+                child = new Node();
+                if (pattern.isLiteral()) {
+                    literals.put(pattern.prefix, child);
+                } else {
+                    variables.put(pattern, child);
+                }
+            }
+            return child;
+        }
+    }
+
+    /**
+     * A single segment of a path, either a literal or a variable with optional literal prefix and suffix.
+     */
+    private static final class SegmentPattern {
+        private final String prefix;
+        private final String varName;
+        private final String suffix;
+
+        private SegmentPattern(final String prefix, final String varName, final String suffix) {
+            this.prefix = prefix;
+            this.varName = varName;
+            this.suffix = suffix;
+        }
+
+        /**
+         * Parses a segment of a href or href-template.
+         *
+         * @return SegmentPattern, or null if the segment contains unsupported template expressions.
+         */
+        private static SegmentPattern parse(final String segment) {
+            final int start = segment.indexOf('{');
+            if (start == -1) {
+                return new SegmentPattern(segment, null, null);
+            }
+            final int end = segment.indexOf('}', start);
+            if (end == -1 || segment.indexOf('{', end) != -1) {
+                return null;
+            }
+            String prefix = segment.substring(0, start);
+            String expression = segment.substring(start + 1, end);
+            if (expression.startsWith("+")) {
+                expression = expression.substring(1);
+            } else if (expression.startsWith(".")) {
+                prefix = prefix + ".";
+                expression = expression.substring(1);
+            }
+            if (expression.isEmpty() || expression.indexOf(',') != -1 || "/;?&#=".indexOf(expression.charAt(0)) != -1) {
+                return null;
+            }
+            return new SegmentPattern(prefix, varNameOf(expression), segment.substring(end + 1));
+        }
+
+        private boolean isLiteral() {
+            return varName == null;
+        }
+
+        private String valueOf(final String segment) {
+            if (segment.length() > prefix.length() + suffix.length()
+                    && segment.startsWith(prefix)
+                    && segment.endsWith(suffix)) {
+                return decoded(segment.substring(prefix.length(), segment.length() - suffix.length()), false);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SegmentPattern that = (SegmentPattern) o;
+
+            if (prefix != null ? !prefix.equals(that.prefix) : that.prefix != null) return false;
+            if (suffix != null ? !suffix.equals(that.suffix) : that.suffix != null) return false;
+            if (varName != null ? !varName.equals(that.varName) : that.varName != null) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = prefix != null ? prefix.hashCode() : 0;
+            result = 31 * result + (varName != null ? varName.hashCode() : 0);
+            result = 31 * result + (suffix != null ? suffix.hashCode() : 0);
+            return result;
+        }
+    }
+
+    /**
+     * The resource link stored in a node of the tree, together with the information needed to resolve href-vars.
+     */
+    private static final class Target {
+        private final ResourceLink resourceLink;
+        private final Map<String, URI> varTypes = new HashMap<String, URI>();
+        private final Map<String, String> queryVars;
+
+        private Target(final ResourceLink resourceLink, final Map<String, String> queryVars) {
+            this.resourceLink = resourceLink;
+            this.queryVars = queryVars;
+            if (!resourceLink.isDirectLink()) {
+                for (final HrefVar hrefVar : resourceLink.asTemplatedLink().getHrefVars()) {
+                    varTypes.put(hrefVar.getVar(), hrefVar.getVarType());
+                }
+            }
+        }
+
+        private ResourceLinkMatch toMatch(final List<String> pathVars, final String rawQuery) {
+            final Map<URI, String> values = new LinkedHashMap<URI, String>();
+            for (int i = 0; i < pathVars.size(); i += 2) {
+                putValue(values, pathVars.get(i), pathVars.get(i + 1));
+            }
+            if (rawQuery != null && !queryVars.isEmpty()) {
+                for (final String parameter : rawQuery.split("&")) {
+                    final int eqIdx = parameter.indexOf('=');
+                    if (eqIdx > 0) {
+                        final String varName = queryVars.get(decoded(parameter.substring(0, eqIdx), true));
+                        if (varName != null) {
+                            putValue(values, varName, decoded(parameter.substring(eqIdx + 1), true));
+                        }
+                    }
+                }
+            }
+            return new ResourceLinkMatch(resourceLink, values);
+        }
+
+        private void putValue(final Map<URI, String> values, final String varName, final String value) {
+            final URI varType = varTypes.get(varName);
+            if (varType != null && !values.containsKey(varType)) {
+                values.put(varType, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics implementation exporting the recorded metrics as attributes of a JMX MBean.
+ * <p/>
+ * For every metric and key, three read-only attributes are exported: "name[key].count", "name[key].sum" and
+ * "name[key].max". Durations are recorded in microseconds, counters only export the count.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JmxMetrics implements Metrics, DynamicMBean {
+
+    public static final String DEFAULT_OBJECT_NAME = "de.otto.jsonhome:type=Metrics";
+
+    private static final String COUNT = ".count";
+    private static final String SUM = ".sum";
+    private static final String MAX = ".max";
+
+    private final ObjectName objectName;
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+
+    private JmxMetrics(final ObjectName objectName) {
+        this.objectName = objectName;
+    }
+
+    public static JmxMetrics jmxMetrics() {
+        return jmxMetrics(DEFAULT_OBJECT_NAME);
+    }
+
+    public static JmxMetrics jmxMetrics(final String objectName) {
+        try {
+            return new JmxMetrics(new ObjectName(objectName));
+        } catch (final MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Illegal object name " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registers the metrics at the platform MBeanServer.
+     *
+     * @return this
+     */
+    public JmxMetrics register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return this;
+        } catch (final JMException e) {
+            throw new IllegalStateException("Unable to register metrics as " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBeanServer.
+     */
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (final JMException e) {
+            throw new IllegalStateException("Unable to unregister metrics " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void recordTime(final String name, final String key, final long durationNanos) {
+        statisticsOf(name, key, true).record(durationNanos / 1000L);
+    }
+
+    @Override
+    public void recordValue(final String name, final String key, final long value) {
+        statisticsOf(name, key, true).record(value);
+    }
+
+    @Override
+    public void increment(final String name, final String key) {
+        statisticsOf(name, key, false).count.incrementAndGet();
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final int pos = attribute.lastIndexOf('.');
+        final Statistics stats = pos > 0 ? statistics.get(attribute.substring(0, pos)) : null;
+        if (stats != null) {
+            final String suffix = attribute.substring(pos);
+            if (suffix.equals(COUNT)) {
+                return stats.count.get();
+            } else if (stats.withValues && suffix.equals(SUM)) {
+                return stats.sum.get();
+            } else if (stats.withValues && suffix.equals(MAX)) {
+                return stats.max.get();
+            }
+        }
+        throw new AttributeNotFoundException("Unknown attribute " + attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList result = new AttributeList();
+        for (final String attribute : attributes) {
+            try {
+                result.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (final AttributeNotFoundException e) {
+                // unknown attributes are not contained in the result
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Attribute " + attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (final Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+            attributes.add(attributeInfo(entry.getKey() + COUNT));
+            if (entry.getValue().withValues) {
+                attributes.add(attributeInfo(entry.getKey() + SUM));
+                attributes.add(attributeInfo(entry.getKey() + MAX));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics of jsonhome",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+    }
+
+    private static MBeanAttributeInfo attributeInfo(final String name) {
+        return new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+    }
+
+    private Statistics statisticsOf(final String name, final String key, final boolean withValues) {
+        final String id = name + "[" + key + "]";
+        Statistics stats = statistics.get(id);
+        if (stats == null) {
+            stats = new Statistics(withValues);
+            final Statistics existing = statistics.putIfAbsent(id, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Count, sum and maximum of the values recorded for a single metric and key.
+     */
+    private static final class Statistics {
+        private final boolean withValues;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private Statistics(final boolean withValues) {
+            this.withValues = withValues;
+        }
+
+        private void record(final long value) {
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+    }
+}
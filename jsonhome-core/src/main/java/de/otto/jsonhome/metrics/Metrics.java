@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.metrics;
+
+/**
+ * Service-provider interface used to record metrics of generating, parsing, fetching and aggregating
+ * json-home documents.
+ * <p/>
+ * Metrics are identified by a name, like "jsonhome.client.fetch", and a key, like the URI of a json-home
+ * document or the name of a controller class. Implementations must be thread-safe and should be cheap, as
+ * metrics are recorded on hot paths.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public interface Metrics {
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param name the name of the metric.
+     * @param key the key of the metric, for example an URI.
+     * @param durationNanos duration in nanoseconds.
+     */
+    public void recordTime(String name, String key, long durationNanos);
+
+    /**
+     * Records a value, for example the size of a document.
+     *
+     * @param name the name of the metric.
+     * @param key the key of the metric, for example an URI.
+     * @param value the value.
+     */
+    public void recordValue(String name, String key, long value);
+
+    /**
+     * Increments a counter, for example the number of cache hits.
+     *
+     * @param name the name of the metric.
+     * @param key the key of the metric, for example an URI.
+     */
+    public void increment(String name, String key);
+
+}
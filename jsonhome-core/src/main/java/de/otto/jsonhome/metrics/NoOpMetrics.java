@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.metrics;
+
+/**
+ * The default Metrics implementation, ignoring all metrics.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class NoOpMetrics implements Metrics {
+
+    private static final NoOpMetrics INSTANCE = new NoOpMetrics();
+
+    private NoOpMetrics() {
+    }
+
+    public static Metrics noOpMetrics() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void recordTime(final String name, final String key, final long durationNanos) {
+    }
+
+    @Override
+    public void recordValue(final String name, final String key, final long value) {
+    }
+
+    @Override
+    public void increment(final String name, final String key) {
+    }
+
+}
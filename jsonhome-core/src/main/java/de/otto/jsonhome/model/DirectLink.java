@@ -89,6 +89,17 @@ public final class DirectLink implements ResourceLink {
 
     @Override
     public ResourceLink mergeWith(ResourceLink other) {
+        return mergeTarget(other).withHints(hints.mergeWith(other.getHints()));
+    }
+
+    /**
+     * Checks whether the other link can be merged with this link and returns the link providing the href of
+     * the merged link. Only the hints must be merged with the returned link.
+     *
+     * @param other the other resource link
+     * @return this
+     */
+    DirectLink mergeTarget(final ResourceLink other) {
         if (!other.isDirectLink()) {
             throw new IllegalArgumentException(format(
                     "Merging DirectLink with TemplatedLink is not supported. \nDirectLink = %s \nTemplatedLink = %s", toString(), other));
@@ -101,11 +112,11 @@ public final class DirectLink implements ResourceLink {
         if (!href.equals(otherDirectLink.getHref())) {
             throw new IllegalArgumentException("Resource links with different hrefs can not be merged.");
         }
-        return new DirectLink(
-                relationType,
-                href,
-                hints.mergeWith(other.getHints())
-        );
+        return this;
+    }
+
+    DirectLink withHints(final Hints hints) {
+        return hints == this.hints ? this : new DirectLink(relationType, href, hints);
     }
 
     @Override
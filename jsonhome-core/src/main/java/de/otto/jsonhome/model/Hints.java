@@ -21,7 +21,6 @@ import static de.otto.jsonhome.model.Documentation.emptyDocs;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableSet;
 import static java.util.EnumSet.copyOf;
-import static java.util.EnumSet.noneOf;
 
 /**
  * Hints are used to describe a resource: the allowed HTTP methods, the supported representations,
@@ -228,60 +227,14 @@ public final class Hints {
 
     /**
      * Merges the hints of two resource links..
+     * <p/>
+     * Use a {@link HintsMerger} to merge more than two hints without creating intermediate instances.
      *
      * @param other the hints of the other resource link
      * @return a new, merged Hints instance
      */
     public Hints mergeWith(final Hints other) {
-        final EnumSet<Allow> allows = this.allows.isEmpty() ? noneOf(Allow.class) : copyOf(this.allows);
-        allows.addAll(other.getAllows());
-        final Set<String> representations = new LinkedHashSet<String>(this.representations);
-        representations.addAll(other.getRepresentations());
-        final Set<String> acceptPut = new LinkedHashSet<String>(this.acceptPut);
-        acceptPut.addAll(other.getAcceptPut());
-        final Set<String> acceptPost = new LinkedHashSet<String>(this.acceptPost);
-        acceptPost.addAll(other.getAcceptPost());
-        final Set<String> acceptPatch = new LinkedHashSet<String>(this.acceptPatch);
-        acceptPatch.addAll(other.getAcceptPatch());
-        final Set<String> acceptRanges = new LinkedHashSet<String>(this.acceptRanges);
-        acceptRanges.addAll(other.getAcceptRanges());
-        final Set<String> preferences = new LinkedHashSet<String>(this.preferences);
-        preferences.addAll(other.getPreferences());
-        final Set<Precondition> preconditionReq = new LinkedHashSet<Precondition>(this.preconditionReq);
-        preconditionReq.addAll(other.getPreconditionReq());
-        final List<Authentication> mergedAuth = mergeAuthReq(other.getAuthReq());
-        return hints(
-                allows,
-                new ArrayList<String>(representations),
-                new ArrayList<String>(acceptPut),
-                new ArrayList<String>(acceptPost),
-                new ArrayList<String>(acceptPatch),
-                new ArrayList<String>(acceptRanges),
-                new ArrayList<String>(preferences),
-                new ArrayList<Precondition>(preconditionReq),
-                mergedAuth,
-                status.mergeWith(other.getStatus()),
-                docs.mergeWith(other.getDocs())
-        );
-    }
-
-    private List<Authentication> mergeAuthReq(final List<Authentication> otherAuthReq) {
-        final Map<String, Set<String>> authReq = new TreeMap<String, Set<String>>();
-        for (final Authentication auth : this.authReq) {
-            authReq.put(auth.getScheme(), new TreeSet<String>(auth.getRealms()));
-        }
-        for (final Authentication auth : otherAuthReq) {
-            if (authReq.containsKey(auth.getScheme())) {
-                authReq.get(auth.getScheme()).addAll(auth.getRealms());
-            } else {
-                authReq.put(auth.getScheme(), new TreeSet<String>(auth.getRealms()));
-            }
-        }
-        final List<Authentication> mergedAuth = new ArrayList<Authentication>();
-        for (final String scheme : authReq.keySet()) {
-            mergedAuth.add(Authentication.authReq(scheme, new ArrayList<String>(authReq.get(scheme))));
-        }
-        return mergedAuth;
+        return HintsMerger.hintsMerger().merge(this).merge(other).build();
     }
 
     @Override
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.model;
+
+import java.util.*;
+
+import static de.otto.jsonhome.model.Documentation.emptyDocs;
+import static de.otto.jsonhome.model.Hints.hints;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Merges any number of {@link Hints} into a single Hints instance in one pass.
+ * <p/>
+ * Merging k hints using {@link Hints#mergeWith(Hints)} creates k-1 intermediate instances. The HintsMerger
+ * instead accumulates the hints: allowed methods are collected in a bitmask, the lists of media types,
+ * preferences and preconditions are collected in small arrays keeping the order of their first occurrence.
+ * Merging k hints is therefore O(total size of the hints), and only the final Hints instance is created.
+ * <p/>
+ * The result is equal to the result of merging the hints one by one using Hints.mergeWith.
+ * <p/>
+ * A HintsMerger is not thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class HintsMerger {
+
+    private static final Allow[] ALLOWS = Allow.values();
+
+    private Hints first;
+    private boolean merged;
+    private int allows;
+    private final MergedValues<String> representations = new MergedValues<String>();
+    private final MergedValues<String> acceptPut = new MergedValues<String>();
+    private final MergedValues<String> acceptPost = new MergedValues<String>();
+    private final MergedValues<String> acceptPatch = new MergedValues<String>();
+    private final MergedValues<String> acceptRanges = new MergedValues<String>();
+    private final MergedValues<String> preferences = new MergedValues<String>();
+    private final MergedValues<Precondition> preconditionReq = new MergedValues<Precondition>();
+    private Map<String, Set<String>> authReq;
+    private Status status = Status.OK;
+    private Documentation docs = emptyDocs();
+
+    private HintsMerger() {
+    }
+
+    public static HintsMerger hintsMerger() {
+        return new HintsMerger();
+    }
+
+    /**
+     * Adds the hints to the merged hints.
+     *
+     * @param hints the merged hints.
+     * @return this
+     */
+    public HintsMerger merge(final Hints hints) {
+        if (first == null) {
+            first = hints;
+        } else if (!merged) {
+            if (hints == first || hints.equals(first)) {
+                return this;
+            }
+            merged = true;
+            accumulate(first);
+            accumulate(hints);
+        } else {
+            accumulate(hints);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the merged hints. If only equal hints were merged, the first of these hints is returned.
+     *
+     * @return Hints
+     */
+    public Hints build() {
+        if (!merged) {
+            return first != null ? first : Hints.emptyHints();
+        }
+        final EnumSet<Allow> allowSet = EnumSet.noneOf(Allow.class);
+        for (final Allow allow : ALLOWS) {
+            if ((allows & (1 << allow.ordinal())) != 0) {
+                allowSet.add(allow);
+            }
+        }
+        return hints(
+                allowSet,
+                representations.toList(),
+                acceptPut.toList(),
+                acceptPost.toList(),
+                acceptPatch.toList(),
+                acceptRanges.toList(),
+                preferences.toList(),
+                preconditionReq.toList(),
+                authReqList(),
+                status,
+                docs);
+    }
+
+    private void accumulate(final Hints hints) {
+        for (final Allow allow : hints.getAllows()) {
+            allows |= 1 << allow.ordinal();
+        }
+        representations.addAll(hints.getRepresentations());
+        acceptPut.addAll(hints.getAcceptPut());
+        acceptPost.addAll(hints.getAcceptPost());
+        acceptPatch.addAll(hints.getAcceptPatch());
+        acceptRanges.addAll(hints.getAcceptRanges());
+        preferences.addAll(hints.getPreferences());
+        preconditionReq.addAll(hints.getPreconditionReq());
+        final List<Authentication> hintsAuthReq = hints.getAuthReq();
+        for (int i = 0, n = hintsAuthReq.size(); i < n; ++i) {
+            final Authentication auth = hintsAuthReq.get(i);
+            if (authReq == null) {
+                authReq = new TreeMap<String, Set<String>>();
+            }
+            Set<String> realms = authReq.get(auth.getScheme());
+            if (realms == null) {
+                realms = new TreeSet<String>();
+                authReq.put(auth.getScheme(), realms);
+            }
+            realms.addAll(auth.getRealms());
+        }
+        status = status.mergeWith(hints.getStatus());
+        final Documentation hintsDocs = hints.getDocs();
+        if (!hintsDocs.equals(emptyDocs())) {
+            docs = docs.mergeWith(hintsDocs);
+        }
+    }
+
+    private List<Authentication> authReqList() {
+        if (authReq == null) {
+            return Collections.emptyList();
+        }
+        final List<Authentication> result = new ArrayList<Authentication>(authReq.size());
+        for (final Map.Entry<String, Set<String>> entry : authReq.entrySet()) {
+            result.add(Authentication.authReq(entry.getKey(), new ArrayList<String>(entry.getValue())));
+        }
+        return result;
+    }
+
+    /**
+     * Distinct values, ordered by their first occurrence. The few values of a hint are found using a linear
+     * search; a hash index is only created for larger numbers of values.
+     */
+    private static final class MergedValues<T> {
+        private static final int MAX_LINEAR_SEARCH = 8;
+
+        private Object[] values = new Object[4];
+        private int size;
+        private Set<Object> index;
+
+        void addAll(final List<T> list) {
+            for (int i = 0, n = list.size(); i < n; ++i) {
+                add(list.get(i));
+            }
+        }
+
+        private void add(final T value) {
+            if (contains(value)) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            if (index != null) {
+                index.add(value);
+            } else if (size > MAX_LINEAR_SEARCH) {
+                index = new HashSet<Object>(Arrays.asList(values).subList(0, size));
+            }
+        }
+
+        private boolean contains(final T value) {
+            if (index != null) {
+                return index.contains(value);
+            }
+            for (int i = 0; i < size; ++i) {
+                if (values[i].equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> toList() {
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+            return unmodifiableList((List<T>) Arrays.asList(Arrays.copyOf(values, size)));
+        }
+    }
+}
@@ -15,15 +15,26 @@
  */
 package de.otto.jsonhome.model;
 
+import de.otto.jsonhome.collection.PersistentHashMap;
+import de.otto.jsonhome.collection.PersistentTree;
+
 import java.net.URI;
 import java.util.*;
 
 import static java.util.Arrays.asList;
-import static java.util.Collections.unmodifiableMap;
 
 /**
  * Immutable container of {@link ResourceLink resource links}, representing a json-home document.
  * <p/>
+ * The resources are ordered by the String representation of their link-relation types. Beside of exact
+ * lookups by link-relation type, the JsonHome supports prefix and namespace queries like "all relation types
+ * below http://example.org/rel/product/" in O(log n + k).
+ * <p/>
+ * The resources are kept in a {@link PersistentHashMap}, used for lookups by link-relation type, and in a
+ * {@link PersistentTree} ordered by link-relation type, used for iteration and prefix queries. Because of this,
+ * {@link #with(ResourceLink)}, {@link #without(URI)} and {@link #merge(JsonHome)} derive new documents in
+ * O(log n) per changed resource, sharing all unchanged parts with this instance.
+ * <p/>
  * This implementation is immutable.
  *
  * @see <a href="http://tools.ietf.org/html/draft-nottingham-json-home-02">http://tools.ietf.org/html/draft-nottingham-json-home-02</a>
@@ -32,15 +43,23 @@ import static java.util.Collections.unmodifiableMap;
  */
 public final class JsonHome {
 
-    private final Map<URI, ResourceLink> resources;
+    private static final JsonHome EMPTY = new JsonHome(
+            PersistentHashMap.<URI, ResourceLink>emptyMap(),
+            PersistentTree.<String, ResourceLink>emptyTree());
 
-    private JsonHome(final Map<URI, ResourceLink> resources) {
-        this.resources = unmodifiableMap(new HashMap<URI, ResourceLink>(resources));
+    private final PersistentHashMap<URI, ResourceLink> resources;
+    private final PersistentTree<String, ResourceLink> relationTypeIndex;
+    private final Map<URI, ResourceLink> resourceMap;
+
+    private JsonHome(final PersistentHashMap<URI, ResourceLink> resources,
+                     final PersistentTree<String, ResourceLink> relationTypeIndex) {
+        this.resources = resources;
+        this.relationTypeIndex = relationTypeIndex;
+        this.resourceMap = new ResourceMap();
     }
 
     public static JsonHome emptyJsonHome() {
-        return new JsonHome(Collections.<URI, ResourceLink>emptyMap());
-
+        return EMPTY;
     }
 
     /**
@@ -65,23 +84,99 @@ public final class JsonHome {
      * @return JsonHome
      */
     public static JsonHome jsonHome(final Collection<? extends ResourceLink> resources) {
-        final Map<URI, ResourceLink> resourceMap = new HashMap<URI, ResourceLink>(resources.size());
+        if (resources.isEmpty()) {
+            return EMPTY;
+        }
+        PersistentHashMap<URI, ResourceLink> resourceMap = PersistentHashMap.emptyMap();
+        final SortedMap<String, ResourceLink> index = new TreeMap<String, ResourceLink>();
         for (final ResourceLink resource : resources) {
             if (resourceMap.containsKey(resource.getLinkRelationType())) {
                 throw new IllegalArgumentException("Unable to construct JsonHome. Link-relation types must be unique.");
             }
-            resourceMap.put(resource.getLinkRelationType(), resource);
+            resourceMap = resourceMap.with(resource.getLinkRelationType(), resource);
+            index.put(resource.getLinkRelationType().toString(), resource);
+        }
+        return new JsonHome(resourceMap, PersistentTree.persistentTree(index));
+    }
+
+    /**
+     * Returns a json-home document containing the resources of this document plus the specified resource.
+     * A resource having the same link-relation type is replaced.
+     *
+     * @param resource the added resource link.
+     * @return JsonHome
+     */
+    public JsonHome with(final ResourceLink resource) {
+        final URI relationType = resource.getLinkRelationType();
+        if (resource.equals(resources.get(relationType))) {
+            return this;
+        }
+        return new JsonHome(
+                resources.with(relationType, resource),
+                relationTypeIndex.put(relationType.toString(), resource));
+    }
+
+    /**
+     * Returns a json-home document containing the resources of this document, except the resource with
+     * the specified link-relation type.
+     *
+     * @param relationType the link-relation type of the removed resource.
+     * @return JsonHome
+     */
+    public JsonHome without(final URI relationType) {
+        if (!resources.containsKey(relationType)) {
+            return this;
+        }
+        return new JsonHome(
+                resources.without(relationType),
+                relationTypeIndex.remove(relationType.toString()));
+    }
+
+    /**
+     * Returns a json-home document containing the resources of this and the other document. Resources of the
+     * other document replace the resources of this document having the same link-relation type.
+     * <p/>
+     * The resources of the smaller document are added to the larger one, so merging is O(m log n) with m being
+     * the size of the smaller document.
+     *
+     * @param other the merged json-home document.
+     * @return JsonHome
+     */
+    public JsonHome merge(final JsonHome other) {
+        if (other.resources.size() <= resources.size()) {
+            PersistentHashMap<URI, ResourceLink> mergedResources = resources;
+            PersistentTree<String, ResourceLink> mergedIndex = relationTypeIndex;
+            for (final Map.Entry<String, ResourceLink> entry : other.relationTypeIndex) {
+                final ResourceLink resource = entry.getValue();
+                if (!resource.equals(mergedResources.get(resource.getLinkRelationType()))) {
+                    mergedResources = mergedResources.with(resource.getLinkRelationType(), resource);
+                    mergedIndex = mergedIndex.put(entry.getKey(), resource);
+                }
+            }
+            return mergedResources == resources ? this : new JsonHome(mergedResources, mergedIndex);
+        } else {
+            PersistentHashMap<URI, ResourceLink> mergedResources = other.resources;
+            PersistentTree<String, ResourceLink> mergedIndex = other.relationTypeIndex;
+            for (final Map.Entry<String, ResourceLink> entry : relationTypeIndex) {
+                final ResourceLink resource = entry.getValue();
+                if (!mergedResources.containsKey(resource.getLinkRelationType())) {
+                    mergedResources = mergedResources.with(resource.getLinkRelationType(), resource);
+                    mergedIndex = mergedIndex.put(entry.getKey(), resource);
+                }
+            }
+            return mergedResources == other.resources ? other : new JsonHome(mergedResources, mergedIndex);
         }
-        return new JsonHome(resourceMap);
     }
 
     /**
      * Returns an unmodifiable map containing the resources of this json-home document.
+     * <p/>
+     * Iterating over the map returns the resources ordered by link-relation type.
      *
      * @return mapping of link-relation types to resource links.
      */
     public Map<URI, ResourceLink> getResources() {
-        return resources;
+        return resourceMap;
     }
 
     public boolean hasResourceFor(final URI relationTypeURI) {
@@ -92,6 +187,34 @@ public final class JsonHome {
         return resources.get(relationTypeURI);
     }
 
+    /**
+     * Returns all resources having a link-relation type starting with the specified prefix, ordered by
+     * link-relation type.
+     *
+     * @param relationTypePrefix the prefix of the requested link-relation types.
+     * @return unmodifiable, possibly empty collection of resource links.
+     */
+    public Collection<ResourceLink> getResourcesWithPrefix(final String relationTypePrefix) {
+        if (relationTypePrefix.isEmpty()) {
+            return resourceMap.values();
+        }
+        return new ResourceRange(relationTypePrefix, relationTypePrefix + Character.MAX_VALUE);
+    }
+
+    /**
+     * Returns all resources having a link-relation type inside of the namespace, ordered by link-relation type.
+     * <p/>
+     * The namespace is treated as a path: the namespace http://example.org/rel/product contains
+     * http://example.org/rel/product/details, but not http://example.org/rel/products.
+     *
+     * @param namespace the URI of the namespace, with or without trailing slash.
+     * @return unmodifiable, possibly empty collection of resource links.
+     */
+    public Collection<ResourceLink> getResourcesInNamespace(final URI namespace) {
+        final String prefix = namespace.toString();
+        return getResourcesWithPrefix(prefix.endsWith("/") ? prefix : prefix + "/");
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -112,7 +235,104 @@ public final class JsonHome {
     @Override
     public String toString() {
         return "JsonHome{" +
-                "resources=" + resources.values() +
+                "resources=" + resourceMap.values() +
                 '}';
     }
+
+    /**
+     * Unmodifiable view of the resources, using the PersistentHashMap for lookups and the PersistentTree
+     * for an iteration ordered by link-relation type.
+     */
+    private final class ResourceMap extends AbstractMap<URI, ResourceLink> {
+
+        @Override
+        public Set<Entry<URI, ResourceLink>> entrySet() {
+            return new AbstractSet<Entry<URI, ResourceLink>>() {
+                @Override
+                public Iterator<Entry<URI, ResourceLink>> iterator() {
+                    final Iterator<Entry<String, ResourceLink>> iterator = relationTypeIndex.iterator();
+                    return new Iterator<Entry<URI, ResourceLink>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<URI, ResourceLink> next() {
+                            final ResourceLink resource = iterator.next().getValue();
+                            return new SimpleImmutableEntry<URI, ResourceLink>(resource.getLinkRelationType(), resource);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("JsonHome is immutable");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return resources.size();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return resources.size();
+        }
+
+        @Override
+        public ResourceLink get(final Object key) {
+            return key != null ? resources.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return key != null && resources.containsKey(key);
+        }
+    }
+
+    /**
+     * Unmodifiable view of the resources having a link-relation type in the range [fromKey, toKey).
+     */
+    private final class ResourceRange extends AbstractCollection<ResourceLink> {
+        private final String fromKey;
+        private final String toKey;
+
+        private ResourceRange(final String fromKey, final String toKey) {
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+        }
+
+        @Override
+        public Iterator<ResourceLink> iterator() {
+            final Iterator<Map.Entry<String, ResourceLink>> iterator = relationTypeIndex.iterator(fromKey, toKey);
+            return new Iterator<ResourceLink>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public ResourceLink next() {
+                    return iterator.next().getValue();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("JsonHome is immutable");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (final Iterator<Map.Entry<String, ResourceLink>> i = relationTypeIndex.iterator(fromKey, toKey); i.hasNext(); i.next()) {
+                ++size;
+            }
+            return size;
+        }
+    }
 }
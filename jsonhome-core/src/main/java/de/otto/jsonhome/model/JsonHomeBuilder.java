@@ -17,15 +17,18 @@ package de.otto.jsonhome.model;
 
 import java.net.URI;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+
+import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
 
 /**
  * A builder used to build JsonHome instances.
+ * <p/>
+ * The builder is using the persistent operations of the JsonHome, so copying an existing JsonHome and
+ * building a modified instance shares all unmodified resources with the original document.
  */
 public final class JsonHomeBuilder {
 
-    private final Map<URI, ResourceLink> resources = new HashMap<URI, ResourceLink>();
+    private JsonHome jsonHome = emptyJsonHome();
 
     private JsonHomeBuilder() {
     }
@@ -39,23 +42,35 @@ public final class JsonHomeBuilder {
     }
 
     public JsonHomeBuilder mergeWith(final JsonHome jsonHome) {
-        resources.putAll(jsonHome.getResources());
+        this.jsonHome = this.jsonHome.merge(jsonHome);
         return this;
     }
 
     public JsonHomeBuilder addResource(final ResourceLink resource) {
-        this.resources.put(resource.getLinkRelationType(), resource);
+        this.jsonHome = jsonHome.with(resource);
         return this;
     }
 
     public JsonHomeBuilder addResources(final Collection<ResourceLink> resources) {
         for (final ResourceLink resource : resources) {
-            this.resources.put(resource.getLinkRelationType(), resource);
+            this.jsonHome = jsonHome.with(resource);
+        }
+        return this;
+    }
+
+    public JsonHomeBuilder removeResource(final URI relationType) {
+        this.jsonHome = jsonHome.without(relationType);
+        return this;
+    }
+
+    public JsonHomeBuilder removeResources(final Collection<URI> relationTypes) {
+        for (final URI relationType : relationTypes) {
+            this.jsonHome = jsonHome.without(relationType);
         }
         return this;
     }
 
     public JsonHome build() {
-        return JsonHome.jsonHome(resources.values());
+        return jsonHome;
     }
 }
\ No newline at end of file
@@ -17,10 +17,13 @@ package de.otto.jsonhome.model;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import static de.otto.jsonhome.model.HintsMerger.hintsMerger;
+
 /**
  * A helper class used to handle ResourceLink instances.
  */
@@ -34,11 +37,10 @@ public final class ResourceLinkHelper {
         if (other.isEmpty()) {
             return resourceLinks;
         } else {
-            List<? extends ResourceLink> result = resourceLinks;
-            for (final ResourceLink resourceLink : other) {
-                result = mergeResources(result, resourceLink);
-            }
-            return result;
+            final List<ResourceLink> allCandidates = new ArrayList<ResourceLink>(resourceLinks.size() + other.size());
+            allCandidates.addAll(resourceLinks);
+            allCandidates.addAll(other);
+            return mergeResources(allCandidates);
         }
     }
 
@@ -51,21 +53,72 @@ public final class ResourceLinkHelper {
      */
     public static List<? extends ResourceLink> mergeResources(final List<? extends ResourceLink> resourceLinks,
                                                     final ResourceLink other) {
-        final List<ResourceLink> allCandidates = new ArrayList<ResourceLink>(resourceLinks);
+        final List<ResourceLink> allCandidates = new ArrayList<ResourceLink>(resourceLinks.size() + 1);
+        allCandidates.addAll(resourceLinks);
         if (other != null) {
             allCandidates.add(other);
         }
-        final Map<URI, ResourceLink> resourceLinkCandidates = new LinkedHashMap<URI, ResourceLink>();
-        for (final ResourceLink candidate : allCandidates) {
+        return mergeResources(allCandidates);
+    }
+
+    /**
+     * Merges all ResourceLinks having the same link-relation type into a single
+     * {@link ResourceLink#mergeWith(de.otto.jsonhome.model.ResourceLink) merged} instance.
+     * <p/>
+     * The hints of all links of a link-relation type are merged in a single pass using a {@link HintsMerger},
+     * so no intermediate ResourceLink or Hints instances are created.
+     *
+     * @param resourceLinks the resource links. The collection will not be modified.
+     * @return a list of merged resource links, ordered by the first occurrence of their link-relation type.
+     */
+    public static List<? extends ResourceLink> mergeResources(final Collection<? extends ResourceLink> resourceLinks) {
+        final Map<URI, MergedResourceLink> resourceLinkCandidates = new LinkedHashMap<URI, MergedResourceLink>();
+        for (final ResourceLink candidate : resourceLinks) {
             final URI linkRelationType = candidate.getLinkRelationType();
-            final ResourceLink existingCandidate = resourceLinkCandidates.get(linkRelationType);
+            final MergedResourceLink existingCandidate = resourceLinkCandidates.get(linkRelationType);
             if (existingCandidate != null) {
                 // merge the candidates, they are belonging to the same resource link
-                resourceLinkCandidates.put(linkRelationType, existingCandidate.mergeWith(candidate));
+                existingCandidate.mergeWith(candidate);
             } else {
-                resourceLinkCandidates.put(linkRelationType, candidate);
+                resourceLinkCandidates.put(linkRelationType, new MergedResourceLink(candidate));
+            }
+        }
+        final List<ResourceLink> result = new ArrayList<ResourceLink>(resourceLinkCandidates.size());
+        for (final MergedResourceLink mergedResourceLink : resourceLinkCandidates.values()) {
+            result.add(mergedResourceLink.build());
+        }
+        return result;
+    }
+
+    /**
+     * The ResourceLinks of a link-relation type, merged into the link providing the href of the merged link,
+     * and the merged hints of all links.
+     */
+    private static final class MergedResourceLink {
+        private ResourceLink mergeTarget;
+        private HintsMerger hints;
+
+        private MergedResourceLink(final ResourceLink resourceLink) {
+            this.mergeTarget = resourceLink;
+        }
+
+        private void mergeWith(final ResourceLink other) {
+            if (hints == null) {
+                hints = hintsMerger().merge(mergeTarget.getHints());
+            }
+            mergeTarget = mergeTarget.isDirectLink()
+                    ? mergeTarget.asDirectLink().mergeTarget(other)
+                    : mergeTarget.asTemplatedLink().mergeTarget(other);
+            hints.merge(other.getHints());
+        }
+
+        private ResourceLink build() {
+            if (hints == null) {
+                return mergeTarget;
             }
+            return mergeTarget.isDirectLink()
+                    ? mergeTarget.asDirectLink().withHints(hints.build())
+                    : mergeTarget.asTemplatedLink().withHints(hints.build());
         }
-        return new ArrayList<ResourceLink>(resourceLinkCandidates.values());
     }
-}
\ No newline at end of file
+}
@@ -289,6 +289,17 @@ public final class TemplatedLink implements ResourceLink {
 
     @Override
     public ResourceLink mergeWith(ResourceLink other) {
+        return mergeTarget(other).withHints(hints.mergeWith(other.getHints()));
+    }
+
+    /**
+     * Checks whether the other link can be merged with this link and returns the link providing the
+     * href-template and href-vars of the merged link. Only the hints must be merged with the returned link.
+     *
+     * @param other the other resource link
+     * @return this or other
+     */
+    TemplatedLink mergeTarget(final ResourceLink other) {
         if (other.isDirectLink()) {
             throw new IllegalArgumentException(format(
                     "Merging TemplatedLink with DirectLink is not supported. "
@@ -302,26 +313,20 @@ public final class TemplatedLink implements ResourceLink {
         }
         final TemplatedLink otherTemplatedLink = (TemplatedLink)other;
         if (hrefTemplate.startsWith(otherTemplatedLink.getHrefTemplate())) {
-            return new TemplatedLink(
-                    relationType,
-                    hrefTemplate,
-                    hrefVars,
-                    hints.mergeWith(other.getHints())
-            );
+            return this;
         }
         if (otherTemplatedLink.getHrefTemplate().startsWith(hrefTemplate)) {
-            return new TemplatedLink(
-                    relationType,
-                    otherTemplatedLink.getHrefTemplate(),
-                    otherTemplatedLink.getHrefVars(),
-                    hints.mergeWith(otherTemplatedLink.getHints())
-            );
+            return otherTemplatedLink;
         }
         throw new IllegalArgumentException(format(
                 "Templated resource-links with different uri templates can not be merged. "
                 + "\nTemplatedLink=%s, \nDirectLink=%s", this, other));
     }
 
+    TemplatedLink withHints(final Hints hints) {
+        return hints == this.hints ? this : new TemplatedLink(relationType, hrefTemplate, hrefVars, hints);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -16,13 +16,18 @@
 
 package de.otto.jsonhome.parser;
 
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.metrics.Metrics;
 import de.otto.jsonhome.model.*;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -31,6 +36,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import static de.otto.jsonhome.delta.JsonHomeDelta.jsonHomeDelta;
+import static de.otto.jsonhome.metrics.NoOpMetrics.noOpMetrics;
 import static de.otto.jsonhome.model.Authentication.authReq;
 import static de.otto.jsonhome.model.DirectLink.directLink;
 import static de.otto.jsonhome.model.Documentation.documentation;
@@ -42,6 +49,13 @@ import static de.otto.jsonhome.model.TemplatedLink.templatedLink;
 
 /**
  * A JsonHomeParser that is implemented using Jackson.
+ * <p/>
+ * By default, json-home documents are expected to be JSON. Parsers for the binary
+ * {@link JsonHomeMediaType#APPLICATION_JSONHOME_SMILE} representation are created using
+ * {@link #JacksonJsonHomeParser(de.otto.jsonhome.converter.JsonHomeMediaType)}.
+ * <p/>
+ * The time needed to parse documents ({@link #PARSE_TIME}) and the size of the documents ({@link #DOCUMENT_SIZE})
+ * are recorded per media type, if {@link Metrics} are provided.
  *
  * @author Guido Steinacker
  * @since 26.10.12
@@ -51,11 +65,56 @@ public class JacksonJsonHomeParser implements JsonHomeParser {
     private static final Logger LOG = LoggerFactory.getLogger(JacksonJsonHomeParser.class);
 
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    public static final ObjectMapper SMILE_OBJECT_MAPPER = new ObjectMapper(new SmileFactory());
+
+    public static final String PARSE_TIME = "jsonhome.parser.time";
+    public static final String DOCUMENT_SIZE = "jsonhome.parser.size";
+
+    private final JsonHomeMediaType mediaType;
+    private final ObjectMapper objectMapper;
+    private final Metrics metrics;
+
+    /**
+     * Creates a parser for JSON encoded json-home documents.
+     */
+    public JacksonJsonHomeParser() {
+        this(JsonHomeMediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Creates a parser for json-home documents of the given media type.
+     *
+     * @param mediaType the media type of the parsed documents.
+     */
+    public JacksonJsonHomeParser(final JsonHomeMediaType mediaType) {
+        this(mediaType, noOpMetrics());
+    }
+
+    /**
+     * Creates a parser for json-home documents of the given media type, recording metrics of parsed documents.
+     *
+     * @param mediaType the media type of the parsed documents.
+     * @param metrics the metrics used to record parse time and document sizes.
+     */
+    public JacksonJsonHomeParser(final JsonHomeMediaType mediaType, final Metrics metrics) {
+        this.mediaType = mediaType;
+        this.objectMapper = mediaType.isBinary() ? SMILE_OBJECT_MAPPER : OBJECT_MAPPER;
+        this.metrics = metrics;
+    }
 
     @Override
     public JsonHome parse(final InputStream stream) {
+        final long start = System.nanoTime();
+        final CountingInputStream countingStream = new CountingInputStream(stream);
+        final JsonHome jsonHome = parseJsonHome(countingStream);
+        metrics.recordTime(PARSE_TIME, mediaType.toString(), System.nanoTime() - start);
+        metrics.recordValue(DOCUMENT_SIZE, mediaType.toString(), countingStream.count);
+        return jsonHome;
+    }
+
+    private JsonHome parseJsonHome(final InputStream stream) {
         try {
-            final JsonNode jsonNode = OBJECT_MAPPER.readTree(stream);
+            final JsonNode jsonNode = objectMapper.readTree(stream);
             if (jsonNode != null && jsonNode.has("resources")) {
                 final JsonHomeBuilder builder = jsonHomeBuilder();
                 final JsonNode resourcesNode = jsonNode.get("resources");
@@ -78,6 +137,53 @@ public class JacksonJsonHomeParser implements JsonHomeParser {
         throw new IllegalArgumentException("Unable to parse json-home document: no resources defined.");
     }
 
+    /**
+     * Parses a delta document written by {@link de.otto.jsonhome.converter.JsonHomeWriter#writeDeltaTo}.
+     *
+     * @param stream the stream used to read the delta document.
+     * @return JsonHomeDelta
+     */
+    public JsonHomeDelta parseDelta(final InputStream stream) {
+        try {
+            final JsonNode jsonNode = objectMapper.readTree(stream);
+            if (jsonNode != null && jsonNode.has("from") && jsonNode.has("to")) {
+                final List<URI> removed = new ArrayList<URI>();
+                if (jsonNode.has("removed")) {
+                    final Iterator<JsonNode> iterator = jsonNode.get("removed").getElements();
+                    while (iterator.hasNext()) {
+                        removed.add(URI.create(iterator.next().getTextValue()));
+                    }
+                }
+                return jsonHomeDelta(
+                        jsonNode.get("from").getTextValue(),
+                        jsonNode.get("to").getTextValue(),
+                        resourceLinksFrom(jsonNode.get("added")),
+                        resourceLinksFrom(jsonNode.get("changed")),
+                        removed
+                );
+            }
+        } catch (final JsonProcessingException e) {
+            LOG.error("Unable to parse json-home delta document: {}", e.getMessage());
+            throw new IllegalArgumentException("Error parsing json-home delta document: " + e.getMessage(), e);
+        } catch (final IOException e) {
+            LOG.error("Unable to get json-home delta from stream: {}", e.getMessage());
+            throw new IllegalStateException("Unable to get json-home delta document from stream: " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException("Unable to parse json-home delta document: no versions defined.");
+    }
+
+    private List<ResourceLink> resourceLinksFrom(final JsonNode resourcesNode) {
+        final List<ResourceLink> resourceLinks = new ArrayList<ResourceLink>();
+        if (resourcesNode != null) {
+            final Iterator<String> fieldNames = resourcesNode.getFieldNames();
+            while (fieldNames.hasNext()) {
+                final String fieldName = fieldNames.next();
+                resourceLinks.add(resourceLinkFrom(URI.create(fieldName), resourcesNode.get(fieldName)));
+            }
+        }
+        return resourceLinks;
+    }
+
     private ResourceLink resourceLinkFrom(final URI relationTypeUri, final JsonNode resourceLinkNode) {
         if (resourceLinkNode.has("href")) {
             return directLink(
@@ -193,10 +299,52 @@ public class JacksonJsonHomeParser implements JsonHomeParser {
                     builder.acceptingForPost(iterator.next().getTextValue());
                 }
             }
+            if (hints.has("accept-patch")) {
+                final Iterator<JsonNode> iterator = hints.get("accept-patch").getElements();
+                while (iterator.hasNext()) {
+                    builder.acceptingForPatch(iterator.next().getTextValue());
+                }
+            }
             if (hints.has("status")) {
                 builder.withStatus(Status.valueOf(hints.get("status").getTextValue().toUpperCase()));
             }
         }
         return builder.build();
     }
+
+    /**
+     * An InputStream counting the number of bytes read from the underlying stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.cache;
+
+import de.otto.jsonhome.model.JsonHome;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static de.otto.jsonhome.cache.RenderedPageCache.renderedPageCache;
+import static de.otto.jsonhome.fixtures.LinkFixtures.FOO_LINK;
+import static de.otto.jsonhome.fixtures.LinkFixtures.STOREFRONT_LINK;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RenderedPageCacheTest {
+
+    @Test
+    public void shouldRenderPageOnlyOncePerDocument() throws IOException {
+        // given
+        final RenderedPageCache cache = renderedPageCache();
+        final CountingRenderer renderer = new CountingRenderer();
+        // when
+        final RenderedPage first = cache.get(jsonHome(FOO_LINK), "resources", renderer);
+        final RenderedPage second = cache.get(jsonHome(FOO_LINK), "resources", renderer);
+        // then
+        assertSame(second, first);
+        assertEquals(renderer.count, 1);
+        assertEquals(new String(first.getContent(), "UTF-8"), "page 1");
+    }
+
+    @Test
+    public void shouldRenderPagesPerKey() throws IOException {
+        // given
+        final RenderedPageCache cache = renderedPageCache();
+        final CountingRenderer renderer = new CountingRenderer();
+        final JsonHome jsonHome = jsonHome(FOO_LINK);
+        // when
+        cache.get(jsonHome, "resources /foo", renderer);
+        cache.get(jsonHome, "resources /bar", renderer);
+        // then
+        assertEquals(renderer.count, 2);
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void shouldInvalidatePagesOfPreviousDocument() throws IOException {
+        // given
+        final RenderedPageCache cache = renderedPageCache();
+        final CountingRenderer renderer = new CountingRenderer();
+        final RenderedPage first = cache.get(jsonHome(FOO_LINK), "resources", renderer);
+        // when
+        final RenderedPage second = cache.get(jsonHome(FOO_LINK, STOREFRONT_LINK), "resources", renderer);
+        // then
+        assertEquals(renderer.count, 2);
+        assertNotEquals(second.getEntityTag(), first.getEntityTag());
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void shouldDetectNotModifiedPages() throws IOException {
+        // given
+        final RenderedPage page = renderedPageCache().get(jsonHome(FOO_LINK), "resources", new CountingRenderer());
+        // then
+        assertTrue(page.isNotModified(page.getEntityTag()));
+        assertTrue(page.isNotModified("\"foo\", " + page.getEntityTag()));
+        assertFalse(page.isNotModified("\"foo\""));
+        assertFalse(page.isNotModified(null));
+    }
+
+    @Test
+    public void entityTagShouldContainAllDigitsOfDigest() {
+        // when
+        final RenderedPage page = RenderedPage.renderedPage("page-310".getBytes());
+        // then
+        assertEquals(page.getEntityTag(), "\"004ea869d64d1501f82496623dd2e1c5650156c0\"");
+        assertTrue(page.isNotModified("\"004ea869d64d1501f82496623dd2e1c5650156c0\""));
+    }
+
+    private static class CountingRenderer implements PageRenderer {
+        private int count = 0;
+
+        @Override
+        public void render(final OutputStream stream) throws IOException {
+            stream.write(("page " + ++count).getBytes("UTF-8"));
+        }
+    }
+}
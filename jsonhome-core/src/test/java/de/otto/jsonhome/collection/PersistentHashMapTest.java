@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.collection;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static de.otto.jsonhome.collection.PersistentHashMap.emptyMap;
+import static de.otto.jsonhome.collection.PersistentHashMap.persistentHashMap;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class PersistentHashMapTest {
+
+    @Test
+    public void shouldAddAndGetEntries() {
+        // given
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>emptyMap()
+                .with("foo", 1)
+                .with("bar", 2);
+        // then
+        assertEquals(map.size(), 2);
+        assertEquals(map.get("foo"), Integer.valueOf(1));
+        assertEquals(map.get("bar"), Integer.valueOf(2));
+        assertNull(map.get("foobar"));
+    }
+
+    @Test
+    public void shouldNotModifyOriginalMap() {
+        // given
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>emptyMap().with("foo", 1);
+        // when
+        final PersistentHashMap<String, Integer> updated = map.with("foo", 2).with("bar", 3).without("foo");
+        // then
+        assertEquals(map.get("foo"), Integer.valueOf(1));
+        assertEquals(map.size(), 1);
+        assertFalse(updated.containsKey("foo"));
+        assertEquals(updated.size(), 1);
+    }
+
+    @Test
+    public void shouldReturnSameInstanceIfNothingChanged() {
+        // given
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>emptyMap().with("foo", 1);
+        // then
+        assertSame(map.with("foo", 1), map);
+        assertSame(map.without("bar"), map);
+    }
+
+    @Test
+    public void shouldHandleHashCollisions() {
+        // given
+        PersistentHashMap<Colliding, Integer> map = emptyMap();
+        // when
+        for (int i = 0; i < 10; ++i) {
+            map = map.with(new Colliding(i, i % 2), i);
+        }
+        map = map.without(new Colliding(4, 0));
+        // then
+        assertEquals(map.size(), 9);
+        assertNull(map.get(new Colliding(4, 0)));
+        for (int i = 0; i < 10; ++i) {
+            if (i != 4) {
+                assertEquals(map.get(new Colliding(i, i % 2)), Integer.valueOf(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMap() {
+        // given
+        final Random random = new Random(42);
+        final Map<Colliding, Integer> expected = new HashMap<Colliding, Integer>();
+        PersistentHashMap<Colliding, Integer> map = emptyMap();
+        // when
+        for (int i = 0; i < 20000; ++i) {
+            final int id = random.nextInt(2000);
+            final Colliding key = new Colliding(id, id % 3 == 0 ? id % 16 : id * 0x9E3779B9);
+            final Colliding sameKey = new Colliding(id, key.hash);
+            if (random.nextInt(3) > 0) {
+                map = map.with(key, i);
+                expected.put(sameKey, i);
+            } else {
+                map = map.without(key);
+                expected.remove(sameKey);
+            }
+            assertEquals(map.size(), expected.size());
+        }
+        // then
+        assertEquals(map.asMap(), expected);
+        assertEquals(persistentHashMap(expected), map);
+        int count = 0;
+        for (final Map.Entry<Colliding, Integer> entry : map) {
+            assertEquals(entry.getValue(), expected.get(entry.getKey()));
+            ++count;
+        }
+        assertEquals(count, expected.size());
+    }
+
+    @Test
+    public void shouldRemoveAllEntries() {
+        // given
+        PersistentHashMap<Integer, Integer> map = emptyMap();
+        for (int i = 0; i < 1000; ++i) {
+            map = map.with(i, i);
+        }
+        // when
+        for (int i = 0; i < 1000; ++i) {
+            map = map.without(i);
+        }
+        // then
+        assertTrue(map.isEmpty());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldRejectNullValues() {
+        PersistentHashMap.<String, String>emptyMap().with("foo", null);
+    }
+
+    /**
+     * Key with a configurable hashCode, used to force hash collisions.
+     */
+    private static final class Colliding {
+        private final int id;
+        private final int hash;
+
+        private Colliding(final int id, final int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Colliding && ((Colliding) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
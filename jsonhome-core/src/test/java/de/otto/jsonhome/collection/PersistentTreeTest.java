@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.collection;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static de.otto.jsonhome.collection.PersistentTree.emptyTree;
+import static de.otto.jsonhome.collection.PersistentTree.persistentTree;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class PersistentTreeTest {
+
+    @Test
+    public void shouldIterateEntriesOrderedByKey() {
+        // given
+        final PersistentTree<String, Integer> tree = PersistentTree.<String, Integer>emptyTree()
+                .put("c", 3)
+                .put("a", 1)
+                .put("b", 2);
+        // when
+        final PersistentTree<String, Integer> updated = tree.remove("b").put("d", 4);
+        // then
+        assertEquals(keysOf(tree.iterator()), asList("a", "b", "c"));
+        assertEquals(keysOf(updated.iterator()), asList("a", "c", "d"));
+        assertNull(updated.get("b"));
+    }
+
+    @Test
+    public void shouldIterateRangeOfKeys() {
+        // given
+        PersistentTree<Integer, Integer> tree = emptyTree();
+        for (int i = 0; i < 100; ++i) {
+            tree = tree.put(i, i);
+        }
+        // then
+        assertEquals(keysOf(tree.iterator(10, 14)), asList(10, 11, 12, 13));
+        assertEquals(keysOf(tree.iterator(98, null)), asList(98, 99));
+        assertEquals(keysOf(tree.iterator(null, 2)), asList(0, 1));
+        assertEquals(keysOf(tree.iterator(50, 50)), asList());
+    }
+
+    @Test
+    public void shouldBuildBalancedTreeFromSortedMap() {
+        // given
+        final TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, i * 2);
+        }
+        // when
+        final PersistentTree<Integer, Integer> tree = persistentTree(map);
+        // then
+        assertEquals(tree.size(), 1000);
+        assertEquals(tree.get(500), Integer.valueOf(1000));
+        assertEquals(keysOf(tree.put(1000, 0).iterator(998, null)), asList(998, 999, 1000));
+        assertEquals(keysOf(tree.iterator()), new ArrayList<Integer>(map.keySet()));
+    }
+
+    private static <K> List<K> keysOf(final Iterator<? extends Map.Entry<K, ?>> iterator) {
+        final List<K> keys = new ArrayList<K>();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next().getKey());
+        }
+        return keys;
+    }
+}
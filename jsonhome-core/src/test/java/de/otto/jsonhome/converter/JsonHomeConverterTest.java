@@ -20,14 +20,14 @@ import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.model.ResourceLink;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static de.otto.jsonhome.converter.JsonHomeConverter.toJsonHomeRepresentation;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
 import static de.otto.jsonhome.converter.ResourceLinkConverter.toRepresentation;
-import static de.otto.jsonhome.fixtures.LinkFixtures.ABOUTPAGE_LINK;
-import static de.otto.jsonhome.fixtures.LinkFixtures.STOREFRONT_LINK;
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
 import static de.otto.jsonhome.model.JsonHome.jsonHome;
 import static java.util.Arrays.asList;
 import static org.testng.Assert.*;
@@ -66,5 +66,19 @@ public class JsonHomeConverterTest {
         assertEquals(resources.get(relationType), toRepresentation(ABOUTPAGE_LINK, APPLICATION_JSONHOME).get(relationType));
     }
 
+    @Test
+    public void shouldRenderResourcesOrderedByRelationType() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK, ABOUTPAGE_LINK);
+        // when
+        final Map<String,?> json = toJsonHomeRepresentation(jsonHome);
+        // then
+        @SuppressWarnings("unchecked")
+        final Map<String, ?> resources = (Map<String, ?>) json.get("resources");
+        assertEquals(new ArrayList<String>(resources.keySet()), asList(
+                RESOURCELINK_FOO.toString(),
+                RESOURCELINK_SHOP_PAGE.toString(),
+                RESOURCELINK_SHOP_STOREFRONT.toString()));
+    }
 
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.converter;
+
+import org.testng.annotations.Test;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.*;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeMediaTypeTest {
+
+    @Test
+    public void shouldIgnoreParametersOfContentType() {
+        assertEquals(mediaTypeOfContentType("application/json-home+smile"), APPLICATION_JSONHOME_SMILE);
+        assertEquals(mediaTypeOfContentType("application/json-home; charset=UTF-8"), APPLICATION_JSONHOME);
+        assertEquals(mediaTypeOfContentType("Application/JSON;charset=UTF-8"), APPLICATION_JSON);
+    }
+
+    @Test
+    public void shouldDefaultToApplicationJson() {
+        assertEquals(mediaTypeOfContentType(null), APPLICATION_JSON);
+        assertEquals(mediaTypeOfContentType("text/plain"), APPLICATION_JSON);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.converter;
+
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import de.otto.jsonhome.parser.JacksonJsonHomeParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+
+import static de.otto.jsonhome.converter.JsonHomeConverter.toRepresentation;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
+import static de.otto.jsonhome.converter.JsonHomeWriter.toByteArray;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeDeltaTo;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeTo;
+import static de.otto.jsonhome.delta.JsonHomeDelta.jsonHomeDelta;
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.Allow.*;
+import static de.otto.jsonhome.model.Authentication.authReq;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Documentation.documentation;
+import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static de.otto.jsonhome.model.Precondition.ETAG;
+import static de.otto.jsonhome.model.Status.DEPRECATED;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeWriterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final ResourceLink PRODUCT_LINK = directLink(
+            URI.create("http://example.org/rel/product"),
+            URI.create("http://example.org/products"),
+            hintsBuilder()
+                    .allowing(GET, PUT, POST, PATCH)
+                    .representedAs("text/html", "application/json")
+                    .acceptingForPut("application/json")
+                    .acceptingForPost("application/x-www-form-urlencoded")
+                    .acceptingForPatch("application/json-patch")
+                    .acceptingRanges("bytes")
+                    .preferring("return-minimal")
+                    .requiring(ETAG)
+                    .withAuthRequired(asList(authReq("Basic", asList("foo", "bar")), authReq("Digest")))
+                    .withStatus(DEPRECATED)
+                    .with(documentation(asList("A product", "\"quoted\""), "<p>Details</p>", URI.create("http://example.org/docs/product")))
+                    .build()
+    );
+
+    @Test
+    public void shouldWriteSameJsonHomeDocumentAsConverter() throws IOException {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK, PRODUCT_LINK);
+        // when
+        final String json = new String(toByteArray(jsonHome, APPLICATION_JSONHOME), "UTF-8");
+        // then
+        assertEquals(json, OBJECT_MAPPER.writeValueAsString(toRepresentation(jsonHome, APPLICATION_JSONHOME)));
+    }
+
+    @Test
+    public void shouldWriteSameJsonDocumentAsConverter() throws IOException {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK, PRODUCT_LINK);
+        // when
+        final String json = new String(toByteArray(jsonHome, APPLICATION_JSON), "UTF-8");
+        // then
+        assertEquals(json, OBJECT_MAPPER.writeValueAsString(toRepresentation(jsonHome, APPLICATION_JSON)));
+    }
+
+    @Test
+    public void shouldWriteSmileDocumentReadableByParser() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK);
+        // when
+        final byte[] smile = toByteArray(jsonHome, APPLICATION_JSONHOME_SMILE);
+        // then
+        assertEquals(new JacksonJsonHomeParser(APPLICATION_JSONHOME_SMILE).parse(new ByteArrayInputStream(smile)), jsonHome);
+    }
+
+    @Test
+    public void smileDocumentShouldBeSmallerThanJson() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK, PRODUCT_LINK);
+        // when
+        final byte[] smile = toByteArray(jsonHome, APPLICATION_JSONHOME_SMILE);
+        // then
+        assertTrue(smile.length < toByteArray(jsonHome, APPLICATION_JSON).length);
+    }
+
+    @Test
+    public void shouldWriteDeltaReadableByParser() throws IOException {
+        // given
+        final JsonHomeDelta delta = jsonHomeDelta(
+                "1", jsonHome(STOREFRONT_LINK, FOO_LINK),
+                "2", jsonHome(ABOUTPAGE_LINK, PRODUCT_LINK, FOO_LINK));
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // when
+        writeDeltaTo(delta, APPLICATION_JSON, stream);
+        // then
+        assertEquals(new JacksonJsonHomeParser().parseDelta(new ByteArrayInputStream(stream.toByteArray())), delta);
+    }
+
+    @Test
+    public void shouldWriteEmptyJsonHome() throws IOException {
+        // given
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // when
+        writeTo(emptyJsonHome(), APPLICATION_JSONHOME, stream);
+        // then
+        assertEquals(stream.toString("UTF-8"), "{\"resources\":{}}");
+    }
+
+}
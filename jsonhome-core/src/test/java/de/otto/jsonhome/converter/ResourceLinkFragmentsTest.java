@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.converter;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import de.otto.jsonhome.parser.JacksonJsonHomeParser;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
+import static de.otto.jsonhome.converter.JsonHomeWriter.toByteArray;
+import static de.otto.jsonhome.converter.ResourceLinkFragments.resourceLinkFragments;
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.Allow.GET;
+import static de.otto.jsonhome.model.Allow.PUT;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Documentation.documentation;
+import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class ResourceLinkFragmentsTest {
+
+    private static final ResourceLink PRODUCT_LINK = directLink(
+            URI.create("http://example.org/rel/product"),
+            URI.create("http://example.org/products"),
+            hintsBuilder()
+                    .allowing(GET, PUT)
+                    .representedAs("application/json")
+                    .with(documentation(asList("A product"), "<p>Details</p>", null))
+                    .build()
+    );
+
+    @Test
+    public void shouldWriteSameJsonDocumentsAsWriter() throws Exception {
+        // given
+        final ResourceLinkFragments fragments = resourceLinkFragments();
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK, PRODUCT_LINK);
+        // then
+        assertEquals(new String(fragments.toByteArray(jsonHome, APPLICATION_JSON), "UTF-8"),
+                new String(toByteArray(jsonHome, APPLICATION_JSON), "UTF-8"));
+        assertEquals(new String(fragments.toByteArray(jsonHome, APPLICATION_JSONHOME), "UTF-8"),
+                new String(toByteArray(jsonHome, APPLICATION_JSONHOME), "UTF-8"));
+        assertEquals(new String(fragments.toByteArray(emptyJsonHome(), APPLICATION_JSON), "UTF-8"),
+                new String(toByteArray(emptyJsonHome(), APPLICATION_JSON), "UTF-8"));
+    }
+
+    @Test
+    public void shouldWriteParseableSmileDocuments() {
+        // given
+        final ResourceLinkFragments fragments = resourceLinkFragments();
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK, FOO_LINK, PRODUCT_LINK);
+        // when
+        final byte[] smile = fragments.toByteArray(jsonHome, APPLICATION_JSONHOME_SMILE);
+        // then
+        final JsonHome parsed = new JacksonJsonHomeParser(APPLICATION_JSONHOME_SMILE).parse(new ByteArrayInputStream(smile));
+        assertEquals(parsed, jsonHome);
+    }
+
+    @Test
+    public void shouldSerializeResourceLinksOnlyOnce() {
+        // given
+        final ResourceLinkFragments fragments = resourceLinkFragments();
+        final byte[] fragment = fragments.fragmentOf(PRODUCT_LINK, APPLICATION_JSON);
+        // when
+        fragments.toByteArray(jsonHome(PRODUCT_LINK, FOO_LINK), APPLICATION_JSON);
+        fragments.toByteArray(jsonHome(PRODUCT_LINK), APPLICATION_JSON);
+        // then
+        assertSame(fragments.fragmentOf(PRODUCT_LINK, APPLICATION_JSON), fragment);
+        assertEquals(fragments.size(APPLICATION_JSON), 2);
+        assertEquals(fragments.size(APPLICATION_JSONHOME), 0);
+    }
+
+    @Test
+    public void shouldLookupFragmentsByIdentityOfResourceLinks() {
+        // given
+        final ResourceLinkFragments fragments = resourceLinkFragments();
+        final ResourceLink equalLink = directLink(PRODUCT_LINK.getLinkRelationType(), PRODUCT_LINK.asDirectLink().getHref(), PRODUCT_LINK.getHints());
+        final byte[] fragment = fragments.fragmentOf(PRODUCT_LINK, APPLICATION_JSON);
+        // when
+        final byte[] equalFragment = fragments.fragmentOf(equalLink, APPLICATION_JSON);
+        // then
+        assertEquals(equalFragment, fragment);
+        assertSame(fragments.fragmentOf(PRODUCT_LINK, APPLICATION_JSON), fragment);
+        assertEquals(fragments.size(APPLICATION_JSON), 2);
+    }
+}
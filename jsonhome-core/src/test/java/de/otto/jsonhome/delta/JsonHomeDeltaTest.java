@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.delta;
+
+import de.otto.jsonhome.model.DirectLink;
+import de.otto.jsonhome.model.JsonHome;
+import org.testng.annotations.Test;
+
+import static de.otto.jsonhome.delta.JsonHomeDelta.jsonHomeDelta;
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeDeltaTest {
+
+    private static final DirectLink CHANGED_STOREFRONT_LINK = directLink(
+            RESOURCELINK_SHOP_STOREFRONT, create("http://example.org/new-storefront"), emptyHints());
+
+    @Test
+    public void shouldFindAddedChangedAndRemovedResources() {
+        // given
+        final JsonHome from = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK);
+        final JsonHome to = jsonHome(CHANGED_STOREFRONT_LINK, FOO_LINK, ABOUTPAGE_LINK);
+        // when
+        final JsonHomeDelta delta = jsonHomeDelta("1", from, "2", to);
+        // then
+        assertEquals(delta.getFromVersion(), "1");
+        assertEquals(delta.getToVersion(), "2");
+        assertEquals(delta.getAdded(), asList(ABOUTPAGE_LINK));
+        assertEquals(delta.getChanged(), asList(CHANGED_STOREFRONT_LINK));
+        assertEquals(delta.getRemoved(), asList(RESOURCELINK_SHOP_PAGES));
+    }
+
+    @Test
+    public void shouldBeEmptyForEqualDocuments() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        // when
+        final JsonHomeDelta delta = jsonHomeDelta("1", jsonHome, "1", jsonHome(FOO_LINK, STOREFRONT_LINK));
+        // then
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void applyingDeltaShouldResultInNewerDocument() {
+        // given
+        final JsonHome from = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK);
+        final JsonHome to = jsonHome(CHANGED_STOREFRONT_LINK, FOO_LINK, ABOUTPAGE_LINK);
+        // when
+        final JsonHome result = jsonHomeDelta("1", from, "2", to).applyTo(from);
+        // then
+        assertEquals(result, to);
+    }
+
+}
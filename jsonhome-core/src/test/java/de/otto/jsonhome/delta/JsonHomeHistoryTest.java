@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.delta;
+
+import de.otto.jsonhome.model.JsonHome;
+import org.testng.annotations.Test;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.*;
+import static de.otto.jsonhome.delta.JsonHomeHistory.*;
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeHistoryTest {
+
+    @Test
+    public void versionShouldDependOnContentOnly() {
+        // given
+        final JsonHome first = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        final JsonHome second = jsonHome(FOO_LINK, STOREFRONT_LINK);
+        // when
+        final String firstVersion = versionOf(first);
+        final String secondVersion = versionOf(second);
+        // then
+        assertEquals(firstVersion, secondVersion);
+        assertNotEquals(firstVersion, versionOf(jsonHome(FOO_LINK)));
+    }
+
+    @Test
+    public void digestShouldKeepLeadingZeros() {
+        // when
+        final String digest = sha1Of("page-310".getBytes());
+        // then
+        assertEquals(digest, "004ea869d64d1501f82496623dd2e1c5650156c0");
+    }
+
+    @Test
+    public void shouldKeepVersionOfUnchangedDocument() {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String version = history.update(jsonHome(STOREFRONT_LINK, FOO_LINK));
+        // when
+        final String sameVersion = history.update(jsonHome(STOREFRONT_LINK, FOO_LINK));
+        // then
+        assertEquals(sameVersion, version);
+        assertEquals(history.getCurrentVersion(), version);
+    }
+
+    @Test
+    public void shouldReturnDeltaSinceKnownVersion() {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String oldVersion = history.update(jsonHome(STOREFRONT_LINK, FOO_LINK));
+        final String newVersion = history.update(jsonHome(STOREFRONT_LINK, ABOUTPAGE_LINK));
+        // when
+        final JsonHomeDelta delta = history.deltaSince(oldVersion);
+        // then
+        assertEquals(delta.getFromVersion(), oldVersion);
+        assertEquals(delta.getToVersion(), newVersion);
+        assertEquals(delta.getAdded(), asList(ABOUTPAGE_LINK));
+        assertEquals(delta.getRemoved(), asList(RESOURCELINK_FOO));
+    }
+
+    @Test
+    public void shouldForgetVersionsExceedingMaxVersions() {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory(2);
+        final String firstVersion = history.update(jsonHome(STOREFRONT_LINK));
+        final String secondVersion = history.update(jsonHome(FOO_LINK));
+        // when
+        history.update(jsonHome(ABOUTPAGE_LINK));
+        // then
+        assertFalse(history.contains(firstVersion));
+        assertTrue(history.contains(secondVersion));
+        assertNull(history.deltaSince(firstVersion));
+    }
+
+    @Test
+    public void shouldParseVersionsOfEntityTags() {
+        assertEquals(versionsOf(entityTagOf("42")), asList("42"));
+        assertEquals(versionsOf("\"1\", W/\"2\""), asList("1", "2"));
+        assertTrue(versionsOf(null).isEmpty());
+    }
+
+    @Test
+    public void shouldParseVersionsOfRepresentation() {
+        final String header = entityTagOf("1", APPLICATION_JSON) + ", " + entityTagOf("2", APPLICATION_JSONHOME_SMILE);
+        assertEquals(versionsOf(header, APPLICATION_JSONHOME_SMILE), asList("2"));
+        assertEquals(versionsOf(header, APPLICATION_JSON), asList("1"));
+        assertTrue(versionsOf(header, APPLICATION_JSONHOME).isEmpty());
+    }
+
+    @Test
+    public void shouldParseVersionOfEntityTagOfAnyRepresentation() {
+        assertEquals(versionOfEntityTag(entityTagOf("42", APPLICATION_JSONHOME)), "42");
+        assertEquals(versionOfEntityTag(entityTagOf("42", APPLICATION_JSON)), "42");
+        assertEquals(versionOfEntityTag(entityTagOf("42")), "42");
+        assertNull(versionOfEntityTag(null));
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.matcher;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.matcher.ResourceLinkMatcher.resourceLinkMatcher;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.HrefVar.hrefVar;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static de.otto.jsonhome.model.TemplatedLink.templatedLink;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class ResourceLinkMatcherTest {
+
+    private static final URI VAR_TYPE_PRODUCT_ID = create("http://example.org/vartype/productId");
+    private static final URI VAR_TYPE_REVIEW_ID = create("http://example.org/vartype/reviewId");
+    private static final URI VAR_TYPE_QUERY = create("http://example.org/vartype/query");
+    private static final URI VAR_TYPE_FORMAT = create("http://example.org/vartype/format");
+
+    private static final ResourceLink PRODUCT_LINK = templatedLink(
+            create("http://example.org/rel/product"),
+            "http://example.org/products/{productId}",
+            asList(hrefVar("productId", VAR_TYPE_PRODUCT_ID)),
+            emptyHints());
+    private static final ResourceLink REVIEW_LINK = templatedLink(
+            create("http://example.org/rel/review"),
+            "http://example.org/products/{productId}/reviews/{reviewId}",
+            asList(hrefVar("productId", VAR_TYPE_PRODUCT_ID), hrefVar("reviewId", VAR_TYPE_REVIEW_ID)),
+            emptyHints());
+    private static final ResourceLink SEARCH_LINK = templatedLink(
+            create("http://example.org/rel/search"),
+            "http://example.org/products{?query}",
+            asList(hrefVar("query", VAR_TYPE_QUERY)),
+            emptyHints());
+    private static final ResourceLink BESTSELLERS_LINK = directLink(
+            create("http://example.org/rel/bestsellers"),
+            create("http://example.org/products/bestsellers"),
+            emptyHints());
+
+    @Test
+    public void shouldMatchDirectLink() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(STOREFRONT_LINK, SHOPPAGES_LINK));
+        // when
+        final ResourceLinkMatch match = matcher.match(ABS_STOREFRONT_HREF);
+        // then
+        assertNotNull(match);
+        assertEquals(match.getResourceLink(), STOREFRONT_LINK);
+        assertTrue(match.getHrefVarValues().isEmpty());
+    }
+
+    @Test
+    public void shouldMatchTemplatedLinkAndExtractHrefVars() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(PRODUCT_LINK, REVIEW_LINK));
+        // when
+        final ResourceLinkMatch match = matcher.match(create("http://example.org/products/42/reviews/4711"));
+        // then
+        assertEquals(match.getLinkRelationType(), REVIEW_LINK.getLinkRelationType());
+        assertEquals(match.getHrefVarValue(VAR_TYPE_PRODUCT_ID), "42");
+        assertEquals(match.getHrefVarValue(VAR_TYPE_REVIEW_ID), "4711");
+    }
+
+    @Test
+    public void shouldPreferLiteralSegmentsOverVariables() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(PRODUCT_LINK, BESTSELLERS_LINK));
+        // then
+        assertEquals(matcher.relationTypeOf(create("http://example.org/products/bestsellers")), BESTSELLERS_LINK.getLinkRelationType());
+        assertEquals(matcher.relationTypeOf(create("http://example.org/products/bestseller")), PRODUCT_LINK.getLinkRelationType());
+    }
+
+    @Test
+    public void shouldBacktrackIfLiteralPathDoesNotMatch() {
+        // given
+        final ResourceLink bestsellerReviews = directLink(
+                create("http://example.org/rel/bestseller-reviews"),
+                create("http://example.org/products/bestsellers/reviews"),
+                emptyHints());
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(REVIEW_LINK, bestsellerReviews));
+        // when
+        final ResourceLinkMatch match = matcher.match(create("http://example.org/products/bestsellers/reviews/1"));
+        // then
+        assertEquals(match.getResourceLink(), REVIEW_LINK);
+        assertEquals(match.getHrefVarValue(VAR_TYPE_PRODUCT_ID), "bestsellers");
+    }
+
+    @Test
+    public void shouldExtractQueryVars() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(PRODUCT_LINK, SEARCH_LINK));
+        // when
+        final ResourceLinkMatch match = matcher.match(create("http://example.org/products?query=red+shoes&page=2"));
+        // then
+        assertEquals(match.getResourceLink(), SEARCH_LINK);
+        assertEquals(match.getHrefVarValue(VAR_TYPE_QUERY), "red shoes");
+        assertEquals(match.getHrefVarValues().size(), 1);
+    }
+
+    @Test
+    public void shouldMatchSegmentWithLiteralSuffix() {
+        // given
+        final ResourceLink exportLink = templatedLink(
+                create("http://example.org/rel/export"),
+                "/exports/{productId}.json",
+                asList(hrefVar("productId", VAR_TYPE_PRODUCT_ID)),
+                emptyHints());
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(exportLink));
+        // when
+        final ResourceLinkMatch match = matcher.match(create("http://example.org/exports/42.json"));
+        // then
+        assertEquals(match.getResourceLink(), exportLink);
+        assertEquals(match.getHrefVarValue(VAR_TYPE_PRODUCT_ID), "42");
+    }
+
+    @Test
+    public void shouldIgnoreUnsupportedHrefTemplates() {
+        // given
+        final ResourceLink exportLink = templatedLink(
+                create("http://example.org/rel/export"),
+                "/exports/{productId}{.format}",
+                asList(hrefVar("productId", VAR_TYPE_PRODUCT_ID), hrefVar("format", VAR_TYPE_FORMAT)),
+                emptyHints());
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(exportLink, PRODUCT_LINK));
+        // then
+        assertNull(matcher.match(create("http://example.org/exports/42.json")));
+        assertEquals(matcher.relationTypeOf(create("http://example.org/products/42")), PRODUCT_LINK.getLinkRelationType());
+    }
+
+    @Test
+    public void shouldMatchRelativeHrefTemplatesForAnyAuthority() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(ABOUTPAGE_LINK));
+        // when
+        final ResourceLinkMatch match = matcher.match(create("http://www.example.com/pages/about%20us"));
+        // then
+        assertEquals(match.getResourceLink(), ABOUTPAGE_LINK);
+        assertEquals(match.getHrefVarValue(VAR_TYPE_PAGEID), "about us");
+    }
+
+    @Test
+    public void shouldNotMatchDifferentAuthority() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(jsonHome(PRODUCT_LINK));
+        // then
+        assertNull(matcher.match(create("http://other.example.org/products/42")));
+        assertNull(matcher.relationTypeOf(create("http://example.org/products/42/details")));
+    }
+
+    @Test
+    public void shouldMatchNothingInEmptyJsonHome() {
+        // given
+        final ResourceLinkMatcher matcher = resourceLinkMatcher(JsonHome.emptyJsonHome());
+        // then
+        assertNull(matcher.match(create("http://example.org/")));
+    }
+}
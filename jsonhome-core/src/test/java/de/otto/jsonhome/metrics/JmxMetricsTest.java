@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.metrics;
+
+import de.otto.jsonhome.parser.JacksonJsonHomeParser;
+import org.testng.annotations.Test;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.metrics.JmxMetrics.jmxMetrics;
+import static de.otto.jsonhome.parser.JacksonJsonHomeParser.DOCUMENT_SIZE;
+import static de.otto.jsonhome.parser.JacksonJsonHomeParser.PARSE_TIME;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JmxMetricsTest {
+
+    @Test
+    public void shouldExportCountSumAndMaxOfValues() throws Exception {
+        // given
+        final JmxMetrics metrics = jmxMetrics();
+        // when
+        metrics.recordValue("size", "foo", 10);
+        metrics.recordValue("size", "foo", 30);
+        metrics.recordValue("size", "foo", 20);
+        // then
+        assertEquals(metrics.getAttribute("size[foo].count"), 3L);
+        assertEquals(metrics.getAttribute("size[foo].sum"), 60L);
+        assertEquals(metrics.getAttribute("size[foo].max"), 30L);
+    }
+
+    @Test
+    public void shouldExportOnlyCountOfCounters() throws Exception {
+        // given
+        final JmxMetrics metrics = jmxMetrics();
+        // when
+        metrics.increment("hits", "foo");
+        metrics.increment("hits", "foo");
+        // then
+        assertEquals(metrics.getAttribute("hits[foo].count"), 2L);
+        final MBeanAttributeInfo[] attributes = metrics.getMBeanInfo().getAttributes();
+        assertEquals(attributes.length, 1);
+        assertEquals(attributes[0].getName(), "hits[foo].count");
+    }
+
+    @Test(expectedExceptions = AttributeNotFoundException.class)
+    public void shouldFailToGetUnknownAttribute() throws Exception {
+        jmxMetrics().getAttribute("unknown[foo].count");
+    }
+
+    @Test
+    public void shouldBeAccessibleUsingMBeanServer() throws Exception {
+        // given
+        final JmxMetrics metrics = jmxMetrics("de.otto.jsonhome:type=Metrics,name=test").register();
+        try {
+            // when
+            metrics.recordTime("time", "foo", 5000000L);
+            // then
+            final Object sum = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName("de.otto.jsonhome:type=Metrics,name=test"), "time[foo].sum");
+            assertEquals(sum, 5000L);
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void shouldRecordParseTimeAndSizeOfDocuments() throws Exception {
+        // given
+        final JmxMetrics metrics = jmxMetrics();
+        final byte[] document = "{\"resources\":{}}".getBytes("UTF-8");
+        // when
+        new JacksonJsonHomeParser(APPLICATION_JSON, metrics).parse(new ByteArrayInputStream(document));
+        // then
+        assertEquals(metrics.getAttribute(PARSE_TIME + "[application/json].count"), 1L);
+        assertEquals(metrics.getAttribute(DOCUMENT_SIZE + "[application/json].sum"), (long) document.length);
+    }
+}
@@ -22,10 +22,12 @@ import java.util.Set;
 import static de.otto.jsonhome.model.Allow.*;
 import static de.otto.jsonhome.model.Authentication.authReq;
 import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.HintsMerger.hintsMerger;
 import static de.otto.jsonhome.model.Precondition.ETAG;
 import static java.util.Arrays.asList;
 import static java.util.EnumSet.of;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author Guido Steinacker
@@ -196,4 +198,45 @@ public class HintsTest {
         assertEquals(merged.getAllows(), of(GET, PUT));
         assertEquals(merged.getAuthReq(), asList(authReq("Basic", asList("foo", "private"))));
     }
+
+    @Test
+    public void shouldMergeManyHintsLikeMergingOneByOne() {
+        // given
+        final Hints first = hintsBuilder()
+                .allowing(of(GET, PUT))
+                .representedAs("text/html", "text/plain")
+                .acceptingForPut("bar/foo")
+                .withAuthRequired(asList(authReq("Basic", asList("private"))))
+                .build();
+        final Hints second = hintsBuilder()
+                .allowing(of(GET, POST))
+                .representedAs("application/json", "text/html")
+                .acceptingForPost("foo/bar")
+                .requiring(ETAG)
+                .withStatus(Status.DEPRECATED)
+                .build();
+        final Hints third = hintsBuilder()
+                .allowing(of(DELETE))
+                .representedAs("text/plain", "application/xml")
+                .preferring("return=minimal")
+                .withAuthRequired(asList(authReq("Basic", asList("foo")), authReq("Digest", asList("private"))))
+                .build();
+        // when
+        final Hints merged = hintsMerger().merge(first).merge(second).merge(third).build();
+        // then
+        assertEquals(merged, first.mergeWith(second).mergeWith(third));
+        assertEquals(merged.getRepresentations(), asList("text/html", "text/plain", "application/json", "application/xml"));
+    }
+
+    @Test
+    public void shouldKeepHintsWhenMergingEqualHints() {
+        // given
+        final Hints hints = hintsBuilder().allowing(of(GET)).representedAs("text/html").build();
+        final Hints equalHints = hintsBuilder().allowing(of(GET)).representedAs("text/html").build();
+        // when
+        final Hints merged = hintsMerger().merge(hints).merge(equalHints).merge(hints).build();
+        // then
+        assertSame(merged, hints);
+        assertSame(hintsMerger().build(), Hints.emptyHints());
+    }
 }
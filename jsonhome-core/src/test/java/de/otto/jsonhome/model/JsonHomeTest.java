@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.model;
+
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeTest {
+
+    @Test
+    public void shouldIterateResourcesOrderedByRelationType() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK, ABOUTPAGE_LINK);
+        // when
+        final List<URI> relationTypes = new ArrayList<URI>(jsonHome.getResources().keySet());
+        // then
+        assertEquals(relationTypes, asList(
+                RESOURCELINK_FOO,
+                RESOURCELINK_SHOP_PAGE,
+                RESOURCELINK_SHOP_PAGES,
+                RESOURCELINK_SHOP_STOREFRONT));
+    }
+
+    @Test
+    public void shouldFindResourcesWithPrefix() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK, ABOUTPAGE_LINK);
+        // when
+        final Collection<ResourceLink> resources = jsonHome.getResourcesWithPrefix(RESOURCELINK_SHOP_PAGE.toString());
+        // then
+        assertEquals(new ArrayList<ResourceLink>(resources), asList(ABOUTPAGE_LINK, SHOPPAGES_LINK));
+    }
+
+    @Test
+    public void shouldReturnAllResourcesForEmptyPrefix() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        // when
+        final Collection<ResourceLink> resources = jsonHome.getResourcesWithPrefix("");
+        // then
+        assertEquals(new ArrayList<ResourceLink>(resources), asList(FOO_LINK, STOREFRONT_LINK));
+    }
+
+    @Test
+    public void shouldFindResourcesInNamespace() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK, ABOUTPAGE_LINK);
+        // when
+        final Collection<ResourceLink> resources = jsonHome.getResourcesInNamespace(
+                URI.create("http://example.org/json-home/rel/shop"));
+        // then
+        assertEquals(new ArrayList<ResourceLink>(resources), asList(ABOUTPAGE_LINK, SHOPPAGES_LINK, STOREFRONT_LINK));
+    }
+
+    @Test
+    public void shouldNotFindResourcesOutsideOfNamespace() {
+        // given
+        final JsonHome jsonHome = jsonHome(SHOPPAGES_LINK, ABOUTPAGE_LINK);
+        // when
+        final Collection<ResourceLink> resources = jsonHome.getResourcesInNamespace(RESOURCELINK_SHOP_PAGE);
+        // then
+        assertTrue(resources.isEmpty());
+    }
+
+    @Test
+    public void shouldBeEqualIndependentOfInsertionOrder() {
+        // given
+        final JsonHome first = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        final JsonHome second = jsonHome(FOO_LINK, STOREFRONT_LINK);
+        // then
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    public void shouldAddAndRemoveResourcesWithoutModifyingOriginal() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        // when
+        final JsonHome updated = jsonHome.with(ABOUTPAGE_LINK).without(RESOURCELINK_FOO);
+        // then
+        assertEquals(jsonHome, jsonHome(STOREFRONT_LINK, FOO_LINK));
+        assertEquals(updated, jsonHome(ABOUTPAGE_LINK, STOREFRONT_LINK));
+        assertEquals(new ArrayList<ResourceLink>(updated.getResources().values()), asList(ABOUTPAGE_LINK, STOREFRONT_LINK));
+        assertEquals(new ArrayList<ResourceLink>(updated.getResourcesWithPrefix(RESOURCELINK_SHOP_PAGE.toString())), asList(ABOUTPAGE_LINK));
+    }
+
+    @Test
+    public void shouldReturnSameInstanceForUnmodifiedDocument() {
+        // given
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK);
+        // then
+        assertSame(jsonHome.with(FOO_LINK), jsonHome);
+        assertSame(jsonHome.without(RESOURCELINK_SHOP_PAGE), jsonHome);
+        assertSame(jsonHome.merge(jsonHome(FOO_LINK)), jsonHome);
+        assertSame(emptyJsonHome().merge(jsonHome), jsonHome);
+    }
+
+    @Test
+    public void shouldReplaceResourcesWithSameRelationTypeOnMerge() {
+        // given
+        final DirectLink otherFooLink = directLink(RESOURCELINK_FOO, ABS_STOREFRONT_HREF, FOO_LINK.getHints());
+        final JsonHome jsonHome = jsonHome(STOREFRONT_LINK, FOO_LINK, SHOPPAGES_LINK);
+        // when
+        final JsonHome mergedIntoLarger = jsonHome.merge(jsonHome(otherFooLink));
+        final JsonHome mergedIntoSmaller = jsonHome(otherFooLink).merge(jsonHome);
+        // then
+        assertEquals(mergedIntoLarger, jsonHome(STOREFRONT_LINK, otherFooLink, SHOPPAGES_LINK));
+        assertEquals(mergedIntoSmaller, jsonHome);
+    }
+}
@@ -22,6 +22,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static de.otto.jsonhome.fixtures.LinkFixtures.*;
+import static de.otto.jsonhome.model.Allow.PUT;
+import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.TemplatedLink.templatedLink;
 import static de.otto.jsonhome.model.ResourceLinkHelper.mergeResources;
 import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
@@ -90,4 +93,22 @@ public class ResourceLinkHelperTest {
         // then
         assertEquals(resourceLinks, asList(STOREFRONT_LINK));
     }
+
+    @Test
+    public void mergingManyLinksShouldMergeLinksOfSameRelationType() throws Exception {
+        // given
+        final TemplatedLink pageWithQuery = templatedLink(
+                RESOURCELINK_SHOP_PAGE,
+                REL_PAGE_HREF + "{?format}",
+                ABOUTPAGE_LINK.getHrefVars(),
+                hintsBuilder().allowing(PUT).acceptingForPut("application/json").build());
+        final List<ResourceLink> resourceLinks = asList(ABOUTPAGE_LINK, STOREFRONT_LINK, pageWithQuery, ABOUTPAGE_LINK);
+        // when
+        final List<? extends ResourceLink> merged = mergeResources(resourceLinks);
+        // then
+        assertEquals(merged, asList(
+                ABOUTPAGE_LINK.mergeWith(pageWithQuery).mergeWith(ABOUTPAGE_LINK),
+                STOREFRONT_LINK));
+        assertEquals(merged.get(0).asTemplatedLink().getHrefTemplate(), REL_PAGE_HREF + "{?format}");
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checks a directory tree for added, removed or modified files and runs a listener on changes.
+ * <p/>
+ * Used to reload json-home documents when the Markdown documents in the docRootDir are changed.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class DirectoryWatcher {
+
+    private static Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private final File directory;
+    private final Runnable listener;
+    private ScheduledExecutorService scheduler;
+    private long fingerprint;
+
+    private DirectoryWatcher(final File directory, final Runnable listener) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException(directory + " is not a directory.");
+        }
+        this.directory = directory;
+        this.listener = listener;
+    }
+
+    public static DirectoryWatcher directoryWatcher(final File directory, final Runnable listener) {
+        return new DirectoryWatcher(directory, listener);
+    }
+
+    /**
+     * Starts watching the directory.
+     *
+     * @param periodSeconds number of seconds between two checks of the directory.
+     */
+    public synchronized void start(final int periodSeconds) {
+        if (scheduler != null) {
+            throw new IllegalStateException("DirectoryWatcher is already started.");
+        }
+        fingerprint = fingerprintOf(directory);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "jsonhome-directory-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkForChanges();
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        LOG.info("Watching {} for changes every {} seconds.", directory, periodSeconds);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Checks the directory and runs the listener, if a file was added, removed or modified since the last check.
+     *
+     * @return true if the directory has changed, false otherwise.
+     */
+    public synchronized boolean checkForChanges() {
+        final long current = fingerprintOf(directory);
+        if (current == fingerprint) {
+            return false;
+        }
+        fingerprint = current;
+        LOG.info("Detected changes in {}", directory);
+        try {
+            listener.run();
+        } catch (final RuntimeException e) {
+            LOG.error("Failed to handle changes in " + directory + ": " + e.getMessage(), e);
+        }
+        return true;
+    }
+
+    private static long fingerprintOf(final File file) {
+        long fingerprint = 31 * file.getPath().hashCode() + file.lastModified();
+        fingerprint = 31 * fingerprint + file.length();
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                fingerprint += fingerprintOf(child);
+            }
+        }
+        return fingerprint;
+    }
+}
@@ -15,20 +15,25 @@
  */
 package de.otto.jsonhome.generator;
 
+import de.otto.jsonhome.metrics.Metrics;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.model.ResourceLink;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+import static de.otto.jsonhome.metrics.NoOpMetrics.noOpMetrics;
 import static de.otto.jsonhome.model.JsonHome.jsonHome;
 import static de.otto.jsonhome.model.ResourceLinkHelper.mergeResources;
-import static java.util.Collections.emptyList;
 
 /**
  * Abstract base class for JsonHome Generators.
+ * <p/>
+ * The time needed to generate the resource links of a controller is recorded as {@link #GENERATION_TIME},
+ * using the name of the controller class as key.
  *
  * @author Guido Steinacker
  * @since 15.09.12
@@ -36,8 +41,11 @@ import static java.util.Collections.emptyList;
 
 public abstract class JsonHomeGenerator {
 
-    private final Collection<Class<?>> controllers = new ArrayList<Class<?>>();
+    public static final String GENERATION_TIME = "jsonhome.generator.time";
+
+    private final Collection<Class<?>> controllers = new LinkedHashSet<Class<?>>();
     private ResourceLinkGenerator resourceLinkGenerator;
+    private Metrics metrics = noOpMetrics();
 
     /**
      * Injects the generator implementation used to generate ResourceLink instances.
@@ -48,10 +56,20 @@ public abstract class JsonHomeGenerator {
         this.resourceLinkGenerator = resourceLinkGenerator;
     }
 
+    /**
+     * Injects the metrics used to record the generation time per controller.
+     *
+     * @param metrics Metrics implementation
+     */
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Specifies a controller class, possibly providing one or more resource links.
      * <p/>
-     * The injected generator is used to find the resource links supported by the controller.
+     * The injected generator is used to find the resource links supported by the controller. Specifying the same
+     * controller more than once has no effect, so the generator may be used to regenerate the JsonHome.
      *
      * @param controller a class that is implementing a HTTP API.
      * @return this
@@ -87,7 +105,9 @@ public abstract class JsonHomeGenerator {
     public final JsonHome generate() {
         List<? extends ResourceLink> resources = new ArrayList<ResourceLink>();
         for (final Class<?> controllerClass : controllers) {
+            final long start = System.nanoTime();
             resources = mergeResources(resources, resourceLinksFor(controllerClass));
+            metrics.recordTime(GENERATION_TIME, controllerClass.getName(), System.nanoTime() - start);
         }
         return jsonHome(resources);
     }
@@ -98,13 +118,14 @@ public abstract class JsonHomeGenerator {
      * @return list of ResourceLinks.
      */
     protected final List<? extends ResourceLink> resourceLinksFor(final Class<?> controller) {
-        List<? extends ResourceLink> resourceLinks = emptyList();
+        final List<ResourceLink> resourceLinks = new ArrayList<ResourceLink>();
         for (final Method method : controller.getMethods()) {
-            resourceLinks = mergeResources(
-                    resourceLinks,
-                    resourceLinkGenerator.resourceLinkFor(method));
+            final ResourceLink resourceLink = resourceLinkGenerator.resourceLinkFor(method);
+            if (resourceLink != null) {
+                resourceLinks.add(resourceLink);
+            }
         }
-        return resourceLinks;
+        return mergeResources(resourceLinks);
     }
 
     /**
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.generator;
+
+import de.otto.jsonhome.cache.JsonHomeSnapshot;
+import de.otto.jsonhome.model.JsonHome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+
+import static de.otto.jsonhome.cache.JsonHomeSnapshot.jsonHomeSnapshot;
+
+/**
+ * Base class of JsonHomeSources that are able to regenerate the json-home document at runtime.
+ * <p/>
+ * The document is generated on first access. A {@link #reload()} regenerates the document in the background
+ * and atomically swaps in the new {@link JsonHomeSnapshot}, including its pre-serialized representations.
+ * Requests that already got the previous snapshot keep on using it. If regeneration fails, the previous
+ * snapshot is kept.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public abstract class ReloadableJsonHomeSource implements JsonHomeSource {
+
+    private static Logger LOG = LoggerFactory.getLogger(ReloadableJsonHomeSource.class);
+
+    private final Object lock = new Object();
+    private final Object reloadLock = new Object();
+    private volatile JsonHomeSnapshot snapshot;
+    private ExecutorService executor;
+    private Future<JsonHome> pendingReload;
+
+    /**
+     * Generates a new json-home document.
+     *
+     * @return JsonHome
+     */
+    protected abstract JsonHome generate();
+
+    /**
+     * Returns the current JsonHome instance.
+     *
+     * @return JsonHome.
+     */
+    @Override
+    public final JsonHome getJsonHome() {
+        return getSnapshot().getJsonHome();
+    }
+
+    /**
+     * Returns the current snapshot of the json-home document. The snapshot is generated on first access.
+     *
+     * @return JsonHomeSnapshot
+     */
+    public final JsonHomeSnapshot getSnapshot() {
+        final JsonHomeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (reloadLock) {
+            if (snapshot == null) {
+                snapshot = jsonHomeSnapshot(generate());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Triggers the regeneration of the json-home document in the background.
+     * <p/>
+     * Triggers are coalesced: as long as a reload is waiting to be executed, no further reload is scheduled.
+     *
+     * @return Future of the regenerated JsonHome.
+     */
+    public final Future<JsonHome> reload() {
+        synchronized (lock) {
+            if (pendingReload == null) {
+                pendingReload = executor().submit(new Callable<JsonHome>() {
+                    @Override
+                    public JsonHome call() {
+                        synchronized (lock) {
+                            pendingReload = null;
+                        }
+                        return reloadNow();
+                    }
+                });
+            }
+            return pendingReload;
+        }
+    }
+
+    /**
+     * Regenerates the json-home document in the calling thread and swaps in the new snapshot.
+     *
+     * @return the regenerated JsonHome.
+     */
+    public final JsonHome reloadNow() {
+        synchronized (reloadLock) {
+            try {
+                final long start = System.currentTimeMillis();
+                final JsonHomeSnapshot newSnapshot = jsonHomeSnapshot(generate());
+                snapshot = newSnapshot;
+                LOG.info("Reloaded JsonHome containing {} relation types in {}ms.",
+                        newSnapshot.getJsonHome().getResources().size(), System.currentTimeMillis() - start);
+                return newSnapshot.getJsonHome();
+            } catch (final RuntimeException e) {
+                LOG.error("Failed to reload JsonHome, keeping the previous document: " + e.getMessage(), e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops the thread used to reload the document in the background.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+                pendingReload = null;
+            }
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "jsonhome-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
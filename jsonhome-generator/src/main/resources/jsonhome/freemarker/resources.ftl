@@ -39,6 +39,36 @@
         </tr>
         </tfoot>
     </table>
+<#if services??>
+
+    <h1>Services</h1>
+    <table>
+        <thead>
+        <tr>
+            <th>Service</th>
+            <th>State</th>
+            <th>Consecutive Failures</th>
+            <th>Last Failure</th>
+        </tr>
+        </thead>
+        <tbody>
+    <#list services as service>
+        <tr>
+            <td><#assign serviceName><#if service.title?has_content>${service.title?html}<#else>${service.href?html}</#if></#assign>
+        <#if service.href?lower_case?starts_with("http://") || service.href?lower_case?starts_with("https://")>
+                <a href="${service.href?html}">${serviceName}</a>
+        <#else>
+                ${serviceName}
+        </#if>
+            </td>
+            <td>${service.state}</td>
+            <td>${service.failures}</td>
+            <td>${service.lastFailure?html}</td>
+        </tr>
+    </#list>
+        </tbody>
+    </table>
+</#if>
 
 </body>
 </html>
\ No newline at end of file
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.generator;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.generator.DirectoryWatcher.directoryWatcher;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class DirectoryWatcherTest {
+
+    @Test
+    public void shouldDetectAddedFiles() throws IOException {
+        // given
+        final File directory = temporaryDirectory();
+        final AtomicInteger changes = new AtomicInteger();
+        final DirectoryWatcher watcher = directoryWatcher(directory, counting(changes));
+        watcher.start(3600);
+        // when
+        write(new File(directory, "doc.md"), "# Foo");
+        // then
+        assertTrue(watcher.checkForChanges());
+        assertFalse(watcher.checkForChanges());
+        assertEquals(changes.get(), 1);
+        watcher.stop();
+    }
+
+    @Test
+    public void shouldNotReportUnchangedDirectory() throws IOException {
+        // given
+        final File directory = temporaryDirectory();
+        write(new File(directory, "doc.md"), "# Foo");
+        final AtomicInteger changes = new AtomicInteger();
+        final DirectoryWatcher watcher = directoryWatcher(directory, counting(changes));
+        watcher.start(3600);
+        // when
+        final boolean changed = watcher.checkForChanges();
+        // then
+        assertFalse(changed);
+        assertEquals(changes.get(), 0);
+        watcher.stop();
+    }
+
+    private Runnable counting(final AtomicInteger changes) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                changes.incrementAndGet();
+            }
+        };
+    }
+
+    private File temporaryDirectory() throws IOException {
+        final File directory = File.createTempFile("jsonhome-docs", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private void write(final File file, final String content) throws IOException {
+        final FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        file.deleteOnExit();
+    }
+}
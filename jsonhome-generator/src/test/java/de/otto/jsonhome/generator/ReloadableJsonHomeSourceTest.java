@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.generator;
+
+import de.otto.jsonhome.cache.JsonHomeSnapshot;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class ReloadableJsonHomeSourceTest {
+
+    @Test
+    public void shouldGenerateOnFirstAccessOnly() {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        // when
+        final JsonHome first = source.getJsonHome();
+        final JsonHome second = source.getJsonHome();
+        // then
+        assertSame(first, second);
+        assertEquals(source.generations.get(), 1);
+    }
+
+    @Test
+    public void shouldSwapInReloadedSnapshot() throws Exception {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        final JsonHomeSnapshot previous = source.getSnapshot();
+        // when
+        final JsonHome reloaded = source.reload().get();
+        // then
+        assertSame(source.getJsonHome(), reloaded);
+        assertNotSame(source.getSnapshot(), previous);
+        assertEquals(previous.getJsonHome().getResources().size(), 1);
+        assertEquals(reloaded.getResources().size(), 2);
+        assertTrue(new String(source.getSnapshot().getRepresentation(APPLICATION_JSON), "UTF-8").contains("/rel/2"));
+        source.shutdown();
+    }
+
+    @Test
+    public void shouldKeepPreviousSnapshotIfReloadFails() throws Exception {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        final JsonHome previous = source.getJsonHome();
+        source.failing = true;
+        // when
+        try {
+            source.reload().get();
+            fail("ExecutionException expected");
+        } catch (final ExecutionException e) {
+            // then
+            assertSame(source.getJsonHome(), previous);
+        }
+        source.shutdown();
+    }
+
+    private static final class CountingJsonHomeSource extends ReloadableJsonHomeSource {
+        private final AtomicInteger generations = new AtomicInteger();
+        private volatile boolean failing = false;
+
+        @Override
+        protected JsonHome generate() {
+            if (failing) {
+                throw new IllegalStateException("generation failed");
+            }
+            final List<ResourceLink> resourceLinks = new ArrayList<ResourceLink>();
+            resourceLinks.add(directLink(create("http://example.org/rel/1"), create("http://example.org/1"), emptyHints()));
+            if (generations.incrementAndGet() > 1) {
+                resourceLinks.add(directLink(create("http://example.org/rel/2"), create("http://example.org/2"), emptyHints()));
+            }
+            return jsonHome(resourceLinks);
+        }
+    }
+}
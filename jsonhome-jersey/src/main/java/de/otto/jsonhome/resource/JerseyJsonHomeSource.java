@@ -17,36 +17,44 @@
 package de.otto.jsonhome.resource;
 
 import de.otto.jsonhome.generator.JsonHomeGenerator;
-import de.otto.jsonhome.generator.JsonHomeSource;
+import de.otto.jsonhome.generator.ReloadableJsonHomeSource;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.resource.scanner.AnnotationScanner;
 
 import java.util.Collection;
 
 /**
+ * A JsonHomeSource generating the json-home document from Jersey resources.
+ * <p/>
+ * The document is generated when the source is created. If the source was created using an AnnotationScanner,
+ * the resource packages are scanned again on every {@link #reload()}.
+ *
  * @author Sebastian Schroeder
  * @since 11.12.2012
  */
-public final class JerseyJsonHomeSource implements JsonHomeSource {
+public final class JerseyJsonHomeSource extends ReloadableJsonHomeSource {
 
-    private final JsonHome jsonHome;
+    private final JsonHomeGenerator jsonHomeGenerator;
+    private final AnnotationScanner annotationScanner;
+    private final Collection<Class<?>> classes;
 
     public JerseyJsonHomeSource(JsonHomeGenerator jsonHomeGenerator, AnnotationScanner annotationScanner) {
-        jsonHome = jsonHomeGenerator.with(annotationScanner.scanClasses()).generate();
+        this.jsonHomeGenerator = jsonHomeGenerator;
+        this.annotationScanner = annotationScanner;
+        this.classes = null;
+        getSnapshot();
     }
 
     public JerseyJsonHomeSource(JsonHomeGenerator jsonHomeGenerator, Collection<Class<?>> classes) {
-        jsonHome = jsonHomeGenerator.with(classes).generate();
+        this.jsonHomeGenerator = jsonHomeGenerator;
+        this.annotationScanner = null;
+        this.classes = classes;
+        getSnapshot();
     }
 
-    /**
-     * Returns a JsonHome instance.
-     *
-     * @return JsonHome.
-     */
     @Override
-    public JsonHome getJsonHome() {
-        return jsonHome;
+    protected JsonHome generate() {
+        return jsonHomeGenerator.with(annotationScanner != null ? annotationScanner.scanClasses() : classes).generate();
     }
 
 }
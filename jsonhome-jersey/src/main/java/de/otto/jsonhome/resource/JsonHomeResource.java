@@ -17,26 +17,34 @@
 package de.otto.jsonhome.resource;
 
 import com.sun.jersey.api.view.Viewable;
+import com.sun.jersey.spi.template.TemplateContext;
+import de.otto.jsonhome.cache.JsonHomeSnapshot;
+import de.otto.jsonhome.cache.RenderedPageCache;
+import de.otto.jsonhome.generator.ReloadableJsonHomeSource;
 import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.converter.JsonHomeWriter;
 import de.otto.jsonhome.generator.JerseyJsonHomeGenerator;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.resource.scanner.AnnotationScanner;
-import org.codehaus.jackson.map.ObjectMapper;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import static de.otto.jsonhome.converter.JsonHomeConverter.toRepresentation;
+import static de.otto.jsonhome.cache.RenderedPageCache.renderedPageCache;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
 import static de.otto.jsonhome.resource.Responses.addCacheControlHeaders;
+import static de.otto.jsonhome.resource.Responses.htmlPageResponse;
 
 /**
  * @author Sebastian Schroeder
@@ -45,6 +53,11 @@ import static de.otto.jsonhome.resource.Responses.addCacheControlHeaders;
 @Path("/json-home")
 public final class JsonHomeResource {
 
+    /**
+     * Resources are created per request, so the rendered HTML page is shared by all instances.
+     */
+    private static final RenderedPageCache PAGE_CACHE = renderedPageCache();
+
     private JsonHomeSource jsonHomeSource;
     private int maxAge = 3600;
 
@@ -66,11 +79,13 @@ public final class JsonHomeResource {
 
     @GET
     @Produces(MediaType.TEXT_HTML)
-    public Response getAsTextHtmlHome() {
+    public Response getAsTextHtmlHome(@Context final TemplateContext templateContext,
+                                      @Context final Request request) throws IOException {
+        final JsonHome jsonHome = jsonHomeSource.getJsonHome();
         final Map<String,Object> resources = new HashMap<String, Object>();
-        resources.put("resources", jsonHomeSource.getJsonHome().getResources().values());
+        resources.put("resources", jsonHome.getResources().values());
         final Viewable viewable = new Viewable("/jsonhome/resources", resources);
-        return addCacheControlHeaders(Response.ok(viewable), maxAge);
+        return htmlPageResponse(PAGE_CACHE, jsonHome, "resources", viewable, templateContext, request, maxAge);
     }
 
     @GET
@@ -95,9 +110,28 @@ public final class JsonHomeResource {
         }
     }
 
+    @GET
+    @Produces("application/json-home+smile")
+    public Response getAsApplicationJsonHomeSmile() {
+        final JsonHome jsonHome = jsonHomeSource.getJsonHome();
+        return addCacheControlHeaders(Response.ok(toByteArray(jsonHome, APPLICATION_JSONHOME_SMILE)), maxAge);
+    }
+
     private String toJsonString(JsonHome jsonHome, JsonHomeMediaType mediaType) throws IOException {
-        final ObjectMapper mapper = new ObjectMapper();
-        return mapper.writeValueAsString(toRepresentation(jsonHome, mediaType));
+        return new String(toByteArray(jsonHome, mediaType), "UTF-8");
+    }
+
+    /**
+     * Returns the pre-serialized representation of reloadable sources, otherwise the serialized jsonHome.
+     */
+    private byte[] toByteArray(JsonHome jsonHome, JsonHomeMediaType mediaType) {
+        if (jsonHomeSource instanceof ReloadableJsonHomeSource) {
+            final JsonHomeSnapshot snapshot = ((ReloadableJsonHomeSource) jsonHomeSource).getSnapshot();
+            if (snapshot.getJsonHome() == jsonHome) {
+                return snapshot.getRepresentation(mediaType);
+            }
+        }
+        return JsonHomeWriter.toByteArray(jsonHome, mediaType);
     }
 
 }
@@ -17,6 +17,8 @@
 package de.otto.jsonhome.resource;
 
 import com.sun.jersey.api.view.Viewable;
+import com.sun.jersey.spi.template.TemplateContext;
+import de.otto.jsonhome.cache.RenderedPageCache;
 import de.otto.jsonhome.generator.JerseyJsonHomeGenerator;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import de.otto.jsonhome.model.JsonHome;
@@ -28,12 +30,15 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import static de.otto.jsonhome.resource.Responses.addCacheControlHeaders;
+import static de.otto.jsonhome.cache.RenderedPageCache.renderedPageCache;
+import static de.otto.jsonhome.resource.Responses.htmlPageResponse;
 
 /**
  * @author Sebastian Schroeder
@@ -42,6 +47,11 @@ import static de.otto.jsonhome.resource.Responses.addCacheControlHeaders;
 @Path("/rel/{all:.*}")
 public final class RelationResource {
 
+    /**
+     * Resources are created per request, so the rendered HTML pages are shared by all instances.
+     */
+    private static final RenderedPageCache PAGE_CACHE = renderedPageCache();
+
     private final JsonHomeSource jsonHomeSource;
     private int maxAge = 3600;
 
@@ -59,7 +69,9 @@ public final class RelationResource {
 
     @GET
     @Produces(MediaType.TEXT_HTML)
-    public Response getRelationType(@Context UriInfo uriInfo) {
+    public Response getRelationType(@Context UriInfo uriInfo,
+                                    @Context TemplateContext templateContext,
+                                    @Context Request request) throws IOException {
         final Map<String,Object> model = new HashMap<String, Object>();
         final JsonHome jsonHome = jsonHomeSource.getJsonHome();
         if (jsonHome.hasResourceFor(uriInfo.getRequestUri())) {
@@ -71,7 +83,8 @@ public final class RelationResource {
             } else {
                 viewable = new Viewable("/jsonhome/templatedresource", model);
             }
-            return addCacheControlHeaders(Response.ok(viewable), maxAge);
+            final String key = resourceLink.getLinkRelationType().toString();
+            return htmlPageResponse(PAGE_CACHE, jsonHome, key, viewable, templateContext, request, maxAge);
         } else {
             return Response.status(Response.Status.NOT_FOUND).entity("Unknown relation type " + uriInfo.getRequestUri()).build();
         }
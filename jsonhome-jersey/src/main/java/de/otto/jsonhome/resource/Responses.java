@@ -16,7 +16,18 @@
 
 package de.otto.jsonhome.resource;
 
+import com.sun.jersey.api.view.Viewable;
+import com.sun.jersey.spi.template.TemplateContext;
+import de.otto.jsonhome.cache.PageRenderer;
+import de.otto.jsonhome.cache.RenderedPage;
+import de.otto.jsonhome.cache.RenderedPageCache;
+import de.otto.jsonhome.model.JsonHome;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * @author Sebastian Schroeder
@@ -32,4 +43,30 @@ public final class Responses {
                 header("Cache-Control", "max-age=" + maxAge).build();
     }
 
+    /**
+     * Returns a response containing the page rendered from the viewable. The page is rendered only once per
+     * json-home document and key; if the client already has the current version of the page, a 304 (Not Modified)
+     * is returned.
+     */
+    public static Response htmlPageResponse(final RenderedPageCache pageCache,
+                                            final JsonHome jsonHome,
+                                            final String key,
+                                            final Viewable viewable,
+                                            final TemplateContext templateContext,
+                                            final Request request,
+                                            final int maxAge) throws IOException {
+        final RenderedPage page = pageCache.get(jsonHome, key, new PageRenderer() {
+            @Override
+            public void render(final OutputStream stream) throws IOException {
+                templateContext.resolveViewable(viewable).writeTo(stream);
+            }
+        });
+        final EntityTag entityTag = EntityTag.valueOf(page.getEntityTag());
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return addCacheControlHeaders(notModified, maxAge);
+        }
+        return addCacheControlHeaders(Response.ok(page.getContent(), "text/html;charset=UTF-8").tag(entityTag), maxAge);
+    }
+
 }
@@ -24,17 +24,27 @@ import org.reflections.util.ConfigurationBuilder;
 import org.reflections.util.FilterBuilder;
 
 import javax.ws.rs.Path;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.*;
+import java.net.URL;
+import java.util.*;
 
 /**
+ * Scans the configured packages for classes annotated with {@link Path}.
+ * <p/>
+ * All packages are scanned in a single pass over the classpath. If an index of resource classes is found
+ * in the classpath (by default {@link #DEFAULT_INDEX_RESOURCE}), the classes are loaded from the index and the
+ * classpath is not scanned at all. The index is a UTF-8 text file with one fully qualified class name per line
+ * and may be generated at build time using {@link #main(String[])}.
+ *
  * @author Sebastian Schroeder
  * @since 15.12.2012
  */
 public final class AnnotationScanner {
 
+    public static final String DEFAULT_INDEX_RESOURCE = "META-INF/jsonhome/path-resources";
+
     private final Set<String> packages;
+    private final String indexResource;
 
     public AnnotationScanner() {
         final String packages = JsonHomeProperties.getProperties().getProperty("resource.packages");
@@ -42,23 +52,151 @@ public final class AnnotationScanner {
             throw new IllegalStateException("resource.packages property not set in jsonhome.properties");
         }
         this.packages = new HashSet<String>(Arrays.asList(packages.split("\\s*,\\s*")));
+        this.indexResource = DEFAULT_INDEX_RESOURCE;
     }
 
     public AnnotationScanner(Set<String> packages) {
+        this(packages, DEFAULT_INDEX_RESOURCE);
+    }
+
+    public AnnotationScanner(final Set<String> packages, final String indexResource) {
         this.packages = packages;
+        this.indexResource = indexResource;
     }
 
     public Set<Class<?>> scanClasses() {
-        final Set<Class<?>> classes = new HashSet<Class<?>>();
-        for (String pkg : packages) {
-            final Reflections reflections = new Reflections(new ConfigurationBuilder().
-                    addUrls(ClasspathHelper.forClass(Path.class)).
-                    setScanners(new TypeAnnotationsScanner()).
-                    addUrls(ClasspathHelper.forPackage(pkg)).
-                    filterInputsBy(new FilterBuilder().include(FilterBuilder.prefix(pkg))));
-            classes.addAll(reflections.getTypesAnnotatedWith(Path.class));
+        final Set<Class<?>> indexedClasses = indexedClasses();
+        if (indexedClasses != null) {
+            return indexedClasses;
+        }
+        if (packages.isEmpty()) {
+            return new HashSet<Class<?>>();
+        }
+        final Set<URL> urls = new LinkedHashSet<URL>();
+        final FilterBuilder filter = new FilterBuilder();
+        for (final String pkg : packages) {
+            urls.addAll(ClasspathHelper.forPackage(pkg));
+            filter.include(FilterBuilder.prefix(packagePrefix(pkg)));
+        }
+        final Reflections reflections = new Reflections(new ConfigurationBuilder().
+                setScanners(new TypeAnnotationsScanner()).
+                addUrls(urls).
+                filterInputsBy(filter));
+        return new HashSet<Class<?>>(reflections.getTypesAnnotatedWith(Path.class));
+    }
+
+    /**
+     * Writes an index of the classes to the writer.
+     *
+     * @param classes the classes to index.
+     * @param writer the writer used to write the index.
+     * @throws IOException if writing the index fails.
+     */
+    public static void writeIndex(final Collection<Class<?>> classes, final Writer writer) throws IOException {
+        final SortedSet<String> classNames = new TreeSet<String>();
+        for (final Class<?> type : classes) {
+            classNames.add(type.getName());
+        }
+        for (final String className : classNames) {
+            writer.write(className);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Generates the index of resource classes at build time.
+     * <p/>
+     * Usage: AnnotationScanner &lt;index file&gt; &lt;package&gt; [&lt;package&gt;...]
+     *
+     * @param args the index file, followed by the packages to scan.
+     * @throws IOException if writing the index fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: AnnotationScanner <index file> <package> [<package>...]");
+        }
+        final Set<String> packages = new HashSet<String>(Arrays.asList(args).subList(1, args.length));
+        // the index must not be used to build the index:
+        final Set<Class<?>> classes = new AnnotationScanner(packages, null).scanClasses();
+        final File indexFile = new File(args[0]);
+        if (indexFile.getParentFile() != null) {
+            indexFile.getParentFile().mkdirs();
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8");
+        try {
+            writeIndex(classes, writer);
+        } finally {
+            writer.close();
         }
-        return classes;
+    }
+
+    /**
+     * Returns the classes of the configured packages listed in the index files, or null if there is no index.
+     */
+    private Set<Class<?>> indexedClasses() {
+        if (indexResource == null) {
+            return null;
+        }
+        try {
+            final ClassLoader classLoader = classLoader();
+            final Enumeration<URL> indexUrls = classLoader.getResources(indexResource);
+            if (!indexUrls.hasMoreElements()) {
+                return null;
+            }
+            final Set<Class<?>> classes = new HashSet<Class<?>>();
+            while (indexUrls.hasMoreElements()) {
+                for (final String className : readIndex(indexUrls.nextElement())) {
+                    if (isInPackages(className)) {
+                        classes.add(Class.forName(className, false, classLoader));
+                    }
+                }
+            }
+            return classes;
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to read index " + indexResource + ": " + e.getMessage(), e);
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalStateException("Class listed in index " + indexResource + " not found: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isInPackages(final String className) {
+        for (final String pkg : packages) {
+            if (className.startsWith(packagePrefix(pkg))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the prefix of the names of classes in the package or its sub-packages. The same prefix is used to
+     * filter the scanned classes and the indexed classes, so de.otto.foo does not match de.otto.foobar.X.
+     */
+    private static String packagePrefix(final String pkg) {
+        return pkg + ".";
+    }
+
+    private static List<String> readIndex(final URL indexUrl) throws IOException {
+        final List<String> classNames = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(indexUrl.openStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return classNames;
+    }
+
+    private static ClassLoader classLoader() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return contextClassLoader != null ? contextClassLoader : AnnotationScanner.class.getClassLoader();
     }
 
 }
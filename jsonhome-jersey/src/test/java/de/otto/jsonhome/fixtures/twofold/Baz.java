@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.fixtures.twofold;
+
+import de.otto.jsonhome.annotation.Rel;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+/**
+ * A resource in a package whose name starts with the name of package de.otto.jsonhome.fixtures.two.
+ */
+@Path("/baz") @Rel("http://example.org/rel/bazType")
+public class Baz {
+
+    @GET
+    public void baz() {}
+
+}
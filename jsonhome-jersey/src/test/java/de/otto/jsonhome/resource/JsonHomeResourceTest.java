@@ -20,6 +20,7 @@ import de.otto.jsonhome.fixtures.ResourceFixtures;
 import de.otto.jsonhome.generator.JerseyJsonHomeGenerator;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.testng.annotations.Test;
 
 import javax.ws.rs.core.MediaType;
@@ -153,6 +154,23 @@ public class JsonHomeResourceTest {
         assertEquals(asMap(relFoo.get("hints")).get("docs"), "http://example.org/doc/foo");
     }
 
+    @Test
+    public void applicationJsonHomeSmileShouldContainAdditionalInformation() throws Exception {
+        // given
+        final JsonHomeResource controller = new JsonHomeResource(
+                jsonHomeSource(ResourceFixtures.ResourceWithDocumentation.class));
+        // when
+        final Response response = controller.getAsApplicationJsonHomeSmile();
+        @SuppressWarnings("unchecked")
+        final Map<String, ?> resourcesMap = new ObjectMapper(new SmileFactory()).readValue((byte[]) response.getEntity(), Map.class);
+        // then
+        assertEquals(response.getMetadata().getFirst("Cache-Control"), "max-age=3600");
+        @SuppressWarnings("unchecked")
+        final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
+        final Map<String, ?> hints = asMap(resources.get("http://rel.example.org/rel/foo").get("hints"));
+        assertEquals(hints.get("description"), asList("resource value"));
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, ?> asMap(final Object obj) {
         return (Map<String, ?>) obj;
@@ -18,11 +18,13 @@ package de.otto.jsonhome.resource.scanner;
 
 import org.testng.annotations.Test;
 
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
 public class AnnotationScannerTest {
@@ -47,4 +49,35 @@ public class AnnotationScannerTest {
                 Arrays. asList("de.otto.jsonhome.fixtures.none"))).scanClasses();
         assertTrue(classes.isEmpty());
     }
+
+    @Test
+    public void testScanningPackageThatIsPrefixOfOtherPackage() throws Exception {
+        Collection<Class<?>> classes = new AnnotationScanner(new HashSet<String>(
+                Arrays.asList("de.otto.jsonhome.fixtures.two"))).scanClasses();
+        assertEquals(2, classes.size());
+        assertFalse(classes.contains(de.otto.jsonhome.fixtures.twofold.Baz.class));
+    }
+
+    @Test
+    public void testReadingClassesFromIndex() throws Exception {
+        Collection<Class<?>> classes = new AnnotationScanner(new HashSet<String>(
+                Arrays.asList("de.otto.jsonhome.fixtures.one")), "META-INF/jsonhome/test-path-resources").scanClasses();
+        assertEquals(1, classes.size());
+        assertTrue(classes.contains(de.otto.jsonhome.fixtures.one.Foo.class));
+    }
+
+    @Test
+    public void testScanningWithoutIndex() throws Exception {
+        Collection<Class<?>> classes = new AnnotationScanner(new HashSet<String>(
+                Arrays.asList("de.otto.jsonhome.fixtures.one")), "META-INF/jsonhome/missing-index").scanClasses();
+        assertEquals(2, classes.size());
+    }
+
+    @Test
+    public void testWritingIndex() throws Exception {
+        StringWriter writer = new StringWriter();
+        AnnotationScanner.writeIndex(Arrays.<Class<?>>asList(
+                de.otto.jsonhome.fixtures.two.Foo.class, de.otto.jsonhome.fixtures.one.Foo.class), writer);
+        assertEquals("de.otto.jsonhome.fixtures.one.Foo\nde.otto.jsonhome.fixtures.two.Foo\n", writer.toString());
+    }
 }
@@ -19,11 +19,15 @@ package de.otto.jsonhome.registry.controller;
 import de.otto.jsonhome.client.HttpJsonHomeClient;
 import de.otto.jsonhome.client.JsonHomeClient;
 import de.otto.jsonhome.client.JsonHomeClientException;
-import de.otto.jsonhome.client.NotFoundException;
+import de.otto.jsonhome.metrics.Metrics;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.model.ResourceLink;
+import de.otto.jsonhome.registry.health.LinkHealth;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
 import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
 import de.otto.jsonhome.registry.store.RegistryRepository;
+import de.otto.jsonhome.registry.upstream.UpstreamDocumentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,15 +35,40 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
 
-import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static de.otto.jsonhome.metrics.NoOpMetrics.noOpMetrics;
+import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Provides access to a json-home document containing the merged json-home documents registered in the {@link de.otto.jsonhome.registry.store.RegistryRepository}.
  * <p/>
  * The service is responsible for retrieving all registered documents.
+ * <p/>
+ * The time needed to aggregate the documents of a registry ({@link #AGGREGATION_TIME}) and the failures to get
+ * the documents of registered services ({@link #SERVICE_FAILURE}) are recorded, if {@link Metrics} are provided.
+ * <p/>
+ * The health of every registered link is tracked by a {@link LinkHealthTracker}: failing links are skipped
+ * until their backoff period has expired, so the aggregation does not wait for unavailable services.
+ * Quarantined links are removed from the registry, if {@link #setDeregisterQuarantinedLinks(boolean)} is enabled.
+ * <p/>
+ * Concurrent requests for the same registry share a single aggregation, so a burst of requests only results in
+ * one request per registered service.
+ * <p/>
+ * The documents of the registered services are kept in an {@link UpstreamDocumentStore}, so every document is
+ * fetched only once, no matter how many registries are referring to it. The aggregate is built by
+ * {@link JsonHome#merge(JsonHome) merging} these documents, so it shares the unchanged resources with the
+ * upstream documents and with previous aggregates instead of copying them. If several documents contain the
+ * same link-relation type, the document registered last wins. As long as none of the upstream documents has
+ * changed, the previous aggregate instance is returned, so callers are able to detect changes by identity.
  *
  * @author Guido Steinacker
  * @since 20.11.12
@@ -49,11 +78,30 @@ public class DefaultRegistryJsonHomeSource implements RegistryJsonHomeSource {
 
     private static Logger LOG = LoggerFactory.getLogger(DefaultRegistryJsonHomeSource.class);
 
+    public static final String AGGREGATION_TIME = "jsonhome.registry.aggregation";
+    public static final String SERVICE_FAILURE = "jsonhome.registry.failure";
+    public static final String COALESCED = "jsonhome.registry.coalesced";
+    public static final String SNAPSHOT_FALLBACK = "jsonhome.registry.fallback";
+
     private final JsonHomeClient client;
+    private UpstreamDocumentStore upstreamDocuments;
     private RegistryRepository registries;
+    private Metrics metrics = noOpMetrics();
+    private LinkHealthTracker linkHealthTracker = new LinkHealthTracker();
+    private boolean deregisterQuarantinedLinks = false;
+    private long maxWaitMillis = 2000L;
+    private final ConcurrentMap<String, FutureTask<JsonHome>> inFlight = new ConcurrentHashMap<String, FutureTask<JsonHome>>();
+    private final ConcurrentMap<String, JsonHome> lastSnapshots = new ConcurrentHashMap<String, JsonHome>();
+    private final ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<String, Aggregate>();
 
     public DefaultRegistryJsonHomeSource() {
         this.client = new HttpJsonHomeClient();
+        this.upstreamDocuments = new UpstreamDocumentStore(client);
+    }
+
+    public DefaultRegistryJsonHomeSource(final JsonHomeClient client) {
+        this.client = client;
+        this.upstreamDocuments = new UpstreamDocumentStore(client);
     }
 
     @PreDestroy
@@ -67,8 +115,63 @@ public class DefaultRegistryJsonHomeSource implements RegistryJsonHomeSource {
         this.registries = registries;
     }
 
+    @Autowired(required = false)
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+        if (client instanceof HttpJsonHomeClient) {
+            ((HttpJsonHomeClient) client).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Replaces the store of upstream documents, for example to share it with other components.
+     *
+     * @param upstreamDocuments the UpstreamDocumentStore used to get the registered documents.
+     */
+    @Autowired(required = false)
+    public void setUpstreamDocumentStore(final UpstreamDocumentStore upstreamDocuments) {
+        this.upstreamDocuments = upstreamDocuments;
+    }
+
+    public UpstreamDocumentStore getUpstreamDocumentStore() {
+        return upstreamDocuments;
+    }
+
+    @Autowired(required = false)
+    public void setLinkHealthTracker(final LinkHealthTracker linkHealthTracker) {
+        this.linkHealthTracker = linkHealthTracker;
+    }
+
+    public LinkHealthTracker getLinkHealthTracker() {
+        return linkHealthTracker;
+    }
+
+    /**
+     * Specifies whether quarantined links are removed from their registry, or kept and probed after the
+     * maximum backoff period of the LinkHealthTracker.
+     *
+     * @param deregisterQuarantinedLinks true, if quarantined links are removed. Defaults to false.
+     */
+    public void setDeregisterQuarantinedLinks(final boolean deregisterQuarantinedLinks) {
+        this.deregisterQuarantinedLinks = deregisterQuarantinedLinks;
+    }
+
+    /**
+     * Specifies how long requests wait for an aggregation already in progress, before the last snapshot of the
+     * registry is returned. Requests for registries without a snapshot wait until the aggregation is finished.
+     *
+     * @param maxWaitMillis maximum wait time in milliseconds. Defaults to 2000.
+     */
+    public void setMaxWaitMillis(final long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
     /**
      * Returns the JsonHome document for the specified registryName.
+     * <p/>
+     * Concurrent requests for the same registry are coalesced: only the first request aggregates the documents,
+     * all other requests wait for its result. If a previous result exists, waiting requests return this last
+     * snapshot after {@link #setMaxWaitMillis(long) maxWaitMillis}, instead of waiting for slow services.
      *
      * @param registryName the registryName (like develop, live) of this entry. Different registered environments
      *                    are used to access different versions of json-home documents during development.
@@ -77,35 +180,172 @@ public class DefaultRegistryJsonHomeSource implements RegistryJsonHomeSource {
      */
     public JsonHome getJsonHome(final String registryName) {
         if (registries.get(registryName) == null) {
+            lastSnapshots.remove(registryName);
+            aggregates.remove(registryName);
             final String msg = "Registry '" + registryName + "' does not exist.";
             LOG.warn(msg);
             throw new IllegalArgumentException(msg);
+        }
+        final FutureTask<JsonHome> task = new FutureTask<JsonHome>(new Callable<JsonHome>() {
+            @Override
+            public JsonHome call() {
+                return aggregate(registryName);
+            }
+        });
+        final FutureTask<JsonHome> inFlightTask = inFlight.putIfAbsent(registryName, task);
+        if (inFlightTask == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(registryName, task);
+            }
+            final JsonHome jsonHome = resultOf(task);
+            lastSnapshots.put(registryName, jsonHome);
+            return jsonHome;
         } else {
-            final Map<URI, ResourceLink> allResourceLinks = new HashMap<URI, ResourceLink>();
-            for (final Link link : registries.get(registryName).getAll()) {
-                try {
-                    final JsonHome jsonHome = client.get(link.getHref());
-                    final Map<URI, ResourceLink> resources = jsonHome.getResources();
-                    for (final URI uri : resources.keySet()) {
-                        if (allResourceLinks.containsKey(uri)) {
-                            LOG.warn("Duplicate entries found for resource {}: entry '{}', is overridden by '{}'",
-                                    new Object[] {uri, allResourceLinks.get(uri), resources.get(uri)});
-                        }
-                        allResourceLinks.put(uri, resources.get(uri));
-                    }
-                    allResourceLinks.putAll(resources);
-                } catch (final NotFoundException e) {
-                    LOG.warn("Unable to get json-home document {}: {}", link.getHref(), e.getMessage());
-                    // After some retries, the json-home MAY automatically be unregistered here.
-                } catch (final JsonHomeClientException e) {
-                    LOG.warn("Unable to get json-home document {}: {}", link.getHref(), e.getMessage());
-                    // After some retries, the json-home MAY automatically be unregistered here.
-                }
+            metrics.increment(COALESCED, registryName);
+            return awaitResultOf(registryName, inFlightTask);
+        }
+    }
+
+    private JsonHome awaitResultOf(final String registryName, final FutureTask<JsonHome> inFlightTask) {
+        final JsonHome lastSnapshot = lastSnapshots.get(registryName);
+        if (lastSnapshot != null) {
+            try {
+                return inFlightTask.get(maxWaitMillis, MILLISECONDS);
+            } catch (final TimeoutException e) {
+                LOG.debug("Aggregation of registry {} still in progress, returning last snapshot", registryName);
+                metrics.increment(SNAPSHOT_FALLBACK, registryName);
+                return lastSnapshot;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return lastSnapshot;
+            } catch (final ExecutionException e) {
+                return lastSnapshot;
             }
-            LOG.debug("Returning json-home instance containing {} relation types: {}",
-                    allResourceLinks.size(), allResourceLinks.keySet());
-            return jsonHome(allResourceLinks.values());
         }
+        return resultOf(inFlightTask);
     }
 
+    private JsonHome resultOf(final FutureTask<JsonHome> task) {
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for json-home aggregation", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private JsonHome aggregate(final String registryName) {
+        final Registry registry = registries.get(registryName);
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry '" + registryName + "' does not exist.");
+        }
+        final long start = System.nanoTime();
+        final List<JsonHome> documents = new ArrayList<JsonHome>();
+        for (final Link link : registry.getAll()) {
+            if (!linkHealthTracker.isAvailable(link.getHref())) {
+                LOG.debug("Skipping unavailable json-home document {}", link.getHref());
+                continue;
+            }
+            try {
+                documents.add(upstreamDocuments.get(link.getHref()));
+                linkHealthTracker.recordSuccess(link.getHref());
+            } catch (final JsonHomeClientException e) {
+                LOG.warn("Unable to get json-home document {}: {}", link.getHref(), e.getMessage());
+                recordFailure(registryName, link, e);
+            }
+        }
+        final Aggregate previous = aggregates.get(registryName);
+        final JsonHome aggregate;
+        if (previous != null && previous.isMergedFrom(documents)) {
+            aggregate = previous.jsonHome;
+        } else {
+            aggregate = merged(documents);
+            aggregates.put(registryName, new Aggregate(documents, aggregate));
+        }
+        metrics.recordTime(AGGREGATION_TIME, registryName, System.nanoTime() - start);
+        LOG.debug("Returning json-home instance containing {} relation types: {}",
+                aggregate.getResources().size(), aggregate.getResources().keySet());
+        return aggregate;
+    }
+
+    private JsonHome merged(final List<JsonHome> documents) {
+        JsonHome aggregate = emptyJsonHome();
+        for (final JsonHome jsonHome : documents) {
+            logDuplicates(aggregate, jsonHome);
+            aggregate = aggregate.merge(jsonHome);
+        }
+        return aggregate;
+    }
+
+    private void logDuplicates(final JsonHome aggregate, final JsonHome jsonHome) {
+        if (aggregate.getResources().isEmpty()) {
+            return;
+        }
+        for (final ResourceLink resourceLink : jsonHome.getResources().values()) {
+            final URI uri = resourceLink.getLinkRelationType();
+            if (aggregate.hasResourceFor(uri)) {
+                LOG.warn("Duplicate entries found for resource {}: entry '{}', is overridden by '{}'",
+                        new Object[] {uri, aggregate.getResourceFor(uri), resourceLink});
+            }
+        }
+    }
+
+    private void recordFailure(final String registryName, final Link link, final JsonHomeClientException e) {
+        metrics.increment(SERVICE_FAILURE, link.getHref().toString());
+        final LinkHealth health = linkHealthTracker.recordFailure(link.getHref(), e.getMessage());
+        if (health.isQuarantined() && deregisterQuarantinedLinks) {
+            deregister(registryName, link);
+        }
+    }
+
+    private void deregister(final String registryName, final Link link) {
+        while (true) {
+            final Registry registry = registries.get(registryName);
+            if (registry == null || registry.findByHref(link.getHref()) == null) {
+                return;
+            }
+            if (registries.compareAndSet(registry, registry.withoutLink(link.getHref()))) {
+                linkHealthTracker.reset(link.getHref());
+                LOG.warn("Removed quarantined json-home document {} from registry {}", link.getHref(), registryName);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The aggregate of a registry, together with the upstream documents it was merged from.
+     */
+    private static final class Aggregate {
+        private final List<JsonHome> documents;
+        private final JsonHome jsonHome;
+
+        private Aggregate(final List<JsonHome> documents, final JsonHome jsonHome) {
+            this.documents = documents;
+            this.jsonHome = jsonHome;
+        }
+
+        /**
+         * Returns true, if the aggregate was merged from the same instances of the upstream documents, in the
+         * same order. The UpstreamDocumentStore keeps the instances of unchanged documents, so this is true
+         * as long as no registered document changed.
+         */
+        private boolean isMergedFrom(final List<JsonHome> documents) {
+            if (documents.size() != this.documents.size()) {
+                return false;
+            }
+            for (int i = 0; i < documents.size(); ++i) {
+                if (documents.get(i) != this.documents.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
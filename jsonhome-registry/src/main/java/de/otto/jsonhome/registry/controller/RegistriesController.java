@@ -19,6 +19,8 @@ package de.otto.jsonhome.registry.controller;
 import de.otto.jsonhome.annotation.Doc;
 import de.otto.jsonhome.annotation.Docs;
 import de.otto.jsonhome.annotation.Rel;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
+import de.otto.jsonhome.registry.store.Link;
 import de.otto.jsonhome.registry.store.Registry;
 import de.otto.jsonhome.registry.store.RegistryRepository;
 import org.slf4j.Logger;
@@ -30,10 +32,14 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static de.otto.jsonhome.generator.UriBuilder.normalized;
+import static de.otto.jsonhome.registry.controller.LinkConverter.jsonToLink;
 import static de.otto.jsonhome.registry.controller.RegistriesConverter.registriesToJson;
+import static de.otto.jsonhome.registry.controller.RegistryBatchConverter.jsonToBatch;
 import static de.otto.jsonhome.registry.controller.RegistryConverter.jsonToRegistry;
 import static de.otto.jsonhome.registry.controller.RegistryConverter.registryToJson;
 import static java.net.URI.create;
@@ -93,7 +99,9 @@ public class RegistriesController {
     private static final Logger LOG = LoggerFactory.getLogger(RegistriesController.class);
 
     private RegistryRepository registryRepository;
+    private LinkHealthTracker linkHealthTracker;
     private URI applicationBaseUri;
+    private volatile RenderedRegistries renderedRegistries;
 
     @Value("${jsonhome.applicationBaseUri}")
     public void setApplicationBaseUri(final String baseUri) {
@@ -111,6 +119,16 @@ public class RegistriesController {
         this.registryRepository = registryRepository;
     }
 
+    /**
+     * Injects the tracker used to add the health of every link to the registry representations.
+     *
+     * @param linkHealthTracker the LinkHealthTracker used to aggregate the registries.
+     */
+    @Autowired(required = false)
+    public void setLinkHealthTracker(final LinkHealthTracker linkHealthTracker) {
+        this.linkHealthTracker = linkHealthTracker;
+    }
+
     /**
      * Returns the registries as a list of URLs.
      *
@@ -140,7 +158,57 @@ public class RegistriesController {
     @ResponseBody
     public Map<String, ?> getRegistries(final HttpServletResponse response) {
         response.setStatus(SC_OK);
-        return registriesToJson(applicationBaseUri, registryRepository);
+        final List<Registry> registries = registryRepository.getRegistries();
+        final RenderedRegistries rendered = renderedRegistries;
+        if (rendered != null && rendered.registries == registries) {
+            return rendered.json;
+        }
+        final Map<String, ?> json = registriesToJson(applicationBaseUri, registries);
+        renderedRegistries = new RenderedRegistries(registries, json);
+        return json;
+    }
+
+    /**
+     * Applies a batch of modifications to the registries.
+     *
+     * <pre><code>
+     *     POST /registries
+     *
+     *     {
+     *         "operations" : [
+     *              { "op" : "put", "name" : "test", "title" : "Testing environment", "service" : [] },
+     *              { "op" : "add", "name" : "live", "service" : [
+     *                  { "title" : "Home document of application foo", "href" : "http://example.org/foo/json-home" }
+     *              ] },
+     *              { "op" : "remove", "name" : "live", "service" : [
+     *                  { "href" : "http://example.org/bar/json-home" }
+     *              ] },
+     *              { "op" : "delete", "name" : "develop" }
+     *         ]
+     *     }
+     * </code></pre>
+     *
+     * The operations are executed in the given order. The batch is applied atomically: either all operations
+     * succeed, or no registry is modified. Every affected registry is written only once.
+     * <p/>
+     * HTTP status codes returned by this method:
+     * <ul>
+     *     <li>204 NO CONTENT: if the batch was successfully applied.</li>
+     *     <li>400 BAD REQUEST: if the document was syntactically incorrect, or an operation referred to
+     *     a registry that does not exist.</li>
+     * </ul>
+     */
+    @Rel("/rel/jsonhome/registries")
+    @RequestMapping(
+            value = "/registries",
+            method = RequestMethod.POST,
+            consumes = "application/json")
+    public void postBatch(@RequestBody
+                          final Map<String, Object> batch,
+                          final HttpServletResponse response) {
+        final Set<String> affected = jsonToBatch(batch, registryRepository).commit();
+        LOG.debug("Batch modified registries {}", affected);
+        response.setStatus(SC_NO_CONTENT);
     }
 
     /**
@@ -168,6 +236,11 @@ public class RegistriesController {
      * </pre></code>
      *
      * The attributes 'name', 'self' and 'container' are added by the server and will be ignored during PUT operations.
+     * If a {@link LinkHealthTracker} is configured, failing services contain their "health", consisting of the
+     * "state" (OPEN or QUARANTINED), "consecutiveFailures", "retryAt" and "lastFailure". Because the health
+     * changes independently of the registry, the response must be revalidated on every request in this case, and
+     * the ETag consists of both the version of the registry and the version of the health. Such an ETag is
+     * accepted as If-Match header of modifying requests as long as the version of the registry is matching.
      * <p/>
      * HTTP status codes returned by this method:
      * <ul>
@@ -190,11 +263,17 @@ public class RegistriesController {
                                       final HttpServletResponse response) {
         final Registry registry = registryRepository.get(registryName);
         if (registry != null) {
-            LOG.info("Returning links containing {} entries.", registry.getAll().size());
-            response.setHeader("Cache-Control", "max-age=3600");
-            return registryToJson(applicationBaseUri, registry);
+            LOG.debug("Returning links containing {} entries.", registry.getAll().size());
+            if (linkHealthTracker != null) {
+                response.setHeader("Cache-Control", "max-age=0");
+                response.setHeader("ETag", eTagOf(registry, linkHealthTracker.getVersion()));
+            } else {
+                response.setHeader("Cache-Control", "max-age=3600");
+                response.setHeader("ETag", eTagOf(registry));
+            }
+            return registryToJson(applicationBaseUri, registry, linkHealthTracker);
         } else {
-            LOG.info("Links {} does not exist", registryName);
+            LOG.debug("Links {} does not exist", registryName);
             response.setStatus(SC_NOT_FOUND);
             return null;
         }
@@ -271,8 +350,142 @@ public class RegistriesController {
         response.setStatus(SC_NO_CONTENT);
     }
 
+    /**
+     * Adds a single link to a registry, or replaces the link having the same href.
+     *
+     * <pre><code>
+     *     POST /registries/live/services
+     *
+     *     {
+     *         "title" : "Home document of application foo",
+     *         "href" : "http://example.org/foo/json-home"
+     *     }
+     * </code></pre>
+     *
+     * Concurrent modifications of the same registry are not lost: the link is added using compare-and-set, retrying
+     * if the registry was modified in the meantime. If the request contains an If-Match header with the ETag of the
+     * registry, the link is only added if the registry was not modified since.
+     * <p/>
+     * HTTP status codes returned by this method:
+     * <ul>
+     *     <li>201 CREATED: if the link was added.</li>
+     *     <li>204 NO CONTENT: if an existing link was replaced.</li>
+     *     <li>400 BAD REQUEST: if the document was syntactically incorrect.</li>
+     *     <li>404 NOT FOUND: if the registry does not exist.</li>
+     *     <li>412 PRECONDITION FAILED: if the registry does not match the If-Match header.</li>
+     * </ul>
+     */
+    @Rel("/rel/jsonhome/registry")
+    @RequestMapping(
+            value = "/registries/{registryName}/services",
+            method = RequestMethod.POST,
+            consumes = "application/json")
+    public void postService(@PathVariable
+                            @Doc("The name of registry.")
+                            final String registryName,
+                            @RequestHeader(value = "If-Match", required = false)
+                            final String ifMatch,
+                            @RequestBody
+                            final Map<String, String> service,
+                            final HttpServletResponse response) {
+        final Link link = jsonToLink(service);
+        while (true) {
+            final Registry current = registryRepository.get(registryName);
+            if (current == null) {
+                response.setStatus(SC_NOT_FOUND);
+                return;
+            }
+            if (ifMatch != null && !matches(ifMatch, current)) {
+                response.setStatus(SC_PRECONDITION_FAILED);
+                return;
+            }
+            if (registryRepository.compareAndSet(current, current.withLink(link))) {
+                response.setStatus(current.findByHref(link.getHref()) == null ? SC_CREATED : SC_NO_CONTENT);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a single link from a registry.
+     *
+     * <pre><code>
+     *     DELETE /registries/live/services?href=http://example.org/foo/json-home
+     * </code></pre>
+     *
+     * Like {@link #postService(String, String, java.util.Map, javax.servlet.http.HttpServletResponse)}, the link
+     * is removed using compare-and-set, optionally guarded by an If-Match header.
+     * <p/>
+     * HTTP status codes returned by this method:
+     * <ul>
+     *     <li>204 NO CONTENT: if the link was removed or did not exist.</li>
+     *     <li>404 NOT FOUND: if the registry does not exist.</li>
+     *     <li>412 PRECONDITION FAILED: if the registry does not match the If-Match header.</li>
+     * </ul>
+     */
+    @Rel("/rel/jsonhome/registry")
+    @RequestMapping(
+            value = "/registries/{registryName}/services",
+            method = RequestMethod.DELETE)
+    public void deleteService(@PathVariable
+                              @Doc("The name of registry.")
+                              final String registryName,
+                              @RequestParam
+                              @Doc("The href of the removed service.")
+                              final String href,
+                              @RequestHeader(value = "If-Match", required = false)
+                              final String ifMatch,
+                              final HttpServletResponse response) {
+        final URI uri = create(href);
+        while (true) {
+            final Registry current = registryRepository.get(registryName);
+            if (current == null) {
+                response.setStatus(SC_NOT_FOUND);
+                return;
+            }
+            if (ifMatch != null && !matches(ifMatch, current)) {
+                response.setStatus(SC_PRECONDITION_FAILED);
+                return;
+            }
+            if (current.findByHref(uri) == null || registryRepository.compareAndSet(current, current.withoutLink(uri))) {
+                response.setStatus(SC_NO_CONTENT);
+                return;
+            }
+        }
+    }
+
+    private static String eTagOf(final Registry registry) {
+        return "\"" + registry.getVersion() + "\"";
+    }
+
+    private static String eTagOf(final Registry registry, final long healthVersion) {
+        return "\"" + registry.getVersion() + "-" + healthVersion + "\"";
+    }
+
+    /**
+     * Returns true if the entity tag was returned for the current version of the registry, ignoring the version
+     * of the health contained in the representation.
+     */
+    private static boolean matches(final String eTag, final Registry current) {
+        return eTag.equals(eTagOf(current)) || eTag.startsWith("\"" + current.getVersion() + "-");
+    }
+
     @ResponseStatus(value = BAD_REQUEST, reason = "Illegal resource format")
     @ExceptionHandler({IllegalArgumentException.class, NullPointerException.class})
     public void handleBadRequest() {}
 
+    /**
+     * The rendered registries resource, together with the list of registries it was rendered from. The
+     * repository returns the same list until some registry is modified.
+     */
+    private static final class RenderedRegistries {
+        private final List<Registry> registries;
+        private final Map<String, ?> json;
+
+        private RenderedRegistries(final List<Registry> registries, final Map<String, ?> json) {
+            this.registries = registries;
+            this.json = json;
+        }
+    }
+
 }
@@ -17,7 +17,7 @@
 package de.otto.jsonhome.registry.controller;
 
 import de.otto.jsonhome.registry.store.Link;
-import de.otto.jsonhome.registry.store.RegistryRepository;
+import de.otto.jsonhome.registry.store.Registry;
 
 import java.net.URI;
 import java.util.ArrayList;
@@ -26,7 +26,6 @@ import java.util.List;
 import java.util.Map;
 
 import static de.otto.jsonhome.registry.controller.LinkConverter.linksToJson;
-import static java.util.Collections.sort;
 
 /**
  * Converter used to convert the registries resource documents.
@@ -38,29 +37,21 @@ public class RegistriesConverter {
 
     private RegistriesConverter() {}
 
-    public static Map<String, ?> registriesToJson(final URI baseUri, final RegistryRepository repository) {
+    /**
+     * Converts the registries into the registries resource document.
+     *
+     * @param baseUri the base URI of the application.
+     * @param registries the registries, sorted by name.
+     * @return map
+     */
+    public static Map<String, ?> registriesToJson(final URI baseUri, final List<Registry> registries) {
+        final List<Link> links = new ArrayList<Link>(registries.size());
+        for (final Registry registry : registries) {
+            links.add(registry.asLinkFor(baseUri));
+        }
         final Map<String, Object> json = new HashMap<String, Object>();
         json.put("self", baseUri + "/registries");
-        json.put("registries", linksToJson(
-                repositoryLinks(baseUri, repository))
-        );
+        json.put("registries", linksToJson(links));
         return json;
     }
-
-    private static List<Link> repositoryLinks(final URI baseUri, final RegistryRepository repository) {
-        final List<Link> registries = new ArrayList<Link>();
-        for (final String registryName : sortedNamesFrom(repository)) {
-            registries.add(repository
-                    .get(registryName)
-                    .asLinkFor(baseUri)
-            );
-        }
-        return registries;
-    }
-
-    private static List<String> sortedNamesFrom(final RegistryRepository repository) {
-        final List<String> registryNames = new ArrayList<String>(repository.getKnownNames());
-        sort(registryNames);
-        return registryNames;
-    }
 }
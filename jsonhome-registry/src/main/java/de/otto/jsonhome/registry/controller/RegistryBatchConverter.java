@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryBatch;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static de.otto.jsonhome.registry.controller.LinkConverter.jsonToLinks;
+import static de.otto.jsonhome.registry.store.RegistryBatch.registryBatch;
+
+/**
+ * Converter used to convert batch documents into a {@link RegistryBatch}.
+ * <p/>
+ * A batch document contains a list of operations, executed in the given order:
+ * <ul>
+ *     <li>"put": creates or replaces the registry "name" with "title" and "service" links.</li>
+ *     <li>"delete": deletes the registry "name".</li>
+ *     <li>"add": adds the "service" links to the registry "name", replacing links with the same href.</li>
+ *     <li>"remove": removes the links having the hrefs of the "service" links from the registry "name".</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryBatchConverter {
+
+    private RegistryBatchConverter() {}
+
+    public static RegistryBatch jsonToBatch(final Map<String, ?> json, final RegistryRepository repository) {
+        final RegistryBatch batch = registryBatch(repository);
+        try {
+            @SuppressWarnings("unchecked")
+            final List<Map<String, Object>> operations = (List<Map<String, Object>>) json.get("operations");
+            for (final Map<String, Object> operation : operations) {
+                final String op = (String) operation.get("op");
+                final String name = (String) operation.get("name");
+                if ("put".equals(op)) {
+                    batch.createOrUpdate(new Registry(name, (String) operation.get("title"), linksOf(operation)));
+                } else if ("delete".equals(op)) {
+                    batch.delete(name);
+                } else if ("add".equals(op)) {
+                    batch.addLinks(name, linksOf(operation));
+                } else if ("remove".equals(op)) {
+                    batch.removeLinks(name, hrefsOf(operation));
+                } else {
+                    throw new IllegalArgumentException("Unknown operation '" + op + "'");
+                }
+            }
+            return batch;
+        } catch (final NullPointerException e) {
+            throw new IllegalArgumentException("Map does not contain valid operations", e);
+        } catch (final ClassCastException e) {
+            throw new IllegalArgumentException("Map does not contain valid operations", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Link> linksOf(final Map<String, Object> operation) {
+        return jsonToLinks((Collection<Map<String, String>>) operation.get("service"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<URI> hrefsOf(final Map<String, Object> operation) {
+        final List<URI> hrefs = new ArrayList<URI>();
+        for (final Map<String, String> link : (Collection<Map<String, String>>) operation.get("service")) {
+            hrefs.add(URI.create(link.get("href")));
+        }
+        return hrefs;
+    }
+}
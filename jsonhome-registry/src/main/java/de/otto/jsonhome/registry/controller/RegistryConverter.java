@@ -16,6 +16,8 @@
 
 package de.otto.jsonhome.registry.controller;
 
+import de.otto.jsonhome.registry.health.LinkHealth;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
 import de.otto.jsonhome.registry.store.Link;
 import de.otto.jsonhome.registry.store.Registry;
 
@@ -57,17 +59,46 @@ public class RegistryConverter {
     }
 
     public static Map<String, Object> registryToJson(final URI baseUri, final Registry registry) {
+        return registryToJson(baseUri, registry, null);
+    }
+
+    /**
+     * Converts the registry into a map. If a LinkHealthTracker is provided, the health of failing links is added.
+     */
+    public static Map<String, Object> registryToJson(final URI baseUri,
+                                                     final Registry registry,
+                                                     final LinkHealthTracker linkHealthTracker) {
         final Map<String, Object> content = new LinkedHashMap<String, Object>();
         content.put("name", registry.getName());
         content.put("title", registry.getTitle());
         content.put("self", baseUri + "/registries/" + registry.getName());
         content.put("container", baseUri + "/registries");
-        final List<Map<String,String>> linksList = new ArrayList<Map<String, String>>();
+        final List<Map<String,?>> linksList = new ArrayList<Map<String, ?>>();
         for (final Link link : registry.getAll()) {
-            linksList.add(linkToJson(link));
+            final LinkHealth health = linkHealthTracker != null ? linkHealthTracker.getHealth(link.getHref()) : null;
+            if (health != null && !health.isHealthy()) {
+                final Map<String, Object> linkJson = new LinkedHashMap<String, Object>(linkToJson(link));
+                linkJson.put("health", healthToJson(health));
+                linksList.add(linkJson);
+            } else {
+                linksList.add(linkToJson(link));
+            }
         }
         content.put("service", linksList);
         return content;
     }
 
+    public static Map<String, Object> healthToJson(final LinkHealth health) {
+        final Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("state", health.getState().name());
+        if (!health.isHealthy()) {
+            json.put("consecutiveFailures", health.getConsecutiveFailures());
+            json.put("retryAt", health.getRetryAt());
+            if (health.getLastFailure() != null) {
+                json.put("lastFailure", health.getLastFailure());
+            }
+        }
+        return json;
+    }
+
 }
@@ -17,31 +17,52 @@
 package de.otto.jsonhome.registry.controller;
 
 import de.otto.jsonhome.annotation.Doc;
-import de.otto.jsonhome.generator.JsonHomeSource;
+import de.otto.jsonhome.cache.RenderedPage;
+import de.otto.jsonhome.cache.RenderedPageCache;
+import de.otto.jsonhome.controller.JsonHomeResponses;
 import de.otto.jsonhome.model.JsonHome;
-import de.otto.jsonhome.model.JsonHomeBuilder;
 import de.otto.jsonhome.model.ResourceLink;
+import de.otto.jsonhome.registry.health.LinkHealth;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+import freemarker.template.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
-import static de.otto.jsonhome.model.JsonHome.emptyJsonHome;
+import static de.otto.jsonhome.cache.RenderedPage.renderedPage;
+import static de.otto.jsonhome.cache.RenderedPageCache.renderedPageCache;
+import static de.otto.jsonhome.controller.FreeMarkerPageRenderer.defaultConfiguration;
+import static de.otto.jsonhome.controller.FreeMarkerPageRenderer.freeMarkerPageRenderer;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 
 /**
  * This controller is handling the /rel resource of a registry.
+ * <p/>
+ * The relation-type pages are served from a snapshot of the aggregated json-home document of the registry,
+ * so requesting the pages of all link-relation types (for example by a crawler) does not aggregate the
+ * document over and over again. A snapshot is taken every time the HTML json-home document of the
+ * registry is requested, or if the snapshot is older than {@link #setRelationPageSnapshotSeconds(int)}.
+ * <p/>
+ * If a {@link RegistryRepository} and a {@link LinkHealthTracker} are configured, the HTML json-home document
+ * also lists the registered services together with their health. Because the health changes independently of
+ * the json-home document, this page is rendered on every request instead of being cached with the snapshot.
  *
  * @author Guido Steinacker
  * @since 15.09.12
@@ -51,8 +72,13 @@ public class RegistryHtmlController {
 
     private static Logger LOG = LoggerFactory.getLogger(RegistryHtmlController.class);
 
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private RegistryJsonHomeSource registryJsonHomeSource;
+    private RegistryRepository registries;
+    private LinkHealthTracker linkHealthTracker;
+    private Configuration freeMarkerConfiguration = defaultConfiguration();
     private int maxAge = 3600;
+    private long snapshotMillis = TimeUnit.SECONDS.toMillis(60);
     private String defaultRegistry = "default";
 
 
@@ -61,11 +87,36 @@ public class RegistryHtmlController {
         this.registryJsonHomeSource = registryJsonHomeSource;
     }
 
+    @Autowired(required = false)
+    public void setRegistries(final RegistryRepository registries) {
+        this.registries = registries;
+    }
+
+    @Autowired(required = false)
+    public void setLinkHealthTracker(final LinkHealthTracker linkHealthTracker) {
+        this.linkHealthTracker = linkHealthTracker;
+    }
+
+    @Autowired(required = false)
+    public void setFreeMarkerConfig(final FreeMarkerConfig freeMarkerConfig) {
+        this.freeMarkerConfiguration = freeMarkerConfig.getConfiguration();
+    }
+
     public void setMaxAgeSeconds(int maxAge) {
         this.maxAge = maxAge;
         LOG.info("MaxAge is {}", maxAge);
     }
 
+    /**
+     * Sets the maximum age of the snapshot used to serve relation-type pages of a registry.
+     *
+     * @param seconds max age in seconds. Defaults to 60 seconds.
+     */
+    public void setRelationPageSnapshotSeconds(final int seconds) {
+        this.snapshotMillis = TimeUnit.SECONDS.toMillis(seconds);
+        LOG.info("Relation-page snapshots expire after {} seconds", seconds);
+    }
+
     @Value("${jsonhome.defaultRegistry}")
     public void setDefaultRegistry(final String defaultRegistry) {
         this.defaultRegistry = defaultRegistry;
@@ -75,23 +126,28 @@ public class RegistryHtmlController {
             value = "/json-home",
             method = RequestMethod.GET,
             produces = "text/html")
-    @ResponseBody
-    public ModelAndView getHtmlHomeDocument(@RequestParam(required = false)
-                                            @Doc(value = "The name of the json-home registry.")
-                                            final String registry,
-                                            final HttpServletRequest request,
-                                            final HttpServletResponse response) {
+    public void getHtmlHomeDocument(@RequestParam(required = false)
+                                    @Doc(value = "The name of the json-home registry.")
+                                    final String registry,
+                                    final HttpServletRequest request,
+                                    final HttpServletResponse response) throws IOException {
         final String selectedRegistry = registry != null ? registry : defaultRegistry;
-        final JsonHome jsonHome = registryJsonHomeSource.getJsonHome(selectedRegistry);
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
+        final Snapshot snapshot = takeSnapshot(selectedRegistry);
         final Map<String,Object> resources = new HashMap<String, Object>();
-        resources.put("resources", jsonHome.getResources().values());
+        resources.put("resources", snapshot.jsonHome.getResources().values());
         resources.put("contextpath", request.getContextPath());
         if (registry != null) {
             resources.put("relQuery", "?registry=" + registry);
         }
-        return new ModelAndView("resources", resources);
+        final List<Map<String, Object>> services = servicesOf(selectedRegistry);
+        if (services != null) {
+            // the health of the services changes independently of the snapshot, so the page is not cached:
+            resources.put("services", services);
+            writeUncachedHtmlPage("resources", resources, request, response);
+        } else {
+            final String key = "resources " + request.getContextPath() + " " + registry;
+            writeHtmlPage(snapshot, key, "resources", resources, request, response);
+        }
     }
 
     @RequestMapping(
@@ -99,25 +155,27 @@ public class RegistryHtmlController {
             method = RequestMethod.GET,
             produces = "text/html"
     )
-    public ModelAndView getRelationshipType(@RequestParam(required = false)
-                                            @Doc(value = "The name of the json-home registry.")
-                                            final String registry,
-                                            final HttpServletRequest request) {
-
-        final URI relationTypeURI = URI.create(request.getRequestURL().toString());
+    public void getRelationshipType(@RequestParam(required = false)
+                                    @Doc(value = "The name of the json-home registry.")
+                                    final String registry,
+                                    final HttpServletRequest request,
+                                    final HttpServletResponse response) throws IOException {
+        final String relationType = request.getRequestURL().toString();
         final String selectedRegistry = registry != null ? registry : defaultRegistry;
-        final ResourceLink resourceLink = resourceLink(relationTypeURI, selectedRegistry);
+        final Snapshot snapshot = snapshotOf(selectedRegistry);
+        final ResourceLink resourceLink = snapshot.resourceLinks.get(relationType);
         if (resourceLink != null) {
             final Map<String,Object> model = new HashMap<String, Object>();
             model.put("contextpath", request.getContextPath());
             model.put("resource", resourceLink);
+            final String key = relationType + " " + request.getContextPath();
             if (resourceLink.isDirectLink()) {
-                return new ModelAndView("directresource", model);
+                writeHtmlPage(snapshot, key, "directresource", model, request, response);
             } else {
-                return new ModelAndView("templatedresource", model);
+                writeHtmlPage(snapshot, key, "templatedresource", model, request, response);
             }
         } else {
-            throw new IllegalArgumentException("Unknown relation type " + relationTypeURI);
+            throw new IllegalArgumentException("Unknown relation type " + relationType);
         }
     }
 
@@ -127,8 +185,124 @@ public class RegistryHtmlController {
         response.sendError(404, e.getMessage());
     }
 
-    private ResourceLink resourceLink(final URI relationType, final String selectedRegistry) {
-        final JsonHome jsonHome = registryJsonHomeSource.getJsonHome(selectedRegistry);
-        return jsonHome.getResourceFor(relationType);
+    /**
+     * Returns the services of the registry together with their health, or null if the health is not tracked.
+     */
+    private List<Map<String, Object>> servicesOf(final String registryName) {
+        if (registries == null || linkHealthTracker == null) {
+            return null;
+        }
+        final Registry registry = registries.get(registryName);
+        if (registry == null) {
+            return null;
+        }
+        final List<Map<String, Object>> services = new ArrayList<Map<String, Object>>();
+        for (final Link link : registry.getAll()) {
+            final LinkHealth health = linkHealthTracker.getHealth(link.getHref());
+            final Map<String, Object> service = new HashMap<String, Object>();
+            service.put("title", link.getTitle());
+            service.put("href", link.getHref().toString());
+            service.put("state", health.getState().name());
+            service.put("failures", health.getConsecutiveFailures());
+            service.put("lastFailure", health.getLastFailure() != null ? health.getLastFailure() : "");
+            services.add(service);
+        }
+        return services;
+    }
+
+    /**
+     * Returns the current snapshot of the registry, or takes a new one, if there is no snapshot or the
+     * snapshot is expired.
+     */
+    private Snapshot snapshotOf(final String registryName) {
+        final Snapshot snapshot = snapshots.get(registryName);
+        if (snapshot != null && !snapshot.isOlderThan(snapshotMillis)) {
+            return snapshot;
+        }
+        return takeSnapshot(registryName);
+    }
+
+    /**
+     * Aggregates the json-home document of the registry and replaces the current snapshot, if the document
+     * has changed.
+     */
+    private Snapshot takeSnapshot(final String registryName) {
+        final JsonHome jsonHome;
+        try {
+            jsonHome = registryJsonHomeSource.getJsonHome(registryName);
+        } catch (final IllegalArgumentException e) {
+            snapshots.remove(registryName);
+            throw e;
+        }
+        final Snapshot current = snapshots.get(registryName);
+        final Snapshot snapshot = current != null && current.jsonHome.equals(jsonHome)
+                ? current.renewed()
+                : new Snapshot(jsonHome, renderedPageCache());
+        snapshots.put(registryName, snapshot);
+        return snapshot;
+    }
+
+    private void writeHtmlPage(final Snapshot snapshot,
+                               final String key,
+                               final String viewName,
+                               final Map<String, Object> model,
+                               final HttpServletRequest request,
+                               final HttpServletResponse response) throws IOException {
+        final RenderedPage page = snapshot.pageCache.get(snapshot.jsonHome, key,
+                freeMarkerPageRenderer(freeMarkerConfiguration, viewName, model));
+        JsonHomeResponses.writeHtmlPage(page, maxAge, request, response);
+    }
+
+    /**
+     * Renders a page that must not be cached, because it contains information that is not part of the
+     * snapshot. Clients must revalidate the page on every request.
+     */
+    private void writeUncachedHtmlPage(final String viewName,
+                                       final Map<String, Object> model,
+                                       final HttpServletRequest request,
+                                       final HttpServletResponse response) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        freeMarkerPageRenderer(freeMarkerConfiguration, viewName, model).render(stream);
+        JsonHomeResponses.writeHtmlPage(renderedPage(stream.toByteArray()), 0, request, response);
+    }
+
+    /**
+     * The aggregated json-home document of a registry, together with the resource links indexed by
+     * link-relation type and the pages already rendered from the document.
+     */
+    private static final class Snapshot {
+        private final JsonHome jsonHome;
+        private final Map<String, ResourceLink> resourceLinks;
+        private final RenderedPageCache pageCache;
+        private final long timestamp;
+
+        private Snapshot(final JsonHome jsonHome, final RenderedPageCache pageCache) {
+            this(jsonHome, indexOf(jsonHome), pageCache);
+        }
+
+        private Snapshot(final JsonHome jsonHome,
+                         final Map<String, ResourceLink> resourceLinks,
+                         final RenderedPageCache pageCache) {
+            this.jsonHome = jsonHome;
+            this.resourceLinks = resourceLinks;
+            this.pageCache = pageCache;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        private Snapshot renewed() {
+            return new Snapshot(jsonHome, resourceLinks, pageCache);
+        }
+
+        private boolean isOlderThan(final long millis) {
+            return System.currentTimeMillis() - timestamp > millis;
+        }
+
+        private static Map<String, ResourceLink> indexOf(final JsonHome jsonHome) {
+            final Map<String, ResourceLink> index = new HashMap<String, ResourceLink>();
+            for (final ResourceLink resourceLink : jsonHome.getResources().values()) {
+                index.put(resourceLink.getLinkRelationType().toString(), resourceLink);
+            }
+            return index;
+        }
     }
 }
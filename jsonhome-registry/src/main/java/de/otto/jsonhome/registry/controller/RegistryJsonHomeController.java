@@ -18,6 +18,11 @@ package de.otto.jsonhome.registry.controller;
 
 import de.otto.jsonhome.annotation.Doc;
 import de.otto.jsonhome.controller.JsonHomeController;
+import de.otto.jsonhome.controller.JsonHomeResponses;
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.converter.ResourceLinkFragments;
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import de.otto.jsonhome.model.JsonHome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,18 +31,27 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import static de.otto.jsonhome.converter.JsonHomeConverter.toRepresentation;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
+import static de.otto.jsonhome.converter.ResourceLinkFragments.resourceLinkFragments;
+import static de.otto.jsonhome.delta.JsonHomeHistory.jsonHomeHistory;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 
 /**
+ * Controller serving the aggregated json-home documents of the registries.
+ * <p/>
+ * The resource links of the aggregates are serialized only once per media type: documents are written by
+ * concatenating the cached {@link ResourceLinkFragments} of their resource links. Because all registries are
+ * sharing the resource links of unchanged upstream documents, the fragments are shared as well.
+ *
  * @author Guido Steinacker
  * @since 08.01.13
  */
@@ -49,6 +63,8 @@ public class RegistryJsonHomeController {
     private RegistryJsonHomeSource jsonHomeSource;
     private int maxAge = 3600;
     private String defaultRegistry = "default";
+    private final ConcurrentMap<String, JsonHomeHistory> histories = new ConcurrentHashMap<String, JsonHomeHistory>();
+    private final ResourceLinkFragments fragments = resourceLinkFragments();
 
     @Autowired
     public void setRegistryJsonHomeSource(final RegistryJsonHomeSource registryJsonHomeSource) {
@@ -68,37 +84,70 @@ public class RegistryJsonHomeController {
     @RequestMapping(
             value = "/json-home",
             produces = {"application/json-home"})
-    @ResponseBody
-    public Map<String, ?> getAsApplicationJsonHome(@RequestParam(required = false)
-                                                   @Doc(value = "The name of the json-home registry.")
-                                                   final String registry,
-                                                   final HttpServletResponse response) {
-        LOG.info("Returning json-home in application/json-home format.");
-        // home document should be cached:
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
+    public void getAsApplicationJsonHome(@RequestParam(required = false)
+                                         @Doc(value = "The name of the json-home registry.")
+                                         final String registry,
+                                         final HttpServletRequest request,
+                                         final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json-home format.");
         final String selectedRegistry = registry != null ? registry : defaultRegistry;
-        return toRepresentation(jsonHomeSource.getJsonHome(selectedRegistry), APPLICATION_JSONHOME);
+        writeJsonHome(selectedRegistry, jsonHomeSource.getJsonHome(selectedRegistry), APPLICATION_JSONHOME, request, response);
     }
 
     @RequestMapping(
             value = "/json-home",
             produces = {"application/json"})
-    @ResponseBody
-    public Map<String, ?> getAsApplicationJson(@RequestParam(required = false)
-                                               @Doc(value = "The name of the json-home registry.")
-                                               final String registry,
-                                               final HttpServletResponse response) {
-        LOG.info("Returning json-home in application/json format.");
-        // home document should be cached:
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
+    public void getAsApplicationJson(@RequestParam(required = false)
+                                     @Doc(value = "The name of the json-home registry.")
+                                     final String registry,
+                                     final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json format.");
+        final String selectedRegistry = registry != null ? registry : defaultRegistry;
+        writeJsonHome(selectedRegistry, getJsonHomeOrSendError(selectedRegistry, response), APPLICATION_JSON, request, response);
+    }
+
+    @RequestMapping(
+            value = "/json-home",
+            produces = {"application/json-home+smile"})
+    public void getAsApplicationJsonHomeSmile(@RequestParam(required = false)
+                                              @Doc(value = "The name of the json-home registry.")
+                                              final String registry,
+                                              final HttpServletRequest request,
+                                              final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json-home+smile format.");
+        final String selectedRegistry = registry != null ? registry : defaultRegistry;
+        writeJsonHome(selectedRegistry, getJsonHomeOrSendError(selectedRegistry, response), APPLICATION_JSONHOME_SMILE, request, response);
+    }
+
+    private JsonHome getJsonHomeOrSendError(final String registry, final HttpServletResponse response) {
         try {
-            final String selectedRegistry = registry != null ? registry : defaultRegistry;
-            return toRepresentation(jsonHomeSource.getJsonHome(selectedRegistry), APPLICATION_JSON);
+            return jsonHomeSource.getJsonHome(registry);
         } catch (final IllegalArgumentException e) {
+            histories.remove(registry);
             try { response.sendError(SC_NOT_FOUND, e.getMessage()); } catch (IOException ignore) { }
             throw e;
         }
     }
+
+    /**
+     * Writes the aggregated json-home document into the response, using the cached fragments of the
+     * resource links. The versions of the documents are tracked per registry, so clients are able to
+     * get deltas since the version they already know.
+     */
+    private void writeJsonHome(final String registry,
+                               final JsonHome jsonHome,
+                               final JsonHomeMediaType mediaType,
+                               final HttpServletRequest request,
+                               final HttpServletResponse response) throws IOException {
+        JsonHomeHistory history = histories.get(registry);
+        if (history == null) {
+            final JsonHomeHistory newHistory = jsonHomeHistory();
+            history = histories.putIfAbsent(registry, newHistory);
+            if (history == null) {
+                history = newHistory;
+            }
+        }
+        JsonHomeResponses.writeJsonHome(jsonHome, fragments, mediaType, history, maxAge, request, response);
+    }
 }
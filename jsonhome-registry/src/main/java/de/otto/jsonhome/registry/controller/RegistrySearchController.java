@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.registry.search.IndexedResourceLink;
+import de.otto.jsonhome.registry.search.RegistrySearchIndexer;
+import de.otto.jsonhome.registry.search.SearchQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.ResourceLinkConverter.toRepresentation;
+import static de.otto.jsonhome.registry.search.ResourceLinkIndex.*;
+import static de.otto.jsonhome.registry.search.SearchQuery.searchQuery;
+import static java.util.Collections.singletonMap;
+
+/**
+ * Controller used to search the resource links of all registries.
+ * <p/>
+ * Every request parameter is a filter; a resource link must match all filters:
+ * <pre><code>
+ *     GET /search?accept=application/example-product&amp;allow=PUT&amp;registry=live
+ *
+ *     {
+ *         "results" : [
+ *             {
+ *                 "registry" : "live",
+ *                 "rel" : "http://example.org/rel/product",
+ *                 "href-template" : "http://example.org/products/{productId}",
+ *                 "href-vars" : { ... },
+ *                 "hints" : { ... }
+ *             }
+ *         ]
+ *     }
+ * </code></pre>
+ * Supported parameters are <code>rel</code> (tokens of the link-relation type), <code>q</code> (words of the
+ * description), <code>representation</code>, <code>accept</code>, <code>allow</code>, <code>status</code>,
+ * <code>auth</code> and <code>registry</code>. Parameters may be repeated.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+@Controller
+public class RegistrySearchController {
+
+    private static final Map<String, String> FIELDS = new LinkedHashMap<String, String>();
+    static {
+        FIELDS.put("rel", REL);
+        FIELDS.put("q", TEXT);
+        FIELDS.put("representation", REPRESENTATION);
+        FIELDS.put("accept", ACCEPT);
+        FIELDS.put("allow", ALLOW);
+        FIELDS.put("status", STATUS);
+        FIELDS.put("auth", AUTH);
+        FIELDS.put("registry", REGISTRY);
+    }
+
+    private RegistrySearchIndexer indexer;
+
+    @Autowired
+    public void setRegistrySearchIndexer(final RegistrySearchIndexer indexer) {
+        this.indexer = indexer;
+    }
+
+    @RequestMapping(
+            value = "/search",
+            method = RequestMethod.GET,
+            produces = "application/json")
+    @ResponseBody
+    public Map<String, ?> search(final HttpServletRequest request) {
+        SearchQuery query = searchQuery();
+        for (final Map.Entry<String, String> field : FIELDS.entrySet()) {
+            final String[] values = request.getParameterValues(field.getKey());
+            if (values != null) {
+                for (final String value : values) {
+                    query = query.with(field.getValue(), value);
+                }
+            }
+        }
+        final List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+        for (final IndexedResourceLink hit : indexer.getIndex().search(query)) {
+            final Map<String, Object> result = new LinkedHashMap<String, Object>();
+            result.put("registry", hit.getRegistryName());
+            result.put("rel", hit.getResourceLink().getLinkRelationType().toString());
+            result.putAll(toRepresentation(hit.getResourceLink(), APPLICATION_JSON).values().iterator().next());
+            results.add(result);
+        }
+        return singletonMap("results", results);
+    }
+}
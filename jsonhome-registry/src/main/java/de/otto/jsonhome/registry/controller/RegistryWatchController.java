@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.annotation.Doc;
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.registry.watch.RegistryChangeNotifier;
+import de.otto.jsonhome.registry.watch.RegistryWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeDeltaTo;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Controller used to watch the aggregated json-home documents of registries for changes.
+ * <p/>
+ * The watch resource is using the text/event-stream format of server-sent events. Every response contains at
+ * most one event: the request waits up to {@link #setTimeoutSeconds(int) timeoutSeconds} for a change of the
+ * registry, writes the event and completes. EventSource clients are reconnecting automatically, sending the id
+ * of the last event in the Last-Event-ID header:
+ * <pre><code>
+ *     GET /registries/live/watch
+ *     Last-Event-ID: 2fd4e1c67a2d28fced849ee1bb76e7391b93eb12
+ *
+ *     retry: 1000
+ *     id: de9f2c7fd25e1b3afad3e85a0bd17d9b100db4b3
+ *     event: version
+ *     data: de9f2c7fd25e1b3afad3e85a0bd17d9b100db4b3
+ * </code></pre>
+ * If the request parameter <code>delta=true</code> is given, and the last version is known, a delta event
+ * containing the application/json delta between the two versions is written instead of the version event.
+ * <p/>
+ * Waiting requests are using the asynchronous request processing of Servlet 3.0, so they are not holding a
+ * thread of the servlet container: the {@link RegistryChangeNotifier} completes them from its polling thread.
+ * The DispatcherServlet (and every filter in front of it) must therefore support asynchronous requests
+ * (<code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code>). If a request does not support asynchronous
+ * processing, or the notifier does not accept more watchers, the request is answered immediately, and the client
+ * is asked to reconnect after timeoutSeconds, so it is not polling more often than a waiting client.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+@Controller
+public class RegistryWatchController {
+
+    private static Logger LOG = LoggerFactory.getLogger(RegistryWatchController.class);
+
+    /**
+     * Additional time, before the servlet container expires a waiting request that was not completed by the
+     * notifier.
+     */
+    private static final long ASYNC_TIMEOUT_GRACE_MILLIS = 30000L;
+
+    private RegistryChangeNotifier notifier;
+    private int timeoutSeconds = 25;
+    private int retryMillis = 1000;
+
+    @Autowired
+    public void setRegistryChangeNotifier(final RegistryChangeNotifier notifier) {
+        this.notifier = notifier;
+    }
+
+    /**
+     * @param timeoutSeconds the maximum time a request is waiting for changes. Defaults to 25s.
+     */
+    public void setTimeoutSeconds(final int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * @param retryMillis the time clients should wait before reconnecting after an event or a timeout.
+     *                    Defaults to 1000ms.
+     */
+    public void setRetryMillis(final int retryMillis) {
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Waits for a change of the aggregated json-home document of the registry.
+     * <p/>
+     * HTTP status codes returned by this method:
+     * <ul>
+     *     <li>200 OK: if the registry changed, or the timeout expired without changes.</li>
+     *     <li>404 NOT FOUND: if the registry does not exist.</li>
+     * </ul>
+     */
+    @RequestMapping(
+            value = "/registries/{registryName}/watch",
+            method = RequestMethod.GET,
+            produces = "text/event-stream")
+    public void watch(@PathVariable
+                      @Doc("The name of registry.")
+                      final String registryName,
+                      @RequestHeader(value = "Last-Event-ID", required = false)
+                      final String lastEventId,
+                      @RequestParam(required = false)
+                      @Doc("The last known version, if the Last-Event-ID header is not available.")
+                      final String version,
+                      @RequestParam(required = false, defaultValue = "false")
+                      @Doc("Whether delta events should be sent.")
+                      final boolean delta,
+                      final HttpServletRequest request,
+                      final HttpServletResponse response) throws IOException {
+        final String knownVersion = lastEventId != null ? lastEventId : version;
+        final String currentVersion;
+        try {
+            currentVersion = notifier.getCurrentVersion(registryName);
+        } catch (final IllegalArgumentException e) {
+            response.sendError(SC_NOT_FOUND, e.getMessage());
+            return;
+        }
+        if (!currentVersion.equals(knownVersion)) {
+            writeEvent(response, registryName, knownVersion, currentVersion, delta, retryMillis);
+        } else if (!request.isAsyncSupported()) {
+            LOG.debug("Asynchronous requests are not supported, not waiting for changes of registry {}", registryName);
+            writeEvent(response, registryName, knownVersion, currentVersion, delta, timeoutSeconds * 1000L);
+        } else {
+            final AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.setTimeout(timeoutSeconds * 1000L + ASYNC_TIMEOUT_GRACE_MILLIS);
+            final AsyncWatcher watcher = new AsyncWatcher(registryName, knownVersion, delta, asyncContext);
+            asyncContext.addListener(watcher);
+            try {
+                if (!notifier.watch(registryName, knownVersion, timeoutSeconds * 1000L, watcher)) {
+                    watcher.complete(currentVersion, timeoutSeconds * 1000L);
+                }
+            } catch (final IllegalArgumentException e) {
+                watcher.onRemoved();
+            }
+        }
+    }
+
+    private void writeEvent(final HttpServletResponse response,
+                            final String registryName,
+                            final String knownVersion,
+                            final String currentVersion,
+                            final boolean delta,
+                            final long retryMillis) throws IOException {
+        response.setStatus(SC_OK);
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        final OutputStream stream = response.getOutputStream();
+        write(stream, "retry: " + retryMillis + "\n");
+        if (currentVersion.equals(knownVersion)) {
+            write(stream, ": no changes\n\n");
+        } else {
+            LOG.debug("Notifying watcher of registry {} about version {}", registryName, currentVersion);
+            final JsonHomeDelta jsonHomeDelta = delta ? notifier.deltaSince(registryName, knownVersion) : null;
+            write(stream, "id: " + currentVersion + "\n");
+            if (jsonHomeDelta != null && jsonHomeDelta.getToVersion().equals(currentVersion)) {
+                final ByteArrayOutputStream data = new ByteArrayOutputStream();
+                writeDeltaTo(jsonHomeDelta, APPLICATION_JSON, data);
+                write(stream, "event: delta\ndata: " + data.toString("UTF-8") + "\n\n");
+            } else {
+                write(stream, "event: version\ndata: " + currentVersion + "\n\n");
+            }
+        }
+        stream.flush();
+    }
+
+    private static void write(final OutputStream stream, final String s) throws IOException {
+        stream.write(s.getBytes("UTF-8"));
+    }
+
+    /**
+     * Completes a waiting asynchronous request, as soon as it is notified by the RegistryChangeNotifier, or the
+     * servlet container expires the request.
+     */
+    private final class AsyncWatcher implements RegistryWatcher, AsyncListener {
+        private final String registryName;
+        private final String knownVersion;
+        private final boolean delta;
+        private final AsyncContext asyncContext;
+
+        private AsyncWatcher(final String registryName,
+                             final String knownVersion,
+                             final boolean delta,
+                             final AsyncContext asyncContext) {
+            this.registryName = registryName;
+            this.knownVersion = knownVersion;
+            this.delta = delta;
+            this.asyncContext = asyncContext;
+        }
+
+        @Override
+        public void onVersion(final String currentVersion) {
+            complete(currentVersion, retryMillis);
+        }
+
+        @Override
+        public void onRemoved() {
+            try {
+                ((HttpServletResponse) asyncContext.getResponse()).sendError(
+                        SC_NOT_FOUND, "Registry '" + registryName + "' does not exist.");
+            } catch (final IOException e) {
+                LOG.debug("Unable to notify watcher of registry {}: {}", registryName, e.getMessage());
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        private void complete(final String currentVersion, final long retryMillis) {
+            try {
+                writeEvent((HttpServletResponse) asyncContext.getResponse(),
+                        registryName, knownVersion, currentVersion, delta, retryMillis);
+            } catch (final IOException e) {
+                LOG.debug("Unable to notify watcher of registry {}: {}", registryName, e.getMessage());
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            if (notifier.cancel(registryName, this)) {
+                complete(knownVersion, retryMillis);
+            }
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            notifier.cancel(registryName, this);
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            notifier.cancel(registryName, this);
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.registry.health;
+
+import java.net.URI;
+
+/**
+ * The immutable health state of a registered link, as tracked by the {@link LinkHealthTracker}.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class LinkHealth {
+
+    /**
+     * The state of the circuit breaker of a link.
+     */
+    public enum State {
+        /** The json-home document of the link is retrieved during aggregation. */
+        CLOSED,
+        /** The link recently failed and is skipped until the backoff period has expired. */
+        OPEN,
+        /** The link failed too often; it is only probed after the maximum backoff period. */
+        QUARANTINED
+    }
+
+    private final URI href;
+    private final State state;
+    private final int consecutiveFailures;
+    private final long retryAt;
+    private final String lastFailure;
+
+    private LinkHealth(final URI href,
+                       final State state,
+                       final int consecutiveFailures,
+                       final long retryAt,
+                       final String lastFailure) {
+        this.href = href;
+        this.state = state;
+        this.consecutiveFailures = consecutiveFailures;
+        this.retryAt = retryAt;
+        this.lastFailure = lastFailure;
+    }
+
+    public static LinkHealth healthy(final URI href) {
+        return new LinkHealth(href, State.CLOSED, 0, 0L, null);
+    }
+
+    static LinkHealth failed(final URI href,
+                             final State state,
+                             final int consecutiveFailures,
+                             final long retryAt,
+                             final String lastFailure) {
+        return new LinkHealth(href, state, consecutiveFailures, retryAt, lastFailure);
+    }
+
+    public URI getHref() {
+        return href;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true, if the link is neither failing nor quarantined.
+     */
+    public boolean isHealthy() {
+        return state == State.CLOSED;
+    }
+
+    public boolean isQuarantined() {
+        return state == State.QUARANTINED;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns the point in time (in milliseconds since the epoch) after which the link is retried.
+     *
+     * @return retry time, or 0 if the link is healthy.
+     */
+    public long getRetryAt() {
+        return retryAt;
+    }
+
+    /**
+     * @return message of the last failure, or null if the link is healthy.
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        LinkHealth that = (LinkHealth) o;
+
+        if (consecutiveFailures != that.consecutiveFailures) return false;
+        if (retryAt != that.retryAt) return false;
+        if (href != null ? !href.equals(that.href) : that.href != null) return false;
+        if (lastFailure != null ? !lastFailure.equals(that.lastFailure) : that.lastFailure != null) return false;
+        if (state != that.state) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = href != null ? href.hashCode() : 0;
+        result = 31 * result + (state != null ? state.hashCode() : 0);
+        result = 31 * result + consecutiveFailures;
+        result = 31 * result + (int) (retryAt ^ (retryAt >>> 32));
+        result = 31 * result + (lastFailure != null ? lastFailure.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkHealth{" +
+                "href=" + href +
+                ", state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", retryAt=" + retryAt +
+                ", lastFailure='" + lastFailure + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.registry.health;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.otto.jsonhome.registry.health.LinkHealth.State.OPEN;
+import static de.otto.jsonhome.registry.health.LinkHealth.State.QUARANTINED;
+import static de.otto.jsonhome.registry.health.LinkHealth.failed;
+import static de.otto.jsonhome.registry.health.LinkHealth.healthy;
+
+/**
+ * Tracks the health of registered links and implements a circuit breaker per link.
+ * <p/>
+ * Every failure to get the json-home document of a link opens the circuit of the link for a backoff period
+ * that is doubled with every consecutive failure, starting at {@link #setInitialBackoffMillis(long)} and limited
+ * by {@link #setMaxBackoffMillis(long)}. While the circuit is open, the link is not {@link #isAvailable(URI)
+ * available}. After {@link #setQuarantineThreshold(int)} consecutive failures, the link is quarantined and
+ * only retried after the maximum backoff period. A single success closes the circuit.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class LinkHealthTracker {
+
+    private static Logger LOG = LoggerFactory.getLogger(LinkHealthTracker.class);
+
+    private final ConcurrentMap<URI, LinkHealth> failingLinks = new ConcurrentHashMap<URI, LinkHealth>();
+    private final AtomicLong version = new AtomicLong();
+    private long initialBackoffMillis = 1000L;
+    private long maxBackoffMillis = 300000L;
+    private int quarantineThreshold = 10;
+
+    /**
+     * @param initialBackoffMillis the period a link is skipped after the first failure. Defaults to 1s.
+     */
+    public void setInitialBackoffMillis(final long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * @param maxBackoffMillis the maximum period a link is skipped. Defaults to 5min.
+     */
+    public void setMaxBackoffMillis(final long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @param quarantineThreshold number of consecutive failures after which a link is quarantined. Defaults to 10.
+     */
+    public void setQuarantineThreshold(final int quarantineThreshold) {
+        this.quarantineThreshold = quarantineThreshold;
+    }
+
+    /**
+     * Returns true if the json-home document of the link should be retrieved, false if the circuit is open.
+     *
+     * @param href URI of the link.
+     * @return boolean
+     */
+    public boolean isAvailable(final URI href) {
+        final LinkHealth health = failingLinks.get(href);
+        return health == null || currentTimeMillis() >= health.getRetryAt();
+    }
+
+    /**
+     * Returns the version of the tracked health, which is incremented whenever the health of a link changes.
+     * Representations containing the health use the version to build their entity tags.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the current health of the link.
+     *
+     * @param href URI of the link.
+     * @return LinkHealth
+     */
+    public LinkHealth getHealth(final URI href) {
+        final LinkHealth health = failingLinks.get(href);
+        return health != null ? health : healthy(href);
+    }
+
+    /**
+     * Records the successful retrieval of a json-home document and closes the circuit of the link.
+     *
+     * @param href URI of the link.
+     */
+    public void recordSuccess(final URI href) {
+        if (failingLinks.remove(href) != null) {
+            version.incrementAndGet();
+            LOG.info("Json-home document {} is available again.", href);
+        }
+    }
+
+    /**
+     * Records a failure to retrieve the json-home document of the link and opens the circuit.
+     *
+     * @param href URI of the link.
+     * @param reason the reason of the failure.
+     * @return the new health of the link.
+     */
+    public LinkHealth recordFailure(final URI href, final String reason) {
+        while (true) {
+            final LinkHealth previous = failingLinks.get(href);
+            final int failures = previous != null ? previous.getConsecutiveFailures() + 1 : 1;
+            final LinkHealth.State state = quarantineThreshold > 0 && failures >= quarantineThreshold
+                    ? QUARANTINED
+                    : OPEN;
+            final LinkHealth health = failed(href, state, failures, currentTimeMillis() + backoffMillis(state, failures), reason);
+            final boolean updated = previous != null
+                    ? failingLinks.replace(href, previous, health)
+                    : failingLinks.putIfAbsent(href, health) == null;
+            if (updated) {
+                version.incrementAndGet();
+                if (state == QUARANTINED && (previous == null || !previous.isQuarantined())) {
+                    LOG.warn("Json-home document {} failed {} times and is quarantined.", href, failures);
+                }
+                return health;
+            }
+        }
+    }
+
+    /**
+     * Forgets the health of a link, for example after the link was removed from the registry.
+     *
+     * @param href URI of the link.
+     */
+    public void reset(final URI href) {
+        if (failingLinks.remove(href) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the current time in milliseconds. Overridden in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private long backoffMillis(final LinkHealth.State state, final int failures) {
+        final int shift = failures - 1;
+        if (state == QUARANTINED || shift >= Long.numberOfLeadingZeros(initialBackoffMillis) - 1) {
+            return maxBackoffMillis;
+        }
+        return Math.min(initialBackoffMillis << shift, maxBackoffMillis);
+    }
+}
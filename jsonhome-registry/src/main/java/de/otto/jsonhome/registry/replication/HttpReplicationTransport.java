@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.jsonToOperations;
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.operationToJson;
+
+/**
+ * A ReplicationTransport exchanging operations with the {@link ReplicationController} of the peer nodes.
+ * <p/>
+ * Operations are published asynchronously, so writes are not blocked by slow or unavailable peers. Peers
+ * missing an operation will catch up during their next synchronization.
+ * <p/>
+ * Requests to peers are limited by a connect timeout and a socket timeout, so an unresponsive peer is not able
+ * to stall the publisher or the anti-entropy synchronization.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class HttpReplicationTransport implements ReplicationTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpReplicationTransport.class);
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 10000;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "jsonhome-replication-publisher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private List<URI> peers = new ArrayList<URI>();
+
+    public HttpReplicationTransport() {
+        this(new DefaultHttpClient(new PoolingClientConnectionManager()));
+    }
+
+    /**
+     * Creates a transport using the given HttpClient. The default timeouts are applied to the parameters of
+     * the client.
+     *
+     * @param httpClient the HttpClient used to connect to the peers.
+     */
+    public HttpReplicationTransport(final HttpClient httpClient) {
+        this.httpClient = httpClient;
+        setConnectTimeoutMillis(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        setSocketTimeoutMillis(DEFAULT_SOCKET_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Sets the timeout until a connection to a peer is established. Defaults to 2s.
+     *
+     * @param connectTimeoutMillis the connect timeout in milliseconds.
+     */
+    public void setConnectTimeoutMillis(final int connectTimeoutMillis) {
+        HttpConnectionParams.setConnectionTimeout(httpClient.getParams(), connectTimeoutMillis);
+    }
+
+    /**
+     * Sets the maximum time of inactivity while waiting for data from a peer. Defaults to 10s.
+     *
+     * @param socketTimeoutMillis the socket timeout in milliseconds.
+     */
+    public void setSocketTimeoutMillis(final int socketTimeoutMillis) {
+        HttpConnectionParams.setSoTimeout(httpClient.getParams(), socketTimeoutMillis);
+    }
+
+    /**
+     * Sets the base URIs of the other nodes of the cluster, for example http://registry-2.example.org.
+     *
+     * @param peers base URIs of the peer nodes.
+     */
+    public void setPeers(final Collection<String> peers) {
+        final List<URI> uris = new ArrayList<URI>();
+        for (final String peer : peers) {
+            uris.add(URI.create(peer.endsWith("/") ? peer.substring(0, peer.length() - 1) : peer));
+        }
+        this.peers = uris;
+    }
+
+    @Override
+    public void join(final Replica replica) {
+        LOG.info("Node {} joined replication with peers {}", replica.getNodeId(), peers);
+    }
+
+    @Override
+    public void leave(final Replica replica) {
+        publisher.shutdown();
+    }
+
+    @Override
+    public void publish(final Replica origin, final RegistryOperation operation) {
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final URI peer : peers) {
+                    post(URI.create(peer + "/replication/operations"), operationToJson(operation));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<RegistryOperation> fetchState(final Replica requester) {
+        final List<RegistryOperation> state = new ArrayList<RegistryOperation>();
+        for (final URI peer : peers) {
+            final Map<String, ?> json = get(URI.create(peer + "/replication/state"));
+            if (json != null) {
+                state.addAll(jsonToOperations(json));
+            }
+        }
+        return state;
+    }
+
+    private void post(final URI uri, final Map<String, ?> json) {
+        final HttpPost post = new HttpPost(uri);
+        try {
+            post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(json), ContentType.APPLICATION_JSON));
+            final HttpResponse response = httpClient.execute(post);
+            EntityUtils.consume(response.getEntity());
+            if (response.getStatusLine().getStatusCode() >= 300) {
+                LOG.warn("Peer {} rejected operation: {}", uri, response.getStatusLine());
+            }
+        } catch (final IOException e) {
+            LOG.warn("Unable to publish operation to {}: {}", uri, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> get(final URI uri) {
+        final HttpGet get = new HttpGet(uri);
+        get.setHeader("Accept", "application/json");
+        try {
+            final HttpResponse response = httpClient.execute(get);
+            if (response.getStatusLine().getStatusCode() == 200) {
+                return objectMapper.readValue(response.getEntity().getContent(), Map.class);
+            } else {
+                EntityUtils.consume(response.getEntity());
+                LOG.warn("Unable to get state from {}: {}", uri, response.getStatusLine());
+            }
+        } catch (final IOException e) {
+            LOG.warn("Unable to get state from {}: {}", uri, e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A ReplicationTransport connecting replicas in the same JVM. Operations are delivered synchronously.
+ * <p/>
+ * Mainly used for testing, and as a reference for network-based transports.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class LocalReplicationTransport implements ReplicationTransport {
+
+    private final List<Replica> replicas = new CopyOnWriteArrayList<Replica>();
+
+    private LocalReplicationTransport() {
+    }
+
+    public static LocalReplicationTransport localReplicationTransport() {
+        return new LocalReplicationTransport();
+    }
+
+    @Override
+    public void join(final Replica replica) {
+        replicas.add(replica);
+    }
+
+    @Override
+    public void leave(final Replica replica) {
+        replicas.remove(replica);
+    }
+
+    @Override
+    public void publish(final Replica origin, final RegistryOperation operation) {
+        for (final Replica replica : replicas) {
+            if (replica != origin) {
+                replica.apply(operation);
+            }
+        }
+    }
+
+    @Override
+    public Collection<RegistryOperation> fetchState(final Replica requester) {
+        final List<RegistryOperation> state = new ArrayList<RegistryOperation>();
+        for (final Replica replica : replicas) {
+            if (replica != requester) {
+                state.addAll(replica.getState());
+            }
+        }
+        return state;
+    }
+}
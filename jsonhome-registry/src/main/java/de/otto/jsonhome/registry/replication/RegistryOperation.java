@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import de.otto.jsonhome.registry.store.Registry;
+
+/**
+ * An immutable, versioned modification of a single registry that is exchanged between replicas.
+ * <p/>
+ * An operation either carries the new state of a registry, or it is a tombstone marking the
+ * registry as deleted. Tombstones are kept by the replicas, so that a delete is not undone by
+ * an older update received later.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class RegistryOperation {
+
+    private final String name;
+    private final Registry registry;
+    private final Version version;
+
+    private RegistryOperation(final String name, final Registry registry, final Version version) {
+        if (name == null || version == null) {
+            throw new NullPointerException("name and version must not be null");
+        }
+        this.name = name;
+        this.registry = registry;
+        this.version = version;
+    }
+
+    /**
+     * Creates an operation updating a registry. The clock of the version is used as the version of the registry.
+     */
+    public static RegistryOperation createOrUpdate(final Registry registry, final Version version) {
+        return new RegistryOperation(registry.getName(), registry.withVersion(version.getClock()), version);
+    }
+
+    public static RegistryOperation delete(final String name, final Version version) {
+        return new RegistryOperation(name, null, version);
+    }
+
+    /**
+     * @return the name of the modified registry.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the new state of the registry, or null if the registry was deleted.
+     */
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+
+    public boolean isDelete() {
+        return registry == null;
+    }
+
+    /**
+     * Returns true if this operation wins over the other operation on the same registry.
+     *
+     * @param other the current operation, may be null.
+     * @return boolean
+     */
+    public boolean supersedes(final RegistryOperation other) {
+        return other == null || version.isNewerThan(other.version);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RegistryOperation that = (RegistryOperation) o;
+
+        if (!name.equals(that.name)) return false;
+        if (!version.equals(that.version)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + version.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryOperation{" +
+                "name='" + name + '\'' +
+                ", delete=" + isDelete() +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import de.otto.jsonhome.registry.store.Registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.otto.jsonhome.registry.controller.LinkConverter.linksToJson;
+import static de.otto.jsonhome.registry.controller.RegistryConverter.jsonToRegistry;
+import static de.otto.jsonhome.registry.replication.Version.version;
+
+/**
+ * Converter used to exchange registry operations between the nodes of a cluster.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryOperationConverter {
+
+    private RegistryOperationConverter() {}
+
+    public static Map<String, Object> operationToJson(final RegistryOperation operation) {
+        final Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("name", operation.getName());
+        json.put("clock", operation.getVersion().getClock());
+        json.put("node", operation.getVersion().getNodeId());
+        final Registry registry = operation.getRegistry();
+        if (registry != null) {
+            json.put("title", registry.getTitle());
+            json.put("service", linksToJson(registry.getAll()));
+        } else {
+            json.put("deleted", true);
+        }
+        return json;
+    }
+
+    public static RegistryOperation jsonToOperation(final Map<String, ?> json) {
+        try {
+            final Version version = version(
+                    ((Number) json.get("clock")).longValue(),
+                    (String) json.get("node"));
+            if (Boolean.TRUE.equals(json.get("deleted"))) {
+                return RegistryOperation.delete((String) json.get("name"), version);
+            } else {
+                return RegistryOperation.createOrUpdate(jsonToRegistry(json), version);
+            }
+        } catch (final NullPointerException e) {
+            throw new IllegalArgumentException("Map does not contain a valid registry operation", e);
+        } catch (final ClassCastException e) {
+            throw new IllegalArgumentException("Map does not contain a valid registry operation", e);
+        }
+    }
+
+    public static Map<String, Object> operationsToJson(final Collection<RegistryOperation> operations) {
+        final List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
+        for (final RegistryOperation operation : operations) {
+            list.add(operationToJson(operation));
+        }
+        final Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("operations", list);
+        return json;
+    }
+
+    public static List<RegistryOperation> jsonToOperations(final Map<String, ?> json) {
+        final List<RegistryOperation> operations = new ArrayList<RegistryOperation>();
+        @SuppressWarnings("unchecked")
+        final List<Map<String, ?>> list = (List<Map<String, ?>>) json.get("operations");
+        if (list != null) {
+            for (final Map<String, ?> operation : list) {
+                operations.add(jsonToOperation(operation));
+            }
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import java.util.Collection;
+
+/**
+ * A node taking part in the replication of registries.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public interface Replica {
+
+    /**
+     * @return the unique id of the node.
+     */
+    String getNodeId();
+
+    /**
+     * Applies an operation received from some other node. Operations that are older than the locally
+     * known state of the registry are ignored, so applying the same operation twice has no effect.
+     *
+     * @param operation the received operation.
+     * @return true, if the local state was changed, false otherwise.
+     */
+    boolean apply(RegistryOperation operation);
+
+    /**
+     * Returns the latest known operation of every registry, including tombstones of deleted registries.
+     *
+     * @return collection of operations.
+     */
+    Collection<RegistryOperation> getState();
+}
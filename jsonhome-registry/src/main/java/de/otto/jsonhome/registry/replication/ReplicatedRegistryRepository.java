@@ -0,0 +1,335 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.otto.jsonhome.registry.replication.Version.version;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A {@link RegistryRepository} that replicates all modifications to the other nodes of a cluster.
+ * <p/>
+ * Reads are served from local memory. Every write is applied locally and published to the other nodes
+ * using a {@link ReplicationTransport}. Concurrent writes to the same registry are resolved
+ * last-writer-wins using the {@link Version} of the operations, so all nodes converge to the same
+ * state, regardless of the order operations are received in.
+ * <p/>
+ * On {@link #start() startup}, and optionally in a fixed interval, the repository pulls the state of the
+ * other nodes (anti-entropy), so nodes that have been down or missed an operation catch up.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class ReplicatedRegistryRepository implements RegistryRepository, Replica {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicatedRegistryRepository.class);
+
+    private final String nodeId;
+    private final ReplicationTransport transport;
+    private final ConcurrentMap<String, RegistryOperation> entries = new ConcurrentSkipListMap<String, RegistryOperation>();
+    private volatile List<Registry> registries = emptyList();
+    private final AtomicLong clock = new AtomicLong();
+    private int antiEntropySeconds = 0;
+    private ScheduledExecutorService antiEntropyExecutor;
+
+    public ReplicatedRegistryRepository(final String nodeId, final ReplicationTransport transport) {
+        if (nodeId == null || nodeId.isEmpty()) {
+            throw new IllegalArgumentException("nodeId must not be empty");
+        }
+        this.nodeId = nodeId;
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the interval used to periodically synchronize with the other nodes. Defaults to 0: the
+     * nodes are only synchronized on startup.
+     *
+     * @param antiEntropySeconds interval in seconds, 0 to disable periodic synchronization.
+     */
+    public void setAntiEntropySeconds(final int antiEntropySeconds) {
+        this.antiEntropySeconds = antiEntropySeconds;
+    }
+
+    /**
+     * Joins the cluster and synchronizes the local state with the state of the other nodes.
+     */
+    @PostConstruct
+    public void start() {
+        transport.join(this);
+        synchronize();
+        if (antiEntropySeconds > 0) {
+            antiEntropyExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "jsonhome-replication");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            antiEntropyExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    synchronize();
+                }
+            }, antiEntropySeconds, antiEntropySeconds, SECONDS);
+        }
+    }
+
+    /**
+     * Leaves the cluster.
+     */
+    @PreDestroy
+    public void stop() {
+        if (antiEntropyExecutor != null) {
+            antiEntropyExecutor.shutdownNow();
+        }
+        transport.leave(this);
+    }
+
+    /**
+     * Pulls the state of the other nodes and applies every operation that is newer than the local state.
+     *
+     * @return number of registries changed by the synchronization.
+     */
+    public int synchronize() {
+        int changed = 0;
+        try {
+            for (final RegistryOperation operation : transport.fetchState(this)) {
+                if (apply(operation)) {
+                    ++changed;
+                }
+            }
+            LOG.debug("Synchronized node {}: {} registries changed", nodeId, changed);
+        } catch (final RuntimeException e) {
+            LOG.warn("Unable to synchronize node {}: {}", nodeId, e.getMessage());
+        }
+        return changed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void createOrUpdate(final Registry registry) {
+        execute(RegistryOperation.createOrUpdate(registry, nextVersion()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The registry is replaced by a tombstone, so older updates received later are not able to resurrect it.
+     */
+    @Override
+    public synchronized void delete(final String name) {
+        execute(RegistryOperation.delete(name, nextVersion()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The comparison is done against the local state of this node. Conflicting modifications executed on
+     * different nodes at the same time are still resolved last-writer-wins, so link-level modifications should
+     * be sent to a single node if they must not get lost.
+     */
+    @Override
+    public synchronized boolean compareAndSet(final Registry expected, final Registry updated) {
+        final Registry current = get(updated.getName());
+        if (current == null
+                ? expected != null
+                : expected == null || current.getVersion() != expected.getVersion()) {
+            return false;
+        }
+        execute(RegistryOperation.createOrUpdate(updated, nextVersion()));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Every registry of the batch is replicated as a separate operation. Other nodes may therefore
+     * observe the changes of a batch one registry after the other.
+     */
+    @Override
+    public synchronized void updateAll(final Map<String, Registry> registries) {
+        for (final Map.Entry<String, Registry> entry : registries.entrySet()) {
+            if (entry.getValue() != null) {
+                execute(RegistryOperation.createOrUpdate(entry.getValue(), nextVersion()));
+            } else {
+                execute(RegistryOperation.delete(entry.getKey(), nextVersion()));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean compareAndSetAll(final Map<String, Registry> expected,
+                                                 final Map<String, Registry> registries) {
+        for (final Map.Entry<String, Registry> entry : expected.entrySet()) {
+            final Registry current = get(entry.getKey());
+            if (current == null || current.getVersion() != entry.getValue().getVersion()) {
+                return false;
+            }
+        }
+        updateAll(registries);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getKnownNames() {
+        final Set<String> names = new LinkedHashSet<String>();
+        for (final RegistryOperation operation : entries.values()) {
+            if (!operation.isDelete()) {
+                names.add(operation.getName());
+            }
+        }
+        return unmodifiableSet(names);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Registry> getRegistries() {
+        return registries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Registry get(final String registryName) {
+        final RegistryOperation operation = entries.get(registryName);
+        return operation != null ? operation.getRegistry() : null;
+    }
+
+    /**
+     * Deletes all known registries on all nodes.
+     */
+    @Override
+    public void clear() {
+        for (final String name : getKnownNames()) {
+            delete(name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean apply(final RegistryOperation operation) {
+        advanceClockTo(operation.getVersion().getClock());
+        final String name = operation.getName();
+        while (true) {
+            final RegistryOperation current = entries.get(name);
+            if (!operation.supersedes(current)) {
+                return false;
+            }
+            final boolean applied = current == null
+                    ? entries.putIfAbsent(name, operation) == null
+                    : entries.replace(name, current, operation);
+            if (applied) {
+                registriesChanged();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<RegistryOperation> getState() {
+        return new ArrayList<RegistryOperation>(entries.values());
+    }
+
+    /**
+     * Returns the current wall-clock time. Overridden in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private synchronized void registriesChanged() {
+        final List<Registry> list = new ArrayList<Registry>();
+        for (final RegistryOperation operation : entries.values()) {
+            if (!operation.isDelete()) {
+                list.add(operation.getRegistry());
+            }
+        }
+        registries = unmodifiableList(list);
+    }
+
+    private void execute(final RegistryOperation operation) {
+        apply(operation);
+        try {
+            transport.publish(this, operation);
+        } catch (final RuntimeException e) {
+            LOG.warn("Unable to publish {}: {}", operation, e.getMessage());
+        }
+    }
+
+    private Version nextVersion() {
+        while (true) {
+            final long last = clock.get();
+            final long next = Math.max(last + 1, currentTimeMillis());
+            if (clock.compareAndSet(last, next)) {
+                return version(next, nodeId);
+            }
+        }
+    }
+
+    private void advanceClockTo(final long seen) {
+        long last;
+        do {
+            last = clock.get();
+        } while (last < seen && !clock.compareAndSet(last, seen));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.jsonToOperation;
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.operationsToJson;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
+
+/**
+ * Controller used by the {@link HttpReplicationTransport} of other nodes to exchange registry operations.
+ * <p/>
+ * The resources are internal to the cluster and therefore not part of the json-home document.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+@Controller
+public class ReplicationController {
+
+    private Replica replica;
+
+    @Autowired
+    public void setReplica(final Replica replica) {
+        this.replica = replica;
+    }
+
+    /**
+     * Returns the latest operation of every registry known by this node, including deleted registries.
+     */
+    @RequestMapping(
+            value = "/replication/state",
+            method = RequestMethod.GET,
+            produces = "application/json")
+    @ResponseBody
+    public Map<String, ?> getState() {
+        return operationsToJson(replica.getState());
+    }
+
+    /**
+     * Applies an operation published by some other node.
+     * <p/>
+     * HTTP status codes returned by this method:
+     * <ul>
+     *     <li>204 NO CONTENT: if the operation was accepted. Outdated operations are ignored.</li>
+     *     <li>400 BAD REQUEST: if the operation was syntactically incorrect.</li>
+     * </ul>
+     */
+    @RequestMapping(
+            value = "/replication/operations",
+            method = RequestMethod.POST,
+            consumes = "application/json")
+    public void postOperation(@RequestBody final Map<String, Object> operation,
+                              final HttpServletResponse response) {
+        try {
+            replica.apply(jsonToOperation(operation));
+            response.setStatus(SC_NO_CONTENT);
+        } catch (final IllegalArgumentException e) {
+            response.setStatus(SC_BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import java.util.Collection;
+
+/**
+ * The transport used to exchange registry operations between the nodes of a cluster.
+ * <p/>
+ * Delivery is best-effort: replicas that missed an operation will catch up using
+ * {@link #fetchState(Replica)}.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public interface ReplicationTransport {
+
+    /**
+     * Connects the local replica to the transport, so it will receive operations from other nodes.
+     *
+     * @param replica the local replica.
+     */
+    void join(Replica replica);
+
+    /**
+     * Disconnects the local replica from the transport.
+     *
+     * @param replica the local replica.
+     */
+    void leave(Replica replica);
+
+    /**
+     * Sends an operation to all other nodes.
+     *
+     * @param origin the replica that has executed the operation.
+     * @param operation the operation.
+     */
+    void publish(Replica origin, RegistryOperation operation);
+
+    /**
+     * Returns the state of all other reachable nodes, used for anti-entropy.
+     *
+     * @param requester the replica requesting the state.
+     * @return the operations of the other nodes. The collection may contain multiple operations per registry.
+     */
+    Collection<RegistryOperation> fetchState(Replica requester);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+/**
+ * The version of a replicated registry operation.
+ * <p/>
+ * Versions are ordered by a hybrid logical clock (the wall-clock time of the writing node, advanced past
+ * every version seen so far) and the id of the writing node, which is used to break ties. Two operations
+ * on the same registry are resolved last-writer-wins by comparing their versions.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class Version implements Comparable<Version> {
+
+    private final long clock;
+    private final String nodeId;
+
+    private Version(final long clock, final String nodeId) {
+        if (nodeId == null || nodeId.isEmpty()) {
+            throw new IllegalArgumentException("nodeId must not be empty");
+        }
+        this.clock = clock;
+        this.nodeId = nodeId;
+    }
+
+    public static Version version(final long clock, final String nodeId) {
+        return new Version(clock, nodeId);
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns true if this version is more recent than the other version.
+     *
+     * @param other the version to compare with, may be null.
+     * @return boolean
+     */
+    public boolean isNewerThan(final Version other) {
+        return other == null || compareTo(other) > 0;
+    }
+
+    @Override
+    public int compareTo(final Version other) {
+        if (clock != other.clock) {
+            return clock < other.clock ? -1 : 1;
+        }
+        return nodeId.compareTo(other.nodeId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Version version = (Version) o;
+
+        if (clock != version.clock) return false;
+        if (!nodeId.equals(version.nodeId)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (clock ^ (clock >>> 32));
+        result = 31 * result + nodeId.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return clock + "@" + nodeId;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import de.otto.jsonhome.model.ResourceLink;
+
+/**
+ * A resource link found in the aggregated json-home document of a registry.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class IndexedResourceLink implements Comparable<IndexedResourceLink> {
+
+    private final String registryName;
+    private final ResourceLink resourceLink;
+
+    IndexedResourceLink(final String registryName, final ResourceLink resourceLink) {
+        this.registryName = registryName;
+        this.resourceLink = resourceLink;
+    }
+
+    public String getRegistryName() {
+        return registryName;
+    }
+
+    public ResourceLink getResourceLink() {
+        return resourceLink;
+    }
+
+    @Override
+    public int compareTo(final IndexedResourceLink other) {
+        final int result = registryName.compareTo(other.registryName);
+        return result != 0
+                ? result
+                : resourceLink.getLinkRelationType().compareTo(other.resourceLink.getLinkRelationType());
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedResourceLink{" +
+                "registryName='" + registryName + '\'' +
+                ", resourceLink=" + resourceLink +
+                '}';
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.controller.RegistryJsonHomeSource;
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import static de.otto.jsonhome.registry.search.ResourceLinkIndex.resourceLinkIndex;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps a {@link ResourceLinkIndex} up to date with the aggregated json-home documents of all registries.
+ * <p/>
+ * Every {@link #setRefreshSeconds(int) refreshSeconds}, the aggregates of all registries are compared to the
+ * indexed resource links. The {@link de.otto.jsonhome.registry.controller.DefaultRegistryJsonHomeSource} returns
+ * the same aggregate instance as long as no upstream document changed, so registries with an unchanged aggregate
+ * are skipped without comparing their resource links. Otherwise, only added, changed or removed resource links
+ * are re-indexed; because aggregates are sharing the ResourceLink instances of unchanged upstream documents,
+ * unchanged resource links are detected by identity.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistrySearchIndexer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RegistrySearchIndexer.class);
+
+    private final ResourceLinkIndex index = resourceLinkIndex();
+    private final ConcurrentMap<String, JsonHome> indexedAggregates = new ConcurrentHashMap<String, JsonHome>();
+    private RegistryRepository registries;
+    private RegistryJsonHomeSource jsonHomeSource;
+    private int refreshSeconds = 10;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public void setRegistries(final RegistryRepository registries) {
+        this.registries = registries;
+    }
+
+    @Autowired
+    public void setRegistryJsonHomeSource(final RegistryJsonHomeSource jsonHomeSource) {
+        this.jsonHomeSource = jsonHomeSource;
+    }
+
+    /**
+     * @param refreshSeconds the interval used to update the index. Defaults to 10s.
+     */
+    public void setRefreshSeconds(final int refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public ResourceLinkIndex getIndex() {
+        return index;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "jsonhome-search-indexer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh();
+                    } catch (final RuntimeException e) {
+                        LOG.error("Failed to update search index: " + e.getMessage(), e);
+                    }
+                }
+            }, 0, refreshSeconds, SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Updates the index with the changed aggregates of all registries, and removes registries that do not
+     * exist anymore.
+     */
+    public void refresh() {
+        final List<Registry> currentRegistries = registries.getRegistries();
+        final Set<String> names = new HashSet<String>();
+        for (final Registry registry : currentRegistries) {
+            try {
+                final JsonHome jsonHome = jsonHomeSource.getJsonHome(registry.getName());
+                if (indexedAggregates.get(registry.getName()) != jsonHome) {
+                    index.update(registry.getName(), jsonHome);
+                    indexedAggregates.put(registry.getName(), jsonHome);
+                }
+                names.add(registry.getName());
+            } catch (final IllegalArgumentException e) {
+                LOG.debug("Registry {} was removed while updating the search index", registry.getName());
+            }
+        }
+        for (final String indexed : index.getRegistryNames()) {
+            if (!names.contains(indexed)) {
+                index.remove(indexed);
+            }
+        }
+        indexedAggregates.keySet().retainAll(names);
+        LOG.debug("Search index contains {} resource links", index.size());
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import de.otto.jsonhome.model.Allow;
+import de.otto.jsonhome.model.Authentication;
+import de.otto.jsonhome.model.Documentation;
+import de.otto.jsonhome.model.Hints;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.model.ResourceLink;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted indexes over the resource links of the aggregated json-home documents of all registries.
+ * <p/>
+ * Every resource link of a registry is assigned an id; for every field and term, the ids of the matching
+ * resource links are kept in a BitSet. Queries are answered by intersecting the BitSets of all terms of the query.
+ * <p/>
+ * The following fields are indexed:
+ * <ul>
+ *     <li>{@link #REL}: the tokens of the link-relation type.</li>
+ *     <li>{@link #TEXT}: the tokens of the description and detailed description.</li>
+ *     <li>{@link #REPRESENTATION}: the representations of the resource.</li>
+ *     <li>{@link #ACCEPT}: the representations accepted by PUT, POST and PATCH.</li>
+ *     <li>{@link #ALLOW}: the allowed HTTP methods.</li>
+ *     <li>{@link #STATUS}: the status of the resource.</li>
+ *     <li>{@link #AUTH}: the required authentication schemes.</li>
+ *     <li>{@link #REGISTRY}: the name of the registry.</li>
+ * </ul>
+ * Terms are case-insensitive. The indexes are updated incrementally: updating a registry only re-indexes the
+ * resource links that were added, changed or removed.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class ResourceLinkIndex {
+
+    public static final String REL = "rel";
+    public static final String TEXT = "text";
+    public static final String REPRESENTATION = "representation";
+    public static final String ACCEPT = "accept";
+    public static final String ALLOW = "allow";
+    public static final String STATUS = "status";
+    public static final String AUTH = "auth";
+    public static final String REGISTRY = "registry";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, BitSet>> postings = new HashMap<String, Map<String, BitSet>>();
+    private final List<IndexedResourceLink> resourceLinks = new ArrayList<IndexedResourceLink>();
+    private final BitSet liveIds = new BitSet();
+    private final LinkedList<Integer> freeIds = new LinkedList<Integer>();
+    private final Map<String, Map<URI, Integer>> idsByRegistry = new HashMap<String, Map<URI, Integer>>();
+
+    private ResourceLinkIndex() {
+    }
+
+    public static ResourceLinkIndex resourceLinkIndex() {
+        return new ResourceLinkIndex();
+    }
+
+    /**
+     * Updates the indexed resource links of a registry. Resource links that did not change are not re-indexed.
+     *
+     * @param registryName the name of the registry.
+     * @param jsonHome the aggregated json-home document of the registry.
+     */
+    public void update(final String registryName, final JsonHome jsonHome) {
+        final Map<URI, ResourceLink> resources = jsonHome.getResources();
+        lock.writeLock().lock();
+        try {
+            Map<URI, Integer> ids = idsByRegistry.get(registryName);
+            if (ids == null) {
+                ids = new HashMap<URI, Integer>();
+                idsByRegistry.put(registryName, ids);
+            }
+            final Iterator<Map.Entry<URI, Integer>> removed = ids.entrySet().iterator();
+            while (removed.hasNext()) {
+                final Map.Entry<URI, Integer> entry = removed.next();
+                if (!resources.containsKey(entry.getKey())) {
+                    removeResourceLink(entry.getValue());
+                    removed.remove();
+                }
+            }
+            for (final Map.Entry<URI, ResourceLink> entry : resources.entrySet()) {
+                final Integer id = ids.get(entry.getKey());
+                if (id != null) {
+                    final ResourceLink indexed = resourceLinks.get(id).getResourceLink();
+                    if (indexed == entry.getValue() || indexed.equals(entry.getValue())) {
+                        continue;
+                    }
+                    removeResourceLink(id);
+                }
+                ids.put(entry.getKey(), addResourceLink(registryName, entry.getValue()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all resource links of a registry from the index.
+     *
+     * @param registryName the name of the registry.
+     */
+    public void remove(final String registryName) {
+        lock.writeLock().lock();
+        try {
+            final Map<URI, Integer> ids = idsByRegistry.remove(registryName);
+            if (ids != null) {
+                for (final Integer id : ids.values()) {
+                    removeResourceLink(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the names of all indexed registries.
+     */
+    public Set<String> getRegistryNames() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<String>(idsByRegistry.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed resource links.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveIds.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all resource links matching every term of the query, ordered by registry and link-relation type.
+     * An empty query matches all resource links.
+     *
+     * @param query the query.
+     * @return list of matching resource links.
+     */
+    public List<IndexedResourceLink> search(final SearchQuery query) {
+        lock.readLock().lock();
+        try {
+            final List<BitSet> matches = new ArrayList<BitSet>();
+            for (final Map.Entry<String, Set<String>> field : query.getTerms().entrySet()) {
+                final Map<String, BitSet> fieldPostings = postings.get(field.getKey());
+                for (final String term : field.getValue()) {
+                    final BitSet ids = fieldPostings != null ? fieldPostings.get(term) : null;
+                    if (ids == null) {
+                        return Collections.emptyList();
+                    }
+                    matches.add(ids);
+                }
+            }
+            // intersecting the smallest sets first keeps the intermediate results small:
+            Collections.sort(matches, new Comparator<BitSet>() {
+                @Override
+                public int compare(final BitSet first, final BitSet second) {
+                    return first.cardinality() - second.cardinality();
+                }
+            });
+            final BitSet result = (BitSet) (matches.isEmpty() ? liveIds : matches.get(0)).clone();
+            for (int i = 1; i < matches.size() && !result.isEmpty(); ++i) {
+                result.and(matches.get(i));
+            }
+            final List<IndexedResourceLink> hits = new ArrayList<IndexedResourceLink>(result.cardinality());
+            for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+                hits.add(resourceLinks.get(id));
+            }
+            Collections.sort(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int addResourceLink(final String registryName, final ResourceLink resourceLink) {
+        final int id;
+        final IndexedResourceLink indexed = new IndexedResourceLink(registryName, resourceLink);
+        if (freeIds.isEmpty()) {
+            id = resourceLinks.size();
+            resourceLinks.add(indexed);
+        } else {
+            id = freeIds.removeFirst();
+            resourceLinks.set(id, indexed);
+        }
+        liveIds.set(id);
+        for (final Map.Entry<String, Set<String>> field : termsOf(registryName, resourceLink).entrySet()) {
+            Map<String, BitSet> fieldPostings = postings.get(field.getKey());
+            if (fieldPostings == null) {
+                fieldPostings = new HashMap<String, BitSet>();
+                postings.put(field.getKey(), fieldPostings);
+            }
+            for (final String term : field.getValue()) {
+                BitSet ids = fieldPostings.get(term);
+                if (ids == null) {
+                    ids = new BitSet();
+                    fieldPostings.put(term, ids);
+                }
+                ids.set(id);
+            }
+        }
+        return id;
+    }
+
+    private void removeResourceLink(final int id) {
+        final IndexedResourceLink indexed = resourceLinks.get(id);
+        for (final Map.Entry<String, Set<String>> field : termsOf(indexed.getRegistryName(), indexed.getResourceLink()).entrySet()) {
+            final Map<String, BitSet> fieldPostings = postings.get(field.getKey());
+            for (final String term : field.getValue()) {
+                final BitSet ids = fieldPostings.get(term);
+                ids.clear(id);
+                if (ids.isEmpty()) {
+                    fieldPostings.remove(term);
+                }
+            }
+        }
+        resourceLinks.set(id, null);
+        liveIds.clear(id);
+        freeIds.add(id);
+    }
+
+    private static Map<String, Set<String>> termsOf(final String registryName, final ResourceLink resourceLink) {
+        final Hints hints = resourceLink.getHints();
+        final Map<String, Set<String>> terms = new HashMap<String, Set<String>>();
+        terms.put(REGISTRY, Collections.singleton(normalized(registryName)));
+        terms.put(REL, tokensOf(resourceLink.getLinkRelationType().toString()));
+        final Documentation docs = hints.getDocs();
+        final Set<String> text = new HashSet<String>();
+        for (final String description : docs.getDescription()) {
+            text.addAll(tokensOf(description));
+        }
+        if (docs.hasDetailedDescription()) {
+            text.addAll(tokensOf(docs.getDetailedDescription()));
+        }
+        terms.put(TEXT, text);
+        terms.put(REPRESENTATION, normalized(hints.getRepresentations()));
+        final Set<String> accept = normalized(hints.getAcceptPut());
+        accept.addAll(normalized(hints.getAcceptPost()));
+        accept.addAll(normalized(hints.getAcceptPatch()));
+        terms.put(ACCEPT, accept);
+        final Set<String> allows = new HashSet<String>();
+        for (final Allow allow : hints.getAllows()) {
+            allows.add(normalized(allow.name()));
+        }
+        terms.put(ALLOW, allows);
+        terms.put(STATUS, Collections.singleton(normalized(hints.getStatus().name())));
+        final Set<String> schemes = new HashSet<String>();
+        for (final Authentication authentication : hints.getAuthReq()) {
+            schemes.add(normalized(authentication.getScheme()));
+        }
+        terms.put(AUTH, schemes);
+        return terms;
+    }
+
+    /**
+     * Returns the terms of a field value used in queries or indexed resource links.
+     *
+     * @param field the name of the field.
+     * @param value the value of the field.
+     * @return set of terms.
+     */
+    static Set<String> termsOf(final String field, final String value) {
+        if (REL.equals(field) || TEXT.equals(field)) {
+            return tokensOf(value);
+        }
+        return Collections.singleton(normalized(value));
+    }
+
+    private static Set<String> tokensOf(final String text) {
+        final Set<String> tokens = new LinkedHashSet<String>();
+        for (final String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(normalized(token));
+            }
+        }
+        return tokens;
+    }
+
+    private static Set<String> normalized(final Collection<String> values) {
+        final Set<String> result = new HashSet<String>();
+        for (final String value : values) {
+            result.add(normalized(value));
+        }
+        return result;
+    }
+
+    private static String normalized(final String value) {
+        return value.trim().toLowerCase(Locale.ENGLISH);
+    }
+}
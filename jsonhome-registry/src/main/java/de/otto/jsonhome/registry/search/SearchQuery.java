@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable query of a {@link ResourceLinkIndex}, consisting of the terms that must be contained in the
+ * fields of matching resource links.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class SearchQuery {
+
+    private final Map<String, Set<String>> terms;
+
+    private SearchQuery(final Map<String, Set<String>> terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * @return an empty query, matching all resource links.
+     */
+    public static SearchQuery searchQuery() {
+        return new SearchQuery(Collections.<String, Set<String>>emptyMap());
+    }
+
+    /**
+     * Returns a copy of this query that additionally requires the terms of the value in the field. Values of the
+     * {@link ResourceLinkIndex#REL} and {@link ResourceLinkIndex#TEXT} fields are split into tokens, all of
+     * which must match.
+     *
+     * @param field the name of the field, as defined in {@link ResourceLinkIndex}.
+     * @param value the value of the field.
+     * @return SearchQuery
+     */
+    public SearchQuery with(final String field, final String value) {
+        final Map<String, Set<String>> copy = new LinkedHashMap<String, Set<String>>();
+        for (final Map.Entry<String, Set<String>> entry : terms.entrySet()) {
+            copy.put(entry.getKey(), new LinkedHashSet<String>(entry.getValue()));
+        }
+        if (!copy.containsKey(field)) {
+            copy.put(field, new LinkedHashSet<String>());
+        }
+        copy.get(field).addAll(ResourceLinkIndex.termsOf(field, value));
+        return new SearchQuery(copy);
+    }
+
+    /**
+     * @return the terms of the query, by field.
+     */
+    public Map<String, Set<String>> getTerms() {
+        return Collections.unmodifiableMap(terms);
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery{" +
+                "terms=" + terms +
+                '}';
+    }
+}
@@ -16,31 +16,92 @@
 
 package de.otto.jsonhome.registry.store;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
 
 /**
  * In-memory implementation of the {@link RegistryRepository} interface.
+ * <p/>
+ * Registries are kept sorted by name, and the sorted list of registries is rebuilt on every write, so reading
+ * the list of all registries does not need to sort or copy anything.
  */
 public class InMemoryRegistryRepository implements RegistryRepository {
 
-    public final ConcurrentMap<String, Registry> registry = new ConcurrentHashMap<String, Registry>();
+    public final ConcurrentMap<String, Registry> registry = new ConcurrentSkipListMap<String, Registry>();
+    private volatile List<Registry> registries = emptyList();
+    private long lastVersion = 0L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void createOrUpdate(Registry registry) {
+        this.registry.put(registry.getName(), nextVersionOf(registry));
+        registriesChanged();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean compareAndSet(final Registry expected, final Registry updated) {
+        final Registry current = registry.get(updated.getName());
+        if (current == null
+                ? expected != null
+                : expected == null || current.getVersion() != expected.getVersion()) {
+            return false;
+        }
+        registry.put(updated.getName(), nextVersionOf(updated));
+        registriesChanged();
+        return true;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void createOrUpdate(Registry registry) {
-        this.registry.put(registry.getName(), registry);
+    public synchronized void updateAll(final Map<String, Registry> registries) {
+        for (final Map.Entry<String, Registry> entry : registries.entrySet()) {
+            if (entry.getValue() != null) {
+                registry.put(entry.getKey(), nextVersionOf(entry.getValue()));
+            } else {
+                registry.remove(entry.getKey());
+            }
+        }
+        registriesChanged();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void delete(final String name) {
-        registry.remove(name);
+    public synchronized void delete(final String name) {
+        if (registry.remove(name) != null) {
+            registriesChanged();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean compareAndSetAll(final Map<String, Registry> expected,
+                                                 final Map<String, Registry> registries) {
+        for (final Map.Entry<String, Registry> entry : expected.entrySet()) {
+            final Registry current = registry.get(entry.getKey());
+            if (current == null || current.getVersion() != entry.getValue().getVersion()) {
+                return false;
+            }
+        }
+        updateAll(registries);
+        return true;
     }
 
     /**
@@ -51,6 +112,14 @@ public class InMemoryRegistryRepository implements RegistryRepository {
         return registry.keySet();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Registry> getRegistries() {
+        return registries;
+    }
+
     @Override
     public Registry get(final String registryName) {
         return registry.get(registryName);
@@ -60,7 +129,20 @@ public class InMemoryRegistryRepository implements RegistryRepository {
      * {@inheritDoc}
      */
     @Override
-    public void clear() {
+    public synchronized void clear() {
         registry.clear();
+        registriesChanged();
+    }
+
+    private void registriesChanged() {
+        registries = unmodifiableList(new ArrayList<Registry>(registry.values()));
+    }
+
+    /**
+     * Versions are unique within the repository, so a registry that was deleted and created again does
+     * not get the version of some previously read instance.
+     */
+    private Registry nextVersionOf(final Registry updated) {
+        return updated.withVersion(++lastVersion);
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.store;
+
+import de.otto.jsonhome.collection.PersistentHashMap;
+import de.otto.jsonhome.collection.PersistentTree;
+
+import java.net.URI;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An immutable collection of {@link Link links}, identified by their hrefs.
+ * <p/>
+ * The links are kept in the order they were added. Adding a link with an already known href replaces the
+ * existing link at its current position. {@link #with(Link)} and {@link #without(URI)} return a new instance
+ * in O(log n), sharing the unmodified part of the collection with this instance. Links are indexed by href
+ * using a {@link PersistentHashMap}, so {@link #get(URI)} is effectively O(1).
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class Links extends AbstractCollection<Link> {
+
+    private static final Links EMPTY = new Links(
+            PersistentTree.<Long, Link>emptyTree(),
+            PersistentHashMap.<URI, IndexedLink>emptyMap(),
+            0L);
+
+    private final PersistentTree<Long, Link> linksBySequence;
+    private final PersistentHashMap<URI, IndexedLink> linksByHref;
+    private final long nextSequence;
+
+    private Links(final PersistentTree<Long, Link> linksBySequence,
+                  final PersistentHashMap<URI, IndexedLink> linksByHref,
+                  final long nextSequence) {
+        this.linksBySequence = linksBySequence;
+        this.linksByHref = linksByHref;
+        this.nextSequence = nextSequence;
+    }
+
+    public static Links emptyLinks() {
+        return EMPTY;
+    }
+
+    public static Links linksOf(final Collection<Link> links) {
+        if (links instanceof Links) {
+            return (Links) links;
+        }
+        Links result = EMPTY;
+        for (final Link link : links) {
+            result = result.with(link);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a collection containing the links of this instance plus the specified link.
+     *
+     * @param link the added link.
+     * @return Links
+     */
+    public Links with(final Link link) {
+        final IndexedLink existing = linksByHref.get(link.getHref());
+        if (existing == null) {
+            return new Links(
+                    linksBySequence.put(nextSequence, link),
+                    linksByHref.with(link.getHref(), new IndexedLink(nextSequence, link)),
+                    nextSequence + 1);
+        } else if (link.equals(existing.link)) {
+            return this;
+        } else {
+            return new Links(
+                    linksBySequence.put(existing.sequence, link),
+                    linksByHref.with(link.getHref(), new IndexedLink(existing.sequence, link)),
+                    nextSequence);
+        }
+    }
+
+    /**
+     * Returns a collection containing the links of this instance, except the link with the specified href.
+     *
+     * @param href the href of the removed link.
+     * @return Links
+     */
+    public Links without(final URI href) {
+        final IndexedLink existing = linksByHref.get(href);
+        if (existing == null) {
+            return this;
+        }
+        return new Links(linksBySequence.remove(existing.sequence), linksByHref.without(href), nextSequence);
+    }
+
+    /**
+     * Returns the link with the specified href, or null.
+     *
+     * @param href the URI of the link.
+     * @return Link
+     */
+    public Link get(final URI href) {
+        final IndexedLink existing = linksByHref.get(href);
+        return existing != null ? existing.link : null;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o instanceof Link && o.equals(get(((Link) o).getHref()));
+    }
+
+    @Override
+    public Iterator<Link> iterator() {
+        final Iterator<Map.Entry<Long, Link>> entries = linksBySequence.iterator();
+        return new Iterator<Link>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Link next() {
+                return entries.next().getValue();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Links are immutable");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return linksBySequence.size();
+    }
+
+    private static final class IndexedLink {
+        private final long sequence;
+        private final Link link;
+
+        private IndexedLink(final long sequence, final Link link) {
+            this.sequence = sequence;
+            this.link = link;
+        }
+    }
+}
@@ -17,14 +17,17 @@
 package de.otto.jsonhome.registry.store;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static java.util.Collections.unmodifiableList;
+import static de.otto.jsonhome.registry.store.Links.linksOf;
 
 /**
  * An immutable named collection of Registry.
+ * <p/>
+ * Every registry has a version, assigned by the {@link RegistryRepository} when the registry is stored. The
+ * version is used to {@link RegistryRepository#compareAndSet(Registry, Registry) compare-and-set} registries,
+ * so concurrent modifications of the links are not lost.
  *
  * @author Guido Steinacker
  * @since 14.11.12
@@ -33,9 +36,14 @@ public final class Registry {
 
     private final String name;
     private final String title;
-    private final List<Link> links;
+    private final Links links;
+    private final long version;
 
     public Registry(final String name, final String title, final List<Link> links) {
+        this(name, title, linksOf(links), 0L);
+    }
+
+    private Registry(final String name, final String title, final Links links, final long version) {
         if (name == null) {
             throw new NullPointerException("Name of Links must not be null");
         }
@@ -44,7 +52,8 @@ public final class Registry {
         }
         this.name = name;
         this.title = title;
-        this.links = unmodifiableList(new ArrayList<Link>(links));
+        this.links = links;
+        this.version = version;
     }
 
     /**
@@ -65,6 +74,15 @@ public final class Registry {
         return title;
     }
 
+    /**
+     * Returns the version of the registry, or 0 if the registry was not yet stored in a repository.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Returns an unmodifiable collection of all registered links.
      *
@@ -81,12 +99,37 @@ public final class Registry {
      * @return Link
      */
     public Link findByHref(final URI href) {
-        for (final Link link : links) {
-            if (link.getHref().equals(href)) {
-                return link;
-            }
-        }
-        return null;
+        return links.get(href);
+    }
+
+    /**
+     * Returns a copy of this registry, containing the additional link. A link with the same href is replaced.
+     *
+     * @param link the added link.
+     * @return Registry
+     */
+    public Registry withLink(final Link link) {
+        return new Registry(name, title, links.with(link), version);
+    }
+
+    /**
+     * Returns a copy of this registry without the link referring to href.
+     *
+     * @param href the href of the removed link.
+     * @return Registry
+     */
+    public Registry withoutLink(final URI href) {
+        return new Registry(name, title, links.without(href), version);
+    }
+
+    /**
+     * Returns a copy of this registry having the specified version. Used by repositories to assign versions.
+     *
+     * @param version the version of the registry.
+     * @return Registry
+     */
+    public Registry withVersion(final long version) {
+        return new Registry(name, title, links, version);
     }
 
     public Link asLinkFor(final URI baseUri) {
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.store;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * A batch of modifications of the registries in a {@link RegistryRepository}.
+ * <p/>
+ * The modifications are staged in the batch and written to the repository on {@link #commit()}, so every
+ * modified registry is written only once, no matter how many operations of the batch are affecting it. If
+ * some operation is invalid, an IllegalArgumentException is thrown and nothing is written at all.
+ * <p/>
+ * Adding or removing links reads the current registry from the repository. The batch is committed using
+ * {@link RegistryRepository#compareAndSetAll(Map, Map)}, so a registry modified concurrently after it was read
+ * is not overwritten: the batch re-reads the modified registries, applies its operations again and retries
+ * the commit.
+ * <p/>
+ * Instances are not thread-safe.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class RegistryBatch {
+
+    private final RegistryRepository repository;
+    private final List<Operation> operations = new ArrayList<Operation>();
+    private final Map<String, Draft> drafts = new LinkedHashMap<String, Draft>();
+    private final Map<String, Registry> readRegistries = new LinkedHashMap<String, Registry>();
+
+    private RegistryBatch(final RegistryRepository repository) {
+        this.repository = repository;
+    }
+
+    public static RegistryBatch registryBatch(final RegistryRepository repository) {
+        return new RegistryBatch(repository);
+    }
+
+    /**
+     * Creates or replaces a registry.
+     *
+     * @param registry the new registry.
+     * @return this
+     */
+    public RegistryBatch createOrUpdate(final Registry registry) {
+        return execute(new Operation() {
+            @Override
+            public void applyTo(final RegistryBatch batch) {
+                batch.drafts.put(registry.getName(), new Draft(registry.getTitle(), registry.getAll()));
+            }
+        });
+    }
+
+    /**
+     * Deletes a registry. Deleting a non-existing registry has no effect.
+     *
+     * @param name the name of the registry.
+     * @return this
+     */
+    public RegistryBatch delete(final String name) {
+        return execute(new Operation() {
+            @Override
+            public void applyTo(final RegistryBatch batch) {
+                batch.drafts.put(name, null);
+            }
+        });
+    }
+
+    /**
+     * Adds links to an existing registry, or to a registry created earlier in this batch. Existing links with
+     * the same href are replaced.
+     *
+     * @param name the name of the registry.
+     * @param links the added links.
+     * @return this
+     * @throws IllegalArgumentException if the registry does not exist.
+     */
+    public RegistryBatch addLinks(final String name, final Collection<Link> links) {
+        return execute(new Operation() {
+            @Override
+            public void applyTo(final RegistryBatch batch) {
+                final Draft draft = batch.draftOf(name);
+                for (final Link link : links) {
+                    draft.links.put(link.getHref(), link);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes links from an existing registry, or from a registry created earlier in this batch. Hrefs that
+     * are not registered are ignored.
+     *
+     * @param name the name of the registry.
+     * @param hrefs the hrefs of the removed links.
+     * @return this
+     * @throws IllegalArgumentException if the registry does not exist.
+     */
+    public RegistryBatch removeLinks(final String name, final Collection<URI> hrefs) {
+        return execute(new Operation() {
+            @Override
+            public void applyTo(final RegistryBatch batch) {
+                final Draft draft = batch.draftOf(name);
+                for (final URI href : hrefs) {
+                    draft.links.remove(href);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the names of all registries modified by this batch.
+     *
+     * @return set of registry names.
+     */
+    public Set<String> getAffectedRegistries() {
+        return unmodifiableSet(drafts.keySet());
+    }
+
+    /**
+     * Atomically writes all modified registries to the repository.
+     * <p/>
+     * If a registry read by this batch was modified concurrently, the operations are applied to the current
+     * registries and the commit is retried.
+     *
+     * @return the names of the modified registries.
+     * @throws IllegalArgumentException if an operation is not applicable to the current registries anymore,
+     * for example because a registry was deleted concurrently.
+     */
+    public Set<String> commit() {
+        while (true) {
+            final Map<String, Registry> registries = new LinkedHashMap<String, Registry>();
+            for (final Map.Entry<String, Draft> entry : drafts.entrySet()) {
+                final Draft draft = entry.getValue();
+                registries.put(entry.getKey(), draft != null
+                        ? new Registry(entry.getKey(), draft.title, new ArrayList<Link>(draft.links.values()))
+                        : null);
+            }
+            if (repository.compareAndSetAll(readRegistries, registries)) {
+                return getAffectedRegistries();
+            }
+            drafts.clear();
+            readRegistries.clear();
+            for (final Operation operation : operations) {
+                operation.applyTo(this);
+            }
+        }
+    }
+
+    private RegistryBatch execute(final Operation operation) {
+        operation.applyTo(this);
+        operations.add(operation);
+        return this;
+    }
+
+    private Draft draftOf(final String name) {
+        if (drafts.containsKey(name)) {
+            final Draft draft = drafts.get(name);
+            if (draft == null) {
+                throw new IllegalArgumentException("Registry '" + name + "' is deleted in this batch.");
+            }
+            return draft;
+        }
+        final Registry registry = repository.get(name);
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry '" + name + "' does not exist.");
+        }
+        readRegistries.put(name, registry);
+        final Draft draft = new Draft(registry.getTitle(), registry.getAll());
+        drafts.put(name, draft);
+        return draft;
+    }
+
+    /**
+     * An operation of the batch, applied to the drafts of the batch.
+     */
+    private interface Operation {
+        void applyTo(RegistryBatch batch);
+    }
+
+    private static final class Draft {
+        private final String title;
+        private final Map<URI, Link> links = new LinkedHashMap<URI, Link>();
+
+        private Draft(final String title, final Collection<Link> links) {
+            this.title = title;
+            for (final Link link : links) {
+                this.links.put(link.getHref(), link);
+            }
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package de.otto.jsonhome.registry.store;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -37,6 +39,44 @@ public interface RegistryRepository {
      */
     public void createOrUpdate(Registry registry);
 
+    /**
+     * Atomically replaces a registry, if the stored registry has not been modified since it was read.
+     * <p/>
+     * The registry is replaced, if the version of the stored registry is equal to the version of the
+     * expected registry. If expected is null, the registry is only created if no registry with the same name
+     * exists. The stored registry gets a new version.
+     *
+     * @param expected the registry previously returned by {@link #get(String)}, or null.
+     * @param updated the new registry, having the same name as the expected registry.
+     * @return true if the registry was replaced, false if it was concurrently modified.
+     */
+    public boolean compareAndSet(Registry expected, Registry updated);
+
+    /**
+     * Creates, updates or deletes several registries in one step.
+     * <p/>
+     * Every entry of the map replaces the registry with the same name. Entries with null values delete
+     * the registry. The modifications are applied together, so concurrent writers never interleave with
+     * the changes of a batch.
+     *
+     * @param registries the new registries, mapped by name.
+     */
+    public void updateAll(Map<String, Registry> registries);
+
+    /**
+     * Atomically creates, updates or deletes several registries, if none of the expected registries has been
+     * modified since it was read.
+     * <p/>
+     * The registries are written like {@link #updateAll(java.util.Map)}, if the version of every expected
+     * registry is equal to the version of the stored registry with the same name.
+     *
+     * @param expected the registries previously returned by {@link #get(String)}, mapped by name.
+     * @param registries the new registries, mapped by name. Null values delete the registry.
+     * @return true if the registries were written, false if some expected registry was concurrently modified
+     * or deleted.
+     */
+    public boolean compareAndSetAll(Map<String, Registry> expected, Map<String, Registry> registries);
+
     /**
      * Deletes a {@link Registry} instance identified by it's name.
      *
@@ -45,12 +85,22 @@ public interface RegistryRepository {
     public void delete(String name);
 
     /**
-     * Returns the names of all known Registry instances.
+     * Returns the names of all known Registry instances, sorted by name.
      *
      * @return registry names.
      */
     public Set<String> getKnownNames();
 
+    /**
+     * Returns all known Registry instances, sorted by name.
+     * <p/>
+     * The returned list is immutable. Implementations are expected to maintain the list on write, and to return
+     * the same instance as long as no registry is modified, so callers are able to cache derived data.
+     *
+     * @return list of registries.
+     */
+    public List<Registry> getRegistries();
+
     /**
      * Returns the registry with the specifed name, or null if no such registry exists.
      */
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.upstream;
+
+import de.otto.jsonhome.client.HttpJsonHomeClient;
+import de.otto.jsonhome.client.JsonHomeClient;
+import de.otto.jsonhome.client.JsonHomeClientException;
+import de.otto.jsonhome.model.JsonHome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The json-home documents of all upstream services, shared by all registries.
+ * <p/>
+ * Every document is fetched, parsed and kept once per href, no matter how many registries are referring to it.
+ * Concurrent requests for the same href are sharing a single fetch. Fetched documents are reused as long as
+ * they are fresh: for the Cache-Control max-age of the upstream service, if the client is a
+ * {@link HttpJsonHomeClient}, otherwise for {@link #setMaxAgeMillis(long) maxAgeMillis}. If a refetched document
+ * did not change, the previous instance is kept, so all registry aggregates are referring to the same immutable
+ * ResourceLink instances.
+ * <p/>
+ * Documents that are {@link #setRefreshedInBackground(URI, boolean) refreshed in the background}, for example by
+ * the {@link UpstreamRefreshScheduler}, are returned without fetching them, even if they are not fresh anymore
+ * (stale-while-revalidate), as long as they are not older than {@link #setMaxStaleMillis(long) maxStaleMillis}.
+ * <p/>
+ * Documents that were not requested for {@link #setPurgeAfterMillis(long) purgeAfterMillis}, for example
+ * because the service was removed from all registries, are dropped.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class UpstreamDocumentStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamDocumentStore.class);
+
+    private final JsonHomeClient client;
+    private final ConcurrentMap<URI, UpstreamDocument> documents = new ConcurrentHashMap<URI, UpstreamDocument>();
+    private final ConcurrentMap<URI, FutureTask<UpstreamDocument>> inFlight = new ConcurrentHashMap<URI, FutureTask<UpstreamDocument>>();
+    private final Set<URI> refreshedInBackground = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+    private volatile long maxAgeMillis = 10000L;
+    private volatile long maxStaleMillis = 7200000L;
+    private volatile long purgeAfterMillis = 600000L;
+    private volatile long lastPurge;
+
+    public UpstreamDocumentStore(final JsonHomeClient client) {
+        this.client = client;
+        this.lastPurge = currentTimeMillis();
+    }
+
+    /**
+     * Specifies how long fetched documents without a known max-age are used without fetching them again.
+     * Defaults to 10 seconds.
+     *
+     * @param maxAgeMillis max age in milliseconds.
+     */
+    public void setMaxAgeMillis(final long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Specifies how long documents that are refreshed in the background are used after they were fetched, even
+     * if they are not fresh anymore. Older documents are fetched on demand. Defaults to 2 hours.
+     *
+     * @param maxStaleMillis max age of stale documents in milliseconds.
+     */
+    public void setMaxStaleMillis(final long maxStaleMillis) {
+        this.maxStaleMillis = maxStaleMillis;
+    }
+
+    public long getMaxStaleMillis() {
+        return maxStaleMillis;
+    }
+
+    /**
+     * Specifies whether the document is refreshed in the background. Stale documents that are refreshed in the
+     * background are returned without fetching them, until they are older than maxStaleMillis.
+     *
+     * @param href the URI of the json-home document.
+     * @param inBackground true, if the document is refreshed in the background.
+     */
+    public void setRefreshedInBackground(final URI href, final boolean inBackground) {
+        if (inBackground) {
+            refreshedInBackground.add(href);
+        } else {
+            refreshedInBackground.remove(href);
+        }
+    }
+
+    /**
+     * Specifies after how many milliseconds unused documents are dropped. Defaults to 10 minutes.
+     *
+     * @param purgeAfterMillis time in milliseconds.
+     */
+    public void setPurgeAfterMillis(final long purgeAfterMillis) {
+        this.purgeAfterMillis = purgeAfterMillis;
+    }
+
+    public JsonHomeClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the json-home document of the upstream service, fetching it if it is unknown or not fresh. Stale
+     * documents that are refreshed in the background are only fetched if they are older than maxStaleMillis.
+     *
+     * @param href the URI of the json-home document.
+     * @return JsonHome
+     * @throws JsonHomeClientException if the document could not be fetched.
+     */
+    public JsonHome get(final URI href) {
+        purgeIfNecessary();
+        final UpstreamDocument document = documents.get(href);
+        if (document != null && isUsable(href, document)) {
+            document.lastRequested = currentTimeMillis();
+            return document.jsonHome;
+        }
+        return refresh(href).jsonHome;
+    }
+
+    /**
+     * Returns the known json-home document of the upstream service without fetching it, or null.
+     *
+     * @param href the URI of the json-home document.
+     * @return JsonHome or null
+     */
+    public JsonHome getIfPresent(final URI href) {
+        final UpstreamDocument document = documents.get(href);
+        return document != null ? document.jsonHome : null;
+    }
+
+    /**
+     * Fetches the json-home document of the upstream service, regardless of its age. If the document is
+     * already being fetched, the result of the running fetch is returned.
+     *
+     * @param href the URI of the json-home document.
+     * @return the current document.
+     * @throws JsonHomeClientException if the document could not be fetched.
+     */
+    public UpstreamDocument refresh(final URI href) {
+        final FutureTask<UpstreamDocument> task = new FutureTask<UpstreamDocument>(new Callable<UpstreamDocument>() {
+            @Override
+            public UpstreamDocument call() {
+                return fetch(href);
+            }
+        });
+        final FutureTask<UpstreamDocument> inFlightTask = inFlight.putIfAbsent(href, task);
+        if (inFlightTask != null) {
+            return resultOf(inFlightTask);
+        }
+        try {
+            task.run();
+        } finally {
+            inFlight.remove(href, task);
+        }
+        return resultOf(task);
+    }
+
+    /**
+     * Drops the document of the upstream service.
+     *
+     * @param href the URI of the json-home document.
+     */
+    public void remove(final URI href) {
+        documents.remove(href);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the remaining freshness lifetime of the last fetched document, as specified by the upstream service.
+     *
+     * @param href the URI of the json-home document.
+     * @return max-age in seconds, or -1 if unknown.
+     */
+    protected long maxAgeSecondsOf(final URI href) {
+        return client instanceof HttpJsonHomeClient
+                ? ((HttpJsonHomeClient) client).getMaxAgeSeconds(href)
+                : -1L;
+    }
+
+    /**
+     * Returns the current wall-clock time. Overridden in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private UpstreamDocument fetch(final URI href) {
+        final JsonHome fetched = client.get(href);
+        final long now = currentTimeMillis();
+        final UpstreamDocument previous = documents.get(href);
+        final boolean changed = previous == null || !previous.jsonHome.equals(fetched);
+        final UpstreamDocument document = new UpstreamDocument(
+                changed ? fetched : previous.jsonHome,
+                changed,
+                maxAgeSecondsOf(href),
+                now);
+        documents.put(href, document);
+        if (changed) {
+            LOG.debug("Fetched changed json-home document {}", href);
+        }
+        return document;
+    }
+
+    private boolean isUsable(final URI href, final UpstreamDocument document) {
+        final long age = currentTimeMillis() - document.fetchedAt;
+        return age < freshnessLifetimeOf(document)
+                || (age < maxStaleMillis && refreshedInBackground.contains(href));
+    }
+
+    private long freshnessLifetimeOf(final UpstreamDocument document) {
+        return document.maxAgeSeconds >= 0 ? document.maxAgeSeconds * 1000L : maxAgeMillis;
+    }
+
+    private UpstreamDocument resultOf(final FutureTask<UpstreamDocument> task) {
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonHomeClientException("Interrupted while waiting for json-home document", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new JsonHomeClientException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void purgeIfNecessary() {
+        final long now = currentTimeMillis();
+        if (now - lastPurge < purgeAfterMillis) {
+            return;
+        }
+        lastPurge = now;
+        final Iterator<Map.Entry<URI, UpstreamDocument>> iterator = documents.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<URI, UpstreamDocument> entry = iterator.next();
+            if (now - entry.getValue().lastRequested >= purgeAfterMillis) {
+                LOG.debug("Dropping unused json-home document {}", entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * A fetched json-home document of an upstream service.
+     */
+    public static final class UpstreamDocument {
+        private final JsonHome jsonHome;
+        private final boolean changed;
+        private final long maxAgeSeconds;
+        private final long fetchedAt;
+        private volatile long lastRequested;
+
+        private UpstreamDocument(final JsonHome jsonHome,
+                                 final boolean changed,
+                                 final long maxAgeSeconds,
+                                 final long fetchedAt) {
+            this.jsonHome = jsonHome;
+            this.changed = changed;
+            this.maxAgeSeconds = maxAgeSeconds;
+            this.fetchedAt = fetchedAt;
+            this.lastRequested = fetchedAt;
+        }
+
+        public JsonHome getJsonHome() {
+            return jsonHome;
+        }
+
+        /**
+         * @return true, if the document was different from the previously fetched document.
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * @return the max-age of the document in seconds, as specified by the upstream service, or -1 if unknown.
+         */
+        public long getMaxAgeSeconds() {
+            return maxAgeSeconds;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+}
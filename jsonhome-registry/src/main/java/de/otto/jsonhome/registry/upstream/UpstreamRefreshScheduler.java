@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.upstream;
+
+import de.otto.jsonhome.client.JsonHomeClientException;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Refreshes the json-home documents of all links in the {@link RegistryRepository} in the background, so
+ * aggregating a registry does not have to wait for upstream services.
+ * <p/>
+ * Every document is refreshed when its Cache-Control max-age, as specified by the upstream service, has expired.
+ * Documents without max-age are refreshed after {@link #setDefaultMaxAgeSeconds(long) defaultMaxAgeSeconds}.
+ * Refresh times are spread using a random {@link #setJitterRatio(double) jitter}, so documents with the same
+ * max-age are not refreshed at the same time.
+ * <p/>
+ * Documents that did not change since the previous refresh are refreshed less often: the interval is doubled
+ * with every unchanged refresh (or failure), up to {@link #setMaxBackoffSeconds(long) maxBackoffSeconds}. The
+ * scheduled documents are marked as {@link UpstreamDocumentStore#setRefreshedInBackground(URI, boolean) refreshed
+ * in the background}, so the store keeps returning them while they are backed off, instead of fetching them
+ * on demand when their max-age has expired. The backoff is limited by the
+ * {@link UpstreamDocumentStore#setMaxStaleMillis(long) maxStaleMillis} of the store, so the store never needs to
+ * fetch documents on demand while they are refreshed in the background.
+ * <p/>
+ * Pending refreshes are kept in a priority queue ordered by their due time. At most
+ * {@link #setMaxConcurrentRefreshes(int) maxConcurrentRefreshes} documents are fetched at the same time.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class UpstreamRefreshScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamRefreshScheduler.class);
+
+    private final RegistryRepository registries;
+    private final UpstreamDocumentStore documents;
+    private final ConcurrentMap<URI, RefreshState> states = new ConcurrentHashMap<URI, RefreshState>();
+    private final PriorityQueue<ScheduledRefresh> queue = new PriorityQueue<ScheduledRefresh>();
+    private final Random random = new Random();
+    private LinkHealthTracker linkHealthTracker;
+    private long tickMillis = 1000L;
+    private long defaultMaxAgeSeconds = 60L;
+    private long minIntervalSeconds = 1L;
+    private long maxBackoffSeconds = 3600L;
+    private double jitterRatio = 0.1;
+    private int maxConcurrentRefreshes = 8;
+    private Semaphore permits;
+    private ExecutorService workers;
+    private ScheduledExecutorService ticker;
+    private List<Registry> knownRegistries;
+
+    public UpstreamRefreshScheduler(final RegistryRepository registries, final UpstreamDocumentStore documents) {
+        this.registries = registries;
+        this.documents = documents;
+    }
+
+    /**
+     * Links that are not available according to the LinkHealthTracker are not refreshed.
+     *
+     * @param linkHealthTracker the tracker used to track failing links.
+     */
+    @Autowired(required = false)
+    public void setLinkHealthTracker(final LinkHealthTracker linkHealthTracker) {
+        this.linkHealthTracker = linkHealthTracker;
+    }
+
+    /**
+     * @param tickMillis the interval used to check for due refreshes and new links. Defaults to 1s.
+     */
+    public void setTickMillis(final long tickMillis) {
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * @param defaultMaxAgeSeconds refresh interval of documents without max-age. Defaults to 60s.
+     */
+    public void setDefaultMaxAgeSeconds(final long defaultMaxAgeSeconds) {
+        this.defaultMaxAgeSeconds = defaultMaxAgeSeconds;
+    }
+
+    /**
+     * @param minIntervalSeconds minimum refresh interval, used for documents with max-age=0. Defaults to 1s.
+     */
+    public void setMinIntervalSeconds(final long minIntervalSeconds) {
+        this.minIntervalSeconds = minIntervalSeconds;
+    }
+
+    /**
+     * @param maxBackoffSeconds the maximum refresh interval of unchanged documents. Documents with a larger
+     *                          max-age are refreshed after their max-age. Defaults to 1h.
+     */
+    public void setMaxBackoffSeconds(final long maxBackoffSeconds) {
+        this.maxBackoffSeconds = maxBackoffSeconds;
+    }
+
+    /**
+     * @param jitterRatio the maximum deviation of refresh intervals, relative to the interval. Defaults to 0.1.
+     */
+    public void setJitterRatio(final double jitterRatio) {
+        this.jitterRatio = jitterRatio;
+    }
+
+    /**
+     * @param maxConcurrentRefreshes the maximum number of documents fetched at the same time. Defaults to 8.
+     */
+    public void setMaxConcurrentRefreshes(final int maxConcurrentRefreshes) {
+        this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        LOG.info("Starting refresh of upstream json-home documents using {} threads", maxConcurrentRefreshes);
+        permits = new Semaphore(maxConcurrentRefreshes);
+        workers = Executors.newFixedThreadPool(maxConcurrentRefreshes, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "jsonhome-upstream-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "jsonhome-upstream-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ticker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (final RuntimeException e) {
+                    LOG.error("Failed to refresh upstream json-home documents: " + e.getMessage(), e);
+                }
+            }
+        }, 0, tickMillis, MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (ticker != null) {
+            LOG.info("Stopping refresh of upstream json-home documents");
+            ticker.shutdownNow();
+            workers.shutdownNow();
+            ticker = null;
+            workers = null;
+            for (final URI href : states.keySet()) {
+                documents.setRefreshedInBackground(href, false);
+            }
+            states.clear();
+            synchronized (queue) {
+                queue.clear();
+            }
+            knownRegistries = null;
+        }
+    }
+
+    /**
+     * Returns the time of the next refresh of the json-home document.
+     *
+     * @param href the URI of the json-home document.
+     * @return time in milliseconds, or -1 if the document is not scheduled for refresh.
+     */
+    public long getNextRefreshMillis(final URI href) {
+        final RefreshState state = states.get(href);
+        return state != null ? state.due : -1L;
+    }
+
+    /**
+     * @return the number of documents scheduled for refresh.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Returns the current wall-clock time. Overridden in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Schedules new links, forgets removed links and starts all due refreshes, as long as the maximum number of
+     * concurrent refreshes is not exceeded.
+     */
+    synchronized void tick() {
+        synchronizeLinks();
+        final long now = currentTimeMillis();
+        while (true) {
+            final ScheduledRefresh next;
+            synchronized (queue) {
+                next = queue.peek();
+                if (next == null || next.due > now || !permits.tryAcquire()) {
+                    return;
+                }
+                queue.poll();
+            }
+            final RefreshState state = states.get(next.href);
+            if (state == null || state.due != next.due) {
+                // link was removed or rescheduled in the meantime
+                permits.release();
+                continue;
+            }
+            submit(next.href, state);
+        }
+    }
+
+    private void submit(final URI href, final RefreshState state) {
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh(href, state);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            permits.release();
+        }
+    }
+
+    private void synchronizeLinks() {
+        final List<Registry> currentRegistries = registries.getRegistries();
+        if (currentRegistries == knownRegistries) {
+            return;
+        }
+        knownRegistries = currentRegistries;
+        final Set<URI> hrefs = new HashSet<URI>();
+        for (final Registry registry : currentRegistries) {
+            for (final Link link : registry.getAll()) {
+                hrefs.add(link.getHref());
+            }
+        }
+        for (final URI href : states.keySet()) {
+            if (!hrefs.contains(href)) {
+                states.remove(href);
+                documents.setRefreshedInBackground(href, false);
+            }
+        }
+        final long now = currentTimeMillis();
+        for (final URI href : hrefs) {
+            final RefreshState state = new RefreshState();
+            if (states.putIfAbsent(href, state) == null) {
+                LOG.debug("Scheduling refresh of json-home document {}", href);
+                documents.setRefreshedInBackground(href, true);
+                schedule(href, state, now);
+            }
+        }
+    }
+
+    private void refresh(final URI href, final RefreshState state) {
+        long maxAgeSeconds = -1L;
+        if (linkHealthTracker == null || linkHealthTracker.isAvailable(href)) {
+            try {
+                final UpstreamDocumentStore.UpstreamDocument document = documents.refresh(href);
+                if (linkHealthTracker != null) {
+                    linkHealthTracker.recordSuccess(href);
+                }
+                maxAgeSeconds = document.getMaxAgeSeconds();
+                state.unchangedRefreshes = document.isChanged() ? 0 : state.unchangedRefreshes + 1;
+            } catch (final JsonHomeClientException e) {
+                LOG.warn("Unable to refresh json-home document {}: {}", href, e.getMessage());
+                if (linkHealthTracker != null) {
+                    linkHealthTracker.recordFailure(href, e.getMessage());
+                }
+                ++state.unchangedRefreshes;
+            }
+        }
+        schedule(href, state, currentTimeMillis() + intervalMillis(maxAgeSeconds, state.unchangedRefreshes));
+    }
+
+    /**
+     * Returns the interval until the next refresh: the max-age of the document, doubled for every unchanged
+     * refresh, limited by maxBackoffSeconds, +/- a random jitter. The interval never exceeds the maxStaleMillis
+     * of the store, so the store is able to return the document until it is refreshed.
+     */
+    private long intervalMillis(final long maxAgeSeconds, final int unchangedRefreshes) {
+        final long maxAgeMillis = Math.max(minIntervalSeconds, maxAgeSeconds >= 0 ? maxAgeSeconds : defaultMaxAgeSeconds) * 1000L;
+        final long backoffMillis = maxAgeMillis << Math.min(unchangedRefreshes, 20);
+        final long intervalMillis = Math.max(maxAgeMillis, Math.min(backoffMillis, maxBackoffSeconds * 1000L));
+        final double jitter;
+        synchronized (random) {
+            jitter = jitterRatio * (2 * random.nextDouble() - 1);
+        }
+        return Math.max(0L, Math.min(intervalMillis + (long) (intervalMillis * jitter), documents.getMaxStaleMillis() - tickMillis));
+    }
+
+    private void schedule(final URI href, final RefreshState state, final long due) {
+        synchronized (queue) {
+            if (states.get(href) == state) {
+                state.due = due;
+                queue.offer(new ScheduledRefresh(href, due));
+            }
+        }
+    }
+
+    /**
+     * The refresh state of a single json-home document.
+     */
+    private static final class RefreshState {
+        private volatile long due;
+        private volatile int unchangedRefreshes;
+    }
+
+    /**
+     * An entry of the refresh queue. Entries that do not match the due time of the RefreshState are outdated.
+     */
+    private static final class ScheduledRefresh implements Comparable<ScheduledRefresh> {
+        private final URI href;
+        private final long due;
+
+        private ScheduledRefresh(final URI href, final long due) {
+            this.href = href;
+            this.due = due;
+        }
+
+        @Override
+        public int compareTo(final ScheduledRefresh other) {
+            return due < other.due ? -1 : (due == other.due ? 0 : 1);
+        }
+    }
+}
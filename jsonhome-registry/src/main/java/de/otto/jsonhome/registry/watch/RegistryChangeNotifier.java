@@ -0,0 +1,321 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.watch;
+
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import de.otto.jsonhome.registry.controller.RegistryJsonHomeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import static de.otto.jsonhome.delta.JsonHomeHistory.jsonHomeHistory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Notifies watchers about changes of the aggregated json-home documents of registries.
+ * <p/>
+ * The aggregates of registries with waiting watchers are checked every {@link #setPollMillis(long) pollMillis},
+ * no matter how many clients are watching a registry. The versions of the aggregates are derived from their content,
+ * like the versions used as entity tags by the {@link de.otto.jsonhome.registry.controller.RegistryJsonHomeController}.
+ * The {@link de.otto.jsonhome.registry.controller.DefaultRegistryJsonHomeSource} returns the same aggregate instance
+ * as long as no upstream document changed, so the version is only computed again after a change.
+ * <p/>
+ * Waiting watchers are not blocking any thread: a {@link RegistryWatcher} is registered for every watch, and it is
+ * called by the polling thread if the registry changed or the timeout of the watch expired. Together with the
+ * asynchronous request processing of Servlet 3.0, waiting clients are only holding a connection, but no request
+ * thread of the servlet container. The number of waiting watchers is limited by {@link #setMaxWatchers(int)
+ * maxWatchers}; if the limit is reached, watches are rejected.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryChangeNotifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RegistryChangeNotifier.class);
+
+    private RegistryJsonHomeSource jsonHomeSource;
+    private final ConcurrentMap<String, WatchedRegistry> watched = new ConcurrentHashMap<String, WatchedRegistry>();
+    private long pollMillis = 1000L;
+    private long idleMillis = 60000L;
+    private Semaphore watchers = new Semaphore(10000);
+    private ScheduledExecutorService poller;
+
+    @Autowired
+    public void setRegistryJsonHomeSource(final RegistryJsonHomeSource jsonHomeSource) {
+        this.jsonHomeSource = jsonHomeSource;
+    }
+
+    /**
+     * @param pollMillis the interval used to check watched registries for changes. Defaults to 1s.
+     */
+    public void setPollMillis(final long pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * @param idleMillis registries without watchers for this period are not checked anymore. Defaults to 60s.
+     */
+    public void setIdleMillis(final long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Limits the number of watchers waiting for changes. Waiting watchers are not holding threads, but every
+     * watcher is holding an open connection, so the limit should not exceed the number of connections accepted
+     * by the servlet container.
+     *
+     * @param maxWatchers the maximum number of watchers waiting for changes. Defaults to 10000.
+     */
+    public void setMaxWatchers(final int maxWatchers) {
+        this.watchers = new Semaphore(maxWatchers);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (poller == null) {
+            poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "jsonhome-registry-watch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            poller.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        poll();
+                    } catch (final RuntimeException e) {
+                        LOG.error("Failed to check registries for changes: " + e.getMessage(), e);
+                    }
+                }
+            }, pollMillis, pollMillis, MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * Returns the current version of the aggregated json-home document of a registry.
+     *
+     * @param registryName the name of the registry.
+     * @return version
+     * @throws IllegalArgumentException if the registry does not exist.
+     */
+    public String getCurrentVersion(final String registryName) {
+        return watchedRegistry(registryName).history.getCurrentVersion();
+    }
+
+    /**
+     * Registers a watcher that is notified as soon as the version of the aggregated json-home document of a
+     * registry differs from the known version, or the timeout has expired. If no version is known, or the version
+     * has already changed, the watcher is notified immediately by the calling thread.
+     *
+     * @param registryName the name of the registry.
+     * @param knownVersion the version already known by the watcher, or null.
+     * @param timeoutMillis maximum time to wait for a change.
+     * @param watcher the watcher to notify.
+     * @return false, if the maximum number of watchers is reached. In this case, the watcher is not registered
+     *         and will not be notified.
+     * @throws IllegalArgumentException if the registry does not exist.
+     */
+    public boolean watch(final String registryName,
+                         final String knownVersion,
+                         final long timeoutMillis,
+                         final RegistryWatcher watcher) {
+        final WatchedRegistry registry = watchedRegistry(registryName);
+        if (knownVersion == null || !knownVersion.equals(registry.history.getCurrentVersion())) {
+            watcher.onVersion(registry.history.getCurrentVersion());
+            return true;
+        }
+        if (!watchers.tryAcquire()) {
+            LOG.debug("Too many watchers, not waiting for changes of registry {}", registryName);
+            return false;
+        }
+        registry.watches.put(watcher, new Watch(knownVersion, System.currentTimeMillis() + timeoutMillis));
+        // the registry might have been changed or removed by the poller in the meantime:
+        if (registry.removed) {
+            if (unregister(registry, watcher)) {
+                watcher.onRemoved();
+            }
+        } else {
+            final String currentVersion = registry.history.getCurrentVersion();
+            if (!knownVersion.equals(currentVersion) && unregister(registry, watcher)) {
+                watcher.onVersion(currentVersion);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels a watch, for example because the client has disconnected.
+     *
+     * @param registryName the name of the watched registry.
+     * @param watcher the registered watcher.
+     * @return true, if the watch was cancelled; false, if the watcher was already notified or is unknown.
+     */
+    public boolean cancel(final String registryName, final RegistryWatcher watcher) {
+        final WatchedRegistry registry = watched.get(registryName);
+        return registry != null && unregister(registry, watcher);
+    }
+
+    /**
+     * Returns the delta between a previous version and the current version of the aggregated json-home document.
+     *
+     * @param registryName the name of the registry.
+     * @param version the previous version.
+     * @return delta, or null if the version is unknown.
+     */
+    public JsonHomeDelta deltaSince(final String registryName, final String version) {
+        final WatchedRegistry registry = watched.get(registryName);
+        return registry != null && version != null ? registry.history.deltaSince(version) : null;
+    }
+
+    /**
+     * Checks the watched registries with waiting watchers for changes and notifies the watchers of changed
+     * registries and expired watches. Registries without watchers for more than idleMillis are forgotten.
+     */
+    void poll() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, WatchedRegistry> entry : watched.entrySet()) {
+            final WatchedRegistry registry = entry.getValue();
+            if (!registry.watches.isEmpty()) {
+                update(entry.getKey(), registry, now);
+            } else if (now - registry.lastWatched > idleMillis) {
+                watched.remove(entry.getKey(), registry);
+            }
+        }
+    }
+
+    private WatchedRegistry watchedRegistry(final String registryName) {
+        WatchedRegistry registry = watched.get(registryName);
+        if (registry == null) {
+            final WatchedRegistry newRegistry = new WatchedRegistry();
+            newRegistry.history.update(jsonHomeSource.getJsonHome(registryName));
+            registry = watched.putIfAbsent(registryName, newRegistry);
+            if (registry == null) {
+                registry = newRegistry;
+            }
+        } else if (registry.watches.isEmpty()) {
+            // the poller is only updating registries with waiting watchers:
+            try {
+                registry.history.update(jsonHomeSource.getJsonHome(registryName));
+            } catch (final IllegalArgumentException e) {
+                watched.remove(registryName, registry);
+                throw e;
+            }
+        }
+        registry.lastWatched = System.currentTimeMillis();
+        return registry;
+    }
+
+    private void update(final String registryName, final WatchedRegistry registry, final long now) {
+        final String previousVersion = registry.history.getCurrentVersion();
+        final String currentVersion;
+        try {
+            currentVersion = registry.history.update(jsonHomeSource.getJsonHome(registryName));
+        } catch (final IllegalArgumentException e) {
+            watched.remove(registryName, registry);
+            registry.removed = true;
+            for (final RegistryWatcher watcher : registry.watches.keySet()) {
+                if (unregister(registry, watcher)) {
+                    notifyRemoved(watcher);
+                }
+            }
+            return;
+        }
+        if (!currentVersion.equals(previousVersion)) {
+            LOG.debug("Registry {} changed to version {}", registryName, currentVersion);
+        }
+        for (final Map.Entry<RegistryWatcher, Watch> entry : registry.watches.entrySet()) {
+            final Watch watch = entry.getValue();
+            if ((!watch.knownVersion.equals(currentVersion) || now >= watch.deadline)
+                    && unregister(registry, entry.getKey())) {
+                notifyVersion(entry.getKey(), currentVersion);
+            }
+        }
+    }
+
+    /**
+     * Removes the watch of the watcher. Only the caller that succeeded to remove the watch is allowed to notify
+     * the watcher, so every watcher is notified at most once.
+     */
+    private boolean unregister(final WatchedRegistry registry, final RegistryWatcher watcher) {
+        if (registry.watches.remove(watcher) != null) {
+            registry.lastWatched = System.currentTimeMillis();
+            watchers.release();
+            return true;
+        }
+        return false;
+    }
+
+    private static void notifyVersion(final RegistryWatcher watcher, final String currentVersion) {
+        try {
+            watcher.onVersion(currentVersion);
+        } catch (final RuntimeException e) {
+            LOG.warn("Failed to notify watcher: " + e.getMessage(), e);
+        }
+    }
+
+    private static void notifyRemoved(final RegistryWatcher watcher) {
+        try {
+            watcher.onRemoved();
+        } catch (final RuntimeException e) {
+            LOG.warn("Failed to notify watcher: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The history of a watched registry, together with the waiting watchers.
+     */
+    private static final class WatchedRegistry {
+        private final JsonHomeHistory history = jsonHomeHistory();
+        private final ConcurrentMap<RegistryWatcher, Watch> watches = new ConcurrentHashMap<RegistryWatcher, Watch>();
+        private volatile long lastWatched;
+        private volatile boolean removed;
+    }
+
+    /**
+     * The version known by a waiting watcher, and the time the watch expires.
+     */
+    private static final class Watch {
+        private final String knownVersion;
+        private final long deadline;
+
+        private Watch(final String knownVersion, final long deadline) {
+            this.knownVersion = knownVersion;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.watch;
+
+/**
+ * A watcher of a registry, waiting for changes of the aggregated json-home document.
+ * <p/>
+ * Exactly one of the methods is called for every watch registered at the {@link RegistryChangeNotifier}, unless
+ * the watch is cancelled. The methods are called by the thread polling the registries, so they must not block.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public interface RegistryWatcher {
+
+    /**
+     * Called if the version of the aggregated json-home document differs from the known version, or if the
+     * timeout of the watch has expired.
+     *
+     * @param currentVersion the current version, which is equal to the known version after a timeout.
+     */
+    public void onVersion(String currentVersion);
+
+    /**
+     * Called if the watched registry was removed.
+     */
+    public void onRemoved();
+
+}
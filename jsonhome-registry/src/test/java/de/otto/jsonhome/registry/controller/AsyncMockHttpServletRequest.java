@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Part;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A MockHttpServletRequest supporting the asynchronous request processing of Servlet 3.0, which is not
+ * supported by the mocks of spring-test 3.1.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public class AsyncMockHttpServletRequest extends MockHttpServletRequest {
+
+    private final boolean asyncSupported;
+    private MockAsyncContext asyncContext;
+
+    public AsyncMockHttpServletRequest(final boolean asyncSupported) {
+        super("GET", "/");
+        this.asyncSupported = asyncSupported;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AsyncContext startAsync(final ServletRequest request, final ServletResponse response) {
+        if (!asyncSupported) {
+            throw new IllegalStateException("Asynchronous processing is not supported");
+        }
+        asyncContext = new MockAsyncContext(request, response);
+        return asyncContext;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return asyncContext != null && !asyncContext.completed;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return asyncSupported;
+    }
+
+    @Override
+    public MockAsyncContext getAsyncContext() {
+        return asyncContext;
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public void logout() {
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+        return new ArrayList<Part>();
+    }
+
+    @Override
+    public Part getPart(final String name) {
+        return null;
+    }
+
+    public static final class MockAsyncContext implements AsyncContext {
+        private final ServletRequest request;
+        private final ServletResponse response;
+        private final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+        private long timeout;
+        private boolean completed;
+
+        private MockAsyncContext(final ServletRequest request, final ServletResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Expires the request, like a servlet container after the timeout of the AsyncContext.
+         */
+        public void expire() throws IOException {
+            for (final AsyncListener listener : new ArrayList<AsyncListener>(listeners)) {
+                listener.onTimeout(new AsyncEvent(this));
+            }
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        @Override
+        public void dispatch() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(final String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(final ServletContext context, final String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void complete() {
+            if (completed) {
+                throw new IllegalStateException("Request is already completed");
+            }
+            completed = true;
+            for (final AsyncListener listener : new ArrayList<AsyncListener>(listeners)) {
+                try {
+                    listener.onComplete(new AsyncEvent(this));
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public void start(final Runnable runnable) {
+            runnable.run();
+        }
+
+        @Override
+        public void addListener(final AsyncListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void addListener(final AsyncListener listener,
+                                final ServletRequest request,
+                                final ServletResponse response) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(final Class<T> type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setTimeout(final long timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+    }
+}
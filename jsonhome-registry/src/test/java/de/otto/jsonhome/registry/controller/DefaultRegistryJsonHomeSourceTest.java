@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.client.JsonHomeClient;
+import de.otto.jsonhome.client.JsonHomeClientException;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
+import de.otto.jsonhome.registry.store.InMemoryRegistryRepository;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class DefaultRegistryJsonHomeSourceTest {
+
+    private static final URI FOO = create("http://example.org/foo/json-home");
+    private static final URI DEAD = create("http://dead.example.org/json-home");
+    private static final URI BAR = create("http://example.org/bar/json-home");
+
+    @Test
+    public void shouldSkipLinksWithOpenCircuit() {
+        // given
+        final StubJsonHomeClient client = new StubJsonHomeClient();
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, new LinkHealthTracker(), liveRegistry());
+        source.getJsonHome("live");
+        // when
+        final JsonHome jsonHome = source.getJsonHome("live");
+        // then
+        assertEquals(client.requestsTo(DEAD), 1);
+        assertEquals(client.requestsTo(FOO), 1);
+        assertEquals(jsonHome.getResources().size(), 1);
+        assertFalse(source.getLinkHealthTracker().getHealth(DEAD).isHealthy());
+    }
+
+    @Test
+    public void shouldFetchDocumentsOnceForAllRegistries() {
+        // given
+        final StubJsonHomeClient client = new StubJsonHomeClient();
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"))));
+        registries.createOrUpdate(new Registry("develop", "Develop", asList(new Link(FOO, "foo"))));
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, new LinkHealthTracker(), registries);
+        // when
+        final JsonHome live = source.getJsonHome("live");
+        final JsonHome develop = source.getJsonHome("develop");
+        // then
+        assertEquals(client.requestsTo(FOO), 1);
+        final URI rel = create("http://example.org/rel/foo");
+        assertSame(live.getResourceFor(rel), develop.getResourceFor(rel));
+    }
+
+    @Test
+    public void shouldShareResourcesWithUpstreamDocuments() {
+        // given
+        final StubJsonHomeClient client = new StubJsonHomeClient();
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"))));
+        registries.createOrUpdate(new Registry("develop", "Develop", asList(new Link(FOO, "foo"), new Link(BAR, "bar"))));
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, new LinkHealthTracker(), registries);
+        // when
+        final JsonHome live = source.getJsonHome("live");
+        final JsonHome develop = source.getJsonHome("develop");
+        // then
+        assertSame(live, source.getUpstreamDocumentStore().get(FOO));
+        final JsonHome bar = source.getUpstreamDocumentStore().get(BAR);
+        assertEquals(develop.getResources().size(), 2);
+        assertSame(develop.getResourceFor(create("http://example.org/rel/foo")), bar.getResourceFor(create("http://example.org/rel/foo")));
+        assertSame(develop.getResourceFor(create("http://example.org/rel/bar")), bar.getResourceFor(create("http://example.org/rel/bar")));
+    }
+
+    @Test
+    public void shouldReturnSameAggregateIfUpstreamDocumentsAreUnchanged() {
+        // given
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("develop", "Develop", asList(new Link(FOO, "foo"), new Link(BAR, "bar"))));
+        final DefaultRegistryJsonHomeSource source = sourceWith(new StubJsonHomeClient(), new LinkHealthTracker(), registries);
+        final JsonHome first = source.getJsonHome("develop");
+        // when
+        source.getUpstreamDocumentStore().refresh(FOO);
+        final JsonHome second = source.getJsonHome("develop");
+        // then
+        assertSame(second, first);
+    }
+
+    @Test
+    public void shouldDeregisterQuarantinedLinks() {
+        // given
+        final LinkHealthTracker tracker = new LinkHealthTracker();
+        tracker.setInitialBackoffMillis(0);
+        tracker.setMaxBackoffMillis(0);
+        tracker.setQuarantineThreshold(2);
+        final InMemoryRegistryRepository registries = liveRegistry();
+        final DefaultRegistryJsonHomeSource source = sourceWith(new StubJsonHomeClient(), tracker, registries);
+        source.setDeregisterQuarantinedLinks(true);
+        source.getJsonHome("live");
+        // when
+        source.getJsonHome("live");
+        // then
+        assertNull(registries.get("live").findByHref(DEAD));
+        assertNotNull(registries.get("live").findByHref(FOO));
+    }
+
+    @Test
+    public void shouldKeepUpstreamDocumentsOfLinksDeregisteredFromOneRegistry() {
+        // given
+        final LinkHealthTracker tracker = new LinkHealthTracker();
+        tracker.setInitialBackoffMillis(0);
+        tracker.setMaxBackoffMillis(0);
+        tracker.setQuarantineThreshold(1);
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"))));
+        registries.createOrUpdate(new Registry("develop", "Develop", asList(new Link(FOO, "foo"))));
+        final StubJsonHomeClient client = new StubJsonHomeClient();
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, tracker, registries);
+        source.setDeregisterQuarantinedLinks(true);
+        source.getUpstreamDocumentStore().setMaxAgeMillis(0);
+        source.getJsonHome("develop");
+        client.failing = FOO;
+        // when
+        source.getJsonHome("live");
+        // then
+        assertNull(registries.get("live").findByHref(FOO));
+        assertNotNull(registries.get("develop").findByHref(FOO));
+        assertNotNull(source.getUpstreamDocumentStore().getIfPresent(FOO));
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentAggregations() throws InterruptedException {
+        // given
+        final BlockingJsonHomeClient client = new BlockingJsonHomeClient();
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"))));
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, new LinkHealthTracker(), registries);
+        final int threads = 10;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger results = new AtomicInteger();
+        // when
+        for (int i = 0; i < threads; ++i) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if (source.getJsonHome("live").hasResourceFor(create("http://example.org/rel/foo"))) {
+                        results.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        client.awaitFirstRequest();
+        Thread.sleep(300);
+        client.release();
+        done.await(5, SECONDS);
+        // then
+        assertEquals(results.get(), threads);
+        assertEquals(client.requests.get(), 1);
+    }
+
+    @Test
+    public void shouldReturnLastSnapshotIfAggregationTakesTooLong() throws InterruptedException {
+        // given
+        final BlockingJsonHomeClient client = new BlockingJsonHomeClient();
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"))));
+        final DefaultRegistryJsonHomeSource source = sourceWith(client, new LinkHealthTracker(), registries);
+        source.setMaxWaitMillis(50);
+        source.getUpstreamDocumentStore().setMaxAgeMillis(0);
+        client.release();
+        final JsonHome snapshot = source.getJsonHome("live");
+        client.block();
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                source.getJsonHome("live");
+            }
+        });
+        leader.start();
+        client.awaitFirstRequest();
+        // when
+        final JsonHome jsonHome = source.getJsonHome("live");
+        // then
+        assertSame(jsonHome, snapshot);
+        client.release();
+        leader.join(5000);
+    }
+
+    private InMemoryRegistryRepository liveRegistry() {
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"), new Link(DEAD, "dead"))));
+        return registries;
+    }
+
+    private DefaultRegistryJsonHomeSource sourceWith(final JsonHomeClient client,
+                                                     final LinkHealthTracker tracker,
+                                                     final InMemoryRegistryRepository registries) {
+        final DefaultRegistryJsonHomeSource source = new DefaultRegistryJsonHomeSource(client);
+        source.setRegistries(registries);
+        source.setLinkHealthTracker(tracker);
+        return source;
+    }
+
+    private static final class StubJsonHomeClient implements JsonHomeClient {
+        private final ConcurrentMap<URI, AtomicInteger> requests = new ConcurrentHashMap<URI, AtomicInteger>();
+        private volatile URI failing;
+
+        @Override
+        public JsonHome updateAndGet(final URI uri) {
+            return get(uri);
+        }
+
+        @Override
+        public JsonHome get(final URI uri) {
+            requests.putIfAbsent(uri, new AtomicInteger());
+            requests.get(uri).incrementAndGet();
+            if (uri.equals(DEAD) || uri.equals(failing)) {
+                throw new JsonHomeClientException("Connection refused");
+            }
+            if (uri.equals(BAR)) {
+                return jsonHome(
+                        directLink(create("http://example.org/rel/foo"), create("http://example.org/bar/foo"), emptyHints()),
+                        directLink(create("http://example.org/rel/bar"), create("http://example.org/bar"), emptyHints()));
+            }
+            return jsonHome(directLink(create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints()));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private int requestsTo(final URI uri) {
+            return requests.containsKey(uri) ? requests.get(uri).get() : 0;
+        }
+    }
+
+    private static final class BlockingJsonHomeClient implements JsonHomeClient {
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile CountDownLatch firstRequest = new CountDownLatch(1);
+        private volatile CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public JsonHome updateAndGet(final URI uri) {
+            return get(uri);
+        }
+
+        @Override
+        public JsonHome get(final URI uri) {
+            requests.incrementAndGet();
+            firstRequest.countDown();
+            try {
+                released.await(5, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return jsonHome(directLink(create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints()));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private void awaitFirstRequest() throws InterruptedException {
+            firstRequest.await(5, SECONDS);
+        }
+
+        private void block() {
+            firstRequest = new CountDownLatch(1);
+            released = new CountDownLatch(1);
+        }
+
+        private void release() {
+            released.countDown();
+        }
+    }
+}
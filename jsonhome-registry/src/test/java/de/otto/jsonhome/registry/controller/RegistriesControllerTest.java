@@ -16,6 +16,7 @@
 
 package de.otto.jsonhome.registry.controller;
 
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
 import de.otto.jsonhome.registry.store.RegistryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -25,12 +26,26 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import static de.otto.jsonhome.registry.fixture.RegistriesFixture.*;
 import static de.otto.jsonhome.registry.fixture.RegistryFixture.registryLiveWithSingleLinkTo;
 import static javax.servlet.http.HttpServletResponse.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Unit tests of the RegistriesController.
@@ -41,15 +56,21 @@ import static org.testng.Assert.assertEquals;
 @ContextConfiguration(locations = "classpath:/testSpringContext.xml")
 public class RegistriesControllerTest extends AbstractTestNGSpringContextTests {
 
+    private static final URI FOO_HREF = URI.create("http://example.org/foo/json-home");
+
     @Autowired
     private RegistriesController registriesController;
 
     @Autowired
     private RegistryRepository repository;
 
+    @Autowired
+    private LinkHealthTracker linkHealthTracker;
+
     @BeforeMethod
     public void beforeMethod() {
         repository.clear();
+        linkHealthTracker.reset(FOO_HREF);
     }
 
     /* GET /registries
@@ -130,6 +151,36 @@ public class RegistriesControllerTest extends AbstractTestNGSpringContextTests {
         assertEquals(live, registryLiveWithSingleLinkTo("foo"));
     }
 
+    @Test
+    public void shouldChangeETagIfHealthOfLinksChanges() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final MockHttpServletResponse first = new MockHttpServletResponse();
+        registriesController.getRegistry("live", first);
+        // when:
+        linkHealthTracker.recordFailure(FOO_HREF, "Connection refused");
+        final MockHttpServletResponse second = new MockHttpServletResponse();
+        registriesController.getRegistry("live", second);
+        // then:
+        assertFalse(second.getHeader("ETag").equals(first.getHeader("ETag")));
+        assertEquals(second.getHeader("Cache-Control"), "max-age=0");
+    }
+
+    @Test
+    public void shouldAcceptETagOfRegistryWithOutdatedHealth() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final MockHttpServletResponse getResponse = new MockHttpServletResponse();
+        registriesController.getRegistry("live", getResponse);
+        linkHealthTracker.recordFailure(FOO_HREF, "Connection refused");
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.postService("live", getResponse.getHeader("ETag"),
+                service("http://example.org/bar/json-home"), response);
+        // then:
+        assertEquals(response.getStatus(), SC_CREATED);
+    }
+
     /* PUT /registries/live */
 
     @Test
@@ -208,4 +259,159 @@ public class RegistriesControllerTest extends AbstractTestNGSpringContextTests {
         assertEquals(registriesController.getRegistries(new MockHttpServletResponse()), emptyRegistries());
     }
 
+    @Test
+    public void shouldReuseRenderedRegistriesUntilModified() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final Map<String, ?> registries = registriesController.getRegistries(new MockHttpServletResponse());
+        // when:
+        final Map<String, ?> unmodified = registriesController.getRegistries(new MockHttpServletResponse());
+        registriesController.deleteRegistry("live", new MockHttpServletResponse());
+        final Map<String, ?> modified = registriesController.getRegistries(new MockHttpServletResponse());
+        // then:
+        assertSame(unmodified, registries);
+        assertEquals(modified, emptyRegistries());
+    }
+
+    /* POST /registries */
+
+    @Test
+    public void shouldApplyBatch() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        registriesController.putRegistry("develop", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final List<Map<String, Object>> operations = new ArrayList<Map<String, Object>>();
+        operations.add(operation("put", "test", singletonList(service("http://example.org/test/json-home"))));
+        operations.add(operation("add", "live", singletonList(service("http://example.org/bar/json-home"))));
+        operations.add(operation("remove", "live", singletonList(service("http://example.org/foo/json-home"))));
+        operations.add(operation("delete", "develop", null));
+        final Map<String, Object> batch = batchOf(operations);
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.postBatch(batch, response);
+        // then:
+        assertEquals(response.getStatus(), SC_NO_CONTENT);
+        assertEquals(repository.getKnownNames(), new HashSet<String>(asList("live", "test")));
+        assertEquals(repository.get("live").getAll().size(), 1);
+        assertNotNull(repository.get("live").findByHref(URI.create("http://example.org/bar/json-home")));
+        assertNotNull(repository.get("test").findByHref(URI.create("http://example.org/test/json-home")));
+    }
+
+    @Test
+    public void shouldRejectBatchWithUnknownRegistryWithoutModifyingRegistries() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final List<Map<String, Object>> operations = new ArrayList<Map<String, Object>>();
+        operations.add(operation("delete", "live", null));
+        operations.add(operation("add", "unknown", singletonList(service("http://example.org/bar/json-home"))));
+        final Map<String, Object> batch = batchOf(operations);
+        // when:
+        try {
+            registriesController.postBatch(batch, new MockHttpServletResponse());
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException e) {
+            // then:
+            assertNotNull(repository.get("live"));
+        }
+    }
+
+    /* POST /registries/live/services, DELETE /registries/live/services?href=... */
+
+    @Test
+    public void shouldAddServiceToRegistry() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.postService("live", null, service("http://example.org/bar/json-home"), response);
+        // then:
+        assertEquals(response.getStatus(), SC_CREATED);
+        assertEquals(repository.get("live").getAll().size(), 2);
+    }
+
+    @Test
+    public void shouldRemoveServiceFromRegistry() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.deleteService("live", "http://example.org/foo/json-home", null, response);
+        // then:
+        assertEquals(response.getStatus(), SC_NO_CONTENT);
+        assertTrue(repository.get("live").getAll().isEmpty());
+    }
+
+    @Test
+    public void shouldReturnNotFoundForServiceOfUnknownRegistry() {
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.postService("unknown", null, service("http://example.org/bar/json-home"), response);
+        // then:
+        assertEquals(response.getStatus(), SC_NOT_FOUND);
+    }
+
+    @Test
+    public void shouldRejectServiceIfRegistryDoesNotMatchETag() {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final MockHttpServletResponse getResponse = new MockHttpServletResponse();
+        registriesController.getRegistry("live", getResponse);
+        final String eTag = getResponse.getHeader("ETag");
+        registriesController.postService("live", eTag, service("http://example.org/bar/json-home"), new MockHttpServletResponse());
+        // when:
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        registriesController.postService("live", eTag, service("http://example.org/foobar/json-home"), response);
+        // then:
+        assertEquals(response.getStatus(), SC_PRECONDITION_FAILED);
+        assertEquals(repository.get("live").getAll().size(), 2);
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentlyAddedServices() throws InterruptedException {
+        // given:
+        registriesController.putRegistry("live", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
+        final int threads = 8;
+        final int servicesPerThread = 50;
+        final CountDownLatch done = new CountDownLatch(threads);
+        // when:
+        for (int t = 0; t < threads; ++t) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < servicesPerThread; ++i) {
+                        registriesController.postService("live", null,
+                                service("http://example.org/service-" + thread + "-" + i + "/json-home"),
+                                new MockHttpServletResponse());
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await(10, SECONDS);
+        // then:
+        assertEquals(repository.get("live").getAll().size(), 1 + threads * servicesPerThread);
+    }
+
+    private static Map<String, Object> batchOf(final List<Map<String, Object>> operations) {
+        final Map<String, Object> batch = new HashMap<String, Object>();
+        batch.put("operations", operations);
+        return batch;
+    }
+
+    private static Map<String, Object> operation(final String op, final String name, final List<Map<String, String>> services) {
+        final Map<String, Object> operation = new HashMap<String, Object>();
+        operation.put("op", op);
+        operation.put("name", name);
+        if (services != null) {
+            operation.put("service", services);
+        }
+        return operation;
+    }
+
+    private static Map<String, String> service(final String href) {
+        final Map<String, String> service = new HashMap<String, String>();
+        service.put("href", href);
+        return service;
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.health.LinkHealthTracker;
+import de.otto.jsonhome.registry.store.InMemoryRegistryRepository;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryHtmlControllerTest {
+
+    @Test
+    public void shouldRenderRelationTypePage() throws Exception {
+        // given
+        final RegistryHtmlController controller = controllerFor(new CountingJsonHomeSource());
+        // when
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getRelationshipType("test", relRequest("/rel/foo"), response);
+        // then
+        assertEquals(response.getContentType(), "text/html;charset=UTF-8");
+        assertTrue(response.getContentAsString().contains("http://app.example.org/foo"));
+    }
+
+    @Test
+    public void shouldServeRelationTypePagesFromSnapshot() throws Exception {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        final RegistryHtmlController controller = controllerFor(source);
+        // when
+        controller.getRelationshipType("test", relRequest("/rel/foo"), new MockHttpServletResponse());
+        controller.getRelationshipType("test", relRequest("/rel/bar"), new MockHttpServletResponse());
+        controller.getRelationshipType("test", relRequest("/rel/foo"), new MockHttpServletResponse());
+        // then
+        assertEquals(source.count.get(), 1);
+    }
+
+    @Test
+    public void shouldNotAggregateForUnknownRelationTypes() throws Exception {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        final RegistryHtmlController controller = controllerFor(source);
+        controller.getRelationshipType("test", relRequest("/rel/foo"), new MockHttpServletResponse());
+        // when
+        try {
+            controller.getRelationshipType("test", relRequest("/rel/unknown"), new MockHttpServletResponse());
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException e) {
+            // then
+            assertEquals(source.count.get(), 1);
+        }
+    }
+
+    @Test
+    public void shouldTakeNewSnapshotWhenHomeDocumentIsRequested() throws Exception {
+        // given
+        final CountingJsonHomeSource source = new CountingJsonHomeSource();
+        final RegistryHtmlController controller = controllerFor(source);
+        controller.getRelationshipType("test", relRequest("/rel/foo"), new MockHttpServletResponse());
+        // when
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument("test", new MockHttpServletRequest("GET", "/json-home"), response);
+        controller.getRelationshipType("test", relRequest("/rel/bar"), new MockHttpServletResponse());
+        // then
+        assertEquals(source.count.get(), 2);
+        assertTrue(response.getContentAsString().contains("?registry=test"));
+    }
+
+    @Test
+    public void shouldListServicesWithTheirHealth() throws Exception {
+        // given
+        final RegistryHtmlController controller = controllerFor(new CountingJsonHomeSource());
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("test", "Test", asList(
+                new Link(create("http://app.example.org/json-home"), "Application"))));
+        final LinkHealthTracker tracker = new LinkHealthTracker();
+        tracker.recordFailure(create("http://app.example.org/json-home"), "Connection refused");
+        controller.setRegistries(registries);
+        controller.setLinkHealthTracker(tracker);
+        // when
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument(null, new MockHttpServletRequest("GET", "/json-home"), response);
+        // then
+        final String html = response.getContentAsString();
+        assertTrue(html.contains("Application"));
+        assertTrue(html.contains("OPEN"));
+        assertTrue(html.contains("Connection refused"));
+    }
+
+    @Test
+    public void shouldRenderCurrentHealthOnEveryRequest() throws Exception {
+        // given
+        final RegistryHtmlController controller = controllerFor(new CountingJsonHomeSource());
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("test", "Test", asList(
+                new Link(create("http://app.example.org/json-home"), "Application"))));
+        final LinkHealthTracker tracker = new LinkHealthTracker();
+        tracker.recordFailure(create("http://app.example.org/json-home"), "Connection refused");
+        controller.setRegistries(registries);
+        controller.setLinkHealthTracker(tracker);
+        controller.getHtmlHomeDocument(null, new MockHttpServletRequest("GET", "/json-home"), new MockHttpServletResponse());
+        // when
+        tracker.recordSuccess(create("http://app.example.org/json-home"));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument(null, new MockHttpServletRequest("GET", "/json-home"), response);
+        // then
+        assertFalse(response.getContentAsString().contains("Connection refused"));
+        assertEquals(response.getHeader("Cache-Control"), "max-age=0");
+    }
+
+    @Test
+    public void shouldEscapeHrefsOfServices() throws Exception {
+        // given
+        final RegistryHtmlController controller = controllerFor(new CountingJsonHomeSource());
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("test", "Test", asList(
+                new Link(create("http://app.example.org/json-home?a=%22%3E&b=1"), ""),
+                new Link(create("javascript:alert(1)"), ""))));
+        controller.setRegistries(registries);
+        controller.setLinkHealthTracker(new LinkHealthTracker());
+        // when
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument(null, new MockHttpServletRequest("GET", "/json-home"), response);
+        // then
+        final String html = response.getContentAsString();
+        assertTrue(html.contains("<a href=\"http://app.example.org/json-home?a=%22%3E&amp;b=1\">"));
+        assertTrue(html.contains("javascript:alert(1)"));
+        assertFalse(html.contains("href=\"javascript:"));
+    }
+
+    private RegistryHtmlController controllerFor(final RegistryJsonHomeSource source) {
+        final RegistryHtmlController controller = new RegistryHtmlController();
+        controller.setRegistryJsonHomeSource(source);
+        controller.setDefaultRegistry("test");
+        return controller;
+    }
+
+    private MockHttpServletRequest relRequest(final String path) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServerName("rel.example.org");
+        request.setServerPort(80);
+        request.setScheme("http");
+        return request;
+    }
+
+    private static final class CountingJsonHomeSource implements RegistryJsonHomeSource {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public JsonHome getJsonHome(final String registryName) {
+            count.incrementAndGet();
+            return jsonHome(
+                    directLink(create("http://rel.example.org:80/rel/foo"), create("http://app.example.org/foo"), emptyHints()),
+                    directLink(create("http://rel.example.org:80/rel/bar"), create("http://app.example.org/bar"), emptyHints())
+            );
+        }
+    }
+}
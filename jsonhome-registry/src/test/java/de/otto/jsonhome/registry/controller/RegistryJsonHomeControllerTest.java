@@ -18,7 +18,9 @@ package de.otto.jsonhome.registry.controller;
 
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.registry.store.RegistryRepository;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
@@ -60,7 +62,9 @@ public class RegistryJsonHomeControllerTest extends AbstractTestNGSpringContextT
         jsonHomeController.setRegistryJsonHomeSource(getJsonHomeSource());
         registriesController.putRegistry("test", registryLiveWithSingleLinkTo("foo"), new MockHttpServletResponse());
         // when:
-        final Map<String, ?> json = jsonHomeController.getAsApplicationJson("test", new MockHttpServletResponse());
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        jsonHomeController.getAsApplicationJson("test", new MockHttpServletRequest(), response);
+        final Map<?, ?> json = new ObjectMapper().readValue(response.getContentAsString(), Map.class);
         // then:
         assertNotNull(json);
         assertTrue(json.containsKey("resources"));
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.search.RegistrySearchIndexer;
+import de.otto.jsonhome.registry.store.InMemoryRegistryRepository;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static de.otto.jsonhome.model.Allow.GET;
+import static de.otto.jsonhome.model.Allow.PUT;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistrySearchControllerTest {
+
+    @Test
+    public void shouldSearchResourceLinksOfAllRegistries() {
+        // given
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(create("http://example.org/json-home"), "shop"))));
+        final RegistrySearchIndexer indexer = new RegistrySearchIndexer();
+        indexer.setRegistries(registries);
+        indexer.setRegistryJsonHomeSource(new RegistryJsonHomeSource() {
+            @Override
+            public JsonHome getJsonHome(final String environment) {
+                return jsonHome(
+                        directLink(create("http://example.org/rel/product"), create("http://example.org/products"),
+                                hintsBuilder().allowing(GET, PUT).acceptingForPut("application/example-product").build()),
+                        directLink(create("http://example.org/rel/order"), create("http://example.org/orders"),
+                                hintsBuilder().allowing(GET).build()));
+            }
+        });
+        indexer.refresh();
+        final RegistrySearchController controller = new RegistrySearchController();
+        controller.setRegistrySearchIndexer(indexer);
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/search");
+        request.addParameter("accept", "application/example-product");
+        request.addParameter("allow", "PUT");
+        // when
+        final Map<String, ?> json = controller.search(request);
+        // then
+        final List<?> results = (List<?>) json.get("results");
+        assertEquals(results.size(), 1);
+        final Map<?, ?> result = (Map<?, ?>) results.get(0);
+        assertEquals(result.get("registry"), "live");
+        assertEquals(result.get("rel"), "http://example.org/rel/product");
+        assertEquals(result.get("href"), "http://example.org/products");
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.controller;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.watch.RegistryChangeNotifier;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+import static de.otto.jsonhome.delta.JsonHomeHistory.versionOf;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryWatchControllerTest {
+
+    private static final JsonHome FOO = jsonHome(
+            directLink(create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints()));
+    private static final JsonHome BAR = jsonHome(
+            directLink(create("http://example.org/rel/bar"), create("http://example.org/bar"), emptyHints()));
+
+    @Test
+    public void shouldReturnVersionEventForUnknownVersion() throws IOException {
+        // given
+        final RegistryWatchController controller = controllerFor(notifierFor(new MutableJsonHomeSource(FOO)));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        controller.watch("live", null, null, false, new AsyncMockHttpServletRequest(true), response);
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getContentType(), "text/event-stream;charset=UTF-8");
+        assertEquals(response.getContentAsString(),
+                "retry: 1000\nid: " + versionOf(FOO) + "\nevent: version\ndata: " + versionOf(FOO) + "\n\n");
+    }
+
+    @Test
+    public void shouldWaitAsynchronouslyIfVersionDidNotChange() throws IOException {
+        // given
+        final RegistryWatchController controller = controllerFor(notifierFor(new MutableJsonHomeSource(FOO)));
+        final AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(true);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        controller.watch("live", versionOf(FOO), null, false, request, response);
+        // then
+        assertTrue(request.isAsyncStarted());
+        assertEquals(response.getContentAsString(), "");
+    }
+
+    @Test
+    public void shouldCompleteWaitingRequestIfRegistryChanged() throws Exception {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        notifier.setPollMillis(10);
+        final RegistryWatchController controller = controllerFor(notifier);
+        final AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(true);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.watch("live", versionOf(FOO), null, false, request, response);
+        notifier.start();
+        try {
+            // when
+            source.jsonHome = BAR;
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (!request.getAsyncContext().isCompleted() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            notifier.stop();
+        }
+        // then
+        assertTrue(request.getAsyncContext().isCompleted());
+        assertTrue(response.getContentAsString().contains("id: " + versionOf(BAR) + "\n"));
+    }
+
+    @Test
+    public void shouldCompleteExpiredRequestWithoutEvent() throws IOException {
+        // given
+        final RegistryWatchController controller = controllerFor(notifierFor(new MutableJsonHomeSource(FOO)));
+        final AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(true);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.watch("live", versionOf(FOO), null, false, request, response);
+        // when
+        request.getAsyncContext().expire();
+        // then
+        assertTrue(request.getAsyncContext().isCompleted());
+        assertEquals(response.getContentAsString(), "retry: 1000\n: no changes\n\n");
+    }
+
+    @Test
+    public void shouldAskClientToReconnectAfterTimeoutIfAsyncIsNotSupported() throws IOException {
+        // given
+        final RegistryWatchController controller = controllerFor(notifierFor(new MutableJsonHomeSource(FOO)));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        controller.watch("live", versionOf(FOO), null, false, new AsyncMockHttpServletRequest(false), response);
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getContentAsString(), "retry: 25000\n: no changes\n\n");
+    }
+
+    @Test
+    public void shouldAskClientToReconnectAfterTimeoutIfMaxWatchersIsReached() throws IOException {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        notifier.setMaxWatchers(0);
+        final RegistryWatchController controller = controllerFor(notifier);
+        final AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(true);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        controller.watch("live", versionOf(FOO), null, false, request, response);
+        // then
+        assertTrue(request.getAsyncContext().isCompleted());
+        assertEquals(response.getContentAsString(), "retry: 25000\n: no changes\n\n");
+    }
+
+    @Test
+    public void shouldReturnNotFoundForUnknownRegistry() throws IOException {
+        // given
+        final RegistryWatchController controller = controllerFor(notifierFor(new MutableJsonHomeSource(FOO)));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        controller.watch("unknown", null, null, false, new AsyncMockHttpServletRequest(true), response);
+        // then
+        assertEquals(response.getStatus(), 404);
+    }
+
+    private static RegistryChangeNotifier notifierFor(final RegistryJsonHomeSource source) {
+        final RegistryChangeNotifier notifier = new RegistryChangeNotifier();
+        notifier.setRegistryJsonHomeSource(source);
+        return notifier;
+    }
+
+    private static RegistryWatchController controllerFor(final RegistryChangeNotifier notifier) {
+        final RegistryWatchController controller = new RegistryWatchController();
+        controller.setRegistryChangeNotifier(notifier);
+        return controller;
+    }
+
+    private static final class MutableJsonHomeSource implements RegistryJsonHomeSource {
+        private volatile JsonHome jsonHome;
+
+        private MutableJsonHomeSource(final JsonHome jsonHome) {
+            this.jsonHome = jsonHome;
+        }
+
+        @Override
+        public JsonHome getJsonHome(final String environment) {
+            if (!environment.equals("live")) {
+                throw new IllegalArgumentException("Registry '" + environment + "' does not exist.");
+            }
+            return jsonHome;
+        }
+    }
+}
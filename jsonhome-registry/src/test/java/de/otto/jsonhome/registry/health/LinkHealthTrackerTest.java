@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.registry.health;
+
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static de.otto.jsonhome.registry.health.LinkHealth.State.CLOSED;
+import static de.otto.jsonhome.registry.health.LinkHealth.State.OPEN;
+import static de.otto.jsonhome.registry.health.LinkHealth.State.QUARANTINED;
+import static java.net.URI.create;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class LinkHealthTrackerTest {
+
+    private static final URI HREF = create("http://example.org/foo/json-home");
+
+    @Test
+    public void shouldBeHealthyWithoutFailures() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        // when
+        final LinkHealth health = tracker.getHealth(HREF);
+        // then
+        assertEquals(health.getState(), CLOSED);
+        assertTrue(tracker.isAvailable(HREF));
+    }
+
+    @Test
+    public void shouldIncrementVersionIfHealthChanges() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        final long initial = tracker.getVersion();
+        // when
+        tracker.recordSuccess(HREF);
+        final long afterSuccess = tracker.getVersion();
+        tracker.recordFailure(HREF, "connection refused");
+        final long afterFailure = tracker.getVersion();
+        tracker.recordSuccess(HREF);
+        // then
+        assertEquals(afterSuccess, initial);
+        assertEquals(afterFailure, initial + 1);
+        assertEquals(tracker.getVersion(), initial + 2);
+    }
+
+    @Test
+    public void shouldOpenCircuitAfterFailure() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        // when
+        final LinkHealth health = tracker.recordFailure(HREF, "connection refused");
+        // then
+        assertEquals(health.getState(), OPEN);
+        assertEquals(health.getConsecutiveFailures(), 1);
+        assertEquals(health.getRetryAt(), 1000L);
+        assertEquals(health.getLastFailure(), "connection refused");
+        assertFalse(tracker.isAvailable(HREF));
+    }
+
+    @Test
+    public void shouldRetryAfterBackoffPeriod() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        tracker.recordFailure(HREF, "connection refused");
+        // when
+        tracker.now = 1000L;
+        // then
+        assertTrue(tracker.isAvailable(HREF));
+    }
+
+    @Test
+    public void shouldDoubleBackoffUpToMaximum() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        tracker.setMaxBackoffMillis(5000L);
+        // when
+        final long first = tracker.recordFailure(HREF, "").getRetryAt();
+        final long second = tracker.recordFailure(HREF, "").getRetryAt();
+        final long third = tracker.recordFailure(HREF, "").getRetryAt();
+        final long fourth = tracker.recordFailure(HREF, "").getRetryAt();
+        // then
+        assertEquals(first, 1000L);
+        assertEquals(second, 2000L);
+        assertEquals(third, 4000L);
+        assertEquals(fourth, 5000L);
+    }
+
+    @Test
+    public void shouldQuarantineAfterThreshold() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        tracker.setQuarantineThreshold(3);
+        tracker.recordFailure(HREF, "");
+        tracker.recordFailure(HREF, "");
+        // when
+        final LinkHealth health = tracker.recordFailure(HREF, "");
+        // then
+        assertTrue(health.isQuarantined());
+        assertEquals(health.getState(), QUARANTINED);
+        assertEquals(health.getRetryAt(), 300000L);
+    }
+
+    @Test
+    public void shouldCloseCircuitAfterSuccess() {
+        // given
+        final TestLinkHealthTracker tracker = new TestLinkHealthTracker();
+        tracker.recordFailure(HREF, "");
+        tracker.recordFailure(HREF, "");
+        // when
+        tracker.recordSuccess(HREF);
+        // then
+        assertTrue(tracker.getHealth(HREF).isHealthy());
+        assertEquals(tracker.recordFailure(HREF, "").getConsecutiveFailures(), 1);
+    }
+
+    private static class TestLinkHealthTracker extends LinkHealthTracker {
+        private long now = 0L;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
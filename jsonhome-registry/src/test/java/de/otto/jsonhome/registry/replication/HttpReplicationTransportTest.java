@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpConnectionParams;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class HttpReplicationTransportTest {
+
+    @Test
+    public void shouldApplyDefaultTimeouts() {
+        // given
+        final DefaultHttpClient httpClient = new DefaultHttpClient();
+        // when
+        new HttpReplicationTransport(httpClient);
+        // then
+        assertEquals(HttpConnectionParams.getConnectionTimeout(httpClient.getParams()),
+                HttpReplicationTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        assertEquals(HttpConnectionParams.getSoTimeout(httpClient.getParams()),
+                HttpReplicationTransport.DEFAULT_SOCKET_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void shouldApplyConfiguredTimeouts() {
+        // given
+        final DefaultHttpClient httpClient = new DefaultHttpClient();
+        final HttpReplicationTransport transport = new HttpReplicationTransport(httpClient);
+        // when
+        transport.setConnectTimeoutMillis(500);
+        transport.setSocketTimeoutMillis(1500);
+        // then
+        assertEquals(HttpConnectionParams.getConnectionTimeout(httpClient.getParams()), 500);
+        assertEquals(HttpConnectionParams.getSoTimeout(httpClient.getParams()), 1500);
+    }
+}
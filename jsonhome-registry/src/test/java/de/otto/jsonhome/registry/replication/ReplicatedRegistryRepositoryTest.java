@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.replication;
+
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Map;
+
+import static de.otto.jsonhome.registry.replication.LocalReplicationTransport.localReplicationTransport;
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.jsonToOperation;
+import static de.otto.jsonhome.registry.replication.RegistryOperationConverter.operationToJson;
+import static de.otto.jsonhome.registry.replication.Version.version;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class ReplicatedRegistryRepositoryTest {
+
+    @Test
+    public void shouldReplicateCreatedRegistryToOtherNodes() {
+        // given
+        final ReplicationTransport transport = localReplicationTransport();
+        final ReplicatedRegistryRepository first = startedNode("first", transport);
+        final ReplicatedRegistryRepository second = startedNode("second", transport);
+        final ReplicatedRegistryRepository third = startedNode("third", transport);
+        // when
+        first.createOrUpdate(registry("live", "foo"));
+        // then
+        assertEquals(second.get("live"), first.get("live"));
+        assertEquals(third.get("live"), first.get("live"));
+        assertEquals(third.getKnownNames(), singleton("live"));
+    }
+
+    @Test
+    public void shouldReplicateDeletedRegistryToOtherNodes() {
+        // given
+        final ReplicationTransport transport = localReplicationTransport();
+        final ReplicatedRegistryRepository first = startedNode("first", transport);
+        final ReplicatedRegistryRepository second = startedNode("second", transport);
+        first.createOrUpdate(registry("live", "foo"));
+        // when
+        second.delete("live");
+        // then
+        assertNull(first.get("live"));
+        assertTrue(first.getKnownNames().isEmpty());
+    }
+
+    @Test
+    public void shouldSynchronizeLateJoiningNode() {
+        // given
+        final ReplicationTransport transport = localReplicationTransport();
+        final ReplicatedRegistryRepository first = startedNode("first", transport);
+        first.createOrUpdate(registry("live", "foo"));
+        first.createOrUpdate(registry("test", "bar"));
+        first.delete("test");
+        // when
+        final ReplicatedRegistryRepository second = startedNode("second", transport);
+        // then
+        assertEquals(second.get("live"), first.get("live"));
+        assertEquals(second.getKnownNames(), singleton("live"));
+        assertEquals(second.getState().size(), 2);
+    }
+
+    @Test
+    public void shouldResolveConflictingWritesByLastWriterWins() {
+        // given
+        final ReplicatedRegistryRepository first = new ReplicatedRegistryRepository("first", localReplicationTransport());
+        final ReplicatedRegistryRepository second = new ReplicatedRegistryRepository("second", localReplicationTransport());
+        final RegistryOperation older = RegistryOperation.createOrUpdate(registry("live", "foo"), version(1L, "second"));
+        final RegistryOperation newer = RegistryOperation.createOrUpdate(registry("live", "bar"), version(2L, "first"));
+        // when
+        first.apply(older);
+        first.apply(newer);
+        second.apply(newer);
+        second.apply(older);
+        // then
+        assertEquals(first.get("live").getTitle(), "bar");
+        assertEquals(second.get("live").getTitle(), "bar");
+    }
+
+    @Test
+    public void shouldBreakTiesUsingNodeId() {
+        // given
+        final ReplicatedRegistryRepository repository = new ReplicatedRegistryRepository("first", localReplicationTransport());
+        // when
+        repository.apply(RegistryOperation.createOrUpdate(registry("live", "foo"), version(1L, "b")));
+        repository.apply(RegistryOperation.createOrUpdate(registry("live", "bar"), version(1L, "a")));
+        // then
+        assertEquals(repository.get("live").getTitle(), "foo");
+    }
+
+    @Test
+    public void shouldNotResurrectDeletedRegistryWithOlderUpdate() {
+        // given
+        final ReplicatedRegistryRepository repository = new ReplicatedRegistryRepository("first", localReplicationTransport());
+        repository.apply(RegistryOperation.delete("live", version(2L, "second")));
+        // when
+        final boolean applied = repository.apply(RegistryOperation.createOrUpdate(registry("live", "foo"), version(1L, "third")));
+        // then
+        assertFalse(applied);
+        assertNull(repository.get("live"));
+    }
+
+    @Test
+    public void shouldOrderLocalWritesAfterReceivedOperations() {
+        // given
+        final ReplicatedRegistryRepository repository = new ReplicatedRegistryRepository("first", localReplicationTransport()) {
+            @Override
+            protected long currentTimeMillis() {
+                return 1L;
+            }
+        };
+        repository.apply(RegistryOperation.createOrUpdate(registry("live", "foo"), version(42L, "second")));
+        // when
+        repository.createOrUpdate(registry("live", "bar"));
+        // then
+        assertEquals(repository.get("live").getTitle(), "bar");
+    }
+
+    @Test
+    public void shouldConvergeAfterClear() {
+        // given
+        final ReplicationTransport transport = localReplicationTransport();
+        final ReplicatedRegistryRepository first = startedNode("first", transport);
+        final ReplicatedRegistryRepository second = startedNode("second", transport);
+        first.createOrUpdate(registry("live", "foo"));
+        second.createOrUpdate(registry("test", "bar"));
+        // when
+        second.clear();
+        // then
+        assertTrue(first.getKnownNames().isEmpty());
+        assertTrue(second.getKnownNames().isEmpty());
+    }
+
+    @Test
+    public void shouldConvertOperationsToJsonAndBack() {
+        // given
+        final RegistryOperation update = RegistryOperation.createOrUpdate(registry("live", "foo"), version(42L, "first"));
+        final RegistryOperation delete = RegistryOperation.delete("test", version(43L, "second"));
+        // when
+        final RegistryOperation convertedUpdate = jsonToOperation(operationToJson(update));
+        final RegistryOperation convertedDelete = jsonToOperation(operationToJson(delete));
+        // then
+        assertEquals(convertedUpdate, update);
+        assertEquals(convertedUpdate.getRegistry().getAll(), update.getRegistry().getAll());
+        assertEquals(convertedDelete, delete);
+        assertTrue(convertedDelete.isDelete());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectInvalidOperations() {
+        // given
+        final Map<String, ?> json = singletonMap("name", "live");
+        // when
+        jsonToOperation(json);
+        // then an exception is thrown
+    }
+
+    private static ReplicatedRegistryRepository startedNode(final String nodeId, final ReplicationTransport transport) {
+        final ReplicatedRegistryRepository repository = new ReplicatedRegistryRepository(nodeId, transport);
+        repository.start();
+        return repository;
+    }
+
+    private static Registry registry(final String name, final String title) {
+        return new Registry(name, title, asList(
+                new Link(URI.create("http://example.org/" + title + "/json-home"), title)
+        ));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.controller.RegistryJsonHomeSource;
+import de.otto.jsonhome.registry.store.InMemoryRegistryRepository;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import org.testng.annotations.Test;
+
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistrySearchIndexerTest {
+
+    private static final JsonHome FOO = documentOf("foo");
+    private static final JsonHome FOO_AND_BAR = FOO.merge(documentOf("bar"));
+
+    @Test
+    public void shouldNotUpdateIndexIfAggregateIsUnchanged() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistrySearchIndexer indexer = indexerFor(liveRegistry(), source);
+        indexer.refresh();
+        indexer.getIndex().remove("live");
+        // when
+        indexer.refresh();
+        // then
+        assertEquals(indexer.getIndex().size(), 0);
+    }
+
+    @Test
+    public void shouldUpdateIndexIfAggregateChanged() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistrySearchIndexer indexer = indexerFor(liveRegistry(), source);
+        indexer.refresh();
+        // when
+        source.jsonHome = FOO_AND_BAR;
+        indexer.refresh();
+        // then
+        assertEquals(indexer.getIndex().size(), 2);
+    }
+
+    @Test
+    public void shouldReindexRecreatedRegistry() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final InMemoryRegistryRepository registries = liveRegistry();
+        final RegistrySearchIndexer indexer = indexerFor(registries, source);
+        indexer.refresh();
+        registries.delete("live");
+        indexer.refresh();
+        // when
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(create("http://example.org/json-home"), "shop"))));
+        indexer.refresh();
+        // then
+        assertTrue(indexer.getIndex().getRegistryNames().contains("live"));
+        assertEquals(indexer.getIndex().size(), 1);
+    }
+
+    private static InMemoryRegistryRepository liveRegistry() {
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(create("http://example.org/json-home"), "shop"))));
+        return registries;
+    }
+
+    private static RegistrySearchIndexer indexerFor(final InMemoryRegistryRepository registries,
+                                                    final RegistryJsonHomeSource source) {
+        final RegistrySearchIndexer indexer = new RegistrySearchIndexer();
+        indexer.setRegistries(registries);
+        indexer.setRegistryJsonHomeSource(source);
+        return indexer;
+    }
+
+    private static JsonHome documentOf(final String name) {
+        return jsonHome(directLink(create("http://example.org/rel/" + name), create("http://example.org/" + name), emptyHints()));
+    }
+
+    private static final class MutableJsonHomeSource implements RegistryJsonHomeSource {
+        private volatile JsonHome jsonHome;
+
+        private MutableJsonHomeSource(final JsonHome jsonHome) {
+            this.jsonHome = jsonHome;
+        }
+
+        @Override
+        public JsonHome getJsonHome(final String environment) {
+            return jsonHome;
+        }
+    }
+}
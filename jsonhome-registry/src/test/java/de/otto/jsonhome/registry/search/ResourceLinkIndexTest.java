@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.search;
+
+import de.otto.jsonhome.model.Hints;
+import de.otto.jsonhome.model.ResourceLink;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static de.otto.jsonhome.model.Allow.GET;
+import static de.otto.jsonhome.model.Allow.PUT;
+import static de.otto.jsonhome.model.Authentication.authReq;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Documentation.documentation;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.HintsBuilder.hintsBuilder;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static de.otto.jsonhome.model.Status.DEPRECATED;
+import static de.otto.jsonhome.registry.search.ResourceLinkIndex.*;
+import static de.otto.jsonhome.registry.search.SearchQuery.searchQuery;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class ResourceLinkIndexTest {
+
+    private static final ResourceLink PRODUCT = directLink(
+            create("http://example.org/rel/product"),
+            create("http://example.org/products"),
+            hintsBuilder()
+                    .allowing(GET, PUT)
+                    .representedAs("application/json")
+                    .acceptingForPut("application/example-product")
+                    .withAuthRequired(asList(authReq("Basic")))
+                    .with(documentation(asList("The products of the shop."), null, null))
+                    .build());
+    private static final ResourceLink ORDER = directLink(
+            create("http://example.org/rel/order"),
+            create("http://example.org/orders"),
+            hintsBuilder()
+                    .allowing(GET)
+                    .representedAs("application/json")
+                    .withStatus(DEPRECATED)
+                    .with(documentation(asList("The orders of a customer."), null, null))
+                    .build());
+
+    @Test
+    public void shouldFindResourceLinksMatchingAllFilters() {
+        // given
+        final ResourceLinkIndex index = resourceLinkIndex();
+        index.update("live", jsonHome(PRODUCT, ORDER));
+        // when
+        final List<IndexedResourceLink> hits = index.search(searchQuery()
+                .with(ACCEPT, "application/example-product")
+                .with(ALLOW, "put"));
+        // then
+        assertEquals(hits.size(), 1);
+        assertSame(hits.get(0).getResourceLink(), PRODUCT);
+        assertEquals(hits.get(0).getRegistryName(), "live");
+    }
+
+    @Test
+    public void shouldFindResourceLinksByTokensOfTextFields() {
+        // given
+        final ResourceLinkIndex index = resourceLinkIndex();
+        index.update("live", jsonHome(PRODUCT, ORDER));
+        // then
+        assertSame(index.search(searchQuery().with(REL, "order")).get(0).getResourceLink(), ORDER);
+        assertSame(index.search(searchQuery().with(TEXT, "Customer orders")).get(0).getResourceLink(), ORDER);
+        assertSame(index.search(searchQuery().with(STATUS, "deprecated")).get(0).getResourceLink(), ORDER);
+        assertSame(index.search(searchQuery().with(AUTH, "basic")).get(0).getResourceLink(), PRODUCT);
+        assertEquals(index.search(searchQuery().with(REPRESENTATION, "application/json")).size(), 2);
+        assertTrue(index.search(searchQuery().with(TEXT, "unknown")).isEmpty());
+    }
+
+    @Test
+    public void shouldFindResourceLinksOfAllRegistries() {
+        // given
+        final ResourceLinkIndex index = resourceLinkIndex();
+        index.update("live", jsonHome(PRODUCT));
+        index.update("develop", jsonHome(PRODUCT, ORDER));
+        // when
+        final List<IndexedResourceLink> hits = index.search(searchQuery().with(REL, "product"));
+        // then
+        assertEquals(hits.size(), 2);
+        assertEquals(hits.get(0).getRegistryName(), "develop");
+        assertEquals(hits.get(1).getRegistryName(), "live");
+        assertEquals(index.search(searchQuery().with(REGISTRY, "live")).size(), 1);
+        assertEquals(index.search(searchQuery()).size(), 3);
+    }
+
+    @Test
+    public void shouldUpdateChangedAndRemovedResourceLinks() {
+        // given
+        final ResourceLinkIndex index = resourceLinkIndex();
+        index.update("live", jsonHome(PRODUCT, ORDER));
+        final Hints orderHints = hintsBuilder().allowing(GET, PUT).build();
+        final ResourceLink changedOrder = directLink(ORDER.getLinkRelationType(), create("http://example.org/orders"), orderHints);
+        // when
+        index.update("live", jsonHome(changedOrder));
+        // then
+        assertEquals(index.size(), 1);
+        assertTrue(index.search(searchQuery().with(REL, "product")).isEmpty());
+        assertTrue(index.search(searchQuery().with(STATUS, "deprecated")).isEmpty());
+        assertSame(index.search(searchQuery().with(ALLOW, "PUT")).get(0).getResourceLink(), changedOrder);
+    }
+
+    @Test
+    public void shouldRemoveRegistry() {
+        // given
+        final ResourceLinkIndex index = resourceLinkIndex();
+        index.update("live", jsonHome(PRODUCT));
+        index.update("develop", jsonHome(directLink(create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints())));
+        // when
+        index.remove("live");
+        // then
+        assertEquals(index.size(), 1);
+        assertTrue(index.search(searchQuery().with(REL, "product")).isEmpty());
+        assertEquals(index.getRegistryNames().size(), 1);
+    }
+}
@@ -20,13 +20,15 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.*;
-import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertNull;
+import static org.testng.Assert.*;
 
 /**
  * @author Guido Steinacker
@@ -117,4 +119,94 @@ public class InMemoryRegistryRepositoryTest {
         assertEquals(entries, singletonList(liveJsonHome));
     }
 
+    @Test
+    public void shouldCompareAndSetUnmodifiedRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final Registry registry = repository.get("live");
+        final Link link = new Link(URI.create("http://example.org/foo/json-home"), "foo");
+        // when
+        final boolean replaced = repository.compareAndSet(registry, registry.withLink(link));
+        // then
+        assertTrue(replaced);
+        assertEquals(repository.get("live").getAll(), singletonList(link));
+        assertTrue(repository.get("live").getVersion() > registry.getVersion());
+    }
+
+    @Test
+    public void shouldNotCompareAndSetConcurrentlyModifiedRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final Registry registry = repository.get("live");
+        final Link foo = new Link(URI.create("http://example.org/foo/json-home"), "foo");
+        final Link bar = new Link(URI.create("http://example.org/bar/json-home"), "bar");
+        repository.compareAndSet(registry, registry.withLink(foo));
+        // when
+        final boolean replaced = repository.compareAndSet(registry, registry.withLink(bar));
+        // then
+        assertFalse(replaced);
+        assertEquals(repository.get("live").getAll(), singletonList(foo));
+    }
+
+    @Test
+    public void shouldNotCompareAndSetDeletedAndRecreatedRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final Registry registry = repository.get("live");
+        repository.delete("live");
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        // when
+        final boolean replaced = repository.compareAndSet(registry, new Registry("live", "changed", Collections.<Link>emptyList()));
+        // then
+        assertFalse(replaced);
+    }
+
+    @Test
+    public void shouldCompareAndSetNonExistingRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        // when
+        final boolean created = repository.compareAndSet(null, new Registry("live", "", Collections.<Link>emptyList()));
+        final boolean createdTwice = repository.compareAndSet(null, new Registry("live", "", Collections.<Link>emptyList()));
+        // then
+        assertTrue(created);
+        assertFalse(createdTwice);
+    }
+
+    @Test
+    public void shouldReturnRegistriesSortedByName() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("test", "", Collections.<Link>emptyList()));
+        repository.createOrUpdate(new Registry("develop", "", Collections.<Link>emptyList()));
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        // when
+        final List<Registry> registries = repository.getRegistries();
+        // then
+        assertEquals(registries.size(), 3);
+        assertEquals(registries.get(0).getName(), "develop");
+        assertEquals(registries.get(1).getName(), "live");
+        assertEquals(registries.get(2).getName(), "test");
+        assertEquals(new ArrayList<String>(repository.getKnownNames()), asList("develop", "live", "test"));
+    }
+
+    @Test
+    public void shouldReturnSameRegistriesUntilModified() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final List<Registry> registries = repository.getRegistries();
+        // when
+        final List<Registry> unmodified = repository.getRegistries();
+        repository.delete("live");
+        final List<Registry> modified = repository.getRegistries();
+        // then
+        assertSame(unmodified, registries);
+        assertNotSame(modified, registries);
+        assertTrue(modified.isEmpty());
+    }
+
 }
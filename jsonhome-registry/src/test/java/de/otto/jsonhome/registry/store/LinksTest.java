@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.store;
+
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static de.otto.jsonhome.registry.store.Links.emptyLinks;
+import static de.otto.jsonhome.registry.store.Links.linksOf;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class LinksTest {
+
+    @Test
+    public void shouldKeepInsertionOrder() {
+        // given
+        final Links links = emptyLinks().with(link("c")).with(link("a")).with(link("b"));
+        // then
+        assertEquals(new ArrayList<Link>(links), asList(link("c"), link("a"), link("b")));
+    }
+
+    @Test
+    public void shouldReplaceLinkWithSameHrefAtSamePosition() {
+        // given
+        final Links links = linksOf(asList(link("a"), link("b")));
+        final Link renamed = new Link(link("a").getHref(), "renamed");
+        // when
+        final Links updated = links.with(renamed);
+        // then
+        assertEquals(new ArrayList<Link>(updated), asList(renamed, link("b")));
+        assertEquals(updated.get(renamed.getHref()), renamed);
+    }
+
+    @Test
+    public void shouldNotModifyOriginalCollection() {
+        // given
+        final Links links = linksOf(asList(link("a"), link("b")));
+        // when
+        final Links updated = links.without(link("a").getHref()).with(link("c"));
+        // then
+        assertEquals(new ArrayList<Link>(links), asList(link("a"), link("b")));
+        assertEquals(new ArrayList<Link>(updated), asList(link("b"), link("c")));
+    }
+
+    @Test
+    public void shouldReturnSameInstanceIfNothingChanged() {
+        // given
+        final Links links = linksOf(asList(link("a"), link("b")));
+        // then
+        assertSame(links.with(link("a")), links);
+        assertSame(links.without(link("x").getHref()), links);
+    }
+
+    @Test
+    public void shouldBehaveLikeLinkedHashMap() {
+        // given
+        final Random random = new Random(42);
+        final Map<URI, Link> expected = new LinkedHashMap<URI, Link>();
+        Links links = emptyLinks();
+        // when
+        for (int i = 0; i < 5000; ++i) {
+            final Link link = link(String.valueOf(random.nextInt(500)));
+            if (random.nextBoolean()) {
+                links = links.with(link);
+                if (!expected.containsKey(link.getHref())) {
+                    expected.put(link.getHref(), link);
+                }
+            } else {
+                links = links.without(link.getHref());
+                expected.remove(link.getHref());
+            }
+        }
+        // then
+        assertEquals(links.size(), expected.size());
+        assertEquals(new ArrayList<Link>(links), new ArrayList<Link>(expected.values()));
+        for (final Link link : expected.values()) {
+            assertTrue(links.contains(link));
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void shouldBeImmutable() {
+        linksOf(asList(link("a"))).add(link("b"));
+    }
+
+    private static Link link(final String name) {
+        return new Link(URI.create("http://example.org/" + name + "/json-home"), name);
+    }
+}
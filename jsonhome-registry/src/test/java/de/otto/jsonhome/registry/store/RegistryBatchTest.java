@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.store;
+
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+import static de.otto.jsonhome.registry.store.RegistryBatch.registryBatch;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryBatchTest {
+
+    private static final Link FOO = new Link(URI.create("http://example.org/foo/json-home"), "foo");
+    private static final Link BAR = new Link(URI.create("http://example.org/bar/json-home"), "bar");
+
+    @Test
+    public void shouldWriteEveryAffectedRegistryOnlyOnce() {
+        // given
+        final CountingRegistryRepository repository = new CountingRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        // when
+        registryBatch(repository)
+                .addLinks("live", singletonList(FOO))
+                .addLinks("live", singletonList(BAR))
+                .removeLinks("live", singletonList(FOO.getHref()))
+                .commit();
+        // then
+        assertEquals(repository.batches, 1);
+        assertEquals(repository.get("live").getAll(), singletonList(BAR));
+    }
+
+    @Test
+    public void shouldReplaceLinksWithSameHref() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", asList(FOO, BAR)));
+        final Link renamedFoo = new Link(FOO.getHref(), "renamed");
+        // when
+        registryBatch(repository).addLinks("live", singletonList(renamedFoo)).commit();
+        // then
+        assertEquals(repository.get("live").getAll(), asList(renamedFoo, BAR));
+    }
+
+    @Test
+    public void shouldAddLinksToRegistryCreatedInSameBatch() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        // when
+        registryBatch(repository)
+                .createOrUpdate(new Registry("live", "Live", Collections.<Link>emptyList()))
+                .addLinks("live", singletonList(FOO))
+                .commit();
+        // then
+        assertEquals(repository.get("live").getTitle(), "Live");
+        assertEquals(repository.get("live").getAll(), singletonList(FOO));
+    }
+
+    @Test
+    public void shouldDeleteRegistries() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", singletonList(FOO)));
+        // when
+        registryBatch(repository).delete("live").commit();
+        // then
+        assertNull(repository.get("live"));
+    }
+
+    @Test
+    public void shouldNotModifyRepositoryBeforeCommit() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", singletonList(FOO)));
+        // when
+        final RegistryBatch batch = registryBatch(repository).delete("live");
+        // then
+        assertNotNull(repository.get("live"));
+        assertEquals(batch.getAffectedRegistries(), Collections.singleton("live"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldFailToAddLinksToUnknownRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        // when
+        registryBatch(repository).addLinks("unknown", singletonList(FOO));
+        // then an exception is thrown
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldFailToAddLinksToRegistryDeletedInSameBatch() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", singletonList(FOO)));
+        // when
+        registryBatch(repository).delete("live").addLinks("live", singletonList(BAR));
+        // then an exception is thrown
+    }
+
+    @Test
+    public void shouldNotOverwriteConcurrentModifications() {
+        // given
+        final CountingRegistryRepository repository = new CountingRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final RegistryBatch batch = registryBatch(repository).addLinks("live", singletonList(FOO));
+        // when
+        final Registry current = repository.get("live");
+        assertTrue(repository.compareAndSet(current, current.withLink(BAR)));
+        batch.commit();
+        // then
+        assertEquals(repository.get("live").getAll(), asList(BAR, FOO));
+        assertEquals(repository.batches, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldFailToCommitIfRegistryIsDeletedConcurrently() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final RegistryBatch batch = registryBatch(repository).addLinks("live", singletonList(FOO));
+        // when
+        repository.delete("live");
+        batch.commit();
+        // then an exception is thrown
+    }
+
+    @Test
+    public void shouldRejectCompareAndSetAllWithOutdatedRegistry() {
+        // given
+        final RegistryRepository repository = new InMemoryRegistryRepository();
+        repository.createOrUpdate(new Registry("live", "", Collections.<Link>emptyList()));
+        final Registry outdated = repository.get("live");
+        repository.createOrUpdate(new Registry("live", "", singletonList(FOO)));
+        // when
+        final boolean written = repository.compareAndSetAll(
+                Collections.singletonMap("live", outdated),
+                Collections.singletonMap("live", new Registry("live", "", singletonList(BAR))));
+        // then
+        assertFalse(written);
+        assertEquals(repository.get("live").getAll(), singletonList(FOO));
+    }
+
+    private static class CountingRegistryRepository extends InMemoryRegistryRepository {
+        private int batches = 0;
+
+        @Override
+        public synchronized void updateAll(final Map<String, Registry> registries) {
+            ++batches;
+            super.updateAll(registries);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.upstream;
+
+import de.otto.jsonhome.client.JsonHomeClient;
+import de.otto.jsonhome.client.JsonHomeClientException;
+import de.otto.jsonhome.model.JsonHome;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class UpstreamDocumentStoreTest {
+
+    private static final URI FOO = create("http://example.org/foo/json-home");
+
+    @Test
+    public void shouldReuseFreshDocuments() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final UpstreamDocumentStore store = new UpstreamDocumentStore(client);
+        final JsonHome first = store.get(FOO);
+        // when
+        final JsonHome second = store.get(FOO);
+        // then
+        assertSame(second, first);
+        assertEquals(client.requests, 1);
+    }
+
+    @Test
+    public void shouldKeepPreviousInstanceIfRefetchedDocumentIsUnchanged() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final UpstreamDocumentStore store = new UpstreamDocumentStore(client);
+        store.setMaxAgeMillis(0);
+        final JsonHome first = store.get(FOO);
+        // when
+        final UpstreamDocumentStore.UpstreamDocument refreshed = store.refresh(FOO);
+        // then
+        assertEquals(client.requests, 2);
+        assertSame(refreshed.getJsonHome(), first);
+        assertFalse(refreshed.isChanged());
+    }
+
+    @Test
+    public void shouldNotKeepFailures() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        client.failing = true;
+        final UpstreamDocumentStore store = new UpstreamDocumentStore(client);
+        try {
+            store.get(FOO);
+            fail("JsonHomeClientException expected");
+        } catch (final JsonHomeClientException expected) {
+            // expected
+        }
+        client.failing = false;
+        // when
+        final JsonHome jsonHome = store.get(FOO);
+        // then
+        assertEquals(client.requests, 2);
+        assertEquals(jsonHome.getResources().size(), 1);
+    }
+
+    @Test
+    public void shouldPurgeUnusedDocuments() {
+        // given
+        final MutableClockStore store = new MutableClockStore(new CountingJsonHomeClient());
+        store.setPurgeAfterMillis(1000);
+        store.get(FOO);
+        // when
+        store.now += 1000;
+        store.get(create("http://example.org/bar/json-home"));
+        // then
+        assertNull(store.getIfPresent(FOO));
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void shouldReturnStaleDocumentsRefreshedInBackground() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final MutableClockStore store = new MutableClockStore(client);
+        store.setMaxAgeMillis(1000);
+        store.setRefreshedInBackground(FOO, true);
+        final JsonHome first = store.get(FOO);
+        // when
+        store.now += 5000;
+        final JsonHome second = store.get(FOO);
+        // then
+        assertSame(second, first);
+        assertEquals(client.requests, 1);
+    }
+
+    @Test
+    public void shouldFetchStaleDocumentsOlderThanMaxStale() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final MutableClockStore store = new MutableClockStore(client);
+        store.setMaxAgeMillis(1000);
+        store.setMaxStaleMillis(5000);
+        store.setRefreshedInBackground(FOO, true);
+        store.get(FOO);
+        // when
+        store.now += 5000;
+        store.get(FOO);
+        // then
+        assertEquals(client.requests, 2);
+    }
+
+    @Test
+    public void shouldFetchStaleDocumentsNotRefreshedInBackground() {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final MutableClockStore store = new MutableClockStore(client);
+        store.setMaxAgeMillis(1000);
+        store.get(FOO);
+        // when
+        store.now += 1000;
+        store.get(FOO);
+        // then
+        assertEquals(client.requests, 2);
+    }
+
+    private static final class MutableClockStore extends UpstreamDocumentStore {
+        private long now;
+
+        private MutableClockStore(final JsonHomeClient client) {
+            super(client);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static final class CountingJsonHomeClient implements JsonHomeClient {
+        private volatile int requests;
+        private volatile boolean failing;
+
+        @Override
+        public JsonHome updateAndGet(final URI uri) {
+            return get(uri);
+        }
+
+        @Override
+        public JsonHome get(final URI uri) {
+            ++requests;
+            if (failing) {
+                throw new JsonHomeClientException("Connection refused");
+            }
+            return jsonHome(directLink(create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints()));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
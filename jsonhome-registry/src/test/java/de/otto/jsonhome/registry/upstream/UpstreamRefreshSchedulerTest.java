@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.upstream;
+
+import de.otto.jsonhome.client.JsonHomeClient;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.controller.DefaultRegistryJsonHomeSource;
+import de.otto.jsonhome.registry.store.InMemoryRegistryRepository;
+import de.otto.jsonhome.registry.store.Link;
+import de.otto.jsonhome.registry.store.Registry;
+import de.otto.jsonhome.registry.store.RegistryRepository;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class UpstreamRefreshSchedulerTest {
+
+    private static final URI FOO = create("http://example.org/foo/json-home");
+    private static final URI BAR = create("http://example.org/bar/json-home");
+
+    private TestScheduler scheduler;
+
+    @AfterMethod
+    public void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void shouldRefreshLinksOnceForAllRegistries() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(FOO, "foo"), new Link(BAR, "bar"))));
+        registries.createOrUpdate(new Registry("develop", "Develop", asList(new Link(FOO, "foo"))));
+        scheduler = new TestScheduler(registries, new UpstreamDocumentStore(client));
+        // when
+        scheduler.start();
+        // then
+        awaitNextRefresh(FOO, 61000L);
+        awaitNextRefresh(BAR, 61000L);
+        assertEquals(client.requestsTo(FOO), 1);
+        assertEquals(client.requestsTo(BAR), 1);
+        assertEquals(scheduler.size(), 2);
+    }
+
+    @Test
+    public void shouldRefreshAfterMaxAgeOfDocument() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        scheduler = new TestScheduler(registryWith(FOO), storeWithMaxAge(client, 10));
+        scheduler.start();
+        awaitNextRefresh(FOO, 11000L);
+        // when
+        scheduler.now = 10999L;
+        scheduler.tick();
+        // then
+        assertEquals(client.requestsTo(FOO), 1);
+        assertEquals(scheduler.getNextRefreshMillis(FOO), 11000L);
+    }
+
+    @Test
+    public void shouldBackOffForUnchangedDocuments() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        scheduler = new TestScheduler(registryWith(FOO), storeWithMaxAge(client, 10));
+        scheduler.start();
+        awaitNextRefresh(FOO, 11000L);
+        // when
+        scheduler.now = 11000L;
+        scheduler.tick();
+        awaitNextRefresh(FOO, 31000L);
+        scheduler.now = 31000L;
+        client.changed = true;
+        scheduler.tick();
+        // then
+        awaitNextRefresh(FOO, 41000L);
+        assertEquals(client.requestsTo(FOO), 3);
+    }
+
+    @Test
+    public void shouldNotFetchBackedOffDocumentsOnDemand() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final MutableClockStore store = new MutableClockStore(client, 10);
+        final DefaultRegistryJsonHomeSource source = new DefaultRegistryJsonHomeSource(client);
+        final InMemoryRegistryRepository registries = registryWith(FOO);
+        source.setRegistries(registries);
+        source.setUpstreamDocumentStore(store);
+        scheduler = new TestScheduler(registries, store);
+        store.now = 1000L;
+        scheduler.start();
+        awaitNextRefresh(FOO, 11000L);
+        store.now = 11000L;
+        scheduler.now = 11000L;
+        scheduler.tick();
+        awaitNextRefresh(FOO, 31000L);
+        // when
+        store.now = 30000L;
+        final JsonHome jsonHome = source.getJsonHome("live");
+        // then
+        assertEquals(client.requestsTo(FOO), 2);
+        assertEquals(jsonHome.getResources().size(), 1);
+    }
+
+    @Test
+    public void shouldLimitBackoffToMaxStaleOfStore() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final UpstreamDocumentStore store = storeWithMaxAge(client, 10);
+        store.setMaxStaleMillis(3600000L + 15000L);
+        scheduler = new TestScheduler(registryWith(FOO), store);
+        scheduler.start();
+        awaitNextRefresh(FOO, 11000L);
+        // when
+        scheduler.now = 11000L;
+        scheduler.tick();
+        // then
+        awaitNextRefresh(FOO, 26000L);
+    }
+
+    @Test
+    public void shouldStopRefreshingRemovedLinksInBackground() throws InterruptedException {
+        // given
+        final CountingJsonHomeClient client = new CountingJsonHomeClient();
+        final MutableClockStore store = new MutableClockStore(client, 10);
+        final RegistryRepository registries = registryWith(FOO);
+        scheduler = new TestScheduler(registries, store);
+        store.now = 1000L;
+        scheduler.start();
+        awaitNextRefresh(FOO, 11000L);
+        // when
+        registries.delete("live");
+        scheduler.tick();
+        store.now = 12000L;
+        store.get(FOO);
+        // then
+        assertEquals(client.requestsTo(FOO), 2);
+    }
+
+    @Test
+    public void shouldForgetRemovedLinks() throws InterruptedException {
+        // given
+        final RegistryRepository registries = registryWith(FOO);
+        scheduler = new TestScheduler(registries, new UpstreamDocumentStore(new CountingJsonHomeClient()));
+        scheduler.start();
+        awaitNextRefresh(FOO, 61000L);
+        // when
+        registries.delete("live");
+        scheduler.tick();
+        // then
+        assertEquals(scheduler.getNextRefreshMillis(FOO), -1L);
+        assertEquals(scheduler.size(), 0);
+    }
+
+    @Test
+    public void shouldLimitConcurrentRefreshes() throws InterruptedException {
+        // given
+        final BlockingJsonHomeClient client = new BlockingJsonHomeClient();
+        final List<Link> links = new ArrayList<Link>();
+        for (int i = 0; i < 5; ++i) {
+            links.add(new Link(create("http://example.org/" + i + "/json-home"), "service " + i));
+        }
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", links));
+        scheduler = new TestScheduler(registries, new UpstreamDocumentStore(client));
+        scheduler.setMaxConcurrentRefreshes(2);
+        // when
+        scheduler.start();
+        client.awaitRequests(2);
+        Thread.sleep(100);
+        scheduler.tick();
+        // then
+        assertEquals(client.requests.get(), 2);
+        client.release();
+        for (int i = 0; i < 500 && client.requests.get() < 5; ++i) {
+            scheduler.tick();
+            Thread.sleep(10);
+        }
+        assertEquals(client.requests.get(), 5);
+        assertEquals(client.maxConcurrentRequests.get(), 2);
+    }
+
+    private void awaitNextRefresh(final URI href, final long expected) throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.getNextRefreshMillis(href) != expected; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(scheduler.getNextRefreshMillis(href), expected);
+    }
+
+    private static InMemoryRegistryRepository registryWith(final URI href) {
+        final InMemoryRegistryRepository registries = new InMemoryRegistryRepository();
+        registries.createOrUpdate(new Registry("live", "Live", asList(new Link(href, "service"))));
+        return registries;
+    }
+
+    private static UpstreamDocumentStore storeWithMaxAge(final JsonHomeClient client, final long maxAgeSeconds) {
+        return new UpstreamDocumentStore(client) {
+            @Override
+            protected long maxAgeSecondsOf(final URI href) {
+                return maxAgeSeconds;
+            }
+        };
+    }
+
+    private static JsonHome documentOf(final String name) {
+        return jsonHome(directLink(create("http://example.org/rel/" + name), create("http://example.org/" + name), emptyHints()));
+    }
+
+    private static final class MutableClockStore extends UpstreamDocumentStore {
+        private final long maxAgeSeconds;
+        private volatile long now;
+
+        private MutableClockStore(final JsonHomeClient client, final long maxAgeSeconds) {
+            super(client);
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+
+        @Override
+        protected long maxAgeSecondsOf(final URI href) {
+            return maxAgeSeconds;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static final class TestScheduler extends UpstreamRefreshScheduler {
+        private volatile long now = 1000L;
+
+        private TestScheduler(final RegistryRepository registries, final UpstreamDocumentStore documents) {
+            super(registries, documents);
+            setJitterRatio(0);
+            setTickMillis(3600000L);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static final class CountingJsonHomeClient implements JsonHomeClient {
+        private final ConcurrentMap<URI, AtomicInteger> requests = new ConcurrentHashMap<URI, AtomicInteger>();
+        private volatile boolean changed;
+
+        @Override
+        public JsonHome updateAndGet(final URI uri) {
+            return get(uri);
+        }
+
+        @Override
+        public JsonHome get(final URI uri) {
+            requests.putIfAbsent(uri, new AtomicInteger());
+            requests.get(uri).incrementAndGet();
+            return documentOf(changed ? "changed" : "foo");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private int requestsTo(final URI uri) {
+            return requests.containsKey(uri) ? requests.get(uri).get() : 0;
+        }
+    }
+
+    private static final class BlockingJsonHomeClient implements JsonHomeClient {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public JsonHome updateAndGet(final URI uri) {
+            return get(uri);
+        }
+
+        @Override
+        public JsonHome get(final URI uri) {
+            final int concurrent = concurrentRequests.incrementAndGet();
+            synchronized (maxConcurrentRequests) {
+                maxConcurrentRequests.set(Math.max(concurrent, maxConcurrentRequests.get()));
+            }
+            requests.incrementAndGet();
+            try {
+                released.await(5, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+            return documentOf("foo");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private void awaitRequests(final int expected) throws InterruptedException {
+            for (int i = 0; i < 500 && requests.get() < expected; ++i) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void release() {
+            released.countDown();
+        }
+    }
+}
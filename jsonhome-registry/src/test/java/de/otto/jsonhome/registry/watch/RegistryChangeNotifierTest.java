@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.otto.jsonhome.registry.watch;
+
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.registry.controller.RegistryJsonHomeSource;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.otto.jsonhome.delta.JsonHomeHistory.versionOf;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static org.testng.Assert.*;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class RegistryChangeNotifierTest {
+
+    private static final JsonHome FOO = documentOf("foo");
+    private static final JsonHome BAR = documentOf("bar");
+
+    @Test
+    public void shouldNotifyImmediatelyIfVersionIsUnknown() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        final RecordingWatcher watcher = new RecordingWatcher();
+        // when
+        notifier.watch("live", null, 5000, watcher);
+        // then
+        assertEquals(watcher.version, versionOf(FOO));
+    }
+
+    @Test
+    public void shouldNotifyKnownVersionAfterTimeout() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        final RecordingWatcher watcher = new RecordingWatcher();
+        notifier.watch("live", versionOf(FOO), 0, watcher);
+        // when
+        notifier.poll();
+        // then
+        assertEquals(watcher.version, versionOf(FOO));
+        assertEquals(watcher.notifications.get(), 1);
+    }
+
+    @Test
+    public void shouldNotifyWatchersAboutChanges() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        final RecordingWatcher watcher = new RecordingWatcher();
+        notifier.watch("live", versionOf(FOO), 5000, watcher);
+        // when
+        source.jsonHome = BAR;
+        notifier.poll();
+        // then
+        assertEquals(watcher.version, versionOf(BAR));
+        assertNotNull(notifier.deltaSince("live", versionOf(FOO)));
+    }
+
+    @Test
+    public void shouldNotNotifyUnchangedRegistriesBeforeTimeout() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        final RecordingWatcher watcher = new RecordingWatcher();
+        // when
+        notifier.watch("live", versionOf(FOO), 5000, watcher);
+        notifier.poll();
+        // then
+        assertEquals(watcher.notifications.get(), 0);
+    }
+
+    @Test
+    public void shouldNotifyWatchersAboutRemovedRegistries() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        final RecordingWatcher watcher = new RecordingWatcher();
+        notifier.watch("live", versionOf(FOO), 5000, watcher);
+        // when
+        source.jsonHome = null;
+        notifier.poll();
+        // then
+        assertTrue(watcher.removed);
+        assertEquals(watcher.notifications.get(), 1);
+    }
+
+    @Test
+    public void shouldNotNotifyCancelledWatchers() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        final RecordingWatcher watcher = new RecordingWatcher();
+        notifier.watch("live", versionOf(FOO), 5000, watcher);
+        // when
+        final boolean cancelled = notifier.cancel("live", watcher);
+        source.jsonHome = BAR;
+        notifier.poll();
+        // then
+        assertTrue(cancelled);
+        assertEquals(watcher.notifications.get(), 0);
+    }
+
+    @Test
+    public void shouldRejectWatchersIfMaxWatchersIsReached() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        notifier.setMaxWatchers(1);
+        notifier.watch("live", versionOf(FOO), 5000, new RecordingWatcher());
+        final RecordingWatcher watcher = new RecordingWatcher();
+        // when
+        final boolean accepted = notifier.watch("live", versionOf(FOO), 5000, watcher);
+        // then
+        assertFalse(accepted);
+        assertEquals(watcher.notifications.get(), 0);
+    }
+
+    @Test
+    public void shouldAcceptWatchersAfterPreviousWatchersWereNotified() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        notifier.setMaxWatchers(1);
+        notifier.watch("live", versionOf(FOO), 0, new RecordingWatcher());
+        notifier.poll();
+        // when
+        final boolean accepted = notifier.watch("live", versionOf(FOO), 5000, new RecordingWatcher());
+        // then
+        assertTrue(accepted);
+    }
+
+    @Test
+    public void shouldNotPollRegistriesWithoutWaitingWatchers() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        notifier.getCurrentVersion("live");
+        // when
+        notifier.poll();
+        // then
+        assertEquals(source.requests.get(), 1);
+    }
+
+    @Test
+    public void shouldReturnChangedVersionWithoutWaitingWatchers() {
+        // given
+        final MutableJsonHomeSource source = new MutableJsonHomeSource(FOO);
+        final RegistryChangeNotifier notifier = notifierFor(source);
+        notifier.getCurrentVersion("live");
+        // when
+        source.jsonHome = BAR;
+        final String version = notifier.getCurrentVersion("live");
+        // then
+        assertEquals(version, versionOf(BAR));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldFailForUnknownRegistry() {
+        // given
+        final RegistryChangeNotifier notifier = notifierFor(new MutableJsonHomeSource(FOO));
+        // when
+        notifier.watch("unknown", null, 5000, new RecordingWatcher());
+    }
+
+    private static RegistryChangeNotifier notifierFor(final RegistryJsonHomeSource source) {
+        final RegistryChangeNotifier notifier = new RegistryChangeNotifier();
+        notifier.setRegistryJsonHomeSource(source);
+        return notifier;
+    }
+
+    private static JsonHome documentOf(final String name) {
+        return jsonHome(directLink(create("http://example.org/rel/" + name), create("http://example.org/" + name), emptyHints()));
+    }
+
+    private static final class MutableJsonHomeSource implements RegistryJsonHomeSource {
+        private volatile JsonHome jsonHome;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private MutableJsonHomeSource(final JsonHome jsonHome) {
+            this.jsonHome = jsonHome;
+        }
+
+        @Override
+        public JsonHome getJsonHome(final String environment) {
+            if (!environment.equals("live") || jsonHome == null) {
+                throw new IllegalArgumentException("Registry '" + environment + "' does not exist.");
+            }
+            requests.incrementAndGet();
+            return jsonHome;
+        }
+    }
+
+    private static final class RecordingWatcher implements RegistryWatcher {
+        private final AtomicInteger notifications = new AtomicInteger();
+        private volatile String version;
+        private volatile boolean removed;
+
+        @Override
+        public void onVersion(final String currentVersion) {
+            version = currentVersion;
+            notifications.incrementAndGet();
+        }
+
+        @Override
+        public void onRemoved() {
+            removed = true;
+            notifications.incrementAndGet();
+        }
+    }
+}
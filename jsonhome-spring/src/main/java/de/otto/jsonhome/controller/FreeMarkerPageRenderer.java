@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.controller;
+
+import de.otto.jsonhome.cache.PageRenderer;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * A PageRenderer that is processing a FreeMarker template.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class FreeMarkerPageRenderer implements PageRenderer {
+
+    private final Configuration configuration;
+    private final String viewName;
+    private final Map<String, ?> model;
+
+    private FreeMarkerPageRenderer(final Configuration configuration,
+                                   final String viewName,
+                                   final Map<String, ?> model) {
+        this.configuration = configuration;
+        this.viewName = viewName;
+        this.model = model;
+    }
+
+    /**
+     * Creates a renderer for the view. The view name is resolved the same way the FreeMarkerViewResolver
+     * configured in jsonhome-freemarker-beans.xml does.
+     *
+     * @param configuration the FreeMarker configuration
+     * @param viewName the name of the view, like 'resources'.
+     * @param model the model used to render the template.
+     * @return FreeMarkerPageRenderer
+     */
+    public static FreeMarkerPageRenderer freeMarkerPageRenderer(final Configuration configuration,
+                                                                final String viewName,
+                                                                final Map<String, ?> model) {
+        return new FreeMarkerPageRenderer(configuration, viewName, model);
+    }
+
+    /**
+     * Returns a FreeMarker configuration loading the json-home templates from the classpath. The configuration
+     * is used if no FreeMarkerConfig is available in the application context.
+     *
+     * @return Configuration
+     */
+    public static Configuration defaultConfiguration() {
+        final Configuration configuration = new Configuration();
+        configuration.setClassForTemplateLoading(FreeMarkerPageRenderer.class, "/jsonhome/freemarker");
+        configuration.setDefaultEncoding("UTF-8");
+        return configuration;
+    }
+
+    @Override
+    public void render(final OutputStream stream) throws IOException {
+        final Writer writer = new OutputStreamWriter(stream, "UTF-8");
+        try {
+            configuration.getTemplate(viewName + ".ftl").process(model, writer);
+        } catch (final TemplateException e) {
+            throw new IOException("Unable to render view " + viewName + ": " + e.getMessage(), e);
+        }
+        writer.flush();
+    }
+}
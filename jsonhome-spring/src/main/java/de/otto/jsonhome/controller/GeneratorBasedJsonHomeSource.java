@@ -16,30 +16,50 @@
 
 package de.otto.jsonhome.controller;
 
+import de.otto.jsonhome.generator.DirectoryWatcher;
 import de.otto.jsonhome.generator.JsonHomeGenerator;
-import de.otto.jsonhome.generator.JsonHomeSource;
+import de.otto.jsonhome.generator.ReloadableJsonHomeSource;
 import de.otto.jsonhome.model.JsonHome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Controller;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
+import static de.otto.jsonhome.generator.DirectoryWatcher.directoryWatcher;
+
 /**
+ * A JsonHomeSource generating the json-home document from the controllers of the application context.
+ * <p/>
+ * The document may be regenerated at runtime using {@link #reload()}, the JMX operation {@link #triggerReload()}
+ * (if annotated MBeans are exported), the {@link JsonHomeReloadController} or, if
+ * {@link #setReloadCheckSeconds(int) enabled}, by changing the Markdown documents in the docRootDir.
+ *
  * @author Guido Steinacker
  * @since 24.11.12
  */
 @Component
-public class GeneratorBasedJsonHomeSource implements JsonHomeSource {
+@ManagedResource(description = "Generates the json-home document of the application.")
+public class GeneratorBasedJsonHomeSource extends ReloadableJsonHomeSource {
 
     private static Logger LOG = LoggerFactory.getLogger(GeneratorBasedJsonHomeSource.class);
 
     private JsonHomeGenerator jsonHomeGenerator;
     private Set<Class<?>> controllerTypes = Collections.emptySet();
-    private volatile JsonHome jsonHome = null;
+    private String docRootDir;
+    private int reloadCheckSeconds = 0;
+    private DirectoryWatcher docRootWatcher;
 
     @Autowired
     public void setJsonHomeGenerator(final JsonHomeGenerator jsonHomeGenerator) {
@@ -71,17 +91,59 @@ public class GeneratorBasedJsonHomeSource implements JsonHomeSource {
         }
     }
 
-    @Override
-    public final JsonHome getJsonHome() {
-        if (jsonHome == null) {
-            synchronized (this) {
-                if (jsonHome == null) {
-                    LOG.info("Generating JsonHome...");
-                    jsonHome = jsonHomeGenerator.with(controllerTypes).generate();
-                    LOG.info("Generated JsonHome containing {} relation types.", jsonHome.getResources().size());
-                }
+    @Value("${jsonhome.docRootDir}")
+    public void setDocRootDir(final String docRootDir) {
+        this.docRootDir = docRootDir;
+    }
+
+    /**
+     * Enables reloading the json-home document if the Markdown documents in the docRootDir are changed.
+     * <p/>
+     * Only supported if the docRootDir is a directory in the file system (and not contained in a jar).
+     *
+     * @param reloadCheckSeconds number of seconds between two checks of the docRootDir, or 0 to disable checks.
+     */
+    public void setReloadCheckSeconds(final int reloadCheckSeconds) {
+        this.reloadCheckSeconds = reloadCheckSeconds;
+    }
+
+    @PostConstruct
+    public void startWatchingDocRootDir() {
+        if (reloadCheckSeconds > 0 && docRootDir != null && !docRootDir.isEmpty()) {
+            try {
+                final File directory = new ClassPathResource(docRootDir).getFile();
+                docRootWatcher = directoryWatcher(directory, new Runnable() {
+                    @Override
+                    public void run() {
+                        reload();
+                    }
+                });
+                docRootWatcher.start(reloadCheckSeconds);
+            } catch (final IOException e) {
+                LOG.warn("Unable to watch docRootDir {}: {}", docRootDir, e.getMessage());
             }
         }
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        if (docRootWatcher != null) {
+            docRootWatcher.stop();
+        }
+        super.shutdown();
+    }
+
+    @ManagedOperation(description = "Regenerates the json-home document in the background.")
+    public void triggerReload() {
+        reload();
+    }
+
+    @Override
+    protected JsonHome generate() {
+        LOG.info("Generating JsonHome...");
+        final JsonHome jsonHome = jsonHomeGenerator.with(controllerTypes).generate();
+        LOG.info("Generated JsonHome containing {} relation types.", jsonHome.getResources().size());
         return jsonHome;
     }
 
@@ -16,16 +16,19 @@
 
 package de.otto.jsonhome.controller;
 
+import de.otto.jsonhome.cache.RenderedPage;
+import de.otto.jsonhome.cache.RenderedPageCache;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import de.otto.jsonhome.model.JsonHome;
 import de.otto.jsonhome.model.ResourceLink;
+import freemarker.template.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,11 +37,16 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
+import static de.otto.jsonhome.cache.RenderedPageCache.renderedPageCache;
+import static de.otto.jsonhome.controller.FreeMarkerPageRenderer.defaultConfiguration;
+import static de.otto.jsonhome.controller.FreeMarkerPageRenderer.freeMarkerPageRenderer;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 
 /**
  * This controller is handling the /rel resource: link-relation types.
+ * <p/>
+ * The HTML pages are rendered only once per json-home document and served from memory afterwards.
  *
  * @author Guido Steinacker
  * @since 15.09.12
@@ -51,6 +59,8 @@ public class HtmlController {
     private JsonHomeSource jsonHomeSource;
     private URI relationTypeBaseUri;
     private int maxAge = 3600;
+    private Configuration freeMarkerConfiguration = defaultConfiguration();
+    private final RenderedPageCache pageCache = renderedPageCache();
 
     @Autowired
     public void setJsonHomeSource(final JsonHomeSource jsonHomeSource) {
@@ -63,6 +73,11 @@ public class HtmlController {
         LOG.info("RelationTypeBaseUri is {}", relationTypeBaseUri);
     }
 
+    @Autowired(required = false)
+    public void setFreeMarkerConfig(final FreeMarkerConfig freeMarkerConfig) {
+        this.freeMarkerConfiguration = freeMarkerConfig.getConfiguration();
+    }
+
     public void setMaxAgeSeconds(int maxAge) {
         this.maxAge = maxAge;
         LOG.info("MaxAge is {}", maxAge);
@@ -77,16 +92,13 @@ public class HtmlController {
             value = "/json-home",
             method = RequestMethod.GET,
             produces = "text/html")
-    @ResponseBody
-    public ModelAndView getHtmlHomeDocument(final HttpServletRequest request,
-                                            final HttpServletResponse response) {
-        // home document should be cached:
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
+    public void getHtmlHomeDocument(final HttpServletRequest request,
+                                    final HttpServletResponse response) throws IOException {
+        final JsonHome jsonHome = jsonHomeSource.getJsonHome();
         final Map<String,Object> resources = new HashMap<String, Object>();
-        resources.put("resources", jsonHomeSource.getJsonHome().getResources().values());
+        resources.put("resources", jsonHome.getResources().values());
         resources.put("contextpath", request.getContextPath());
-        return new ModelAndView("resources", resources);
+        writeHtmlPage(jsonHome, "resources " + request.getContextPath(), "resources", resources, request, response);
     }
 
 
@@ -95,27 +107,48 @@ public class HtmlController {
             method = RequestMethod.GET,
             produces = "text/html"
     )
-    public ModelAndView getRelationshipType(final HttpServletRequest request) {
-
-        final URI relationTypeURI = URI.create(request.getRequestURL().toString());
-
-
-        final Map<String,Object> model = new HashMap<String, Object>();
-        model.put("contextpath", request.getContextPath());
+    public void getRelationshipType(final HttpServletRequest request,
+                                    final HttpServletResponse response) throws IOException {
+        final String relationType = request.getRequestURL().toString();
+        final String key = relationType + " " + request.getContextPath();
         final JsonHome jsonHome = jsonHomeSource.getJsonHome();
+        // pages of known relation types are served without looking up the resource again:
+        final RenderedPage page = pageCache.getIfPresent(jsonHome, key);
+        if (page != null) {
+            JsonHomeResponses.writeHtmlPage(page, maxAge, request, response);
+            return;
+        }
+        final URI relationTypeURI = URI.create(relationType);
         if (jsonHome.hasResourceFor(relationTypeURI)) {
             final ResourceLink resourceLink = jsonHome.getResourceFor(relationTypeURI);
+            final Map<String,Object> model = new HashMap<String, Object>();
+            model.put("contextpath", request.getContextPath());
             model.put("resource", resourceLink);
             if (resourceLink.isDirectLink()) {
-                return new ModelAndView("directresource", model);
+                writeHtmlPage(jsonHome, key, "directresource", model, request, response);
             } else {
-                return new ModelAndView("templatedresource", model);
+                writeHtmlPage(jsonHome, key, "templatedresource", model, request, response);
             }
         } else {
             throw new IllegalArgumentException("Unknown relation type " + relationTypeURI);
         }
     }
 
+    /**
+     * Writes the page rendered from the view and model. Pages are rendered only once per json-home document
+     * and key.
+     */
+    private void writeHtmlPage(final JsonHome jsonHome,
+                               final String key,
+                               final String viewName,
+                               final Map<String, Object> model,
+                               final HttpServletRequest request,
+                               final HttpServletResponse response) throws IOException {
+        final RenderedPage page = pageCache.get(jsonHome, key,
+                freeMarkerPageRenderer(freeMarkerConfiguration, viewName, model));
+        JsonHomeResponses.writeHtmlPage(page, maxAge, request, response);
+    }
+
     @ResponseStatus(value = NOT_FOUND)
     @ExceptionHandler({IllegalArgumentException.class})
     public void handleNotFound(final HttpServletResponse response) throws IOException {
@@ -16,22 +16,29 @@
 
 package de.otto.jsonhome.controller;
 
+import de.otto.jsonhome.cache.JsonHomeSnapshot;
+import de.otto.jsonhome.delta.JsonHomeHistory;
 import de.otto.jsonhome.generator.JsonHomeSource;
+import de.otto.jsonhome.generator.ReloadableJsonHomeSource;
+import de.otto.jsonhome.model.JsonHome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
-import java.util.Map;
 
-import static de.otto.jsonhome.converter.JsonHomeConverter.toRepresentation;
+import static de.otto.jsonhome.cache.JsonHomeSnapshot.jsonHomeSnapshot;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
 import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
+import static de.otto.jsonhome.controller.JsonHomeResponses.writeJsonHome;
+import static de.otto.jsonhome.delta.JsonHomeHistory.jsonHomeHistory;
 import static java.net.URI.create;
 
 
@@ -50,6 +57,8 @@ public class JsonHomeController {
     private JsonHomeSource jsonHomeSource;
     private URI relationTypeBaseUri;
     private int maxAge = 3600;
+    private final JsonHomeHistory history = jsonHomeHistory();
+    private volatile JsonHomeSnapshot snapshot;
 
     @Autowired
     public void setJsonHomeSource(final JsonHomeSource jsonHomeSource) {
@@ -72,24 +81,41 @@ public class JsonHomeController {
     }
 
     @RequestMapping(produces = {"application/json-home"})
-    @ResponseBody
-    public Map<String, ?> getAsApplicationJsonHome(final HttpServletResponse response) {
-        LOG.info("Returning json-home in application/json-home format.");
-        // home document should be cached:
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
-        return toRepresentation(jsonHomeSource.getJsonHome(), APPLICATION_JSONHOME);
+    public void getAsApplicationJsonHome(final HttpServletRequest request,
+                                         final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json-home format.");
+        writeJsonHome(currentSnapshot(), APPLICATION_JSONHOME, history, maxAge, request, response);
     }
 
     @RequestMapping(produces = {"application/json"})
-    @ResponseBody
-    public Map<String, ?> getAsApplicationJson(final HttpServletResponse response) {
-        LOG.info("Returning json-home in application/json format.");
-        // home document should be cached:
-        response.setHeader("Cache-Control", "max-age=" + maxAge);
-        response.setHeader("Vary", "Accept");
-        return toRepresentation(jsonHomeSource.getJsonHome(), APPLICATION_JSON);
+    public void getAsApplicationJson(final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json format.");
+        writeJsonHome(currentSnapshot(), APPLICATION_JSON, history, maxAge, request, response);
     }
 
+    @RequestMapping(produces = {"application/json-home+smile"})
+    public void getAsApplicationJsonHomeSmile(final HttpServletRequest request,
+                                              final HttpServletResponse response) throws IOException {
+        LOG.debug("Returning json-home in application/json-home+smile format.");
+        writeJsonHome(currentSnapshot(), APPLICATION_JSONHOME_SMILE, history, maxAge, request, response);
+    }
+
+    /**
+     * Returns the snapshot of the current json-home document. Snapshots of reloadable sources are used directly,
+     * otherwise the document is serialized once per JsonHome instance.
+     */
+    private JsonHomeSnapshot currentSnapshot() {
+        if (jsonHomeSource instanceof ReloadableJsonHomeSource) {
+            return ((ReloadableJsonHomeSource) jsonHomeSource).getSnapshot();
+        }
+        final JsonHome jsonHome = jsonHomeSource.getJsonHome();
+        JsonHomeSnapshot current = snapshot;
+        if (current == null || current.getJsonHome() != jsonHome) {
+            current = jsonHomeSnapshot(jsonHome);
+            snapshot = current;
+        }
+        return current;
+    }
 
 }
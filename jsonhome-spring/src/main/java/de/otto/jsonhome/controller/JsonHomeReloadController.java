@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.controller;
+
+import de.otto.jsonhome.generator.ReloadableJsonHomeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.ACCEPTED;
+
+/**
+ * An admin controller used to trigger the regeneration of the json-home document.
+ * <p/>
+ * The controller is not part of the default configuration; it must be configured explicitly and should be
+ * protected from public access.
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+@Controller
+@RequestMapping(value = "/json-home/reload")
+public class JsonHomeReloadController {
+
+    private static Logger LOG = LoggerFactory.getLogger(JsonHomeReloadController.class);
+
+    private ReloadableJsonHomeSource jsonHomeSource;
+
+    @Autowired
+    public void setJsonHomeSource(final ReloadableJsonHomeSource jsonHomeSource) {
+        this.jsonHomeSource = jsonHomeSource;
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    @ResponseStatus(ACCEPTED)
+    public void reload() {
+        LOG.info("Reload of json-home document requested.");
+        jsonHomeSource.reload();
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.controller;
+
+import de.otto.jsonhome.cache.JsonHomeSnapshot;
+import de.otto.jsonhome.cache.RenderedPage;
+import de.otto.jsonhome.converter.JsonHomeMediaType;
+import de.otto.jsonhome.converter.ResourceLinkFragments;
+import de.otto.jsonhome.delta.JsonHomeDelta;
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import de.otto.jsonhome.model.JsonHome;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeDeltaTo;
+import static de.otto.jsonhome.converter.JsonHomeWriter.writeTo;
+import static de.otto.jsonhome.delta.JsonHomeDelta.INSTANCE_MANIPULATION;
+import static de.otto.jsonhome.delta.JsonHomeHistory.entityTagOf;
+import static de.otto.jsonhome.delta.JsonHomeHistory.versionsOf;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+
+/**
+ * Helper used by controllers to write json-home documents and their HTML pages into servlet responses.
+ * <p/>
+ * Documents are versioned using a {@link JsonHomeHistory}. The version is returned as ETag, together with the
+ * media type of the representation. Clients presenting the current version of the representation in If-None-Match
+ * get a 304 (Not Modified). Clients presenting an older version that is still contained in the history, and
+ * accepting the json-home-delta instance-manipulation (A-IM header), get a 226 (IM Used) containing only the
+ * delta to the current version. Deltas depend on the version known by the client, so they must not be stored
+ * by shared caches (RFC 3229, 10.5.3).
+ *
+ * @author agent
+ * @since 18.10.26
+ */
+public final class JsonHomeResponses {
+
+    /**
+     * HTTP status code 226 (IM Used), defined in RFC 3229.
+     */
+    public static final int SC_IM_USED = 226;
+
+    private JsonHomeResponses() {}
+
+    public static void writeJsonHome(final JsonHome jsonHome,
+                                     final JsonHomeMediaType mediaType,
+                                     final JsonHomeHistory history,
+                                     final int maxAge,
+                                     final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        writeJsonHome(jsonHome, null, null, mediaType, history, maxAge, request, response);
+    }
+
+    /**
+     * Writes the json-home document, concatenating the cached fragments of its resource links for full responses.
+     */
+    public static void writeJsonHome(final JsonHome jsonHome,
+                                     final ResourceLinkFragments fragments,
+                                     final JsonHomeMediaType mediaType,
+                                     final JsonHomeHistory history,
+                                     final int maxAge,
+                                     final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        writeJsonHome(jsonHome, null, fragments, mediaType, history, maxAge, request, response);
+    }
+
+    /**
+     * Writes the json-home document of the snapshot, using the pre-serialized representation for full responses.
+     */
+    public static void writeJsonHome(final JsonHomeSnapshot snapshot,
+                                     final JsonHomeMediaType mediaType,
+                                     final JsonHomeHistory history,
+                                     final int maxAge,
+                                     final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        writeJsonHome(snapshot.getJsonHome(), snapshot.getRepresentation(mediaType), null,
+                mediaType, history, maxAge, request, response);
+    }
+
+    private static void writeJsonHome(final JsonHome jsonHome,
+                                      final byte[] representation,
+                                      final ResourceLinkFragments fragments,
+                                      final JsonHomeMediaType mediaType,
+                                      final JsonHomeHistory history,
+                                      final int maxAge,
+                                      final HttpServletRequest request,
+                                      final HttpServletResponse response) throws IOException {
+        final String version = history.update(jsonHome);
+        final List<String> knownVersions = versionsOf(request.getHeader("If-None-Match"), mediaType);
+        if (knownVersions.contains(version)) {
+            setCacheHeaders(version, mediaType, maxAge, response);
+            response.setStatus(SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(mediaType.toString());
+        if (!mediaType.isBinary()) {
+            response.setCharacterEncoding("UTF-8");
+        }
+        if (acceptsDelta(request)) {
+            for (final String knownVersion : knownVersions) {
+                final JsonHomeDelta delta = history.deltaSince(knownVersion);
+                if (delta != null) {
+                    // the history might have been updated concurrently, so the delta determines the version:
+                    response.setHeader("Cache-Control", "no-store, im");
+                    response.setHeader("Vary", "Accept, A-IM, If-None-Match");
+                    response.setHeader("ETag", entityTagOf(delta.getToVersion(), mediaType));
+                    response.setStatus(SC_IM_USED);
+                    response.setHeader("IM", INSTANCE_MANIPULATION);
+                    writeDeltaTo(delta, mediaType, response.getOutputStream());
+                    return;
+                }
+            }
+        }
+        setCacheHeaders(version, mediaType, maxAge, response);
+        if (representation != null) {
+            response.setContentLength(representation.length);
+            response.getOutputStream().write(representation);
+        } else if (fragments != null) {
+            fragments.writeTo(jsonHome, mediaType, response.getOutputStream());
+        } else {
+            writeTo(jsonHome, mediaType, response.getOutputStream());
+        }
+    }
+
+    /**
+     * Writes a pre-rendered HTML page into the response. If the client already has the current version of the page,
+     * a 304 (Not Modified) is returned.
+     */
+    public static void writeHtmlPage(final RenderedPage page,
+                                     final int maxAge,
+                                     final HttpServletRequest request,
+                                     final HttpServletResponse response) throws IOException {
+        response.setHeader("Cache-Control", "max-age=" + maxAge);
+        response.setHeader("Vary", "Accept");
+        response.setHeader("ETag", page.getEntityTag());
+        if (page.isNotModified(request.getHeader("If-None-Match"))) {
+            response.setStatus(SC_NOT_MODIFIED);
+        } else {
+            response.setContentType("text/html;charset=UTF-8");
+            response.setContentLength(page.getContent().length);
+            response.getOutputStream().write(page.getContent());
+        }
+    }
+
+    private static void setCacheHeaders(final String version,
+                                        final JsonHomeMediaType mediaType,
+                                        final int maxAge,
+                                        final HttpServletResponse response) {
+        // home document should be cached:
+        response.setHeader("Cache-Control", "max-age=" + maxAge);
+        response.setHeader("Vary", "Accept");
+        response.setHeader("ETag", entityTagOf(version, mediaType));
+    }
+
+    private static boolean acceptsDelta(final HttpServletRequest request) {
+        final String acceptedManipulations = request.getHeader("A-IM");
+        if (acceptedManipulations != null) {
+            for (final String manipulation : acceptedManipulations.split(",")) {
+                if (manipulation.trim().startsWith(INSTANCE_MANIPULATION)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -16,6 +16,8 @@
 
 package de.otto.jsonhome.generator;
 
+import de.otto.jsonhome.metrics.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Controller;
@@ -61,6 +63,12 @@ public final class SpringJsonHomeGenerator extends JsonHomeGenerator {
         this.docRootDir = docRootDir;
     }
 
+    @Autowired(required = false)
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        super.setMetrics(metrics);
+    }
+
     @PostConstruct
     public void postConstruct() {
         setResourceLinkGenerator(new SpringResourceLinkGenerator(
@@ -19,16 +19,14 @@ package de.otto.jsonhome.controller;
 import de.otto.jsonhome.generator.JsonHomeGenerator;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import de.otto.jsonhome.generator.SpringJsonHomeGenerator;
-import de.otto.jsonhome.model.DirectLink;
 import org.springframework.mock.web.MockHttpServletRequest;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.testng.annotations.Test;
 
-import java.net.URI;
-
 import static de.otto.jsonhome.fixtures.ControllerFixtures.ControllerWithRequestMappingAndLinkRelationTypeAtClassLevel;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Guido Steinacker
@@ -44,13 +42,31 @@ public class HtmlControllerTest {
         final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rel/foo");
         request.setServerName("rel.example.org");
         request.setScheme("http");
-        final ModelAndView resourcesMap = controller.getRelationshipType(request);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getRelationshipType(request, response);
+        // then
+        assertEquals(response.getContentType(), "text/html;charset=UTF-8");
+        assertNotNull(response.getHeader("ETag"));
+        final String html = response.getContentAsString();
+        assertTrue(html.contains("<h1>http://rel.example.org:80/rel/foo</h1>"));
+        assertTrue(html.contains("http://app.example.org/bar"));
+    }
+
+    @Test
+    public void shouldReturnNotModifiedForKnownPage() throws Exception {
+        // given
+        final HtmlController controller = relController(ControllerWithRequestMappingAndLinkRelationTypeAtClassLevel.class);
+        final MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument(new MockHttpServletRequest("GET", "/json-home"), firstResponse);
+        // when
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/json-home");
+        request.addHeader("If-None-Match", firstResponse.getHeader("ETag"));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getHtmlHomeDocument(request, response);
         // then
-        assertEquals(resourcesMap.getViewName(), "directresource");
-        assertNotNull(resourcesMap.getModel().get("resource"));
-        @SuppressWarnings("unchecked")
-        final DirectLink model = (DirectLink) resourcesMap.getModel().get("resource");
-        assertEquals(model.getHref(), URI.create("http://app.example.org/bar"));
+        assertTrue(firstResponse.getContentAsString().contains("http://rel.example.org:80/rel/foo"));
+        assertEquals(response.getStatus(), 304);
+        assertEquals(response.getContentAsByteArray().length, 0);
     }
 
     private HtmlController relController(final Class<?> controllerType) {
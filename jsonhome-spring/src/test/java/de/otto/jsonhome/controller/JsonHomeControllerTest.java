@@ -19,16 +19,18 @@ package de.otto.jsonhome.controller;
 import de.otto.jsonhome.generator.JsonHomeGenerator;
 import de.otto.jsonhome.generator.JsonHomeSource;
 import de.otto.jsonhome.generator.SpringJsonHomeGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import static de.otto.jsonhome.fixtures.ControllerFixtures.*;
-import static de.otto.jsonhome.model.Allow.GET;
 import static java.util.Arrays.asList;
-import static java.util.EnumSet.of;
 import static org.testng.Assert.*;
 
 /**
@@ -45,7 +47,8 @@ public class JsonHomeControllerTest {
                 "http://example.org/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         assertEquals(response.getHeader("Cache-Control"), "max-age=3600");
         assertEquals(resourcesMap.size(), 1);
@@ -54,7 +57,7 @@ public class JsonHomeControllerTest {
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
         final Map<String, Object> expected = new HashMap<String, Object>();
         expected.put("representations", asList("text/html"));
-        expected.put("allow", of(GET));
+        expected.put("allow", asList("GET"));
         final Object hints = resources.get("http://example.org/rel/foo").get("hints");
         assertEquals(hints, expected);
     }
@@ -67,7 +70,8 @@ public class JsonHomeControllerTest {
                 "http://example.org/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJson(response);
+        controller.getAsApplicationJson(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -83,7 +87,8 @@ public class JsonHomeControllerTest {
                 "http://example.org/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -99,7 +104,8 @@ public class JsonHomeControllerTest {
                 "http://example.org/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJson(response);
+        controller.getAsApplicationJson(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -108,6 +114,24 @@ public class JsonHomeControllerTest {
         assertEquals(hints.get("description"), asList("controller value"));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void applicationJsonHomeSmileShouldContainAdditionalInformation() throws Exception {
+        // given
+        final JsonHomeController controller = jsonHomeController(
+                ControllerWithDocumentation.class,
+                "http://example.org/");
+        // when
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getAsApplicationJsonHomeSmile(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = new ObjectMapper(new SmileFactory()).readValue(response.getContentAsByteArray(), Map.class);
+        // then
+        assertEquals(response.getContentType(), "application/json-home+smile");
+        final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
+        final Map<String, ?> hints = asMap(resources.get("http://example.org/rel/foo").get("hints"));
+        assertEquals(hints.get("description"), asList("controller value"));
+    }
+
     @Test
     public void shouldUseRootLinkRelationTypeUri() throws Exception {
         // given
@@ -118,7 +142,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -134,7 +159,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -144,7 +170,7 @@ public class JsonHomeControllerTest {
     }
 
     @Test
-    public void shouldContainPreferHint() {
+    public void shouldContainPreferHint() throws Exception {
         // given
         final JsonHomeController controller = jsonHomeController(
                 ControllerWithHints.class,
@@ -152,7 +178,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -162,7 +189,7 @@ public class JsonHomeControllerTest {
     }
 
     @Test
-    public void shouldContainAcceptRangesHint() {
+    public void shouldContainAcceptRangesHint() throws Exception {
         // given
         final JsonHomeController controller = jsonHomeController(
                 ControllerWithHints.class,
@@ -170,7 +197,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -180,7 +208,7 @@ public class JsonHomeControllerTest {
     }
 
     @Test
-    public void shouldContainPreconditionReqEtag() {
+    public void shouldContainPreconditionReqEtag() throws Exception {
         // given
         final JsonHomeController controller = jsonHomeController(
                 ControllerWithHints.class,
@@ -188,7 +216,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -199,7 +228,7 @@ public class JsonHomeControllerTest {
 
     @Test
     @SuppressWarnings("unchecked")
-    public void shouldContainAuthReq() {
+    public void shouldContainAuthReq() throws Exception {
         // given
         final JsonHomeController controller = jsonHomeController(
                 ControllerWithHints.class,
@@ -207,7 +236,8 @@ public class JsonHomeControllerTest {
                 "http://otto.de/");
         // when
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String, ?> resourcesMap = controller.getAsApplicationJsonHome(response);
+        controller.getAsApplicationJsonHome(new MockHttpServletRequest(), response);
+        final Map<String, ?> resourcesMap = jsonFrom(response);
         // then
         @SuppressWarnings("unchecked")
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) resourcesMap.get("resources");
@@ -223,6 +253,11 @@ public class JsonHomeControllerTest {
                 basicAuth, digestAuth));
     }
 
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> jsonFrom(final MockHttpServletResponse response) throws IOException {
+        return new ObjectMapper().readValue(response.getContentAsString(), Map.class);
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, ?> asMap(final Object obj) {
         return (Map<String, ?>) obj;
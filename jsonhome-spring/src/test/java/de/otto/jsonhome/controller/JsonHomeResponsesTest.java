@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012 Guido Steinacker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.otto.jsonhome.controller;
+
+import de.otto.jsonhome.delta.JsonHomeHistory;
+import de.otto.jsonhome.model.DirectLink;
+import de.otto.jsonhome.model.JsonHome;
+import de.otto.jsonhome.parser.JacksonJsonHomeParser;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static de.otto.jsonhome.controller.JsonHomeResponses.writeJsonHome;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSON;
+import static de.otto.jsonhome.converter.JsonHomeMediaType.APPLICATION_JSONHOME_SMILE;
+import static de.otto.jsonhome.delta.JsonHomeHistory.entityTagOf;
+import static de.otto.jsonhome.delta.JsonHomeHistory.jsonHomeHistory;
+import static de.otto.jsonhome.model.DirectLink.directLink;
+import static de.otto.jsonhome.model.Hints.emptyHints;
+import static de.otto.jsonhome.model.JsonHome.jsonHome;
+import static java.net.URI.create;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+/**
+ * @author agent
+ * @since 18.10.26
+ */
+public class JsonHomeResponsesTest {
+
+    private static final DirectLink FOO_LINK = directLink(
+            create("http://example.org/rel/foo"), create("http://example.org/foo"), emptyHints());
+    private static final DirectLink BAR_LINK = directLink(
+            create("http://example.org/rel/bar"), create("http://example.org/bar"), emptyHints());
+
+    @Test
+    public void shouldReturnFullDocumentWithEntityTag() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK), APPLICATION_JSON, history, 60, new MockHttpServletRequest(), response);
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getHeader("ETag"), entityTagOf(history.getCurrentVersion(), APPLICATION_JSON));
+        assertEquals(parse(response), jsonHome(FOO_LINK));
+    }
+
+    @Test
+    public void shouldReturnNotModifiedForCurrentVersion() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String version = history.update(jsonHome(FOO_LINK));
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", entityTagOf(version, APPLICATION_JSON));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK), APPLICATION_JSON, history, 60, request, response);
+        // then
+        assertEquals(response.getStatus(), 304);
+        assertEquals(response.getContentAsByteArray().length, 0);
+    }
+
+    @Test
+    public void shouldReturnDeltaSinceKnownVersion() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String version = history.update(jsonHome(FOO_LINK));
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", entityTagOf(version, APPLICATION_JSON));
+        request.addHeader("A-IM", "json-home-delta");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK, BAR_LINK), APPLICATION_JSON, history, 60, request, response);
+        // then
+        assertEquals(response.getStatus(), 226);
+        assertEquals(response.getHeader("IM"), "json-home-delta");
+        final JsonHome jsonHome = new JacksonJsonHomeParser()
+                .parseDelta(new ByteArrayInputStream(response.getContentAsByteArray()))
+                .applyTo(jsonHome(FOO_LINK));
+        assertEquals(jsonHome, jsonHome(FOO_LINK, BAR_LINK));
+    }
+
+    @Test
+    public void shouldReturnFullDocumentForUnknownVersion() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", entityTagOf("unknown", APPLICATION_JSON));
+        request.addHeader("A-IM", "json-home-delta");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK, BAR_LINK), APPLICATION_JSON, history, 60, request, response);
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertEquals(parse(response), jsonHome(FOO_LINK, BAR_LINK));
+    }
+
+    @Test
+    public void shouldUseDifferentEntityTagsForDifferentRepresentations() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final MockHttpServletResponse jsonResponse = new MockHttpServletResponse();
+        final MockHttpServletResponse smileResponse = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK), APPLICATION_JSON, history, 60, new MockHttpServletRequest(), jsonResponse);
+        writeJsonHome(jsonHome(FOO_LINK), APPLICATION_JSONHOME_SMILE, history, 60, new MockHttpServletRequest(), smileResponse);
+        // then
+        assertFalse(jsonResponse.getHeader("ETag").equals(smileResponse.getHeader("ETag")));
+    }
+
+    @Test
+    public void shouldNotValidateRepresentationWithEntityTagOfOtherRepresentation() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String version = history.update(jsonHome(FOO_LINK));
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", entityTagOf(version, APPLICATION_JSON));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK), APPLICATION_JSONHOME_SMILE, history, 60, request, response);
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getHeader("ETag"), entityTagOf(version, APPLICATION_JSONHOME_SMILE));
+    }
+
+    @Test
+    public void shouldPreventSharedCachesFromStoringDeltas() throws Exception {
+        // given
+        final JsonHomeHistory history = jsonHomeHistory();
+        final String version = history.update(jsonHome(FOO_LINK));
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", entityTagOf(version, APPLICATION_JSON));
+        request.addHeader("A-IM", "json-home-delta");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        // when
+        writeJsonHome(jsonHome(FOO_LINK, BAR_LINK), APPLICATION_JSON, history, 60, request, response);
+        // then
+        assertEquals(response.getStatus(), 226);
+        assertEquals(response.getHeader("Cache-Control"), "no-store, im");
+        assertEquals(response.getHeader("Vary"), "Accept, A-IM, If-None-Match");
+        assertEquals(response.getHeader("ETag"), entityTagOf(history.getCurrentVersion(), APPLICATION_JSON));
+    }
+
+    private JsonHome parse(final MockHttpServletResponse response) {
+        return new JacksonJsonHomeParser().parse(new ByteArrayInputStream(response.getContentAsByteArray()));
+    }
+}
@@ -18,7 +18,9 @@ package de.otto.jsonhome.spring;
 
 import de.otto.jsonhome.controller.JsonHomeController;
 import de.otto.jsonhome.fixtures.spring.TestController;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
@@ -49,9 +51,10 @@ public class SpringControllerTest extends AbstractTestNGSpringContextTests {
 
     @Test
     @SuppressWarnings("unchecked")
-    public void shouldFindJsonHomeWithAspects() {
+    public void shouldFindJsonHomeWithAspects() throws Exception {
         final MockHttpServletResponse response = new MockHttpServletResponse();
-        final Map<String,?> json = jsonHomeController.getAsApplicationJson(response);
+        jsonHomeController.getAsApplicationJson(new MockHttpServletRequest(), response);
+        final Map<String,?> json = new ObjectMapper().readValue(response.getContentAsString(), Map.class);
         final Map<String, Map<String, ?>> resources = (Map<String, Map<String, ?>>) json.get("resources");
         assertNotNull(resources);
         final Map<String, ?> fooResource = resources.get("http://specs.example.org/rel/foo");